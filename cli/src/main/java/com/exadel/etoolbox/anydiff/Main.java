@@ -36,6 +36,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implements the entry point for the AnyDiff CLI application
@@ -67,6 +68,9 @@ public class Main {
         AnyDiff anyDiff = new AnyDiff()
                 .left(runArguments.getLeft())
                 .right(runArguments.getRight());
+        if (runArguments.getAlgorithm() != null) {
+            anyDiff.algorithm(runArguments.getAlgorithm());
+        }
         if (runArguments.arrangeAttributes() != null) {
             anyDiff.arrangeAttributes(runArguments.arrangeAttributes());
         }
@@ -76,17 +80,42 @@ public class Main {
         if (runArguments.handleErrorPages() != null) {
             anyDiff.handleErrorPages(runArguments.handleErrorPages());
         }
+        if (runArguments.getHashAlgorithm() != null) {
+            anyDiff.hashAlgorithm(runArguments.getHashAlgorithm());
+        }
         if (runArguments.ignoreSpaces() != null) {
             anyDiff.ignoreSpaces(runArguments.ignoreSpaces());
         }
+        if (runArguments.metadataOnly() != null) {
+            anyDiff.metadataOnly(runArguments.metadataOnly());
+        }
         if (runArguments.getColumnWidth() != null) {
             anyDiff.columnWidth(runArguments.getColumnWidth());
         }
+        if (runArguments.getTimeout() != null) {
+            anyDiff.timeLimit(TimeUnit.SECONDS.toMillis(runArguments.getTimeout()));
+        }
+        if (runArguments.useCache() != null) {
+            anyDiff.useCache(runArguments.useCache());
+        }
+        if (runArguments.getCacheDirectory() != null) {
+            anyDiff.cacheDirectory(Paths.get(runArguments.getCacheDirectory()));
+        }
+        if (runArguments.getCacheSize() != null) {
+            anyDiff.cacheSize(runArguments.getCacheSize() * 1024L * 1024L);
+        }
+        if (runArguments.getThreads() != null) {
+            anyDiff.threads(runArguments.getThreads());
+        }
         List<Diff> differences = getDifferences(anyDiff, runArguments.getFilters());
 
         int allCount = differences.stream().mapToInt(Diff::getCount).sum();
         int pendingCount = differences.stream().mapToInt(Diff::getPendingCount).sum();
         printHead(allCount, pendingCount);
+        if (anyDiff.getIdenticalCount() > 0) {
+            log.info("{} pair(-s) of identical files were not compared in detail", anyDiff.getIdenticalCount());
+        }
+        anyDiff.getHostStatistics().forEach((host, statistics) -> log.info("Downloads from {}: {}", host, statistics));
 
         boolean isFirst = true;
         for (Diff difference : differences) {
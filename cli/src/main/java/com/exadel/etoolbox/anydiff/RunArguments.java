@@ -40,15 +40,23 @@ import java.util.stream.Collectors;
 @Slf4j
 class RunArguments {
 
+    private static final String ARGUMENT_ALGORITHM = "algorithm";
     private static final String ARGUMENT_ARRANGE = "arrange";
+    private static final String ARGUMENT_CACHE = "cache";
+    private static final String ARGUMENT_CACHE_DIRECTORY = "cache-dir";
+    private static final String ARGUMENT_CACHE_SIZE = "cache-size";
     private static final String ARGUMENT_FILTERS = "filters";
     private static final String ARGUMENT_HANDLE_ERRORS = "handle-errorpages";
+    private static final String ARGUMENT_HASH = "hash";
     private static final String ARGUMENT_IGNORE_SPACES = "ignore-spaces";
     private static final String ARGUMENT_LEFT = "left";
+    private static final String ARGUMENT_METADATA_ONLY = "metadata-only";
     private static final String ARGUMENT_NORMALIZE = "normalize";
     private static final String ARGUMENT_RIGHT = "right";
     private static final String ARGUMENT_SAVE_HTML = "html";
     private static final String ARGUMENT_SHOW_IN_BROWSER = "browse";
+    private static final String ARGUMENT_THREADS = "threads";
+    private static final String ARGUMENT_TIMEOUT = "timeout";
     private static final String ARGUMENT_WIDTH = "width";
 
     /**
@@ -56,12 +64,33 @@ class RunArguments {
      */
     private List<String> filters;
 
+    /**
+     * Gets the algorithm used to find the differing lines
+     */
+    private DiffAlgorithm algorithm;
+
     /**
      * Gets whether to arrange tag attributes in markup files
      */
     @Accessors(fluent = true)
     private Boolean arrangeAttributes;
 
+    /**
+     * Gets whether to cache the content downloaded from HTTP endpoints
+     */
+    @Accessors(fluent = true)
+    private Boolean useCache;
+
+    /**
+     * Gets the directory to store the cached content in
+     */
+    private String cacheDirectory;
+
+    /**
+     * Gets the maximal size of the cached content in megabytes
+     */
+    private Integer cacheSize;
+
     /**
      * Gets the column width to use for the console and logfile output
      */
@@ -73,6 +102,11 @@ class RunArguments {
     @Accessors(fluent = true)
     private Boolean handleErrorPages;
 
+    /**
+     * Gets the algorithm used to compute file checksums when looking for moved files
+     */
+    private HashAlgorithm hashAlgorithm;
+
     /**
      * Gets whether to ignore spaces when comparing content
      */
@@ -84,6 +118,12 @@ class RunArguments {
      */
     private String[] left;
 
+    /**
+     * Gets whether to compare only the metadata of archive entries without extracting their content
+     */
+    @Accessors(fluent = true)
+    private Boolean metadataOnly;
+
     /**
      * Gets whether to reformat markup content for more accurate comparison
      */
@@ -107,6 +147,16 @@ class RunArguments {
     @Accessors(fluent = true)
     private boolean showInBrowser;
 
+    /**
+     * Gets the number of threads used to run the comparison
+     */
+    private Integer threads;
+
+    /**
+     * Gets the time in seconds that the comparison of a single pair of files may take
+     */
+    private Integer timeout;
+
     private final Options options;
 
     /**
@@ -133,17 +183,23 @@ class RunArguments {
             return result;
         }
 
+        result.algorithm = DiffAlgorithm.from(commandLine.getOptionValue(ARGUMENT_ALGORITHM));
         result.arrangeAttributes = getBooleanOptionValue(commandLine, ARGUMENT_ARRANGE);
+        result.useCache = getBooleanOptionValue(commandLine, ARGUMENT_CACHE);
+        result.cacheDirectory = commandLine.getOptionValue(ARGUMENT_CACHE_DIRECTORY);
+        result.cacheSize = getIntegerOptionValue(commandLine, ARGUMENT_CACHE_SIZE);
         result.columnWidth = getIntegerOptionValue(commandLine, ARGUMENT_WIDTH);
         result.filters = commandLine.getOptionValues(ARGUMENT_FILTERS) != null
                 ? Arrays.stream(commandLine.getOptionValues(ARGUMENT_FILTERS)).filter(StringUtils::isNotBlank).collect(Collectors.toList())
                 : Collections.emptyList();
         result.handleErrorPages = getBooleanOptionValue(commandLine, ARGUMENT_HANDLE_ERRORS);
+        result.hashAlgorithm = HashAlgorithm.from(commandLine.getOptionValue(ARGUMENT_HASH));
         result.ignoreSpaces = getBooleanOptionValue(commandLine, ARGUMENT_IGNORE_SPACES);
         result.left = Arrays
                 .stream(commandLine.getOptionValues(ARGUMENT_LEFT))
                 .filter(StringUtils::isNotBlank)
                 .toArray(String[]::new);
+        result.metadataOnly = getBooleanOptionValue(commandLine, ARGUMENT_METADATA_ONLY);
         result.normalizeMarkup = getBooleanOptionValue(commandLine, ARGUMENT_NORMALIZE);
         result.right = Arrays
                 .stream(commandLine.getOptionValues(ARGUMENT_RIGHT))
@@ -151,6 +207,8 @@ class RunArguments {
                 .toArray(String[]::new);
         result.saveHtml = commandLine.hasOption(ARGUMENT_SAVE_HTML);
         result.showInBrowser = commandLine.hasOption(ARGUMENT_SHOW_IN_BROWSER);
+        result.threads = getIntegerOptionValue(commandLine, ARGUMENT_THREADS);
+        result.timeout = getIntegerOptionValue(commandLine, ARGUMENT_TIMEOUT);
         if (result.showInBrowser) {
             result.saveHtml = true;
         }
@@ -160,12 +218,38 @@ class RunArguments {
     private static Options initOptions() {
         Options options = new Options();
 
+        options.addOption(
+            "g",
+            ARGUMENT_ALGORITHM,
+            true,
+            "Diff algorithm: auto, myers, histogram, or patience (default: "
+                + Constants.DEFAULT_DIFF_ALGORITHM.name().toLowerCase() + ")");
+
         options.addOption(
             "a",
             ARGUMENT_ARRANGE,
             true,
             "Arrange node attributes in markup content (default: " + Constants.DEFAULT_ARRANGE_ATTRIBUTES + ")");
 
+        options.addOption(
+            "c",
+            ARGUMENT_CACHE,
+            false,
+            "Cache content downloaded from HTTP endpoints and reuse it in subsequent runs");
+
+        options.addOption(
+            null,
+            ARGUMENT_CACHE_DIRECTORY,
+            true,
+            "Directory to store the cached content in (default: " + Constants.DEFAULT_CACHE_DIRECTORY + ")");
+
+        options.addOption(
+            null,
+            ARGUMENT_CACHE_SIZE,
+            true,
+            "Maximal size of the cached content in megabytes (default: "
+                + Constants.DEFAULT_CACHE_SIZE / (1024 * 1024) + ")");
+
         Option filters = new Option(
             "f",
             ARGUMENT_FILTERS,
@@ -180,6 +264,13 @@ class RunArguments {
             false,
             "Handle HTTP error code pages as normal pages with markup");
 
+        options.addOption(
+            "x",
+            ARGUMENT_HASH,
+            true,
+            "Checksum algorithm used to detect moved files: crc32, crc32c, or xxhash64 (default: "
+                + Constants.DEFAULT_HASH_ALGORITHM.name().toLowerCase() + ")");
+
         options.addOption(
             "i",
             ARGUMENT_IGNORE_SPACES,
@@ -195,6 +286,12 @@ class RunArguments {
         left.setRequired(true);
         options.addOption(left);
 
+        options.addOption(
+            "m",
+            ARGUMENT_METADATA_ONLY,
+            false,
+            "Compare archive entries by size and checksum only, without extracting their content");
+
         options.addOption(
             "n",
             ARGUMENT_NORMALIZE,
@@ -222,6 +319,19 @@ class RunArguments {
             false,
             "Display comparison results in the browser. If you set this flag, you enable \"Save HTML\" as well");
 
+        options.addOption(
+            "t",
+            ARGUMENT_THREADS,
+            true,
+            "Number of threads used to compare directories, lists of files, and archives (default: " + Constants.DEFAULT_THREADS + ")");
+
+        options.addOption(
+            "o",
+            ARGUMENT_TIMEOUT,
+            true,
+            "Time in seconds that the comparison of a single pair of files may take before a summary is reported "
+                + "instead of the detailed differences (default: no limit)");
+
         options.addOption(
             "w",
             ARGUMENT_WIDTH,
@@ -239,7 +349,6 @@ class RunArguments {
         return Boolean.parseBoolean(rawValue);
     }
 
-    @SuppressWarnings("SameParameterValue")
     private static Integer getIntegerOptionValue(CommandLine commandLine, String name) {
         String rawValue = commandLine.getOptionValue(name);
         if (!StringUtils.isNumeric(rawValue)) {
@@ -29,6 +29,7 @@ import java.util.Collections;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Compares two sets of values and returns a list of differences
@@ -46,17 +47,33 @@ public class AnyDiff {
     private Path[] rightPaths;
     private String rightLabel;
 
+    private DiffAlgorithm algorithm;
     private Boolean arrangeAttributes;
+    private Path cacheDirectory;
+    private Long cacheSize;
     private ContentType contentType;
     private Integer columnWidth;
     private Boolean handleErrorPages;
+    private HashAlgorithm hashAlgorithm;
     private Boolean ignoreSpaces;
+    private Integer maxBlocks;
+    private Integer maxEditDistance;
+    private Boolean metadataOnly;
     private Boolean normalize;
+    private Long streamingThreshold;
+    private Integer threads;
+    private Long timeLimit;
+    private Boolean useCache;
     private List<Filter> filters;
+    private Consumer<Diff> listener;
 
     private Map<ContentType, Preprocessor> preprocessors;
     private Map<ContentType, Postprocessor> postprocessors;
 
+    private int identicalCount;
+
+    private Map<String, String> hostStatistics = Collections.emptyMap();
+
     /* -------
        Strings
        ------- */
@@ -234,6 +251,18 @@ public class AnyDiff {
        Misc arguments
        -------------- */
 
+    /**
+     * Assigns the algorithm used to find the differing lines. By default, the Myers algorithm is used. With
+     * {@link DiffAlgorithm#AUTO}, the algorithm is chosen depending on the size of the content and the share of repeated
+     * lines in it
+     * @param value A {@link DiffAlgorithm} value
+     * @return This instance
+     */
+    public AnyDiff algorithm(DiffAlgorithm value) {
+        this.algorithm = value;
+        return this;
+    }
+
     /**
      * Assigns the flag telling whether to arrange tag attributes of markup content before comparison for more accurate
      * results
@@ -275,6 +304,17 @@ public class AnyDiff {
         return this;
     }
 
+    /**
+     * Assigns the algorithm used to compute the checksums of files when looking for the files that have been moved or
+     * renamed between the compared directories. Default is CRC-32
+     * @param value A {@link HashAlgorithm} value
+     * @return This instance
+     */
+    public AnyDiff hashAlgorithm(HashAlgorithm value) {
+        this.hashAlgorithm = value;
+        return this;
+    }
+
     /**
      * Assigns the flag telling whether to ignore spaces between words in comparison
      * @param value Boolean value
@@ -285,6 +325,40 @@ public class AnyDiff {
         return this;
     }
 
+    /**
+     * Assigns the maximal number of difference blocks reported for a pair of files. If there are more, a coarse summary
+     * (sizes, checksums, the range of changed lines) is reported instead, and the result is flagged as degraded
+     * @param value A positive integer value. A non-positive value means no limit
+     * @return This instance
+     */
+    public AnyDiff maxBlocks(int value) {
+        this.maxBlocks = value;
+        return this;
+    }
+
+    /**
+     * Assigns the maximal number of inserted and deleted lines to look for in a pair of files. If there are more, the
+     * comparison is cancelled, and a coarse summary is reported instead
+     * @param value A positive integer value. A non-positive value means no limit
+     * @return This instance
+     */
+    public AnyDiff maxEditDistance(int value) {
+        this.maxEditDistance = value;
+        return this;
+    }
+
+    /**
+     * Assigns the flag telling whether to compare only the metadata of archive entries (size, checksum, modification
+     * date) without extracting their content. This is the fastest way to find out which entries of large archives
+     * have changed. Also, binary files are not compared byte-wise when this flag is set
+     * @param value Boolean value
+     * @return This instance
+     */
+    public AnyDiff metadataOnly(boolean value) {
+        this.metadataOnly = value;
+        return this;
+    }
+
     /**
      * Assigns the flag telling whether to normalize markup content before comparison for more granular results
      * @param value Boolean value
@@ -295,6 +369,88 @@ public class AnyDiff {
         return this;
     }
 
+    /**
+     * Assigns the file size above which files are compared in the streaming mode. In this mode, the files are not
+     * loaded in memory but indexed on disk, which allows comparing files larger than the heap. The content is then
+     * compared line by line as plain text
+     * @param value File size in bytes. A non-positive value means that the streaming mode is not used
+     * @return This instance
+     */
+    public AnyDiff streamingThreshold(long value) {
+        this.streamingThreshold = value;
+        return this;
+    }
+
+    /**
+     * Assigns the number of threads used to run the comparison. When the value is greater than 1, the entries of
+     * directories, lists, and archives are compared concurrently, the largest files being started first. The order of the
+     * results does not depend on the number of threads
+     * @param value A positive integer value
+     * @return This instance
+     */
+    public AnyDiff threads(int value) {
+        this.threads = value;
+        return this;
+    }
+
+    /**
+     * Assigns the time a comparison of a pair of files may take. If it takes longer, the comparison is cancelled, and
+     * a coarse summary is reported instead. This keeps a single pathological pair from stalling the whole run
+     * @param value Time limit in milliseconds. A non-positive value means no limit
+     * @return This instance
+     */
+    public AnyDiff timeLimit(long value) {
+        this.timeLimit = value;
+        return this;
+    }
+
+    /**
+     * Assigns the flag telling whether to store the content downloaded from HTTP endpoints on disk. The stored content
+     * is revalidated with the server once per comparison and reused when the same URLs are compared again. Regardless
+     * of the flag, identical URLs that are requested at the same time are downloaded once
+     * @param value Boolean value
+     * @return This instance
+     */
+    public AnyDiff useCache(boolean value) {
+        this.useCache = value;
+        return this;
+    }
+
+    /**
+     * Assigns the directory to store the content downloaded from HTTP endpoints in when the cache is used. By default,
+     * the content is stored under {@code $HOME/.etoolbox-anydiff/cache}
+     * @param value {@code Path} object
+     * @return This instance
+     */
+    public AnyDiff cacheDirectory(Path value) {
+        this.cacheDirectory = value;
+        return this;
+    }
+
+    /**
+     * Assigns the maximal total size of the content stored in the cache. When the size is exceeded, the least recently
+     * used content is removed
+     * @param value Size in bytes
+     * @return This instance
+     */
+    public AnyDiff cacheSize(long value) {
+        this.cacheSize = value;
+        return this;
+    }
+
+    /**
+     * Assigns a routine that receives the differences as soon as they are found. This is useful when comparing long
+     * lists of files or URLs concurrently: the results of the fast comparisons are available without waiting for the
+     * slow ones. Note that the routine can receive the differences in an order other than that of the list returned
+     * by {@link #compare()}
+     * @param value A {@code Consumer} of {@link Diff} objects
+     * @return This instance
+     */
+    public AnyDiff listener(Consumer<Diff> value) {
+        this.listener = value;
+        return this;
+    }
+
     /**
      * Assigns a preprocessor for the compared content. A preprocessor is used to modify content or apply additional
      * formatting before the comparison starts
@@ -340,19 +496,52 @@ public class AnyDiff {
                 : DiffRunner.forValues(leftStrings, leftLabel, rightStrings, rightLabel);
         TaskParameters taskParameters = TaskParameters
                 .builder()
+                .algorithm(algorithm)
                 .arrangeAttributes(arrangeAttributes)
+                .cacheDirectory(cacheDirectory)
+                .cacheSize(cacheSize)
                 .columnWidth(columnWidth)
                 .handleErrorPages(handleErrorPages)
+                .hashAlgorithm(hashAlgorithm)
                 .normalize(normalize)
                 .ignoreSpaces(ignoreSpaces)
+                .maxBlocks(maxBlocks)
+                .maxEditDistance(maxEditDistance)
+                .metadataOnly(metadataOnly)
                 .preprocessors(preprocessors)
                 .postprocessors(postprocessors)
+                .streamingThreshold(streamingThreshold)
+                .timeLimit(timeLimit)
+                .useCache(useCache)
                 .build();
-        return diffRunner
+        List<Diff> result = diffRunner
                 .withFilters(filters)
                 .withContentType(contentType)
                 .withTaskParameters(taskParameters)
+                .withThreads(threads != null ? threads : Constants.DEFAULT_THREADS)
+                .withListener(listener)
                 .run();
+        identicalCount = diffRunner.getIdenticalCount();
+        hostStatistics = diffRunner.getHostStatistics();
+        return result;
+    }
+
+    /**
+     * Gets the number of pairs of files or archive entries that were found identical in the latest {@link #compare()}
+     * call before their content was read. Such pairs do not produce {@link Diff} objects
+     * @return Integer value
+     */
+    public int getIdenticalCount() {
+        return identicalCount;
+    }
+
+    /**
+     * Gets the summaries of HTTP downloads performed in the latest {@link #compare()} call, one per host. A summary
+     * contains the number of requests and failures, the throughput and the latency of the downloads
+     * @return A non-null {@code Map} of host names to summaries. Can be empty
+     */
+    public Map<String, String> getHostStatistics() {
+        return hostStatistics;
     }
 
     /**
@@ -376,6 +565,6 @@ public class AnyDiff {
      * @return True or false
      */
     public static boolean isMatch(List<Diff> value) {
-        return CollectionUtils.isEmpty(value) || value.stream().allMatch(diff -> diff.getPendingCount() == 0);
+        return CollectionUtils.isEmpty(value) || value.stream().noneMatch(Diff::isPending);
     }
 }
@@ -16,6 +16,9 @@ package com.exadel.etoolbox.anydiff;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 /**
  * Defines constants used throughout the AnyDiff library
  * <u>Note</u>: This class is not a part of public API and is subject to change. You should not use it directly
@@ -27,9 +30,23 @@ public class Constants {
 
     public static final int DEFAULT_COLUMN_WIDTH = 60;
     public static final boolean DEFAULT_ARRANGE_ATTRIBUTES = true;
+    public static final Path DEFAULT_CACHE_DIRECTORY = Paths.get(
+            System.getProperty("user.home"),
+            ".etoolbox-anydiff",
+            "cache");
+    public static final long DEFAULT_CACHE_SIZE = 512L * 1024 * 1024;
+    public static final DiffAlgorithm DEFAULT_DIFF_ALGORITHM = DiffAlgorithm.MYERS;
+    public static final HashAlgorithm DEFAULT_HASH_ALGORITHM = HashAlgorithm.CRC32;
     public static final boolean DEFAULT_IGNORE_SPACES = true;
     public static final int DEFAULT_INDENT = 2;
+    public static final int DEFAULT_MAX_BLOCKS = 0;
+    public static final int DEFAULT_MAX_EDIT_DISTANCE = 0;
+    public static final boolean DEFAULT_METADATA_ONLY = false;
     public static final boolean DEFAULT_NORMALIZE = true;
+    public static final long DEFAULT_STREAMING_THRESHOLD = 100L * 1024 * 1024;
+    public static final int DEFAULT_THREADS = 1;
+    public static final long DEFAULT_TIME_LIMIT = 0L;
+    public static final boolean DEFAULT_USE_CACHE = false;
 
     public static final int MAX_CONTEXT_LENGTH = 8;
 
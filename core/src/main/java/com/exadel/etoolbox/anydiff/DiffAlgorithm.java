@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Enumerates the algorithms that can be used to find the differing lines of two texts
+ */
+public enum DiffAlgorithm {
+
+    /**
+     * Picks one of the other algorithms depending on the size of the texts and the share of repeated lines in them
+     */
+    AUTO,
+
+    /**
+     * The Eugene Myers algorithm. Produces the shortest edit script but can be slow and produce hard-to-read results
+     * for large texts with many repeated lines, such as closing tags or blank lines
+     */
+    MYERS,
+
+    /**
+     * The histogram algorithm. Aligns the texts by the lines that occur least often and works well for structured
+     * content with many repeated lines
+     */
+    HISTOGRAM,
+
+    /**
+     * The patience algorithm. Aligns the texts by the lines that occur exactly once in both of them
+     */
+    PATIENCE;
+
+    /**
+     * Gets the algorithm that matches the given name, case-insensitive
+     * @param value Name of the algorithm
+     * @return {@code DiffAlgorithm} enum value, or {@code null} if the name does not match any algorithm
+     */
+    public static DiffAlgorithm from(String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        for (DiffAlgorithm algorithm : values()) {
+            if (algorithm.name().equalsIgnoreCase(value.trim())) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Enumerates the algorithms that can be used to compute the checksums of files when looking for the files that have
+ * been moved or renamed
+ */
+public enum HashAlgorithm {
+
+    /**
+     * The CRC-32 algorithm that is used in ZIP archives
+     */
+    CRC32,
+
+    /**
+     * The CRC-32C (Castagnoli) algorithm. Hardware-accelerated in the Java runtimes that support it
+     */
+    CRC32C,
+
+    /**
+     * The 64-bit xxHash algorithm. A fast non-cryptographic hash with a low probability of collisions. Unlike the CRC
+     * algorithms, it does not allow hashing a huge file in parallel segments
+     */
+    XXHASH64;
+
+    /**
+     * Gets the algorithm that matches the given name, case-insensitive
+     * @param value Name of the algorithm
+     * @return {@code HashAlgorithm} enum value, or {@code null} if the name does not match any algorithm
+     */
+    public static HashAlgorithm from(String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        for (HashAlgorithm algorithm : values()) {
+            if (algorithm.name().equalsIgnoreCase(value.trim())) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+}
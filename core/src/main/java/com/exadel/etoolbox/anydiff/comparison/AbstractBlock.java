@@ -54,6 +54,7 @@ abstract class AbstractBlock implements DiffEntry, PrintableEntry {
      */
     private int columnWidth;
 
+    @Getter(AccessLevel.NONE)
     @Setter(AccessLevel.NONE)
     private final List<LineImpl> lines = new ArrayList<>();
 
@@ -68,6 +69,52 @@ abstract class AbstractBlock implements DiffEntry, PrintableEntry {
      */
     abstract int getPendingCount();
 
+    /**
+     * Gets whether the block contains differences that have not been "silenced" (accepted) via a
+     * {@link com.exadel.etoolbox.anydiff.filter.Filter}. When overridden in a subclass, may answer without counting
+     * the differences
+     * @return True or false
+     */
+    boolean hasPendingChanges() {
+        return getPendingCount() > 0;
+    }
+
+    /**
+     * Gets the lines of the block
+     * @return A non-null list of {@link LineImpl} objects
+     */
+    List<LineImpl> getLines() {
+        initLines();
+        return lines;
+    }
+
+    /**
+     * Gets the lines of the block that have been created so far. Unlike {@link #getLines()}, does not create the
+     * lines whose creation has been deferred
+     * @return A non-null list of {@link LineImpl} objects
+     */
+    List<LineImpl> getCreatedLines() {
+        return lines;
+    }
+
+    /**
+     * When overridden in a subclass, creates the lines whose creation has been deferred. Called every time the lines
+     * are retrieved
+     */
+    void initLines() {
+        // No operation by default
+    }
+
+    /**
+     * Clears the state and counts memoized by the current block and by the {@link Diff} it belongs to. Called when a
+     * line of the block is modified
+     */
+    void resetState() {
+        if (diff instanceof DiffImpl) {
+            ((DiffImpl) diff).resetState();
+        }
+    }
+
     /**
      * Constructs an object that subclasses {@link AbstractBlock}. This class must be extended by a concrete
      * implementation
@@ -0,0 +1,133 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import com.github.difflib.algorithm.Change;
+import com.github.difflib.patch.DeltaType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Contains the logic shared by the diff algorithms that split the texts into regions by "anchor" lines and then diff
+ * every region separately. Sequences of integer line identifiers are expected, where the identifiers are
+ * non-negative and less than the number of distinct lines
+ */
+abstract class AnchoredIntDiff {
+
+    private final Deque<int[]> pendingRegions = new ArrayDeque<>();
+
+    final int[] orig;
+    final int[] rev;
+    private final DiffBudget budget;
+
+    private final List<Change> changes = new ArrayList<>();
+
+    /**
+     * Initializes the class fields
+     * @param orig   The original sequence
+     * @param rev    The revised sequence
+     * @param budget {@link DiffBudget} object that is checked on every step of the algorithm
+     */
+    AnchoredIntDiff(int[] orig, int[] rev, DiffBudget budget) {
+        this.orig = orig;
+        this.rev = rev;
+        this.budget = budget;
+    }
+
+    /**
+     * Computes the list of changes that turn the original sequence into the revised one
+     * @return A non-null list of {@link Change} objects. The changes are not ordered
+     */
+    List<Change> computeDiff() {
+        // Regions are processed with an explicit stack rather than recursion so that long texts that are split into
+        // many regions do not overflow the call stack
+        pendingRegions.push(new int[] {0, orig.length, 0, rev.length});
+        while (!pendingRegions.isEmpty()) {
+            budget.checkTime();
+            int[] region = pendingRegions.pop();
+            diffRegion(region[0], region[1], region[2], region[3]);
+        }
+        return changes;
+    }
+
+    /**
+     * Looks for the anchor lines in the given region and calls {@link #addRegion(int, int, int, int)} for every part
+     * of the region between the anchors. Calls {@link #addFallback(int, int, int, int)} if there are no anchors
+     * @param origStart Start of the region in the original sequence, inclusive
+     * @param origEnd   End of the region in the original sequence, exclusive
+     * @param revStart  Start of the region in the revised sequence, inclusive
+     * @param revEnd    End of the region in the revised sequence, exclusive
+     */
+    abstract void splitRegion(int origStart, int origEnd, int revStart, int revEnd);
+
+    /**
+     * Schedules the given region for diffing
+     * @param origStart Start of the region in the original sequence, inclusive
+     * @param origEnd   End of the region in the original sequence, exclusive
+     * @param revStart  Start of the region in the revised sequence, inclusive
+     * @param revEnd    End of the region in the revised sequence, exclusive
+     */
+    void addRegion(int origStart, int origEnd, int revStart, int revEnd) {
+        if (origStart < origEnd || revStart < revEnd) {
+            pendingRegions.push(new int[] {origStart, origEnd, revStart, revEnd});
+        }
+    }
+
+    /**
+     * Diffs the given region with the Myers algorithm
+     * @param origStart Start of the region in the original sequence, inclusive
+     * @param origEnd   End of the region in the original sequence, exclusive
+     * @param revStart  Start of the region in the revised sequence, inclusive
+     * @param revEnd    End of the region in the revised sequence, exclusive
+     */
+    void addFallback(int origStart, int origEnd, int revStart, int revEnd) {
+        List<Change> regionChanges = MyersIntDiff.computeDiff(
+                Arrays.copyOfRange(orig, origStart, origEnd),
+                Arrays.copyOfRange(rev, revStart, revEnd),
+                budget);
+        for (Change change : regionChanges) {
+            changes.add(new Change(
+                    change.deltaType,
+                    change.startOriginal + origStart,
+                    change.endOriginal + origStart,
+                    change.startRevised + revStart,
+                    change.endRevised + revStart));
+        }
+    }
+
+    private void diffRegion(int origStart, int origEnd, int revStart, int revEnd) {
+        while (origStart < origEnd && revStart < revEnd && orig[origStart] == rev[revStart]) {
+            origStart++;
+            revStart++;
+        }
+        while (origStart < origEnd && revStart < revEnd && orig[origEnd - 1] == rev[revEnd - 1]) {
+            origEnd--;
+            revEnd--;
+        }
+        if (origStart == origEnd && revStart == revEnd) {
+            return;
+        }
+        if (origStart == origEnd) {
+            changes.add(new Change(DeltaType.INSERT, origStart, origEnd, revStart, revEnd));
+        } else if (revStart == revEnd) {
+            changes.add(new Change(DeltaType.DELETE, origStart, origEnd, revStart, revEnd));
+        } else {
+            splitRegion(origStart, origEnd, revStart, revEnd);
+        }
+    }
+}
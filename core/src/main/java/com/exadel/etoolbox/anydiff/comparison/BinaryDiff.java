@@ -0,0 +1,509 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import com.exadel.etoolbox.anydiff.DiffAlgorithm;
+import com.github.difflib.algorithm.Change;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Finds the changed, inserted, and removed byte ranges of two binary files in the manner of {@code rsync}. Either file
+ * is split into content-defined chunks with a rolling hash, so that an insertion or a removal moves the chunk boundaries
+ * only locally. The sequences of chunk hashes are compared with the histogram diff, and every changed streak of chunks
+ * is narrowed down to the bytes that actually differ. The files are memory-mapped and processed in parallel segments in
+ * the current {@link java.util.concurrent.ForkJoinPool} (or the common pool), so their content never gets to the heap.
+ * Files that share few chunks, or differ too much for the diff to complete in reasonable time, are reported as a single
+ * range that spans from the first to the last differing byte
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+@Slf4j
+class BinaryDiff {
+
+    private static final int MIN_CHUNK_SIZE = 2 * 1024; // 2 Kb
+    private static final int MAX_CHUNK_SIZE = 64 * 1024; // 64 Kb
+    private static final long SEGMENT_SIZE = 32L * 1024 * 1024; // 32 Mb
+    private static final int READ_BUFFER_SIZE = 64 * 1024; // 64 Kb
+    private static final int PREVIEW_LENGTH = 16;
+
+    // The files are considered unrelated if less than 1% of the chunks of the smaller one are found in the other
+    private static final int MIN_COMMON_CHUNKS_PERCENT = 1;
+
+    // The Myers diff, which the histogram diff falls back to, takes about (N + M) * D steps. The edit distance is
+    // capped so that the number of steps stays within this value
+    private static final long MAX_DIFF_STEPS = 100_000_000L;
+    private static final int MIN_EDIT_DISTANCE_CAP = 1_000;
+
+    // The rolling hash is affected by the last 64 bytes. A boundary is placed where the 13 upper bits of the hash are
+    // zero, which gives the average chunk of about 8 Kb over the minimal size
+    private static final int ROLLING_WINDOW = Long.SIZE;
+    private static final long BOUNDARY_MASK = 0xFFF8_0000_0000_0000L;
+    private static final long[] GEAR = createGearTable();
+
+    // Parameters of the chunk hash
+    private static final long HASH_PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long HASH_PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+
+    private final Path left;
+    private final Path right;
+
+    /**
+     * Computes the list of differing byte ranges of the files
+     * @param budget {@link DiffBudget} object that limits the effort spent on the diff. The edit distance is counted in
+     *               chunks rather than in lines
+     * @return A non-null list of {@link Difference} objects ordered by their position in the left file
+     * @throws IOException if reading the files fails
+     * @throws DiffBudget.ExceededException if the budget is exhausted
+     */
+    List<Difference> getDifferences(DiffBudget budget) throws IOException {
+        try (
+            FileChannel leftChannel = FileChannel.open(left, StandardOpenOption.READ);
+            FileChannel rightChannel = FileChannel.open(right, StandardOpenOption.READ)
+        ) {
+            Chunks leftChunks = split(leftChannel, budget);
+            Chunks rightChunks = split(rightChannel, budget);
+            log.debug("Split {} and {} into {} and {} chunk(s)", left, right, leftChunks.size(), rightChunks.size());
+
+            HashTable identifiers = new HashTable(leftChunks.size() + rightChunks.size());
+            int[] leftIds = identifiers.intern(leftChunks.hashes);
+            int leftDistinctCount = identifiers.size();
+            int[] rightIds = identifiers.intern(rightChunks.hashes);
+            long commonCount = IntStream.of(rightIds).filter(id -> id < leftDistinctCount).count();
+            long minCommonCount = (long) MIN_COMMON_CHUNKS_PERCENT * Math.min(leftIds.length, rightIds.length) / 100;
+            if (commonCount == 0 || commonCount < minCommonCount) {
+                log.debug("Files {} and {} have {} chunk(s) in common", left, right, commonCount);
+                return toList(narrow(leftChannel, 0, leftChannel.size(), rightChannel, 0, rightChannel.size()));
+            }
+
+            int editDistanceCap = (int) Math.max(
+                    MIN_EDIT_DISTANCE_CAP,
+                    Math.min(Integer.MAX_VALUE, MAX_DIFF_STEPS / (leftIds.length + rightIds.length)));
+            List<Change> changes;
+            try {
+                changes = new ArrayList<>(LineDiffUtil.computeChanges(
+                        leftIds,
+                        rightIds,
+                        identifiers.size(),
+                        DiffAlgorithm.HISTOGRAM,
+                        budget.withEditDistance(editDistanceCap)));
+            } catch (DiffBudget.ExceededException e) {
+                // The time limit is shared with the task and is reported the usual way. Otherwise, the edit distance
+                // cap was hit
+                budget.checkTime();
+                String reason = "Edit distance of " + editDistanceCap + " chunks exceeded";
+                log.debug("Byte ranges of {} and {} are reported coarsely: {}", left, right, reason);
+                return toList(getSummary(leftChannel, rightChannel, reason));
+            }
+            budget.register(changes);
+            changes.sort(Comparator.comparingInt(change -> change.startOriginal));
+
+            List<Difference> result = new ArrayList<>(changes.size());
+            for (Change change : changes) {
+                Difference difference = narrow(
+                        leftChannel,
+                        leftChunks.boundaries[change.startOriginal],
+                        leftChunks.boundaries[change.endOriginal],
+                        rightChannel,
+                        rightChunks.boundaries[change.startRevised],
+                        rightChunks.boundaries[change.endRevised]);
+                if (difference != null) {
+                    result.add(difference);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Computes a single pair of byte ranges that span from the first to the last differing byte of the files. Used
+     * when the detailed comparison is not completed. The common leading and trailing bytes are found in linear time
+     * @param reason The reason why the detailed comparison was not completed
+     * @return {@link Difference} object, or {@code null} if the files are equal
+     * @throws IOException if reading the files fails
+     */
+    Difference getSummary(String reason) throws IOException {
+        try (
+            FileChannel leftChannel = FileChannel.open(left, StandardOpenOption.READ);
+            FileChannel rightChannel = FileChannel.open(right, StandardOpenOption.READ)
+        ) {
+            return getSummary(leftChannel, rightChannel, reason);
+        }
+    }
+
+    private static Difference getSummary(
+            FileChannel leftChannel,
+            FileChannel rightChannel,
+            String reason) throws IOException {
+        Difference difference = narrow(leftChannel, 0, leftChannel.size(), rightChannel, 0, rightChannel.size());
+        if (difference == null) {
+            return null;
+        }
+        return new Difference(difference.left.withReason(reason), difference.right.withReason(reason));
+    }
+
+    private static List<Difference> toList(Difference value) {
+        return value != null ? Collections.singletonList(value) : Collections.emptyList();
+    }
+
+    /* --------
+       Chunking
+       -------- */
+
+    private static Chunks split(FileChannel channel, DiffBudget budget) throws IOException {
+        long size = channel.size();
+        int segmentCount = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        long[] candidates;
+        try {
+            // Candidate boundaries depend only on the preceding bytes, so the segments are scanned independently
+            candidates = IntStream
+                    .range(0, segmentCount)
+                    .parallel()
+                    .mapToObj(segment -> {
+                        budget.checkTime();
+                        long start = segment * SEGMENT_SIZE;
+                        return findCandidates(channel, start, Math.min(start + SEGMENT_SIZE, size));
+                    })
+                    .flatMapToLong(LongStream::of)
+                    .toArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        long[] boundaries = selectBoundaries(candidates, size);
+        long[] hashes = new long[boundaries.length - 1];
+        try {
+            IntStream
+                    .range(0, segmentCount)
+                    .parallel()
+                    .forEach(segment -> {
+                        budget.checkTime();
+                        hashChunks(channel, boundaries, hashes, segment * SEGMENT_SIZE);
+                    });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new Chunks(boundaries, hashes);
+    }
+
+    private static long[] findCandidates(FileChannel channel, long start, long end) {
+        // The scan starts a bit earlier so that the hash at the first position of the segment is the same as it would
+        // be in a sequential scan
+        long scanStart = Math.max(0, start - ROLLING_WINDOW + 1);
+        int firstReported = (int) (start - scanStart);
+        LongStream.Builder result = LongStream.builder();
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, scanStart, end - scanStart);
+            long hash = 0;
+            for (int i = 0, limit = buffer.limit(); i < limit; i++) {
+                hash = (hash << 1) + GEAR[buffer.get(i) & 0xFF];
+                if (i >= firstReported && (hash & BOUNDARY_MASK) == 0) {
+                    result.add(scanStart + i + 1);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result.build().toArray();
+    }
+
+    private static long[] selectBoundaries(long[] candidates, long size) {
+        LongStream.Builder result = LongStream.builder();
+        result.add(0);
+        long last = 0;
+        for (long candidate : candidates) {
+            while (candidate - last > MAX_CHUNK_SIZE) {
+                last += MAX_CHUNK_SIZE;
+                result.add(last);
+            }
+            if (candidate - last >= MIN_CHUNK_SIZE && candidate < size) {
+                result.add(candidate);
+                last = candidate;
+            }
+        }
+        while (size - last > MAX_CHUNK_SIZE) {
+            last += MAX_CHUNK_SIZE;
+            result.add(last);
+        }
+        if (size > last) {
+            result.add(size);
+        }
+        return result.build().toArray();
+    }
+
+    private static void hashChunks(FileChannel channel, long[] boundaries, long[] hashes, long segmentStart) {
+        // Hashes the chunks that start within the segment
+        int first = findChunk(boundaries, segmentStart);
+        int last = findChunk(boundaries, segmentStart + SEGMENT_SIZE);
+        if (first >= last) {
+            return;
+        }
+        long start = boundaries[first];
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, boundaries[last] - start);
+            for (int i = first; i < last; i++) {
+                hashes[i] = hash(buffer, (int) (boundaries[i] - start), (int) (boundaries[i + 1] - start));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int findChunk(long[] boundaries, long position) {
+        // Returns the index of the first chunk that starts at or after the given position
+        int low = 0;
+        int high = boundaries.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (boundaries[middle] < position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static long hash(ByteBuffer buffer, int start, int end) {
+        long hash = HASH_PRIME_2 ^ (end - start);
+        int position = start;
+        for (; position + Long.BYTES <= end; position += Long.BYTES) {
+            hash = Long.rotateLeft(hash ^ buffer.getLong(position) * HASH_PRIME_1, 31) * HASH_PRIME_2;
+        }
+        for (; position < end; position++) {
+            hash = Long.rotateLeft(hash ^ (buffer.get(position) & 0xFF) * HASH_PRIME_1, 11) * HASH_PRIME_2;
+        }
+        hash ^= hash >>> 33;
+        hash *= HASH_PRIME_1;
+        return hash ^ (hash >>> 29);
+    }
+
+    private static long[] createGearTable() {
+        // The table is filled with the SplitMix64 sequence, so that it is the same in every run
+        long[] result = new long[256];
+        long seed = 0;
+        for (int i = 0; i < result.length; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            long value = seed;
+            value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+            value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+            result[i] = value ^ (value >>> 31);
+        }
+        return result;
+    }
+
+    /* ----------
+       Narrowing
+       ---------- */
+
+    private static Difference narrow(
+            FileChannel leftChannel,
+            long leftStart,
+            long leftEnd,
+            FileChannel rightChannel,
+            long rightStart,
+            long rightEnd) throws IOException {
+        long limit = Math.min(leftEnd - leftStart, rightEnd - rightStart);
+        long prefix = getCommonPrefixLength(leftChannel, leftStart, rightChannel, rightStart, limit);
+        long suffix = getCommonSuffixLength(leftChannel, leftEnd, rightChannel, rightEnd, limit - prefix);
+        long newLeftStart = leftStart + prefix;
+        long newLeftEnd = leftEnd - suffix;
+        long newRightStart = rightStart + prefix;
+        long newRightEnd = rightEnd - suffix;
+        if (newLeftStart == newLeftEnd && newRightStart == newRightEnd) {
+            return null;
+        }
+        return new Difference(
+                ByteRange.read(leftChannel, newLeftStart, newLeftEnd),
+                ByteRange.read(rightChannel, newRightStart, newRightEnd));
+    }
+
+    private static long getCommonPrefixLength(
+            FileChannel left,
+            long leftStart,
+            FileChannel right,
+            long rightStart,
+            long limit) throws IOException {
+        ByteBuffer leftBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        ByteBuffer rightBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        long result = 0;
+        while (result < limit) {
+            int length = (int) Math.min(READ_BUFFER_SIZE, limit - result);
+            readFully(left, leftBuffer, leftStart + result, length);
+            readFully(right, rightBuffer, rightStart + result, length);
+            for (int i = 0; i < length; i++) {
+                if (leftBuffer.get(i) != rightBuffer.get(i)) {
+                    return result + i;
+                }
+            }
+            result += length;
+        }
+        return result;
+    }
+
+    private static long getCommonSuffixLength(
+            FileChannel left,
+            long leftEnd,
+            FileChannel right,
+            long rightEnd,
+            long limit) throws IOException {
+        ByteBuffer leftBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        ByteBuffer rightBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        long result = 0;
+        while (result < limit) {
+            int length = (int) Math.min(READ_BUFFER_SIZE, limit - result);
+            readFully(left, leftBuffer, leftEnd - result - length, length);
+            readFully(right, rightBuffer, rightEnd - result - length, length);
+            for (int i = length - 1; i >= 0; i--) {
+                if (leftBuffer.get(i) != rightBuffer.get(i)) {
+                    return result + length - 1 - i;
+                }
+            }
+            result += length;
+        }
+        return result;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+        // Called via Buffer since ByteBuffer does not override clear() and limit(int) in Java 8
+        ((Buffer) buffer).clear();
+        ((Buffer) buffer).limit(length);
+        long cursor = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, cursor);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            cursor += read;
+        }
+    }
+
+    /* ---------------
+       Utility classes
+       --------------- */
+
+    /**
+     * Stores the boundaries and hashes of the chunks of a file. There is one more boundary than there are chunks: the
+     * first one is always zero, and the last one is the file size
+     */
+    @RequiredArgsConstructor
+    private static class Chunks {
+        private final long[] boundaries;
+        private final long[] hashes;
+
+        int size() {
+            return hashes.length;
+        }
+    }
+
+    /**
+     * Represents a pair of byte ranges that differ in the left and right files. One of the ranges is empty if the
+     * bytes were inserted or removed
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    @Getter
+    static class Difference {
+        private final ByteRange left;
+        private final ByteRange right;
+    }
+
+    /**
+     * Describes a range of bytes in a file. Renders the offset and the length of the range, and the leading bytes in
+     * the hexadecimal notation. A range that is reported instead of the detailed differences also renders the reason
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    static class ByteRange {
+
+        /**
+         * Gets the offset of the first byte of the range
+         */
+        @Getter
+        private final long offset;
+
+        /**
+         * Gets the number of bytes in the range
+         */
+        @Getter
+        private final long length;
+
+        private final byte[] preview;
+
+        private final String reason;
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            if (reason != null) {
+                builder
+                        .append(Marker.CONTEXT.wrap("Degraded:"))
+                        .append(StringUtils.SPACE)
+                        .append(Marker.PLACEHOLDER.wrap(reason))
+                        .append(StringUtils.LF);
+            }
+            builder
+                    .append(Marker.CONTEXT.wrap("Offset:"))
+                    .append(StringUtils.SPACE)
+                    .append(Marker.PLACEHOLDER.wrap(String.format("0x%08X", offset)))
+                    .append(StringUtils.LF)
+                    .append(Marker.CONTEXT.wrap("Length:"))
+                    .append(StringUtils.SPACE)
+                    .append(Marker.PLACEHOLDER.wrap(length + " bytes"));
+            if (length > 0) {
+                StringBuilder bytes = new StringBuilder();
+                for (byte value : preview) {
+                    if (bytes.length() > 0) {
+                        bytes.append(StringUtils.SPACE);
+                    }
+                    bytes.append(String.format("%02X", value));
+                }
+                if (length > preview.length) {
+                    bytes.append(" ...");
+                }
+                builder
+                        .append(StringUtils.LF)
+                        .append(Marker.CONTEXT.wrap("Bytes:"))
+                        .append(StringUtils.SPACE)
+                        .append(Marker.PLACEHOLDER.wrap(bytes));
+            }
+            return builder.toString();
+        }
+
+        private static ByteRange read(FileChannel channel, long start, long end) throws IOException {
+            int previewLength = (int) Math.min(PREVIEW_LENGTH, end - start);
+            ByteBuffer buffer = ByteBuffer.allocate(previewLength);
+            readFully(channel, buffer, start, previewLength);
+            return new ByteRange(start, end - start, buffer.array(), null);
+        }
+
+        private ByteRange withReason(String value) {
+            return new ByteRange(offset, length, preview, value);
+        }
+    }
+}
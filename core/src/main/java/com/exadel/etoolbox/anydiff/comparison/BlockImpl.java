@@ -25,11 +25,14 @@ import com.exadel.etoolbox.anydiff.diff.StructureEntry;
 import com.exadel.etoolbox.anydiff.util.StringUtil;
 import com.github.difflib.text.DiffRow;
 import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Supplier;
@@ -51,34 +54,92 @@ class BlockImpl extends AbstractBlock implements EntryHolder, StructureEntry, Fr
 
     private boolean ignoreSpaces;
 
+    private long inlineTimeLimit;
+
     private int ellipsisPosition = -1;
 
+    private BlockText leftText;
+
+    private BlockText rightText;
+
+    private List<DeferredAddition> deferredAdditions;
+
+    private DiffState state;
+    private int count = -1;
+    private int pendingCount = -1;
+
     /* ---------
        Accessors
        --------- */
 
     @Override
     int getCount() {
-        return getLines().stream().mapToInt(LineImpl::getCount).sum();
+        if (count < 0) {
+            count = getLines().stream().mapToInt(LineImpl::getCount).sum();
+        }
+        return count;
     }
 
     @Override
     int getPendingCount() {
-        return getLines().stream().mapToInt(LineImpl::getPendingCount).sum();
+        if (pendingCount < 0) {
+            pendingCount = getLines().stream().mapToInt(LineImpl::getPendingCount).sum();
+        }
+        return pendingCount;
+    }
+
+    @Override
+    boolean hasPendingChanges() {
+        if (deferredAdditions == null || pendingCount >= 0) {
+            return getPendingCount() > 0;
+        }
+        // The deferred lines cannot have been accepted by a filter yet, so a change that is certain to be found in
+        // them is pending
+        boolean hasCertainChanges = getCreatedLines().stream().anyMatch(line -> line.getPendingCount() > 0)
+                || deferredAdditions.stream().anyMatch(addition -> addition.getLowestState() != DiffState.UNCHANGED);
+        return hasCertainChanges || getPendingCount() > 0;
     }
 
     @Override
     public DiffState getState() {
-        if (getLines().isEmpty() || getLines().stream().allMatch(line -> line.getState() == DiffState.UNCHANGED)) {
+        if (state == null) {
+            state = deferredAdditions != null ? estimateState() : computeState(getLineStates());
+        }
+        return state;
+    }
+
+    private DiffState estimateState() {
+        // Every deferred addition reports the least and the most changed states its lines may turn out to have. If
+        // both bounds produce the same state of the block, the state is known without computing the inline diff
+        List<DiffState> lowestStates = getLineStates();
+        List<DiffState> highestStates = getLineStates();
+        for (DeferredAddition addition : deferredAdditions) {
+            lowestStates.add(addition.getLowestState());
+            highestStates.add(addition.getHighestState());
+        }
+        DiffState lowest = computeState(lowestStates);
+        if (lowest == computeState(highestStates)) {
+            return lowest;
+        }
+        initLines();
+        return computeState(getLineStates());
+    }
+
+    private List<DiffState> getLineStates() {
+        return getCreatedLines().stream().map(LineImpl::getState).collect(Collectors.toList());
+    }
+
+    private static DiffState computeState(List<DiffState> lineStates) {
+        if (lineStates.stream().allMatch(state -> state == DiffState.UNCHANGED)) {
             return DiffState.UNCHANGED;
         }
-        if (getLines().stream().anyMatch(line -> line.getState() == DiffState.CHANGE)) {
+        if (lineStates.contains(DiffState.CHANGE)) {
             return DiffState.CHANGE;
         }
-        if (getLines().stream().allMatch(line -> line.getState() == DiffState.LEFT_MISSING || line.getState() == DiffState.UNCHANGED)) {
+        if (lineStates.stream().allMatch(state -> state == DiffState.LEFT_MISSING || state == DiffState.UNCHANGED)) {
             return DiffState.LEFT_MISSING;
         }
-        if (getLines().stream().allMatch(line -> line.getState() == DiffState.RIGHT_MISSING || line.getState() == DiffState.UNCHANGED)) {
+        if (lineStates.stream().allMatch(state -> state == DiffState.RIGHT_MISSING || state == DiffState.UNCHANGED)) {
             return DiffState.RIGHT_MISSING;
         }
         return DiffState.CHANGE;
@@ -132,6 +193,36 @@ class BlockImpl extends AbstractBlock implements EntryHolder, StructureEntry, Fr
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Gets the text of the left side of the block shared by the fragments of all the lines
+     * @return {@link BlockText} object, or {@code null} if the block is empty
+     */
+    BlockText getLeftText() {
+        if (leftText == null && !getLines().isEmpty()) {
+            leftText = BlockText.of(getLines().get(0).getLeftSide());
+        }
+        return leftText;
+    }
+
+    /**
+     * Gets the text of the right side of the block shared by the fragments of all the lines
+     * @return {@link BlockText} object, or {@code null} if the block is empty
+     */
+    BlockText getRightText() {
+        if (rightText == null && !getLines().isEmpty()) {
+            rightText = BlockText.of(getLines().get(0).getRightSide());
+        }
+        return rightText;
+    }
+
+    /**
+     * Gets whether the block contains lines that are not created yet because their inline difference is deferred
+     * @return True or false
+     */
+    boolean hasDeferredLines() {
+        return deferredAdditions != null;
+    }
+
     /* --------------
        Adding entries
        -------------- */
@@ -156,11 +247,62 @@ class BlockImpl extends AbstractBlock implements EntryHolder, StructureEntry, Fr
         }
     }
 
+    /**
+     * Adds a run of changed lines whose inline difference has not been computed yet. The lines are created when the
+     * content of the block is first requested, so a block that is dropped by a filter never pays for the inline diff.
+     * Lines added after this call are also deferred to preserve the order
+     * @param value {@link DiffRow} value that contains the changed lines without markup, joined with line breaks
+     * @see DiffRowUtil#getDiffRows(List, List, List, boolean, boolean, DiffBudget)
+     */
+    void addDeferred(DiffRow value) {
+        // The lines are split the same way as the inline diff splits them. A line with text on one side only can
+        // become an insertion or a deletion, a line with text on both sides can become a change, and any line can
+        // stay unchanged if none of its tokens is highlighted
+        List<DiffState> lineStates = DiffRowUtil
+                .toPairedRows(value.getOldLine(), value.getNewLine())
+                .stream()
+                .map(row -> getHighestState(row.getOldLine(), row.getNewLine()))
+                .collect(Collectors.toList());
+        // Unless the sides differ only in whitespace, at least one token that is not whitespace is highlighted, and
+        // the line that contains it is changed. The state of the whole run is then known if all the lines that may
+        // change are of the same kind. An empty side is an exception: its only token is empty and, if highlighted,
+        // turns an insertion or a deletion into a change
+        boolean hasCertainChanges = !StringUtils
+                .deleteWhitespace(value.getOldLine())
+                .equals(StringUtils.deleteWhitespace(value.getNewLine()));
+        boolean isUniform = lineStates.stream().filter(state -> state != DiffState.UNCHANGED).distinct().count() == 1;
+        boolean hasEmptySide = value.getOldLine().isEmpty() || value.getNewLine().isEmpty();
+        DiffState highestState = hasEmptySide ? DiffState.CHANGE : computeState(lineStates);
+        DiffState lowestState = hasCertainChanges && isUniform && !hasEmptySide ? highestState : DiffState.UNCHANGED;
+        // The budget of the task has usually expired by the time the lines are requested, so a new one is started
+        defer(
+                () -> DiffRowUtil
+                        .getInlineRows(
+                                value.getOldLine(),
+                                value.getNewLine(),
+                                ignoreSpaces,
+                                inlineTimeLimit > 0 ? new DiffBudget(inlineTimeLimit, 0, 0) : DiffBudget.UNLIMITED)
+                        .forEach(this::add),
+                lowestState,
+                highestState);
+    }
+
+    private static DiffState getHighestState(String left, String right) {
+        if (StringUtils.isEmpty(left)) {
+            return StringUtils.isEmpty(right) ? DiffState.UNCHANGED : DiffState.LEFT_MISSING;
+        }
+        return StringUtils.isEmpty(right) ? DiffState.RIGHT_MISSING : DiffState.CHANGE;
+    }
+
     /**
      * Adds a line to the block
      * @param value {@link LineImpl} value representing a diff line
      */
     void add(LineImpl value) {
+        if (deferredAdditions != null) {
+            defer(() -> add(value), value.getState(), value.getState());
+            return;
+        }
         value.setBlock(this);
         if (contentType == ContentType.HTML || contentType == ContentType.XML) {
             value.setIsMarkup();
@@ -173,6 +315,8 @@ class BlockImpl extends AbstractBlock implements EntryHolder, StructureEntry, Fr
             lastLine.getRightSide().setNext(value.getRightSide());
         }
         getLines().add(value);
+        resetText();
+        resetState();
     }
 
     /**
@@ -193,6 +337,10 @@ class BlockImpl extends AbstractBlock implements EntryHolder, StructureEntry, Fr
         if (CollectionUtils.isEmpty(value)) {
             return;
         }
+        if (deferredAdditions != null) {
+            defer(() -> addContext(value), DiffState.UNCHANGED, DiffState.UNCHANGED);
+            return;
+        }
         for (DiffRow diffRow : value) {
             if (Marker.ELLIPSIS.equals(diffRow.getOldLine()) && Marker.ELLIPSIS.equals(diffRow.getNewLine())) {
                 ellipsisPosition = getLines().size();
@@ -206,6 +354,24 @@ class BlockImpl extends AbstractBlock implements EntryHolder, StructureEntry, Fr
         }
     }
 
+    private void defer(Runnable action, DiffState lowestState, DiffState highestState) {
+        if (deferredAdditions == null) {
+            deferredAdditions = new ArrayList<>();
+        }
+        deferredAdditions.add(new DeferredAddition(action, lowestState, highestState));
+        resetState();
+    }
+
+    @Override
+    void initLines() {
+        if (deferredAdditions == null) {
+            return;
+        }
+        List<DeferredAddition> additions = deferredAdditions;
+        deferredAdditions = null;
+        additions.forEach(addition -> addition.getAction().run());
+    }
+
     /* ------------------
        Discarding entries
        ------------------ */
@@ -316,9 +482,39 @@ class BlockImpl extends AbstractBlock implements EntryHolder, StructureEntry, Fr
         int minIndent = getLines().stream().mapToInt(LineImpl::getIndent).min().orElse(0);
         if (minIndent > 0) {
             getLines().forEach(line -> line.cutLeft(minIndent));
+            resetText();
         }
     }
 
+    private void resetText() {
+        leftText = null;
+        rightText = null;
+    }
+
+    @Override
+    void resetState() {
+        state = null;
+        count = -1;
+        pendingCount = -1;
+        super.resetState();
+    }
+
+    /* ---------------
+       Utility classes
+       --------------- */
+
+    /**
+     * Represents an addition of lines that is postponed until the lines are requested. Stores the bounds of the
+     * states the added lines may have so that the state of the block can be estimated beforehand
+     */
+    @RequiredArgsConstructor
+    @Getter
+    private static class DeferredAddition {
+        private final Runnable action;
+        private final DiffState lowestState;
+        private final DiffState highestState;
+    }
+
     /* -------------
        Factory logic
        ------------- */
@@ -338,6 +534,7 @@ class BlockImpl extends AbstractBlock implements EntryHolder, StructureEntry, Fr
         private boolean compactify;
         private ContentType contentType;
         private boolean ignoreSpaces;
+        private long inlineTimeLimit;
         private String path;
 
         /**
@@ -350,6 +547,17 @@ class BlockImpl extends AbstractBlock implements EntryHolder, StructureEntry, Fr
             return this;
         }
 
+        /**
+         * Sets the time in milliseconds the deferred inline diff of changed lines may take. When the limit is
+         * exceeded, the changed lines are marked as a whole. A non-positive value means no limit
+         * @param value Long value
+         * @return This instance
+         */
+        Builder inlineTimeLimit(long value) {
+            this.inlineTimeLimit = value;
+            return this;
+        }
+
         /**
          * Sets whether the block content should be compacted before printing out
          * @param value True or false
@@ -394,6 +602,7 @@ class BlockImpl extends AbstractBlock implements EntryHolder, StructureEntry, Fr
             ((BlockImpl) block).compactify = compactify;
             ((BlockImpl) block).contentType = contentType;
             ((BlockImpl) block).ignoreSpaces = ignoreSpaces;
+            ((BlockImpl) block).inlineTimeLimit = inlineTimeLimit;
             return block;
         }
     }
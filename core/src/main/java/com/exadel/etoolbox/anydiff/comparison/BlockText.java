@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Stores the text of a chain of {@link MarkedString} objects (such as the left or the right side of a block) together
+ * with the offsets at which every string starts. The text is built once and shared by the fragments of all the strings
+ * in the chain, so that extracting the fragments of a block takes time proportional to the size of the block
+ */
+class BlockText {
+
+    private final String text;
+    private final Map<MarkedString, Integer> offsets;
+
+    private BlockText(String text, Map<MarkedString, Integer> offsets) {
+        this.text = text;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Gets the text of the chain. Strings are delimited with line breaks. Empty strings are skipped
+     * @return A non-null string
+     */
+    String getText() {
+        return text;
+    }
+
+    /**
+     * Gets the offset at which the specified string starts in the text of the chain
+     * @param value {@link MarkedString} object
+     * @return A non-negative integer, or {@code -1} if the string does not belong to the chain or is empty
+     */
+    int getOffset(MarkedString value) {
+        Integer result = offsets.get(value);
+        return result != null ? result : -1;
+    }
+
+    /**
+     * Creates a {@code BlockText} for the chain the specified string belongs to
+     * @param value {@link MarkedString} object. A non-null value is expected
+     * @return {@code BlockText} instance
+     */
+    static BlockText of(MarkedString value) {
+        MarkedString current = value;
+        while (current.getPrevious() != null) {
+            current = current.getPrevious();
+        }
+        StringBuilder builder = new StringBuilder();
+        Map<MarkedString, Integer> offsets = new IdentityHashMap<>();
+        int offset = 0;
+        for (; current != null; current = current.getNext()) {
+            if (MarkedString.isEmpty(current)) {
+                continue;
+            }
+            if (!offsets.isEmpty()) {
+                builder.append(StringUtils.LF);
+                offset++;
+            }
+            offsets.put(current, offset);
+            offset += current.appendTo(builder);
+        }
+        return new BlockText(builder.toString(), offsets);
+    }
+}
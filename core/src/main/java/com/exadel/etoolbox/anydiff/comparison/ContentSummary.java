@@ -0,0 +1,117 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import lombok.Builder;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Describes one side of a comparison in a coarse way (size, checksum, changed line ranges). Used instead of a detailed
+ * diff when the comparison budget is exceeded
+ */
+@Builder(builderClassName = "Builder")
+class ContentSummary {
+
+    private static final int MAX_RANGES = 10;
+
+    private String reason;
+
+    private int lineCount;
+
+    private long size;
+
+    private long crc;
+
+    private List<int[]> changedRanges;
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder
+                .append(Marker.CONTEXT.wrap("Degraded:"))
+                .append(StringUtils.SPACE)
+                .append(Marker.PLACEHOLDER.wrap(reason))
+                .append(StringUtils.LF)
+                .append(Marker.CONTEXT.wrap("Lines:"))
+                .append(StringUtils.SPACE)
+                .append(Marker.PLACEHOLDER.wrap(lineCount))
+                .append(StringUtils.LF)
+                .append(Marker.CONTEXT.wrap("Size:"))
+                .append(StringUtils.SPACE)
+                .append(Marker.PLACEHOLDER.wrap(size + " chars"))
+                .append(StringUtils.LF)
+                .append(Marker.CONTEXT.wrap("CRC:"))
+                .append(StringUtils.SPACE)
+                .append(Marker.PLACEHOLDER.wrap(crc));
+        if (changedRanges != null && !changedRanges.isEmpty()) {
+            builder
+                    .append(StringUtils.LF)
+                    .append(Marker.CONTEXT.wrap("Changed lines:"))
+                    .append(StringUtils.SPACE)
+                    .append(Marker.PLACEHOLDER.wrap(getRangesString()));
+        }
+        return builder.toString();
+    }
+
+    private String getRangesString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < Math.min(changedRanges.size(), MAX_RANGES); i++) {
+            int[] range = changedRanges.get(i);
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            // Line numbers are reported 1-based, the end being inclusive
+            builder.append(range[0] + 1);
+            if (range[1] - range[0] > 1) {
+                builder.append('-').append(range[1]);
+            } else if (range[1] == range[0]) {
+                builder.append(" (insertion point)");
+            }
+        }
+        if (changedRanges.size() > MAX_RANGES) {
+            builder.append(" and ").append(changedRanges.size() - MAX_RANGES).append(" more");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Creates a summary of the given lines
+     * @param reason        The reason why the detailed comparison was not completed
+     * @param lines         The lines of content
+     * @param changedRanges The list of {@code [start, end)} ranges of changed lines. Can be {@code null}
+     * @return {@code ContentSummary} instance
+     */
+    static ContentSummary from(String reason, List<String> lines, List<int[]> changedRanges) {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        for (String line : lines) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            crc.update(bytes, 0, bytes.length);
+            crc.update('\n');
+            size += line.length() + 1;
+        }
+        return ContentSummary
+                .builder()
+                .reason(reason)
+                .lineCount(lines.size())
+                .size(size)
+                .crc(crc.getValue())
+                .changedRanges(changedRanges)
+                .build();
+    }
+}
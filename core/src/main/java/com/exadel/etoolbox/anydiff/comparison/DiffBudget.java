@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import com.github.difflib.algorithm.Change;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the limits of time and effort that a {@link DiffTask} may spend on finding differences. The diff routines
+ * check the budget as they go and abort with a {@link ExceededException} when it is exhausted. The same budget can be
+ * shared by routines running in parallel
+ */
+class DiffBudget {
+
+    /**
+     * A budget that is never exceeded
+     */
+    static final DiffBudget UNLIMITED = new DiffBudget(0, 0, 0);
+
+    private final long deadline;
+    private final long timeLimit;
+    private final int maxEditDistance;
+    private final int maxBlocks;
+
+    private final AtomicLong editDistance = new AtomicLong();
+    private final AtomicLong blocks = new AtomicLong();
+
+    /**
+     * Creates a new {@code DiffBudget} instance. The time is counted from the moment of creation
+     * @param timeLimit       Time limit in milliseconds. A non-positive value means no limit
+     * @param maxEditDistance The maximal number of inserted and deleted lines. A non-positive value means no limit
+     * @param maxBlocks       The maximal number of difference blocks. A non-positive value means no limit
+     */
+    DiffBudget(long timeLimit, int maxEditDistance, int maxBlocks) {
+        this(
+                timeLimit,
+                timeLimit > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeLimit) : 0,
+                maxEditDistance,
+                maxBlocks);
+    }
+
+    private DiffBudget(long timeLimit, long deadline, int maxEditDistance, int maxBlocks) {
+        this.timeLimit = timeLimit;
+        this.deadline = deadline;
+        this.maxEditDistance = maxEditDistance;
+        this.maxBlocks = maxBlocks;
+    }
+
+    /**
+     * Retrieves a budget for the inline diff of changed lines that expires at the same time as the current one. The
+     * inline diff counts tokens rather than lines, so the limits of the edit distance and the number of blocks do not
+     * apply to it
+     * @return {@code DiffBudget} instance
+     */
+    DiffBudget forInline() {
+        return deadline != 0 ? new DiffBudget(timeLimit, deadline, 0, 0) : UNLIMITED;
+    }
+
+    /**
+     * Retrieves a budget that expires at the same time as the current one and limits the edit distance that a single
+     * diff routine may reach. The limits of the current budget are not affected by the routines that use the new one
+     * @param maxEditDistance The maximal number of inserted and deleted items. A non-positive value means no limit
+     * @return {@code DiffBudget} instance
+     */
+    DiffBudget withEditDistance(int maxEditDistance) {
+        return new DiffBudget(timeLimit, deadline, maxEditDistance, 0);
+    }
+
+    /**
+     * Throws an exception if the time limit is exceeded
+     */
+    void checkTime() {
+        if (deadline != 0 && System.nanoTime() - deadline > 0) {
+            throw new ExceededException("Time limit of " + timeLimit + " ms exceeded");
+        }
+    }
+
+    /**
+     * Throws an exception if the given edit distance of a running diff routine is over the limit
+     * @param value The number of inserted and deleted lines found so far
+     */
+    void checkEditDistance(long value) {
+        if (maxEditDistance > 0 && value > maxEditDistance) {
+            throw new ExceededException("Edit distance of " + maxEditDistance + " lines exceeded");
+        }
+    }
+
+    /**
+     * Accounts for the changes found by a diff routine and throws an exception if the edit distance or the number of
+     * blocks is over the limit. Every change manifests a separate block in the diff
+     * @param changes The list of {@link Change} objects
+     */
+    void register(List<Change> changes) {
+        long distance = 0;
+        for (Change change : changes) {
+            distance += change.endOriginal - change.startOriginal + change.endRevised - change.startRevised;
+        }
+        checkEditDistance(editDistance.addAndGet(distance));
+        long blockCount = blocks.addAndGet(changes.size());
+        if (maxBlocks > 0 && blockCount > maxBlocks) {
+            throw new ExceededException("Number of blocks exceeded " + maxBlocks);
+        }
+        checkTime();
+    }
+
+    /**
+     * Creates a {@code DiffBudget} from the given task parameters
+     * @param parameters {@link TaskParameters} object. A non-null value is expected
+     * @return {@code DiffBudget} instance
+     */
+    static DiffBudget from(TaskParameters parameters) {
+        if (parameters.getTimeLimit() <= 0 && parameters.getMaxEditDistance() <= 0 && parameters.getMaxBlocks() <= 0) {
+            return UNLIMITED;
+        }
+        return new DiffBudget(parameters.getTimeLimit(), parameters.getMaxEditDistance(), parameters.getMaxBlocks());
+    }
+
+    /**
+     * Signals that a diff routine was aborted because the budget was exhausted
+     */
+    static class ExceededException extends RuntimeException {
+        ExceededException(String message) {
+            // The stack trace is not needed: the exception is always caught and reported by the task
+            super(message, null, false, false);
+        }
+    }
+}
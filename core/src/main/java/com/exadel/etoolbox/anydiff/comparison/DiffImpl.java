@@ -55,38 +55,70 @@ class DiffImpl implements Diff, PrintableEntry {
 
     private List<AbstractBlock> children = Collections.emptyList();
 
+    private DiffState state;
+    private int count = -1;
+    private int pendingCount = -1;
+
     /* ---------------
        State accessors
        --------------- */
 
     @Override
     public DiffState getState() {
-        if (CollectionUtils.isEmpty(children) || children.stream().allMatch(e -> e.getState() == DiffState.UNCHANGED)) {
-            return DiffState.UNCHANGED;
-        }
-        if (children.stream().allMatch(e -> e.getState() == DiffState.LEFT_MISSING)) {
-            return DiffState.LEFT_MISSING;
+        if (state == null) {
+            state = computeState();
         }
-        if (children.stream().allMatch(e -> e.getState() == DiffState.RIGHT_MISSING)) {
-            return DiffState.RIGHT_MISSING;
-        }
-        return DiffState.CHANGE;
+        return state;
     }
 
     @Override
     public int getCount() {
-        if (getState() == DiffState.UNCHANGED) {
-            return 0;
+        if (count < 0) {
+            count = getState() != DiffState.UNCHANGED
+                    ? children.stream().mapToInt(AbstractBlock::getCount).sum()
+                    : 0;
         }
-        return children.stream().mapToInt(AbstractBlock::getCount).sum();
+        return count;
     }
 
     @Override
     public int getPendingCount() {
-        if (getState() == DiffState.UNCHANGED) {
-            return 0;
+        if (pendingCount < 0) {
+            pendingCount = getState() != DiffState.UNCHANGED
+                    ? children.stream().mapToInt(AbstractBlock::getPendingCount).sum()
+                    : 0;
+        }
+        return pendingCount;
+    }
+
+    @Override
+    public boolean isPending() {
+        if (pendingCount >= 0) {
+            return pendingCount > 0;
+        }
+        return getState() != DiffState.UNCHANGED && children.stream().anyMatch(AbstractBlock::hasPendingChanges);
+    }
+
+    /**
+     * Clears the memoized state and counts. Called when the content of the current instance is modified
+     */
+    void resetState() {
+        state = null;
+        count = -1;
+        pendingCount = -1;
+    }
+
+    private DiffState computeState() {
+        if (CollectionUtils.isEmpty(children) || children.stream().allMatch(e -> e.getState() == DiffState.UNCHANGED)) {
+            return DiffState.UNCHANGED;
         }
-        return children.stream().mapToInt(AbstractBlock::getPendingCount).sum();
+        if (children.stream().allMatch(e -> e.getState() == DiffState.LEFT_MISSING)) {
+            return DiffState.LEFT_MISSING;
+        }
+        if (children.stream().allMatch(e -> e.getState() == DiffState.RIGHT_MISSING)) {
+            return DiffState.RIGHT_MISSING;
+        }
+        return DiffState.CHANGE;
     }
 
     /* -------
@@ -120,6 +152,7 @@ class DiffImpl implements Diff, PrintableEntry {
         if (CollectionUtils.isNotEmpty(children)) {
             children.forEach(c -> c.setDiff(this));
         }
+        resetState();
         return this;
     }
 
@@ -138,6 +171,7 @@ class DiffImpl implements Diff, PrintableEntry {
             children = new ArrayList<>(children);
             children.remove(value);
         }
+        resetState();
     }
 
     /* ------
@@ -0,0 +1,332 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import com.github.difflib.algorithm.Change;
+import com.github.difflib.patch.DeltaType;
+import com.github.difflib.text.DiffRow;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Contains utility methods for rendering the changes between lists of lines as {@link DiffRow} objects. The output is
+ * the same as {@link com.github.difflib.text.DiffRowGenerator} produces with inline diffs by {@link TokenizerUtil}
+ * tokens, but the inline diff runs over token offsets and interned token identifiers, so that no string is created
+ * per token
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class DiffRowUtil {
+
+    private static final char NEW_LINE = '\n';
+
+    /**
+     * Renders the specified changes as a list of {@link DiffRow} objects
+     * @param left         The left-side lines
+     * @param right        The right-side lines
+     * @param changes      The list of {@link Change} objects that turn the left lines into the right lines
+     * @param ignoreSpaces If true, the tokens that consist of whitespace are considered equal in the inline diff
+     * @return A non-null list of {@code DiffRow} objects
+     */
+    static List<DiffRow> getDiffRows(List<String> left, List<String> right, List<Change> changes, boolean ignoreSpaces) {
+        return getDiffRows(left, right, changes, ignoreSpaces, false, DiffBudget.UNLIMITED);
+    }
+
+    /**
+     * Renders the specified changes as a list of {@link DiffRow} objects
+     * @param left         The left-side lines
+     * @param right        The right-side lines
+     * @param changes      The list of {@link Change} objects that turn the left lines into the right lines
+     * @param ignoreSpaces If true, the tokens that consist of whitespace are considered equal in the inline diff
+     * @param deferInline  If true, every run of changed lines is rendered as a single {@code CHANGE} row that contains
+     *                     the lines without markup, joined with line breaks. The inline diff is computed later with
+     *                     {@link #getInlineRows(String, String, boolean, DiffBudget)}
+     * @param budget       {@link DiffBudget} of the task. The inline diff is bound by its time limit
+     * @return A non-null list of {@code DiffRow} objects
+     */
+    static List<DiffRow> getDiffRows(
+            List<String> left,
+            List<String> right,
+            List<Change> changes,
+            boolean ignoreSpaces,
+            boolean deferInline,
+            DiffBudget budget) {
+        DiffBudget inlineBudget = budget.forInline();
+        List<Change> sortedChanges = new ArrayList<>(changes);
+        sortedChanges.sort(Comparator.comparingInt(change -> change.startOriginal));
+        List<DiffRow> result = new ArrayList<>(left.size());
+        int position = 0;
+        for (Change change : sortedChanges) {
+            for (String line : left.subList(position, change.startOriginal)) {
+                result.add(toEqualRow(line));
+            }
+            if (change.deltaType == DeltaType.CHANGE) {
+                // A change of unequal sizes is rendered as a change of equal sizes followed by an insertion or
+                // a deletion, the same as DiffRowGenerator does with "decompressDeltas" on
+                int commonSize = Math.min(
+                        change.endOriginal - change.startOriginal,
+                        change.endRevised - change.startRevised);
+                StringBuilder leftText = join(left.subList(change.startOriginal, change.startOriginal + commonSize));
+                StringBuilder rightText = join(right.subList(change.startRevised, change.startRevised + commonSize));
+                if (deferInline) {
+                    result.add(new DiffRow(DiffRow.Tag.CHANGE, leftText.toString(), rightText.toString()));
+                } else {
+                    result.addAll(computeInlineRows(leftText, rightText, ignoreSpaces, inlineBudget));
+                }
+                addDeletedRows(left.subList(change.startOriginal + commonSize, change.endOriginal), result);
+                addInsertedRows(right.subList(change.startRevised + commonSize, change.endRevised), result);
+            } else if (change.deltaType == DeltaType.DELETE) {
+                addDeletedRows(left.subList(change.startOriginal, change.endOriginal), result);
+            } else if (change.deltaType == DeltaType.INSERT) {
+                addInsertedRows(right.subList(change.startRevised, change.endRevised), result);
+            }
+            position = change.endOriginal;
+        }
+        for (String line : left.subList(position, left.size())) {
+            result.add(toEqualRow(line));
+        }
+        return result;
+    }
+
+    /* -------------
+       Row rendering
+       ------------- */
+
+    private static DiffRow toEqualRow(String line) {
+        String value = StringUtils.defaultString(line);
+        return new DiffRow(DiffRow.Tag.EQUAL, value, value);
+    }
+
+    private static void addDeletedRows(List<String> lines, List<DiffRow> result) {
+        for (String line : lines) {
+            String value = Marker.DELETE + StringUtils.defaultString(line) + Marker.RESET;
+            result.add(new DiffRow(DiffRow.Tag.DELETE, value, StringUtils.EMPTY));
+        }
+    }
+
+    private static void addInsertedRows(List<String> lines, List<DiffRow> result) {
+        for (String line : lines) {
+            String value = Marker.INSERT + StringUtils.defaultString(line) + Marker.RESET;
+            result.add(new DiffRow(DiffRow.Tag.INSERT, StringUtils.EMPTY, value));
+        }
+    }
+
+    /**
+     * Computes the inline diff of a run of changed lines that has been deferred by
+     * {@link #getDiffRows(List, List, List, boolean, boolean, DiffBudget)}
+     * @param left         The left-side lines joined with line breaks
+     * @param right        The right-side lines joined with line breaks
+     * @param ignoreSpaces If true, the tokens that consist of whitespace are considered equal
+     * @param budget       {@link DiffBudget} object that limits the time spent on the inline diff
+     * @return A non-null list of {@code CHANGE} rows with the inline markup
+     */
+    static List<DiffRow> getInlineRows(String left, String right, boolean ignoreSpaces, DiffBudget budget) {
+        return computeInlineRows(left, right, ignoreSpaces, budget.forInline());
+    }
+
+    private static List<DiffRow> computeInlineRows(
+            CharSequence leftText,
+            CharSequence rightText,
+            boolean ignoreSpaces,
+            DiffBudget budget) {
+        int[] leftBounds = TokenizerUtil.getTokenBounds(leftText);
+        int[] rightBounds = TokenizerUtil.getTokenBounds(rightText);
+        TokenTable tokens = new TokenTable(leftBounds.length + rightBounds.length, ignoreSpaces);
+        int[] leftTokens = tokens.intern(leftText, leftBounds);
+        int[] rightTokens = tokens.intern(rightText, rightBounds);
+        List<Change> changes;
+        try {
+            changes = new ArrayList<>(MyersIntDiff.computeDiff(leftTokens, rightTokens, budget));
+        } catch (DiffBudget.ExceededException e) {
+            // The lines are still reported as changed, only the position of the change within them is lost
+            return toPairedRows(highlightWhole(leftText, true), highlightWhole(rightText, false));
+        }
+        changes.sort(Comparator.comparingInt(change -> change.startOriginal));
+        return toPairedRows(
+                highlight(leftText, leftBounds, changes, true),
+                highlight(rightText, rightBounds, changes, false));
+    }
+
+    /**
+     * Splits the given texts into lines and pairs the lines by their positions. The side that has fewer lines is padded
+     * with empty lines
+     * @param leftText  The left-side lines joined with line breaks
+     * @param rightText The right-side lines joined with line breaks
+     * @return A non-null list of {@code CHANGE} rows
+     */
+    static List<DiffRow> toPairedRows(String leftText, String rightText) {
+        String[] leftLines = leftText.split(String.valueOf(NEW_LINE));
+        String[] rightLines = rightText.split(String.valueOf(NEW_LINE));
+        List<DiffRow> result = new ArrayList<>();
+        for (int i = 0; i < Math.max(leftLines.length, rightLines.length); i++) {
+            result.add(new DiffRow(
+                    DiffRow.Tag.CHANGE,
+                    i < leftLines.length ? leftLines[i] : StringUtils.EMPTY,
+                    i < rightLines.length ? rightLines[i] : StringUtils.EMPTY));
+        }
+        return result;
+    }
+
+    private static StringBuilder join(List<String> lines) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < lines.size(); i++) {
+            if (i > 0) {
+                result.append(NEW_LINE);
+            }
+            result.append(StringUtils.defaultString(lines.get(i)));
+        }
+        return result;
+    }
+
+    private static String highlightWhole(CharSequence text, boolean isLeft) {
+        Marker marker = isLeft ? Marker.DELETE : Marker.INSERT;
+        StringBuilder result = new StringBuilder(text.length() + 16);
+        int lineStart = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i < text.length() && text.charAt(i) != NEW_LINE) {
+                continue;
+            }
+            if (i > lineStart) {
+                result.append(marker).append(text, lineStart, i).append(Marker.RESET);
+            }
+            if (i < text.length()) {
+                result.append(NEW_LINE);
+            }
+            lineStart = i + 1;
+        }
+        return result.toString();
+    }
+
+    private static String highlight(CharSequence text, int[] bounds, List<Change> changes, boolean isLeft) {
+        Marker marker = isLeft ? Marker.DELETE : Marker.INSERT;
+        StringBuilder result = new StringBuilder(text.length() + changes.size() * 16);
+        int position = 0;
+        for (Change change : changes) {
+            int start = isLeft ? change.startOriginal : change.startRevised;
+            int end = isLeft ? change.endOriginal : change.endRevised;
+            if (start == end) {
+                continue;
+            }
+            result.append(text, bounds[position], bounds[start]);
+            // Every run of tokens between line breaks is wrapped separately so that a highlight never spans lines
+            boolean isOpen = false;
+            for (int i = start; i < end; i++) {
+                boolean isLineBreak = bounds[i + 1] - bounds[i] == 1 && text.charAt(bounds[i]) == NEW_LINE;
+                if (isLineBreak && isOpen) {
+                    result.append(Marker.RESET);
+                    isOpen = false;
+                } else if (!isLineBreak && !isOpen) {
+                    result.append(marker);
+                    isOpen = true;
+                }
+                result.append(text, bounds[i], bounds[i + 1]);
+            }
+            if (isOpen) {
+                result.append(Marker.RESET);
+            }
+            position = end;
+        }
+        result.append(text, bounds[position], text.length());
+        return result.toString();
+    }
+
+    /* ---------------
+       Utility classes
+       --------------- */
+
+    /**
+     * Assigns integer identifiers to tokens so that equal tokens get equal identifiers. Tokens are compared as regions
+     * of the source character sequences in an open-addressing hash table, without creating strings
+     */
+    private static class TokenTable {
+        private final boolean ignoreSpaces;
+        private final int[] slots;
+        private final CharSequence[] texts;
+        private final int[] starts;
+        private final int[] ends;
+        private int count;
+
+        TokenTable(int capacity, boolean ignoreSpaces) {
+            this.ignoreSpaces = ignoreSpaces;
+            this.slots = new int[Integer.highestOneBit(Math.max(capacity, 2) * 2) * 2];
+            this.texts = new CharSequence[capacity];
+            this.starts = new int[capacity];
+            this.ends = new int[capacity];
+        }
+
+        /**
+         * Converts the tokens of the given character sequence into identifiers
+         * @param text   Character sequence
+         * @param bounds Token boundaries as returned by {@link TokenizerUtil#getTokenBounds(CharSequence)}
+         * @return A non-null array of identifiers
+         */
+        int[] intern(CharSequence text, int[] bounds) {
+            int[] result = new int[bounds.length - 1];
+            for (int i = 0; i < result.length; i++) {
+                int start = bounds[i];
+                int end = bounds[i + 1];
+                if (ignoreSpaces && (start == end || Character.isWhitespace(text.charAt(start)))) {
+                    // A token is either all whitespace or has none, and all the whitespace tokens are equal
+                    // to each other when spaces are ignored
+                    end = start;
+                }
+                result[i] = getIdentifier(text, start, end);
+            }
+            return result;
+        }
+
+        private int getIdentifier(CharSequence text, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + text.charAt(i);
+            }
+            int mask = slots.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (slots[slot] != 0) {
+                int identifier = slots[slot] - 1;
+                if (regionEquals(texts[identifier], starts[identifier], ends[identifier], text, start, end)) {
+                    return identifier;
+                }
+                slot = (slot + 1) & mask;
+            }
+            texts[count] = text;
+            starts[count] = start;
+            ends[count] = end;
+            slots[slot] = ++count;
+            return count - 1;
+        }
+
+        private static boolean regionEquals(
+                CharSequence first,
+                int firstStart,
+                int firstEnd,
+                CharSequence second,
+                int secondStart,
+                int secondEnd) {
+            if (firstEnd - firstStart != secondEnd - secondStart) {
+                return false;
+            }
+            for (int i = 0; i < firstEnd - firstStart; i++) {
+                if (first.charAt(firstStart + i) != second.charAt(secondStart + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -29,12 +29,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.MarkerFactory;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.BiPredicate;
 import java.util.function.Predicate;
-import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 /**
@@ -45,17 +46,17 @@ import java.util.stream.Collectors;
 @Slf4j
 public class DiffTask {
 
-    private static final UnaryOperator<String> EMPTY_NORMALIZER = StringUtils::defaultString;
-
     private final ContentType contentType;
 
     private final String leftId;
     private String leftLabel;
     private final Object leftContent;
+    private final Path leftFile;
 
     private final String rightId;
     private String rightLabel;
     private final Object rightContent;
+    private final Path rightFile;
 
     private final Predicate<DiffEntry> filter;
 
@@ -75,6 +76,10 @@ public class DiffTask {
         return Postprocessor.forType(contentType, taskParameters);
     }
 
+    private BiPredicate<String, String> getEqualizer() {
+        return taskParameters.ignoreSpaces() ? EqualityUtil::equalsIgnoreSpaces : DiffRowGenerator.DEFAULT_EQUALIZER;
+    }
+
     /* ---------
        Execution
        --------- */
@@ -120,7 +125,10 @@ public class DiffTask {
             return new DiffImpl(leftId, rightId).withChildren(miss);
         }
         log.info(MarkerFactory.getMarker(Constants.MARKER_CONSOLE_ONLY), ".Comparing...");
-        return contentType == ContentType.UNDEFINED ? runForBinary() : runForText();
+        if (contentType == ContentType.UNDEFINED) {
+            return runForBinary();
+        }
+        return leftContent instanceof Path && rightContent instanceof Path ? runForLargeText() : runForText();
     }
 
     private Diff runForBinary() {
@@ -133,36 +141,116 @@ public class DiffTask {
                 .leftLabel(leftLabel)
                 .rightLabel(rightLabel)
                 .build(DisparityBlockImpl::new);
-        return result.withChildren(disparity);
+        if (leftFile == null || rightFile == null) {
+            return result.withChildren(disparity);
+        }
+        List<AbstractBlock> blocks = new ArrayList<>();
+        blocks.add(disparity);
+        getBinaryBlocks()
+                .stream()
+                .peek(block -> block.setDiff(result))
+                .filter(filter != null ? filter : entry -> true)
+                .forEach(blocks::add);
+        return result.withChildren(blocks);
+    }
+
+    private List<AbstractBlock> getBinaryBlocks() {
+        BinaryDiff binaryDiff = new BinaryDiff(leftFile, rightFile);
+        List<BinaryDiff.Difference> differences;
+        try {
+            try {
+                differences = binaryDiff.getDifferences(DiffBudget.from(taskParameters));
+            } catch (DiffBudget.ExceededException e) {
+                log.warn("Comparison of byte ranges of {} and {} is degraded: {}", leftId, rightId, e.getMessage());
+                BinaryDiff.Difference summary = binaryDiff.getSummary(e.getMessage());
+                differences = summary != null ? Collections.singletonList(summary) : Collections.emptyList();
+            }
+        } catch (Exception e) {
+            log.error("Exception when comparing {} and {}", leftId, rightId, e);
+            return Collections.singletonList(new ErrorBlockImpl(e, taskParameters.getColumnWidth() - 1));
+        }
+        List<AbstractBlock> result = new ArrayList<>();
+        for (BinaryDiff.Difference difference : differences) {
+            DisparityBlockImpl block = DisparityBlockImpl
+                    .builder()
+                    .leftContent(difference.getLeft())
+                    .rightContent(difference.getRight())
+                    .columnWidth(taskParameters.getColumnWidth() - 1)
+                    .leftLabel(leftLabel)
+                    .rightLabel(rightLabel)
+                    .build(DisparityBlockImpl::new);
+            result.add(block);
+        }
+        return result;
     }
 
     private Diff runForText() {
-        DiffRowGenerator generator = DiffRowGenerator
-            .create()
-            .oldTag(isStart -> isStart ? Marker.DELETE.toString() : Marker.RESET.toString())
-            .newTag(isStart -> isStart ? Marker.INSERT.toString() : Marker.RESET.toString())
-            .lineNormalizer(EMPTY_NORMALIZER) // One needs this to override the OOTB preprocessor that spoils HTML
-            .equalizer(taskParameters.ignoreSpaces() ? EqualityUtil::equalsIgnoreSpaces : DiffRowGenerator.DEFAULT_EQUALIZER)
-            .inlineDiffBySplitter(TokenizerUtil::getTokens)
-            .showInlineDiffs(true)
-            .build();
+        DiffBudget budget = DiffBudget.from(taskParameters);
         String leftPreprocessed = getPreprocessor(leftId).apply(leftContent.toString());
         String rightPreprocessed = getPreprocessor(rightId).apply(rightContent.toString());
         List<String> leftLines = StringUtil.splitByNewline(leftPreprocessed);
         List<String> rightLines = StringUtil.splitByNewline(rightPreprocessed);
+        Postprocessor postprocessor = getPostprocessor();
+        PathHelper pathHelper = PathHelper.forType(contentType);
+        // The inline diff of changed lines is computed when the lines are requested unless the changed rows are
+        // inspected while building the blocks by a postprocessor or a path helper that needs the markers
+        boolean deferInline = !postprocessor.requiresInlineDiff()
+                && (pathHelper == null || pathHelper.ignoresMarkers());
 
         List<DiffRow> diffRows;
         try {
-            diffRows = generator.generateDiffRows(leftLines, rightLines);
+            diffRows = generateDiffRows(leftLines, rightLines, budget, deferInline);
+        } catch (DiffBudget.ExceededException e) {
+            log.warn("Comparison of {} and {} is degraded: {}", leftId, rightId, e.getMessage());
+            return runDegraded(leftLines, rightLines, e.getMessage());
+        } catch (Exception e) {
+            log.error("Exception when comparing {} and {}", leftId, rightId, e);
+            return new DiffImpl(leftId, rightId)
+                .withChildren(new ErrorBlockImpl(e, taskParameters.getColumnWidth() - 1));
+        }
+        diffRows = postprocessor.apply(diffRows);
+
+        DiffImpl result = new DiffImpl(leftId, rightId);
+        List<AbstractBlock> blocks = getDiffBlocks(diffRows, pathHelper, deferInline)
+                .stream()
+                .peek(block -> block.setDiff(result))
+                .filter(filter != null ? filter : entry -> true)
+                .collect(Collectors.toList());
+        return result.withChildren(blocks);
+    }
+
+    private Diff runForLargeText() {
+        // The content is compared line by line as plain text: structural preprocessing and path detection need the
+        // whole content in memory
+        log.info("Comparing {} and {} in streaming mode", leftId, rightId);
+        DiffBudget budget = DiffBudget.from(taskParameters);
+        Postprocessor postprocessor = Postprocessor.forType(ContentType.TEXT, taskParameters);
+        boolean deferInline = !postprocessor.requiresInlineDiff();
+        List<DiffRow> diffRows;
+        try (StreamingDiff streamingDiff = new StreamingDiff(
+                (Path) leftContent,
+                (Path) rightContent,
+                taskParameters.ignoreSpaces(),
+                taskParameters.getAlgorithm(),
+                Preprocessor.forType(ContentType.TEXT, taskParameters),
+                StreamingDiff.DEFAULT_WINDOW_LINES)) {
+            try {
+                diffRows = streamingDiff.getDiffRows(budget, deferInline);
+            } catch (DiffBudget.ExceededException e) {
+                log.warn("Comparison of {} and {} is degraded: {}", leftId, rightId, e.getMessage());
+                return runDegraded(
+                        streamingDiff.getSummary(e.getMessage(), true),
+                        streamingDiff.getSummary(e.getMessage(), false));
+            }
         } catch (Exception e) {
             log.error("Exception when comparing {} and {}", leftId, rightId, e);
             return new DiffImpl(leftId, rightId)
                 .withChildren(new ErrorBlockImpl(e, taskParameters.getColumnWidth() - 1));
         }
-        diffRows = getPostprocessor().apply(diffRows);
+        diffRows = postprocessor.apply(diffRows);
 
         DiffImpl result = new DiffImpl(leftId, rightId);
-        List<AbstractBlock> blocks = getDiffBlocks(diffRows)
+        List<AbstractBlock> blocks = getDiffBlocks(diffRows, null, deferInline)
                 .stream()
                 .peek(block -> block.setDiff(result))
                 .filter(filter != null ? filter : entry -> true)
@@ -170,8 +258,65 @@ public class DiffTask {
         return result.withChildren(blocks);
     }
 
-    private List<AbstractBlock> getDiffBlocks(List<DiffRow> allRows) {
+    private Diff runDegraded(List<String> leftLines, List<String> rightLines, String reason) {
+        // The common leading and trailing lines are found in linear time, so the range of changes can be reported
+        // even if the detailed comparison did not complete
+        BiPredicate<String, String> equalizer = getEqualizer();
+        int prefixLength = TrimmedRowList.getCommonPrefixLength(leftLines, rightLines, equalizer);
+        int suffixLength = TrimmedRowList.getCommonSuffixLength(leftLines, rightLines, prefixLength, equalizer);
+        int[] leftRange = new int[] {prefixLength, leftLines.size() - suffixLength};
+        int[] rightRange = new int[] {prefixLength, rightLines.size() - suffixLength};
+        return runDegraded(
+                ContentSummary.from(reason, leftLines, Collections.singletonList(leftRange)),
+                ContentSummary.from(reason, rightLines, Collections.singletonList(rightRange)));
+    }
+
+    private Diff runDegraded(ContentSummary leftSummary, ContentSummary rightSummary) {
+        DisparityBlockImpl summary = DisparityBlockImpl
+                .builder()
+                .leftContent(leftSummary)
+                .rightContent(rightSummary)
+                .columnWidth(taskParameters.getColumnWidth() - 1)
+                .leftLabel(leftLabel)
+                .rightLabel(rightLabel)
+                .build(DisparityBlockImpl::new);
+        return new DiffImpl(leftId, rightId).withChildren(summary);
+    }
+
+    private List<DiffRow> generateDiffRows(
+            List<String> leftLines,
+            List<String> rightLines,
+            DiffBudget budget,
+            boolean deferInline) {
+        // The identical leading and trailing runs of lines are left out of the diff algorithm, which is where most
+        // of the time is spent for large, nearly identical texts. They are restored as lazily created "equal" rows
+        // so that the lookbehind context and the path helpers see the same rows at the same positions
+        BiPredicate<String, String> equalizer = getEqualizer();
+        int prefixLength = TrimmedRowList.getCommonPrefixLength(leftLines, rightLines, equalizer);
+        int suffixLength = TrimmedRowList.getCommonSuffixLength(leftLines, rightLines, prefixLength, equalizer);
+        List<String> leftMiddle = leftLines.subList(prefixLength, leftLines.size() - suffixLength);
+        List<String> rightMiddle = rightLines.subList(prefixLength, rightLines.size() - suffixLength);
+        List<DiffRow> middleRows = leftMiddle.isEmpty() && rightMiddle.isEmpty()
+                ? Collections.emptyList()
+                : LineDiffUtil.getDiffRows(
+                        leftMiddle,
+                        rightMiddle,
+                        taskParameters.ignoreSpaces(),
+                        taskParameters.getAlgorithm(),
+                        budget,
+                        deferInline);
+        if (prefixLength == 0 && suffixLength == 0) {
+            return middleRows;
+        }
+        return new TrimmedRowList(leftLines, prefixLength, middleRows, suffixLength);
+    }
+
+    private List<AbstractBlock> getDiffBlocks(List<DiffRow> allRows, PathHelper pathHelper, boolean deferInline) {
         List<AbstractBlock> result = new ArrayList<>();
+        // A path helper inspects the rows line by line, so it is given a view in which the deferred runs of changed
+        // lines are split into separate rows
+        ExpandedRowList expandedRows = deferInline && pathHelper != null ? new ExpandedRowList(allRows) : null;
+        List<DiffRow> pathRows = expandedRows != null ? expandedRows : allRows;
         BlockImpl pendingDiffBlock = null;
         for (int i = 0; i < allRows.size(); i++) {
             DiffRow row = allRows.get(i);
@@ -186,20 +331,26 @@ public class DiffTask {
                 continue;
             }
             if (pendingDiffBlock == null) {
-                List<DiffRow> lookbehindContext = getLookbehindContext(allRows, i);
+                int pathPosition = expandedRows != null ? expandedRows.getPosition(i) : i;
+                List<DiffRow> lookbehindContext = getLookbehindContext(pathRows, pathPosition, pathHelper);
                 pendingDiffBlock = BlockImpl
                         .builder()
-                        .path(getContextPath(allRows, i))
+                        .path(getContextPath(pathRows, pathPosition, pathHelper))
                         .compactify(taskParameters.normalize())
                         .contentType(contentType)
                         .ignoreSpaces(taskParameters.ignoreSpaces())
+                        .inlineTimeLimit(taskParameters.getTimeLimit())
                         .leftLabel(leftLabel)
                         .rightLabel(rightLabel)
                         .columnWidth(taskParameters.getColumnWidth() - 1)
                         .build(BlockImpl::new);
                 pendingDiffBlock.addContext(lookbehindContext);
             }
-            pendingDiffBlock.add(row);
+            if (deferInline && row.getTag() == DiffRow.Tag.CHANGE) {
+                pendingDiffBlock.addDeferred(row);
+            } else {
+                pendingDiffBlock.add(row);
+            }
         }
         if (pendingDiffBlock != null) {
             result.add(pendingDiffBlock);
@@ -207,20 +358,17 @@ public class DiffTask {
         return result;
     }
 
-    private String getContextPath(List<DiffRow> allRows, int position) {
-        PathHelper pathHelper = PathHelper.forType(contentType);
+    private static String getContextPath(List<DiffRow> allRows, int position, PathHelper pathHelper) {
         if (pathHelper == null) {
             return StringUtils.EMPTY;
         }
         return pathHelper.getPath(allRows, position);
     }
 
-    private List<DiffRow> getLookbehindContext(List<DiffRow> allRows, int position) {
+    private static List<DiffRow> getLookbehindContext(List<DiffRow> allRows, int position, PathHelper pathHelper) {
         if (position == 0) {
             return null;
         }
-
-        PathHelper pathHelper = PathHelper.forType(contentType);
         if (pathHelper == null) {
             return Collections.singletonList(allRows.get(position - 1));
         }
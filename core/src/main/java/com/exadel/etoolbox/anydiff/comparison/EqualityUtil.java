@@ -25,6 +25,10 @@ import java.util.function.BiPredicate;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 class EqualityUtil {
 
+    // Parameters of the 64-bit FNV-1a hash
+    private static final long HASH_OFFSET = 0xcbf29ce484222325L;
+    private static final long HASH_PRIME = 0x100000001b3L;
+
     /**
      * Compares two strings for equality, ignoring spaces
      * @param string1 First string to compare
@@ -53,6 +57,47 @@ class EqualityUtil {
         return true;
     }
 
+    /**
+     * Computes a 64-bit hash of the specified string in a single pass, ignoring spaces. Strings that are equal with
+     * {@link #equalsIgnoreSpaces(String, String)} have equal hashes, so the costlier comparison is only needed when
+     * the hashes match
+     * @param value String to hash. A non-null value is expected
+     * @return Hash value
+     */
+    static long hashIgnoreSpaces(String value) {
+        long hash = HASH_OFFSET;
+        boolean isPendingSpace = false;
+        boolean isWordFound = false;
+        for (int i = 0; i < value.length(); i++) {
+            char current = value.charAt(i);
+            if (Character.isWhitespace(current)) {
+                isPendingSpace = isWordFound;
+                continue;
+            }
+            if (isPendingSpace) {
+                // Words are hashed as if separated by a single space whatever the actual whitespace between them
+                hash = (hash ^ ' ') * HASH_PRIME;
+                isPendingSpace = false;
+            }
+            hash = (hash ^ current) * HASH_PRIME;
+            isWordFound = true;
+        }
+        return hash;
+    }
+
+    /**
+     * Computes a 64-bit hash of the specified string. Equal strings have equal hashes
+     * @param value String to hash. A non-null value is expected
+     * @return Hash value
+     */
+    static long hash(String value) {
+        long hash = HASH_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * HASH_PRIME;
+        }
+        return hash;
+    }
+
     private static int advanceToBeginningOfWord(String source, int index) {
         int cursor = index;
         while (cursor < source.length() && Character.isWhitespace(source.charAt(cursor))) {
@@ -0,0 +1,92 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import com.github.difflib.text.DiffRow;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Represents a list of {@link DiffRow} objects in which every deferred run of changed lines is split back into
+ * separate rows, one per line, the same way as the inline diff splits it. Used to inspect the rows line by line
+ * before the inline diff is computed. The other rows are retrieved from the source list on demand
+ * @see DiffRowUtil#getDiffRows(List, List, List, boolean, boolean, DiffBudget)
+ */
+class ExpandedRowList extends AbstractList<DiffRow> {
+
+    private final List<DiffRow> rows;
+    private final int[] changeIndexes;
+    private final int[] changeStarts;
+    private final int[] extraCounts;
+    private final List<List<DiffRow>> changeLines;
+
+    /**
+     * Creates a new {@code ExpandedRowList} instance
+     * @param rows The list of rows in which every {@code CHANGE} row contains a run of changed lines without markup,
+     *             joined with line breaks
+     */
+    ExpandedRowList(List<DiffRow> rows) {
+        this.rows = rows;
+        List<Integer> indexes = new ArrayList<>();
+        this.changeLines = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            DiffRow row = rows.get(i);
+            if (row.getTag() == DiffRow.Tag.CHANGE) {
+                indexes.add(i);
+                changeLines.add(DiffRowUtil.toPairedRows(row.getOldLine(), row.getNewLine()));
+            }
+        }
+        this.changeIndexes = indexes.stream().mapToInt(Integer::intValue).toArray();
+        this.changeStarts = new int[changeIndexes.length];
+        // The number of rows added by the runs that precede the given run
+        this.extraCounts = new int[changeIndexes.length + 1];
+        for (int i = 0; i < changeIndexes.length; i++) {
+            changeStarts[i] = changeIndexes[i] + extraCounts[i];
+            extraCounts[i + 1] = extraCounts[i] + changeLines.get(i).size() - 1;
+        }
+    }
+
+    @Override
+    public DiffRow get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        int search = Arrays.binarySearch(changeStarts, index);
+        int run = search >= 0 ? search : -search - 2;
+        if (run >= 0 && index < changeStarts[run] + changeLines.get(run).size()) {
+            return changeLines.get(run).get(index - changeStarts[run]);
+        }
+        return rows.get(index - extraCounts[run + 1]);
+    }
+
+    @Override
+    public int size() {
+        return rows.size() + extraCounts[changeIndexes.length];
+    }
+
+    /**
+     * Gets the position in the current list of the row that has the given index in the source list. For a run of
+     * changed lines, the position of its first line is returned
+     * @param index Index of a row in the source list
+     * @return A non-negative integer
+     */
+    int getPosition(int index) {
+        int search = Arrays.binarySearch(changeIndexes, index);
+        int precedingRuns = search >= 0 ? search : -search - 1;
+        return index + extraCounts[precedingRuns];
+    }
+}
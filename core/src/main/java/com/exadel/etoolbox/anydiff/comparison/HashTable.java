@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+/**
+ * Assigns integer identifiers to 64-bit hashes so that equal hashes get equal identifiers. The identifiers are
+ * consecutive and start from zero, so they can be passed to the diff routines that work with interned values
+ */
+class HashTable {
+
+    private final long[] hashes;
+    private final int[] slots;
+    private int count;
+
+    /**
+     * Creates a new {@code HashTable} instance
+     * @param capacity The expected number of hashes to intern
+     */
+    HashTable(int capacity) {
+        int slotCount = Integer.highestOneBit(Math.max(capacity, 2) * 2) * 2;
+        this.hashes = new long[slotCount];
+        this.slots = new int[slotCount];
+    }
+
+    /**
+     * Gets the number of distinct hashes interned so far
+     * @return Integer value
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Converts the specified hashes to identifiers
+     * @param values An array of hashes. A non-null value is expected
+     * @return An array of identifiers of the same length
+     */
+    int[] intern(long[] values) {
+        int[] result = new int[values.length];
+        int mask = slots.length - 1;
+        for (int i = 0; i < values.length; i++) {
+            long hash = values[i];
+            int slot = (int) (hash ^ (hash >>> 29) ^ (hash >>> 47)) & mask;
+            while (slots[slot] != 0 && hashes[slot] != hash) {
+                slot = (slot + 1) & mask;
+            }
+            if (slots[slot] == 0) {
+                hashes[slot] = hash;
+                slots[slot] = ++count;
+            }
+            result[i] = slots[slot] - 1;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import java.util.Arrays;
+
+/**
+ * Implements the histogram diff algorithm over sequences of integer line identifiers. In every region, the longest
+ * common run of lines containing the least frequent line is used as the anchor, and the parts before and after it
+ * are diffed separately. Regions where every common line occurs too often are diffed with the Myers algorithm
+ */
+class HistogramIntDiff extends AnchoredIntDiff {
+
+    private static final int MAX_CHAIN_LENGTH = 64;
+
+    private final int[] counts;
+    private final int[] heads;
+    private final int[] next;
+
+    /**
+     * Creates a new {@code HistogramIntDiff} instance
+     * @param orig    The original sequence
+     * @param rev     The revised sequence
+     * @param idCount The number of distinct identifiers in both sequences
+     * @param budget  {@link DiffBudget} object that is checked on every step of the algorithm
+     */
+    HistogramIntDiff(int[] orig, int[] rev, int idCount, DiffBudget budget) {
+        super(orig, rev, budget);
+        counts = new int[idCount];
+        heads = new int[idCount];
+        next = new int[orig.length];
+        Arrays.fill(heads, -1);
+    }
+
+    @Override
+    void splitRegion(int origStart, int origEnd, int revStart, int revEnd) {
+        // Build the histogram of the original region: the number of occurrences of every line and the chain of its
+        // positions in the ascending order
+        for (int i = origEnd - 1; i >= origStart; i--) {
+            int id = orig[i];
+            next[i] = heads[id];
+            heads[id] = i;
+            counts[id]++;
+        }
+
+        int bestCount = MAX_CHAIN_LENGTH + 1;
+        int bestLength = 0;
+        int bestOrigStart = -1;
+        int bestRevStart = -1;
+        int j = revStart;
+        while (j < revEnd) {
+            int count = counts[rev[j]];
+            int nextJ = j + 1;
+            if (count == 0 || count > bestCount) {
+                j = nextJ;
+                continue;
+            }
+            for (int i = heads[rev[j]]; i >= 0; i = next[i]) {
+                int matchOrigStart = i;
+                int matchRevStart = j;
+                int minCount = count;
+                while (matchOrigStart > origStart
+                        && matchRevStart > revStart
+                        && orig[matchOrigStart - 1] == rev[matchRevStart - 1]) {
+                    matchOrigStart--;
+                    matchRevStart--;
+                    minCount = Math.min(minCount, counts[orig[matchOrigStart]]);
+                }
+                int matchOrigEnd = i + 1;
+                int matchRevEnd = j + 1;
+                while (matchOrigEnd < origEnd && matchRevEnd < revEnd && orig[matchOrigEnd] == rev[matchRevEnd]) {
+                    minCount = Math.min(minCount, counts[orig[matchOrigEnd]]);
+                    matchOrigEnd++;
+                    matchRevEnd++;
+                }
+                int length = matchOrigEnd - matchOrigStart;
+                if (minCount < bestCount || (minCount == bestCount && length > bestLength)) {
+                    bestCount = minCount;
+                    bestLength = length;
+                    bestOrigStart = matchOrigStart;
+                    bestRevStart = matchRevStart;
+                }
+                nextJ = Math.max(nextJ, matchRevEnd);
+            }
+            j = nextJ;
+        }
+
+        for (int i = origStart; i < origEnd; i++) {
+            counts[orig[i]] = 0;
+            heads[orig[i]] = -1;
+        }
+
+        if (bestOrigStart < 0) {
+            addFallback(origStart, origEnd, revStart, revEnd);
+            return;
+        }
+        addRegion(origStart, bestOrigStart, revStart, bestRevStart);
+        addRegion(bestOrigStart + bestLength, origEnd, bestRevStart + bestLength, revEnd);
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import com.exadel.etoolbox.anydiff.DiffAlgorithm;
+import com.github.difflib.algorithm.Change;
+import com.github.difflib.patch.Patch;
+import com.github.difflib.text.DiffRow;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+
+/**
+ * Contains utility methods for computing the line-by-line difference between two texts. Every distinct line (or its
+ * whitespace-normalized form) is mapped to an integer identifier once so that the diff algorithm compares primitive
+ * values instead of strings
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class LineDiffUtil {
+
+    private static final int AUTO_MYERS_MAX_LINES = 2_000;
+    private static final double AUTO_HISTOGRAM_MIN_REPEATED_RATIO = 0.2;
+
+    private static final int PARALLEL_MIN_LINES = 100_000;
+    private static final int MIN_SEGMENT_LINES = 5_000;
+    private static final int SEGMENTS_PER_THREAD = 4;
+
+    /**
+     * Computes the {@link Patch} that turns the left lines into the right lines with the Myers algorithm
+     * @param left         The left-side lines
+     * @param right        The right-side lines
+     * @param ignoreSpaces If true, the lines that differ only in the number of spaces between words are considered
+     *                     equal. This follows {@link EqualityUtil#equalsIgnoreSpaces(String, String)}
+     * @return A non-null {@code Patch} object
+     */
+    static Patch<String> getPatch(List<String> left, List<String> right, boolean ignoreSpaces) {
+        return getPatch(left, right, ignoreSpaces, DiffAlgorithm.MYERS);
+    }
+
+    /**
+     * Computes the {@link Patch} that turns the left lines into the right lines
+     * @param left         The left-side lines
+     * @param right        The right-side lines
+     * @param ignoreSpaces If true, the lines that differ only in the number of spaces between words are considered
+     *                     equal. This follows {@link EqualityUtil#equalsIgnoreSpaces(String, String)}
+     * @param algorithm    {@link DiffAlgorithm} value. If {@code null} or {@code AUTO}, the algorithm is chosen
+     *                     depending on the number of lines and the share of repeated lines
+     * @return A non-null {@code Patch} object
+     */
+    static Patch<String> getPatch(
+            List<String> left,
+            List<String> right,
+            boolean ignoreSpaces,
+            DiffAlgorithm algorithm) {
+        InternedLines interned = new InternedLines(left, right, ignoreSpaces, algorithm, DiffBudget.UNLIMITED);
+        return Patch.generate(left, right, interned.computeChanges(0, left.size(), 0, right.size()));
+    }
+
+    /**
+     * Computes the list of {@link DiffRow} objects that render the difference between the left and right lines. Large
+     * texts are split into independent segments by the lines that occur exactly once on either side, and the segments
+     * are diffed in parallel in the current {@link ForkJoinPool} (or the common pool)
+     * @param left         The left-side lines
+     * @param right        The right-side lines
+     * @param ignoreSpaces If true, the lines that differ only in the number of spaces between words are considered
+     *                     equal
+     * @param algorithm    {@link DiffAlgorithm} value. If {@code null} or {@code AUTO}, the algorithm is chosen
+     *                     depending on the number of lines and the share of repeated lines
+     * @param budget       {@link DiffBudget} object that limits the effort spent on the diff
+     * @return A non-null list of {@code DiffRow} objects, the same as {@link DiffRowUtil} would produce for the whole
+     * texts given the same changes
+     * @throws DiffBudget.ExceededException if the budget is exhausted
+     */
+    static List<DiffRow> getDiffRows(
+            List<String> left,
+            List<String> right,
+            boolean ignoreSpaces,
+            DiffAlgorithm algorithm,
+            DiffBudget budget) {
+        return getDiffRows(left, right, ignoreSpaces, algorithm, budget, false);
+    }
+
+    /**
+     * Computes the list of {@link DiffRow} objects that render the difference between the left and right lines
+     * @param left         The left-side lines
+     * @param right        The right-side lines
+     * @param ignoreSpaces If true, the lines that differ only in the number of spaces between words are considered
+     *                     equal
+     * @param algorithm    {@link DiffAlgorithm} value. If {@code null} or {@code AUTO}, the algorithm is chosen
+     *                     depending on the number of lines and the share of repeated lines
+     * @param budget       {@link DiffBudget} object that limits the effort spent on the diff
+     * @param deferInline  If true, the inline diff of changed lines is not computed. Every run of changed lines is
+     *                     rendered as a single row as described in
+     *                     {@link DiffRowUtil#getDiffRows(List, List, List, boolean, boolean, DiffBudget)}
+     * @return A non-null list of {@code DiffRow} objects
+     * @throws DiffBudget.ExceededException if the budget is exhausted
+     */
+    static List<DiffRow> getDiffRows(
+            List<String> left,
+            List<String> right,
+            boolean ignoreSpaces,
+            DiffAlgorithm algorithm,
+            DiffBudget budget,
+            boolean deferInline) {
+        InternedLines interned = new InternedLines(left, right, ignoreSpaces, algorithm, budget);
+        List<int[]> segments = left.size() + right.size() >= PARALLEL_MIN_LINES
+                ? interned.getSegments(getParallelism() * SEGMENTS_PER_THREAD)
+                : Collections.emptyList();
+        if (segments.size() < 2) {
+            return DiffRowUtil.getDiffRows(
+                    left,
+                    right,
+                    interned.computeChanges(0, left.size(), 0, right.size()),
+                    ignoreSpaces,
+                    deferInline,
+                    budget);
+        }
+        // Segments are joined at matching lines, so the rows of every segment begin where the rows of the previous
+        // one end. An ordered parallel stream keeps them in place
+        return segments
+                .parallelStream()
+                .map(segment -> {
+                    List<String> leftSegment = left.subList(segment[0], segment[1]);
+                    List<String> rightSegment = right.subList(segment[2], segment[3]);
+                    List<Change> changes = interned.computeChanges(segment[0], segment[1], segment[2], segment[3]);
+                    return DiffRowUtil.getDiffRows(
+                            leftSegment,
+                            rightSegment,
+                            changes,
+                            ignoreSpaces,
+                            deferInline,
+                            budget);
+                })
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Computes the changes between two sequences of interned line identifiers with the specified algorithm
+     * @param left      The left-side identifiers
+     * @param right     The right-side identifiers
+     * @param idCount   The number of distinct identifiers. Every identifier is less than this value
+     * @param algorithm {@link DiffAlgorithm} value other than {@code AUTO}
+     * @param budget    {@link DiffBudget} object that limits the effort spent on the diff
+     * @return A non-null list of {@link Change} objects
+     */
+    static List<Change> computeChanges(int[] left, int[] right, int idCount, DiffAlgorithm algorithm, DiffBudget budget) {
+        switch (algorithm) {
+            case HISTOGRAM:
+                return new HistogramIntDiff(left, right, idCount, budget).computeDiff();
+            case PATIENCE:
+                return new PatienceIntDiff(left, right, idCount, budget).computeDiff();
+            default:
+                return MyersIntDiff.computeDiff(left, right, budget);
+        }
+    }
+
+    /**
+     * Chooses the diff algorithm for the {@code AUTO} mode. Small texts are diffed with the Myers algorithm that gives
+     * the shortest edit script. Larger texts with many repeated lines (such as closing tags or blank lines in markup)
+     * go to the histogram algorithm, and the rest to the patience algorithm
+     * @param lineCount         The total number of lines on both sides
+     * @param leftLineCount     The number of lines on the left side
+     * @param leftDistinctCount The number of distinct lines on the left side
+     * @return {@link DiffAlgorithm} value
+     */
+    static DiffAlgorithm chooseAlgorithm(int lineCount, int leftLineCount, int leftDistinctCount) {
+        if (lineCount <= AUTO_MYERS_MAX_LINES || leftLineCount == 0) {
+            return DiffAlgorithm.MYERS;
+        }
+        double repeatedRatio = 1 - (double) leftDistinctCount / leftLineCount;
+        return repeatedRatio >= AUTO_HISTOGRAM_MIN_REPEATED_RATIO ? DiffAlgorithm.HISTOGRAM : DiffAlgorithm.PATIENCE;
+    }
+
+    private static int getParallelism() {
+        ForkJoinPool pool = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+        return pool.getParallelism();
+    }
+
+    /**
+     * Stores the left and right lines converted to integer identifiers together with the diff algorithm chosen for them
+     */
+    private static class InternedLines {
+        private final int[] left;
+        private final int[] right;
+        private final int idCount;
+        private final DiffAlgorithm algorithm;
+        private final DiffBudget budget;
+
+        InternedLines(
+                List<String> left,
+                List<String> right,
+                boolean ignoreSpaces,
+                DiffAlgorithm algorithm,
+                DiffBudget budget) {
+            LineTable identifiers = new LineTable(left.size() + right.size(), ignoreSpaces);
+            this.left = identifiers.intern(left);
+            int leftDistinctCount = identifiers.size();
+            this.right = identifiers.intern(right);
+            this.idCount = identifiers.size();
+            this.algorithm = algorithm == null || algorithm == DiffAlgorithm.AUTO
+                    ? chooseAlgorithm(left.size() + right.size(), left.size(), leftDistinctCount)
+                    : algorithm;
+            this.budget = budget;
+        }
+
+        /**
+         * Computes the changes within the given ranges of the left and right lines
+         * @param leftStart  Start of the left range, inclusive
+         * @param leftEnd    End of the left range, exclusive
+         * @param rightStart Start of the right range, inclusive
+         * @param rightEnd   End of the right range, exclusive
+         * @return A non-null list of {@link Change} objects with positions relative to the ranges
+         */
+        List<Change> computeChanges(int leftStart, int leftEnd, int rightStart, int rightEnd) {
+            int[] leftRange = leftStart == 0 && leftEnd == left.length
+                    ? left
+                    : Arrays.copyOfRange(left, leftStart, leftEnd);
+            int[] rightRange = rightStart == 0 && rightEnd == right.length
+                    ? right
+                    : Arrays.copyOfRange(right, rightStart, rightEnd);
+            List<Change> result = LineDiffUtil.computeChanges(leftRange, rightRange, idCount, algorithm, budget);
+            budget.register(result);
+            return result;
+        }
+
+        /**
+         * Splits the lines into the segments that can be diffed independently. Segments are separated by the lines
+         * that occur exactly once on either side and go in the same order on both sides
+         * @param segmentCount The desired number of segments
+         * @return A non-null list of {@code [leftStart, leftEnd, rightStart, rightEnd]} arrays that cover both sides
+         * without gaps
+         */
+        List<int[]> getSegments(int segmentCount) {
+            int[] leftCounts = new int[idCount];
+            int[] rightCounts = new int[idCount];
+            int[] rightPositions = new int[idCount];
+            for (int id : left) {
+                leftCounts[id]++;
+            }
+            for (int j = 0; j < right.length; j++) {
+                rightCounts[right[j]]++;
+                rightPositions[right[j]] = j;
+            }
+            int[] uniqueLeft = new int[Math.min(left.length, right.length)];
+            int[] uniqueRight = new int[uniqueLeft.length];
+            int uniqueCount = 0;
+            for (int i = 0; i < left.length && uniqueCount < uniqueLeft.length; i++) {
+                if (leftCounts[left[i]] == 1 && rightCounts[left[i]] == 1) {
+                    uniqueLeft[uniqueCount] = i;
+                    uniqueRight[uniqueCount] = rightPositions[left[i]];
+                    uniqueCount++;
+                }
+            }
+            List<int[]> result = new ArrayList<>();
+            if (uniqueCount == 0) {
+                return result;
+            }
+            int minSegmentLines = Math.max(MIN_SEGMENT_LINES, (left.length + right.length) / segmentCount);
+            int leftStart = 0;
+            int rightStart = 0;
+            for (int anchor : PatienceIntDiff.getLongestIncreasingSequence(uniqueRight, uniqueCount)) {
+                int leftAnchor = uniqueLeft[anchor];
+                int rightAnchor = uniqueRight[anchor];
+                if (leftAnchor - leftStart + rightAnchor - rightStart >= minSegmentLines) {
+                    result.add(new int[] {leftStart, leftAnchor, rightStart, rightAnchor});
+                    leftStart = leftAnchor;
+                    rightStart = rightAnchor;
+                }
+            }
+            result.add(new int[] {leftStart, left.length, rightStart, right.length});
+            return result;
+        }
+    }
+
+    /**
+     * Assigns integer identifiers to lines so that equal lines get equal identifiers. Lines are looked up in
+     * an open-addressing hash table by their 64-bit hashes computed once per line. The full comparison runs only when
+     * the hashes match, which makes ignoring spaces about as cheap as the exact comparison
+     */
+    private static class LineTable {
+        private final boolean ignoreSpaces;
+        private final long[] hashes;
+        private final int[] slots;
+        private final List<String> lines = new ArrayList<>();
+
+        LineTable(int capacity, boolean ignoreSpaces) {
+            this.ignoreSpaces = ignoreSpaces;
+            int slotCount = Integer.highestOneBit(Math.max(capacity, 2) * 2) * 2;
+            this.hashes = new long[slotCount];
+            this.slots = new int[slotCount];
+        }
+
+        /**
+         * Gets the number of distinct lines
+         * @return Integer value
+         */
+        int size() {
+            return lines.size();
+        }
+
+        /**
+         * Converts the specified lines into identifiers
+         * @param values The list of lines
+         * @return A non-null array of identifiers
+         */
+        int[] intern(List<String> values) {
+            int[] result = new int[values.size()];
+            int index = 0;
+            for (String value : values) {
+                result[index++] = getIdentifier(StringUtils.defaultString(value));
+            }
+            return result;
+        }
+
+        private int getIdentifier(String value) {
+            long hash = ignoreSpaces ? EqualityUtil.hashIgnoreSpaces(value) : EqualityUtil.hash(value);
+            int mask = slots.length - 1;
+            int slot = (int) (hash ^ (hash >>> 29) ^ (hash >>> 47)) & mask;
+            while (slots[slot] != 0) {
+                if (hashes[slot] == hash && isEqual(lines.get(slots[slot] - 1), value)) {
+                    return slots[slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            lines.add(value);
+            hashes[slot] = hash;
+            slots[slot] = lines.size();
+            return lines.size() - 1;
+        }
+
+        private boolean isEqual(String first, String second) {
+            return ignoreSpaces ? EqualityUtil.equalsIgnoreSpaces(first, second) : first.equals(second);
+        }
+    }
+}
@@ -57,6 +57,10 @@ class LineImpl implements DiffEntry, FragmentHolder, EntryHolder, PrintableEntry
     private List<Fragment> rightFragments;
     private List<FragmentPairImpl> fragmentPairs;
 
+    private DiffState state;
+    private int count = -1;
+    private int pendingCount = -1;
+
     /**
      * Assigns the reference to the block this line belongs to
      */
@@ -82,6 +86,33 @@ class LineImpl implements DiffEntry, FragmentHolder, EntryHolder, PrintableEntry
      * @return An integer value
      */
     int getCount() {
+        if (count < 0) {
+            count = computeCount();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of differences in the current line that have not been "silenced" (accepted) via a
+     * {@link com.exadel.etoolbox.anydiff.filter.Filter}
+     * @return An integer value
+     */
+    int getPendingCount() {
+        if (pendingCount < 0) {
+            pendingCount = computePendingCount();
+        }
+        return pendingCount;
+    }
+
+    @Override
+    public DiffState getState() {
+        if (state == null) {
+            state = computeState();
+        }
+        return state;
+    }
+
+    private int computeCount() {
         if (getState() == DiffState.UNCHANGED) {
             return 0;
         }
@@ -89,7 +120,7 @@ class LineImpl implements DiffEntry, FragmentHolder, EntryHolder, PrintableEntry
         return getLeftFragments().size() + getRightFragments().size() - children().size();
     }
 
-    int getPendingCount() {
+    private int computePendingCount() {
         if (getState() == DiffState.UNCHANGED) {
             return 0;
         }
@@ -100,8 +131,7 @@ class LineImpl implements DiffEntry, FragmentHolder, EntryHolder, PrintableEntry
         return (int) result;
     }
 
-    @Override
-    public DiffState getState() {
+    private DiffState computeState() {
         if (isContext) {
             return DiffState.UNCHANGED;
         }
@@ -148,6 +178,7 @@ class LineImpl implements DiffEntry, FragmentHolder, EntryHolder, PrintableEntry
         isContext = true;
         left.mark(Marker.CONTEXT);
         right.mark(Marker.CONTEXT);
+        resetState();
     }
 
     /**
@@ -167,6 +198,7 @@ class LineImpl implements DiffEntry, FragmentHolder, EntryHolder, PrintableEntry
         }
         left.cutLeft(count);
         right.cutLeft(count);
+        resetState();
     }
 
     private int getColumnWidth() {
@@ -234,8 +266,9 @@ class LineImpl implements DiffEntry, FragmentHolder, EntryHolder, PrintableEntry
     }
 
     private void initFragmentsCache() {
-        leftFragments = isMarkupType ? left.getMarkupFragments() : left.getFragments();
-        rightFragments = isMarkupType ? right.getMarkupFragments() : right.getFragments();
+        BlockImpl ownerBlock = block instanceof BlockImpl ? (BlockImpl) block : null;
+        leftFragments = left.getFragments(ownerBlock != null ? ownerBlock.getLeftText() : null, isMarkupType);
+        rightFragments = right.getFragments(ownerBlock != null ? ownerBlock.getRightText() : null, isMarkupType);
         if (leftFragments.size() != rightFragments.size()
                 || leftFragments.isEmpty()
                 || ((FragmentImpl) leftFragments.get(0)).getLineOffset() != ((FragmentImpl) rightFragments.get(0)).getLineOffset()) {
@@ -256,6 +289,20 @@ class LineImpl implements DiffEntry, FragmentHolder, EntryHolder, PrintableEntry
         leftFragments = null;
         rightFragments = null;
         fragmentPairs = null;
+        resetState();
+    }
+
+    /**
+     * Clears the memoized state and counts of the current line and of the block it belongs to. Called whenever the
+     * line is modified
+     */
+    private void resetState() {
+        state = null;
+        count = -1;
+        pendingCount = -1;
+        if (block != null) {
+            block.resetState();
+        }
     }
 
     /* ----------
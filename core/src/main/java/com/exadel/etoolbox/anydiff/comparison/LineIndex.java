@@ -0,0 +1,331 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+
+/**
+ * Stores the positions and hashes of the lines of a file in a temporary file on disk. This allows comparing files that
+ * do not fit in memory: the diff runs on the hashes, and the text is read back only for the lines that are displayed.
+ * Lines are split the same way as {@link com.exadel.etoolbox.anydiff.util.StringUtil#splitByNewline(CharSequence)}
+ * does, and the content is expected to be encoded in UTF-8. A line is kept in memory while being hashed, so the length of
+ * a line is limited. A file that contains a longer line is still indexed to produce its summary, but it cannot be
+ * compared line by line
+ */
+@Slf4j
+class LineIndex implements Closeable {
+
+    static final int DEFAULT_MAX_LINE_LENGTH = 16 * 1024 * 1024;
+
+    private static final int ENTRY_SIZE = 3 * Long.BYTES;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final UnaryOperator<String> preprocessor;
+    private final int maxLineLength;
+    private final Path indexFile;
+    private final FileChannel content;
+    private final FileChannel index;
+
+    /**
+     * Gets the number of lines in the file
+     */
+    @Getter
+    private int lineCount;
+
+    private long size;
+
+    private long crc;
+
+    /**
+     * Gets the reason why the file cannot be compared line by line, such as a line exceeding the maximal length.
+     * Returns {@code null} if there is no such reason
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private String limitViolation;
+
+    private LineIndex(Path file, UnaryOperator<String> preprocessor, int maxLineLength) throws IOException {
+        this.file = file;
+        this.preprocessor = preprocessor;
+        this.maxLineLength = maxLineLength;
+        this.indexFile = Files.createTempFile("anydiff-index", ".bin");
+        this.content = FileChannel.open(file, StandardOpenOption.READ);
+        this.index = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Creates an index of the lines of the specified file
+     * @param file         Path to the file. A non-null value is expected
+     * @param ignoreSpaces If true, the hashes are computed so that the lines that differ only in the number of spaces
+     *                     between words have equal hashes
+     * @param preprocessor A routine that is applied to every line before hashing and displaying. A non-null value is
+     *                     expected
+     * @return {@code LineIndex} instance. Must be closed after use so that the temporary file is deleted
+     * @throws IOException if reading the file or writing the index fails
+     */
+    static LineIndex build(Path file, boolean ignoreSpaces, UnaryOperator<String> preprocessor) throws IOException {
+        return build(file, ignoreSpaces, preprocessor, DEFAULT_MAX_LINE_LENGTH);
+    }
+
+    /**
+     * Creates an index of the lines of the specified file
+     * @param file          Path to the file. A non-null value is expected
+     * @param ignoreSpaces  If true, the hashes are computed so that the lines that differ only in the number of spaces
+     *                      between words have equal hashes
+     * @param preprocessor  A routine that is applied to every line before hashing and displaying. A non-null value is
+     *                      expected
+     * @param maxLineLength The maximal length of a line in bytes. A longer line is not hashed, and the reason is
+     *                      reported via {@link #getLimitViolation()}
+     * @return {@code LineIndex} instance. Must be closed after use so that the temporary file is deleted
+     * @throws IOException if reading the file or writing the index fails
+     */
+    static LineIndex build(
+            Path file,
+            boolean ignoreSpaces,
+            UnaryOperator<String> preprocessor,
+            int maxLineLength) throws IOException {
+        LineIndex result = new LineIndex(file, preprocessor, maxLineLength);
+        try {
+            result.fill(ignoreSpaces);
+        } catch (IOException | RuntimeException e) {
+            result.close();
+            throw e;
+        }
+        return result;
+    }
+
+    /* ---------
+       Accessors
+       --------- */
+
+    /**
+     * Retrieves the hashes of the lines in the specified range
+     * @param start The index of the first line
+     * @param count The number of lines
+     * @return A non-null array of hashes
+     * @throws IOException if reading the index fails
+     */
+    long[] getHashes(int start, int count) throws IOException {
+        ByteBuffer entries = readEntries(start, count);
+        long[] result = new long[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = entries.getLong(i * ENTRY_SIZE + 2 * Long.BYTES);
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the text of the lines in the specified range
+     * @param start The index of the first line, inclusive
+     * @param end   The index of the last line, exclusive
+     * @return A non-null list of strings
+     * @throws IOException if reading the file or the index fails
+     */
+    List<String> getLines(int start, int end) throws IOException {
+        if (start >= end) {
+            return new ArrayList<>();
+        }
+        ByteBuffer entries = readEntries(start, end - start);
+        long firstByte = entries.getLong(0);
+        long lastByte = entries.getLong((end - start - 1) * ENTRY_SIZE + Long.BYTES);
+        ByteBuffer bytes = ByteBuffer.allocate(Math.toIntExact(lastByte - firstByte));
+        readFully(content, bytes, firstByte);
+        List<String> result = new ArrayList<>(end - start);
+        for (int i = 0; i < end - start; i++) {
+            int lineStart = (int) (entries.getLong(i * ENTRY_SIZE) - firstByte);
+            int lineEnd = (int) (entries.getLong(i * ENTRY_SIZE + Long.BYTES) - firstByte);
+            String line = new String(bytes.array(), lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+            result.add(preprocessor.apply(line));
+        }
+        return result;
+    }
+
+    /**
+     * Creates a coarse summary of the file content
+     * @param reason        The reason why the detailed comparison was not completed
+     * @param changedRanges The list of {@code [start, end)} ranges of changed lines
+     * @return {@link ContentSummary} instance
+     */
+    ContentSummary getSummary(String reason, List<int[]> changedRanges) {
+        return ContentSummary
+                .builder()
+                .reason(reason)
+                .lineCount(lineCount)
+                .size(size)
+                .crc(crc)
+                .changedRanges(changedRanges)
+                .build();
+    }
+
+    /* --------------
+       Implementation
+       -------------- */
+
+    private void fill(boolean ignoreSpaces) throws IOException {
+        log.debug("Indexing lines of {}", file);
+        CRC32 checksum = new CRC32();
+        try (
+            InputStream input = Files.newInputStream(file);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(indexFile),
+                    BUFFER_SIZE))
+        ) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            byte[] line = new byte[256];
+            int lineLength = 0;
+            long lineStart = 0;
+            long position = 0;
+            boolean isAfterCarriageReturn = false;
+            boolean isOversized = false;
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++, position++) {
+                    byte current = buffer[i];
+                    if (current == '\n' && isAfterCarriageReturn) {
+                        // The second half of a "\r\n" sequence
+                        isAfterCarriageReturn = false;
+                        lineStart = position + 1;
+                        continue;
+                    }
+                    isAfterCarriageReturn = current == '\r';
+                    if (current == '\n' || current == '\r') {
+                        if (isOversized) {
+                            addOversizedEntry(output, checksum, lineStart, position);
+                        } else {
+                            addEntry(output, checksum, lineStart, position, line, lineLength, ignoreSpaces);
+                        }
+                        isOversized = false;
+                        lineLength = 0;
+                        lineStart = position + 1;
+                        continue;
+                    }
+                    if (!isOversized && lineLength == maxLineLength) {
+                        // The rest of the line is only accounted in the checksum
+                        isOversized = true;
+                        checksum.update(line, 0, lineLength);
+                        if (limitViolation == null) {
+                            limitViolation = "Length of line " + (lineCount + 1) + " exceeded " + maxLineLength;
+                        }
+                    }
+                    if (isOversized) {
+                        checksum.update(current);
+                        continue;
+                    }
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, (int) Math.min(2L * line.length, maxLineLength));
+                    }
+                    line[lineLength++] = current;
+                }
+            }
+            if (position > lineStart && isOversized) {
+                addOversizedEntry(output, checksum, lineStart, position);
+            } else if (position > lineStart) {
+                addEntry(output, checksum, lineStart, position, line, lineLength, ignoreSpaces);
+            }
+            if (position == 1 && lineCount == 1 && lineLength == 0 && !isAfterCarriageReturn) {
+                // A single line break is considered an empty content
+                lineCount = 0;
+                size = 0;
+                checksum.reset();
+            }
+        }
+        crc = checksum.getValue();
+    }
+
+    private void addEntry(
+            DataOutputStream output,
+            CRC32 checksum,
+            long start,
+            long end,
+            byte[] line,
+            int lineLength,
+            boolean ignoreSpaces) throws IOException {
+        if (lineCount == Integer.MAX_VALUE) {
+            throw new IOException("Too many lines in " + file);
+        }
+        String value = preprocessor.apply(new String(line, 0, lineLength, StandardCharsets.UTF_8));
+        output.writeLong(start);
+        output.writeLong(end);
+        output.writeLong(ignoreSpaces ? EqualityUtil.hashIgnoreSpaces(value) : EqualityUtil.hash(value));
+        // The summary values are computed the same way as by ContentSummary for the in-memory content
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        checksum.update(bytes, 0, bytes.length);
+        checksum.update('\n');
+        size += value.length() + 1;
+        lineCount++;
+    }
+
+    private void addOversizedEntry(DataOutputStream output, CRC32 checksum, long start, long end) throws IOException {
+        if (lineCount == Integer.MAX_VALUE) {
+            throw new IOException("Too many lines in " + file);
+        }
+        // The line is not hashed since the file is not compared line by line. The summary values are computed from the
+        // raw bytes of the line
+        output.writeLong(start);
+        output.writeLong(end);
+        output.writeLong(0L);
+        checksum.update('\n');
+        size += end - start + 1;
+        lineCount++;
+    }
+
+    private ByteBuffer readEntries(int start, int count) throws IOException {
+        ByteBuffer result = ByteBuffer.allocate(count * ENTRY_SIZE);
+        readFully(index, result, (long) start * ENTRY_SIZE);
+        return result;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long cursor = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, cursor);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            cursor += read;
+        }
+        // Called via Buffer since ByteBuffer does not override flip() in Java 8
+        ((Buffer) buffer).flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            content.close();
+            index.close();
+        } finally {
+            Files.deleteIfExists(indexFile);
+        }
+    }
+}
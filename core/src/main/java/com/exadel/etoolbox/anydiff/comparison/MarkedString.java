@@ -17,41 +17,54 @@ import com.exadel.etoolbox.anydiff.AnyDiff;
 import com.exadel.etoolbox.anydiff.OutputType;
 import com.exadel.etoolbox.anydiff.diff.Fragment;
 import com.exadel.etoolbox.anydiff.util.StringUtil;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
-import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.Pair;
-import org.jetbrains.annotations.NotNull;
 
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Deque;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
- * Represents a string that can contain specially marked fragments
+ * Represents a string that can contain specially marked fragments. The text of the string is stored once, and the
+ * marked fragments (chunks) are stored as ranges of the text in primitive arrays. Substrings are only created when the
+ * string is output
  */
 class MarkedString {
 
-    private static final String WHITESPACE_PATTERN = "[\\t\\x0B\\f]";
+    private static final int[] EMPTY_BOUNDS = new int[0];
+    private static final byte[] EMPTY_ATTRIBUTES = new byte[0];
+    private static final int INITIAL_CAPACITY = 4;
+
+    // The attributes of a chunk are packed in a byte: the lower bits store the ordinal of the marker plus one (zero
+    // meaning no marker), and the upper bits store the flags
+    private static final Marker[] MARKERS = Marker.values();
+    private static final int MARKER_MASK = 0x07;
+    private static final int FLAG_NEW_LINE = 0x08;
+    private static final int FLAG_SILENCED = 0x10;
 
-    private final List<Chunk> chunks;
     private final boolean ignoreSpaces;
     private final boolean normalize;
 
+    private String text;
+    private int[] bounds;
+    private byte[] attributes;
+    private int count;
+
     /**
-     * Sets the reference to the previous {@code MarkedString} in the chain
+     * Gets or sets the reference to the previous {@code MarkedString} in the chain
      */
+    @Getter(AccessLevel.PACKAGE)
     @Setter
     private MarkedString previous;
 
     /**
-     * Sets the reference to the next {@code MarkedString} in the chain
+     * Gets or sets the reference to the next {@code MarkedString} in the chain
      */
+    @Getter(AccessLevel.PACKAGE)
     @Setter
     private MarkedString next;
 
@@ -76,12 +89,18 @@ class MarkedString {
     MarkedString(String content, Marker marker) {
         ignoreSpaces = false;
         normalize = false;
+        text = StringUtils.EMPTY;
+        bounds = EMPTY_BOUNDS;
+        attributes = EMPTY_ATTRIBUTES;
         if (StringUtils.isEmpty(content)) {
-            chunks = Collections.emptyList();
             return;
         }
-        chunks = new ArrayList<>();
-        chunks.add(new Chunk(unifySpaces(content), marker));
+        if (Marker.NEW_LINE.equals(content)) {
+            addChunk(0, 0, marker, FLAG_NEW_LINE);
+            return;
+        }
+        text = unifySpaces(content);
+        addChunk(0, text.length(), marker, 0);
     }
 
     /**
@@ -104,39 +123,54 @@ class MarkedString {
     MarkedString(String content, boolean ignoreSpaces, boolean normalize) {
         this.ignoreSpaces = ignoreSpaces;
         this.normalize = normalize;
+        text = StringUtils.EMPTY;
+        bounds = EMPTY_BOUNDS;
+        attributes = EMPTY_ATTRIBUTES;
         if (content == null) {
-            chunks = Collections.emptyList();
             return;
         }
-        chunks = new ArrayList<>();
-        StringBuilder source = new StringBuilder(unifySpaces(content));
-        Pair<Integer, String> entry = StringUtil.getNearestSubstring(source, Marker.TOKENS);
+        // The content is scanned once: markers are recognized as they are met, and whitespace characters are unified
+        // on the go. The text without the markers is accumulated in a single buffer, and the chunks refer to its ranges
+        StringBuilder builder = new StringBuilder(content.length());
+        int chunkStart = 0;
         Marker lastOpenMarker = null;
-        while (entry != null) {
-            int position = entry.getKey();
-            String token = entry.getValue();
-            Marker currentMarker = Marker.fromString(token);
+        for (int position = 0, length = content.length(); position < length; position++) {
+            char current = content.charAt(position);
+            Marker currentMarker = current == '{' ? getMarkerAt(content, position) : null;
             if (currentMarker == null) {
-                break;
+                builder.append(unifySpace(current));
+                continue;
             }
             if (lastOpenMarker != null && currentMarker == Marker.RESET) {
-                chunks.add(new Chunk(source.substring(0, position), lastOpenMarker));
+                addChunk(builder, chunkStart, lastOpenMarker);
                 lastOpenMarker = null;
             } else {
-                if (position > 0) {
-                    chunks.add(new Chunk(source.substring(0, position), null));
+                if (builder.length() > chunkStart) {
+                    addChunk(builder, chunkStart, null);
                 }
                 lastOpenMarker = currentMarker;
             }
-            source.replace(0, position + currentMarker.toString().length(), StringUtils.EMPTY);
-            entry = StringUtil.getNearestSubstring(source, Marker.TOKENS);
+            chunkStart = builder.length();
+            position += currentMarker.toString().length() - 1;
+        }
+        if (builder.length() > chunkStart) {
+            addChunk(builder, chunkStart, lastOpenMarker != Marker.RESET ? lastOpenMarker : null);
         }
-        if (StringUtils.isNotEmpty(source)) {
-            chunks.add(
-                    new Chunk(
-                            source.toString(),
-                            lastOpenMarker != null && lastOpenMarker != Marker.RESET ? lastOpenMarker : null)
-            );
+        text = builder.toString();
+        if (bounds.length > count * 2) {
+            bounds = Arrays.copyOf(bounds, count * 2);
+            attributes = Arrays.copyOf(attributes, count);
+        }
+    }
+
+    private void addChunk(StringBuilder builder, int start, Marker marker) {
+        if (builder.length() - start == Marker.NEW_LINE.length()
+                && builder.indexOf(Marker.NEW_LINE, start) == start) {
+            // A line break placeholder is not a part of the text. It takes one position when output
+            builder.setLength(start);
+            addChunk(start, start, marker, FLAG_NEW_LINE);
+        } else {
+            addChunk(start, builder.length(), marker, 0);
         }
     }
 
@@ -149,14 +183,22 @@ class MarkedString {
      * @return Integer value
      */
     int getIndent() {
-        int indentableChunksCount = 0;
-        for (Chunk chunk : chunks) {
-            if (chunk.getMarker() != null && !normalize) {
+        int result = 0;
+        for (int i = 0; i < count; i++) {
+            if (getMarker(i) != null && !normalize) {
+                break;
+            }
+            if (isNewLine(i)) {
+                // A line break placeholder is never considered a part of the indentation
+                break;
+            }
+            int indent = StringUtil.getIndent(CharBuffer.wrap(text, getStart(i), getEnd(i)));
+            result += indent;
+            if (indent < getEnd(i) - getStart(i)) {
                 break;
             }
-            indentableChunksCount += 1;
         }
-        return StringUtil.getIndent(chunks.subList(0, indentableChunksCount));
+        return result;
     }
 
     /**
@@ -165,8 +207,13 @@ class MarkedString {
      * @return True or false
      */
     boolean hasChanges() {
-        return !chunks.isEmpty()
-                && chunks.stream().anyMatch(chunk -> chunk.getMarker() != null && chunk.getMarker() != Marker.CONTEXT);
+        for (int i = 0; i < count; i++) {
+            Marker marker = getMarker(i);
+            if (marker != null && marker != Marker.CONTEXT) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /* ---------
@@ -188,7 +235,7 @@ class MarkedString {
      */
     @SuppressWarnings("SameParameterValue")
     List<Fragment> getFragments(boolean includeContext) {
-        return getFragments(false, includeContext);
+        return getFragments(null, false, includeContext);
     }
 
     /**
@@ -197,7 +244,7 @@ class MarkedString {
      * @return A non-null list of {@code Fragment} objects. Can be empty
      */
     List<Fragment> getMarkupFragments() {
-        return getFragments(true, false);
+        return getFragments(null, true, false);
     }
 
     /**
@@ -208,48 +255,72 @@ class MarkedString {
      */
     @SuppressWarnings("SameParameterValue")
     List<Fragment> getMarkupFragments(boolean includeContext) {
-        return getFragments(true, includeContext);
+        return getFragments(null, true, includeContext);
     }
 
-    private List<Fragment> getFragments(boolean markupAware, boolean includeContext) {
-        StringBuilder textBuilder = new StringBuilder();
+    /**
+     * Gets a list of {@link Fragment} objects representing character sequences in the current string with a marker
+     * @param blockText   {@link BlockText} object that contains the text of the chain the current string belongs to. If
+     *                    it does not contain the current string, the text of the chain is built anew
+     * @param markupAware If set to {@code true}, the fragments respect the XML/HTML markup contained in the string
+     * @return A non-null list of {@code Fragment} objects. Can be empty
+     */
+    List<Fragment> getFragments(BlockText blockText, boolean markupAware) {
+        return getFragments(blockText, markupAware, false);
+    }
+
+    private List<Fragment> getFragments(BlockText blockText, boolean markupAware, boolean includeContext) {
+        if (count == 0) {
+            return new ArrayList<>();
+        }
+        BlockText effectiveBlockText = blockText != null && blockText.getOffset(this) >= 0
+                ? blockText
+                : BlockText.of(this);
+        String fullText = effectiveBlockText.getText();
         List<Fragment> result = new ArrayList<>();
-        int offset = 0;
+        int offset = effectiveBlockText.getOffset(this);
         int lineOffset = 0;
-        for (ChunkIterator it = new ChunkIterator(this); it.hasNext(); ) {
-            Chunk chunk = it.next();
-            textBuilder.append(chunk.getText());
-            boolean isMarked = (includeContext && chunk.getMarker() != null)
-                    || chunk.getMarker() == Marker.DELETE
-                    || chunk.getMarker() == Marker.INSERT;
-            if (isMarked && chunks.contains(chunk)) {
-                // Must use {@code chunk.getText().length()} here instead of {@code chunk.length()} because the
-                // latter reports +1 character for the "newline" type of chunk and is used for column formatting
-                // while the former is used for offsetting
+        for (int i = 0; i < count; i++) {
+            Marker marker = getMarker(i);
+            boolean isMarked = (includeContext && marker != null) || marker == Marker.DELETE || marker == Marker.INSERT;
+            if (isMarked) {
+                // Must use the text length here instead of {@code getLength()} because the latter reports +1 character
+                // for the "newline" type of chunk and is used for column formatting while the former is used for
+                // offsetting
+                int textLength = getEnd(i) - getStart(i);
                 FragmentImpl fragment = markupAware
-                        ? new MarkupFragmentImpl(offset, offset + chunk.getText().length())
-                        : new FragmentImpl(offset, offset + chunk.getText().length());
+                        ? new MarkupFragmentImpl(offset, offset + textLength)
+                        : new FragmentImpl(offset, offset + textLength);
+                fragment.setSource(fullText);
                 fragment.setLineOffset(lineOffset);
-                fragment.setDelete(chunk.isPending() && chunk.getMarker() == Marker.DELETE);
-                fragment.setInsert(chunk.isPending() && chunk.getMarker() == Marker.INSERT);
+                fragment.setDelete(isPending(i) && marker == Marker.DELETE);
+                fragment.setInsert(isPending(i) && marker == Marker.INSERT);
+                if (ignoreSpaces) {
+                    fragment.trim();
+                }
                 result.add(fragment);
             }
-            offset += chunk.length();
-            lineOffset += chunk.length();
-            if (it.isLineEnd()) {
-                textBuilder.append(StringUtils.LF);
-                offset++;
-                lineOffset = 0;
-            }
+            offset += getLength(i);
+            lineOffset += getLength(i);
+        }
+        return result;
+    }
+
+    /**
+     * Appends the text of the current instance to the specified builder
+     * @param builder {@code StringBuilder} object. A non-null value is expected
+     * @return The number of positions the text occupies when offsetting the fragments. May differ from the number of
+     * characters appended if the current instance contains a line break placeholder
+     */
+    int appendTo(StringBuilder builder) {
+        if (count == 0) {
+            return 0;
+        }
+        builder.append(text, getStart(0), getEnd(count - 1));
+        int result = 0;
+        for (int i = 0; i < count; i++) {
+            result += getLength(i);
         }
-        String fullText = textBuilder.toString();
-        result.forEach(fragment -> {
-            FragmentImpl fragmentImpl = (FragmentImpl) fragment;
-            fragmentImpl.setSource(fullText);
-            if (ignoreSpaces) {
-                fragmentImpl.trim();
-            }
-        });
         return result;
     }
 
@@ -262,10 +333,11 @@ class MarkedString {
      * so that they are not reported as a pending difference by {@link AnyDiff}
      */
     void accept() {
-        chunks
-                .stream()
-                .filter(c -> c.getMarker() == Marker.INSERT || c.getMarker() == Marker.DELETE)
-                .forEach(Chunk::accept);
+        for (int i = 0; i < count; i++) {
+            if (getMarker(i) == Marker.INSERT || getMarker(i) == Marker.DELETE) {
+                attributes[i] |= FLAG_SILENCED;
+            }
+        }
     }
 
     /**
@@ -278,15 +350,12 @@ class MarkedString {
             return;
         }
         String fragmentString = fragment.toString();
-        chunks
-                .stream()
-                .filter(c -> {
-                    boolean isMatch = ignoreSpaces ? c.getText().trim().equals(fragmentString) :
-                            c.getText().equals(fragmentString);
-                    return isMatch && (c.getMarker() == Marker.INSERT || c.getMarker() == Marker.DELETE);
-                })
-                .findFirst()
-                .ifPresent(Chunk::accept);
+        for (int i = 0; i < count; i++) {
+            if ((getMarker(i) == Marker.INSERT || getMarker(i) == Marker.DELETE) && matches(i, fragmentString)) {
+                attributes[i] |= FLAG_SILENCED;
+                return;
+            }
+        }
     }
 
     /**
@@ -296,12 +365,10 @@ class MarkedString {
      */
     @SuppressWarnings("SameParameterValue")
     MarkedString mark(Marker marker) {
-        if (chunks.isEmpty()) {
+        if (count == 0) {
             return this;
         }
-        String fullText = toString();
-        chunks.clear();
-        chunks.add(new Chunk(fullText, marker));
+        collapse(marker);
         return this;
     }
 
@@ -311,27 +378,22 @@ class MarkedString {
      * @param marker   {@code Marker} instance
      */
     void mark(String fragment, Marker marker) {
-        if (chunks.isEmpty()) {
+        if (count == 0) {
             return;
         }
-        LinkedList<Chunk> containerChunks = chunks
-                .stream()
-                .filter(c -> c.getText().contains(fragment))
-                .collect(Collectors.toCollection(LinkedList::new));
-        Iterator<Chunk> chunkIterator = containerChunks.descendingIterator();
-        while (chunkIterator.hasNext()) {
-            Chunk splittable = chunkIterator.next();
-            int position = chunks.indexOf(splittable);
-            if (splittable.getMarker() == marker) {
+        // Chunks are processed from the last to the first so that splitting a chunk does not shift the positions of the
+        // chunks yet to be processed
+        for (int i = count - 1; i >= 0; i--) {
+            if (!contains(i, fragment)) {
+                continue;
+            }
+            if (getMarker(i) == marker) {
                 return;
-            } else if (splittable.getText().equals(fragment)) {
-                splittable.setMarker(marker);
+            } else if (matchesExactly(i, fragment)) {
+                setMarker(i, marker);
                 return;
             }
-            List<Chunk> splits = splittable.split(fragment);
-            splits.stream().filter(c -> c.getText().equals(fragment)).forEach(c -> c.setMarker(marker));
-            chunks.remove(position);
-            chunks.addAll(position, splits);
+            split(i, fragment, marker);
         }
         compactify();
     }
@@ -342,10 +404,11 @@ class MarkedString {
      * @param newMarker {@code Marker} instance
      */
     MarkedString markPlaceholders(Marker newMarker) {
-        if (chunks.isEmpty()) {
-            return this;
+        for (int i = 0; i < count; i++) {
+            if (getMarker(i) == Marker.PLACEHOLDER) {
+                setMarker(i, newMarker);
+            }
         }
-        chunks.stream().filter(chunk -> chunk.getMarker() == Marker.PLACEHOLDER).forEach(chunk -> chunk.setMarker(newMarker));
         return this;
     }
 
@@ -354,9 +417,7 @@ class MarkedString {
      * @return Current instance
      */
     MarkedString unmark() {
-        String fullText = toString();
-        chunks.clear();
-        chunks.add(new Chunk(fullText, null));
+        collapse(null);
         return this;
     }
 
@@ -369,13 +430,12 @@ class MarkedString {
             return;
         }
         String fragmentString = fragment.toString();
-        chunks
-                .stream()
-                .filter(c -> ignoreSpaces
-                        ? c.getText().trim().equals(fragmentString)
-                        : c.getText().equals(fragmentString))
-                .findFirst()
-                .ifPresent(c -> c.setMarker(null));
+        for (int i = 0; i < count; i++) {
+            if (matches(i, fragmentString)) {
+                setMarker(i, null);
+                break;
+            }
+        }
         compactify();
     }
 
@@ -386,42 +446,170 @@ class MarkedString {
      */
     void cutLeft(int count) {
         int toCut = count;
-        while (toCut > 0) {
-            if (chunks.isEmpty()) {
-                return;
-            }
-            if (chunks.get(0).length() <= toCut) {
-                toCut -= chunks.remove(0).length();
+        int removed = 0;
+        while (toCut > 0 && removed < this.count) {
+            if (getLength(removed) <= toCut) {
+                toCut -= getLength(removed++);
             } else {
-                chunks.get(0).cutLeft(toCut);
+                bounds[removed * 2] += toCut;
                 break;
             }
         }
+        removeChunks(0, removed);
     }
 
     /* ----------------
        Chunks utilities
        ---------------- */
 
+    private int getStart(int index) {
+        return bounds[index * 2];
+    }
+
+    private int getEnd(int index) {
+        return bounds[index * 2 + 1];
+    }
+
+    private int getLength(int index) {
+        return isNewLine(index) ? 1 : getEnd(index) - getStart(index);
+    }
+
+    private Marker getMarker(int index) {
+        int ordinal = attributes[index] & MARKER_MASK;
+        return ordinal > 0 ? MARKERS[ordinal - 1] : null;
+    }
+
+    private void setMarker(int index, Marker marker) {
+        attributes[index] = (byte) ((attributes[index] & ~MARKER_MASK) | toBits(marker));
+    }
+
+    private boolean isNewLine(int index) {
+        return (attributes[index] & FLAG_NEW_LINE) != 0;
+    }
+
+    private boolean isPending(int index) {
+        Marker marker = getMarker(index);
+        return (attributes[index] & FLAG_SILENCED) == 0 && marker != null && marker != Marker.CONTEXT;
+    }
+
+    private boolean contains(int index, String value) {
+        int position = text.indexOf(value, getStart(index));
+        return position >= 0 && position + value.length() <= getEnd(index);
+    }
+
+    private boolean matchesExactly(int index, String value) {
+        int start = getStart(index);
+        int length = getEnd(index) - start;
+        return length == value.length() && text.regionMatches(start, value, 0, length);
+    }
+
+    private boolean matches(int index, String value) {
+        if (!ignoreSpaces) {
+            return matchesExactly(index, value);
+        }
+        // Equivalent to comparing the trimmed text of the chunk
+        int start = getStart(index);
+        int end = getEnd(index);
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end - start == value.length() && text.regionMatches(start, value, 0, value.length());
+    }
+
+    private void addChunk(int start, int end, Marker marker, int flags) {
+        insertChunk(count, start, end, (byte) (toBits(marker) | flags));
+    }
+
+    private void insertChunk(int index, int start, int end, byte chunkAttributes) {
+        if (count == attributes.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, count * 2);
+            bounds = Arrays.copyOf(bounds, capacity * 2);
+            attributes = Arrays.copyOf(attributes, capacity);
+        }
+        System.arraycopy(bounds, index * 2, bounds, index * 2 + 2, (count - index) * 2);
+        System.arraycopy(attributes, index, attributes, index + 1, count - index);
+        bounds[index * 2] = start;
+        bounds[index * 2 + 1] = end;
+        attributes[index] = chunkAttributes;
+        count++;
+    }
+
+    private void removeChunks(int index, int length) {
+        if (length == 0) {
+            return;
+        }
+        System.arraycopy(bounds, (index + length) * 2, bounds, index * 2, (count - index - length) * 2);
+        System.arraycopy(attributes, index + length, attributes, index, count - index - length);
+        count -= length;
+    }
+
+    /**
+     * Replaces all the chunks with a single one that spans the whole text and has the specified marker
+     */
+    private void collapse(Marker marker) {
+        int start = count > 0 ? getStart(0) : 0;
+        int end = count > 0 ? getEnd(count - 1) : 0;
+        count = 0;
+        addChunk(start, end, marker, 0);
+    }
+
+    /**
+     * Splits the chunk at the specified position by the occurrences of the separator. The occurrences receive the
+     * given marker, and the rest of the chunk keeps the original one
+     */
+    private void split(int index, String separator, Marker separatorMarker) {
+        if (separator.isEmpty()) {
+            return;
+        }
+        int start = getStart(index);
+        int end = getEnd(index);
+        byte originalAttributes = (byte) toBits(getMarker(index));
+        byte separatorAttributes = (byte) toBits(separatorMarker);
+        removeChunks(index, 1);
+        int cursor = start;
+        int insertPosition = index;
+        int occurrence = text.indexOf(separator, cursor);
+        while (occurrence >= 0 && occurrence + separator.length() <= end) {
+            if (occurrence > cursor) {
+                insertChunk(insertPosition++, cursor, occurrence, originalAttributes);
+            }
+            insertChunk(insertPosition++, occurrence, occurrence + separator.length(), separatorAttributes);
+            cursor = occurrence + separator.length();
+            occurrence = text.indexOf(separator, cursor);
+        }
+        if (cursor < end) {
+            insertChunk(insertPosition, cursor, end, originalAttributes);
+        }
+    }
+
     /**
      * Optimizes the composition of the current {@code MarkedString} instance by merging adjacent chunks with the same
      * marker
      */
     private void compactify() {
-        if (chunks.isEmpty()) {
+        if (count == 0) {
             return;
         }
-        int cursor = 1;
-        while (cursor < chunks.size()) {
-            Chunk previous = chunks.get(cursor - 1);
-            Chunk current = chunks.get(cursor);
-            if (previous.getMarker() == current.getMarker()) {
-                previous.append(current.getText());
-                chunks.remove(cursor);
+        int target = 0;
+        for (int i = 1; i < count; i++) {
+            if (getMarker(target) == getMarker(i)) {
+                // The chunks are adjacent in the text, so merging is extending the range
+                bounds[target * 2 + 1] = getEnd(i);
             } else {
-                cursor++;
+                target++;
+                bounds[target * 2] = getStart(i);
+                bounds[target * 2 + 1] = getEnd(i);
+                attributes[target] = attributes[i];
             }
         }
+        count = target + 1;
+    }
+
+    private static int toBits(Marker marker) {
+        return marker != null ? marker.ordinal() + 1 : 0;
     }
 
     /* ------
@@ -430,7 +618,7 @@ class MarkedString {
 
     @Override
     public String toString() {
-        return chunks.stream().map(Chunk::getText).collect(Collectors.joining());
+        return count > 0 ? text.substring(getStart(0), getEnd(count - 1)) : StringUtils.EMPTY;
     }
 
     /**
@@ -438,7 +626,11 @@ class MarkedString {
      * @return String value
      */
     String toHtml() {
-        return chunks.stream().map(c -> c.toString(OutputType.HTML)).collect(Collectors.joining());
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            appendChunk(builder, OutputType.HTML, getMarker(i), isNewLine(i), getStart(i), getEnd(i));
+        }
+        return builder.toString();
     }
 
     /**
@@ -449,16 +641,18 @@ class MarkedString {
      * @return A non-null list of strings. Can be empty
      */
     List<String> toText(OutputType target, int columnWidth) {
-        if (CollectionUtils.isEmpty(chunks)) {
+        if (count == 0) {
             return new ArrayList<>(Collections.singletonList(StringUtils.repeat(StringUtils.SPACE, columnWidth)));
         }
         return target == OutputType.LOG ? toLog(columnWidth) : toConsole(columnWidth);
     }
 
     private List<String> toLog(int columnWidth) {
-        List<String> result = new ArrayList<>(StringUtil.splitByLength(
-                chunks.stream().map(c -> c.toString(OutputType.LOG)).collect(Collectors.joining()),
-                columnWidth));
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            appendChunk(builder, OutputType.LOG, getMarker(i), isNewLine(i), getStart(i), getEnd(i));
+        }
+        List<String> result = new ArrayList<>(StringUtil.splitByLength(builder, columnWidth));
         int lastPosition = result.size() - 1;
         String lastString = result.get(lastPosition);
         if (lastString.length() < columnWidth) {
@@ -469,23 +663,27 @@ class MarkedString {
 
     private List<String> toConsole(int columnWidth) {
         List<String> result = new ArrayList<>();
-        Deque<Chunk> chunkQueue = new LinkedList<>(chunks);
         StringBuilder currentLine = new StringBuilder();
         int filledInLine = 0;
-        while (!chunkQueue.isEmpty()) {
-            Chunk currentChunk = chunkQueue.remove();
-            if (currentChunk.length() > (columnWidth - filledInLine)) {
-                Pair<Chunk, Chunk> pair = currentChunk.split(columnWidth - filledInLine);
-                chunkQueue.addFirst(pair.getRight());
-                chunkQueue.addFirst(pair.getLeft());
-            } else {
-                currentLine.append(currentChunk.toString(OutputType.CONSOLE));
-                filledInLine += currentChunk.length();
-                if (filledInLine >= columnWidth) {
-                    result.add(currentLine.toString());
-                    currentLine.setLength(0);
-                    filledInLine = 0;
-                }
+        for (int i = 0; i < count; i++) {
+            Marker marker = getMarker(i);
+            int start = getStart(i);
+            int end = getEnd(i);
+            // A chunk that does not fit in the rest of the line is split. A line break placeholder always fits
+            while (!isNewLine(i) && end - start > columnWidth - filledInLine) {
+                int splitPosition = start + columnWidth - filledInLine;
+                appendChunk(currentLine, OutputType.CONSOLE, marker, false, start, splitPosition);
+                result.add(currentLine.toString());
+                currentLine.setLength(0);
+                filledInLine = 0;
+                start = splitPosition;
+            }
+            appendChunk(currentLine, OutputType.CONSOLE, marker, isNewLine(i), start, end);
+            filledInLine += isNewLine(i) ? 1 : end - start;
+            if (filledInLine >= columnWidth) {
+                result.add(currentLine.toString());
+                currentLine.setLength(0);
+                filledInLine = 0;
             }
         }
         if (currentLine.length() > 0) {
@@ -495,6 +693,28 @@ class MarkedString {
         return result;
     }
 
+    private void appendChunk(
+            StringBuilder builder,
+            OutputType target,
+            Marker marker,
+            boolean isNewLine,
+            int start,
+            int end) {
+        if (marker != null) {
+            builder.append(marker.to(target, null));
+        }
+        if ((target == OutputType.CONSOLE || target == OutputType.HTML) && isNewLine) {
+            builder.append(StringUtils.SPACE);
+        } else if (target == OutputType.HTML) {
+            builder.append(StringUtil.escape(text.substring(start, end)));
+        } else {
+            builder.append(text, start, end);
+        }
+        if (marker != null) {
+            builder.append(Marker.RESET.to(target, marker));
+        }
+    }
+
     /* ---------------
        Utility methods
        --------------- */
@@ -505,174 +725,52 @@ class MarkedString {
      * @return True or false
      */
     static boolean isEmpty(MarkedString value) {
-        return value == null || value.chunks.isEmpty();
+        return value == null || value.count == 0;
     }
 
     private static String unifySpaces(String value) {
-        return value.replaceAll(WHITESPACE_PATTERN, StringUtils.SPACE);
-    }
-
-    /* ---------------
-       Utility classes
-       --------------- */
-
-    /**
-     * Represents a character sequence with a {@link Marker} assigned to it
-     */
-    private static class Chunk implements CharSequence {
-        @Getter
-        @Setter
-        private Marker marker;
-
-        private boolean isNewLine;
-
-        private boolean silenced;
-
-        @Getter
-        private String text;
-
-        Chunk(String text, Marker marker) {
-            if (Marker.NEW_LINE.equals(text)) {
-                this.text = StringUtils.EMPTY;
-                this.isNewLine = true;
-            } else {
-                this.text = text;
-            }
-            this.marker = marker;
-        }
-
-        @Override
-        public int length() {
-            return isNewLine ? 1 : text.length();
-        }
-
-        @Override
-        public char charAt(int position) {
-            if (position < 0 || position >= text.length()) {
-                return 0;
-            }
-            return text.charAt(position);
-        }
-
-        @Override
-        @NotNull
-        public CharSequence subSequence(int begin, int end) {
-            return text.subSequence(begin, end);
-        }
-
-        void accept() {
-            silenced = true;
-        }
-
-        boolean isPending() {
-            return !silenced && marker != null && marker != Marker.CONTEXT;
-        }
-
-        void append(String text) {
-            this.text += text;
-        }
-
-        void cutLeft(int length) {
-            if (length >= length()) {
-                text = StringUtils.EMPTY;
-            } else {
-                text = text.substring(length);
-            }
-        }
-
-        Pair<Chunk, Chunk> split(int position) {
-            if (position >= length()) {
-                return Pair.of(this, null);
-            }
-            return Pair.of(
-                    new Chunk(text.substring(0, position), marker),
-                    new Chunk(text.substring(position), marker));
-        }
-
-        List<Chunk> split(String separator) {
-            if (StringUtils.isEmpty(separator) || !text.contains(separator)) {
-                return Collections.singletonList(this);
-            }
-            List<Chunk> result = new ArrayList<>();
-            String[] splits = StringUtils.splitByWholeSeparatorPreserveAllTokens(text, separator);
-            for (int i = 0; i < splits.length; i++) {
-                String split = splits[i];
-                if (!StringUtils.isEmpty(split)) {
-                    result.add(new Chunk(split, marker));
-                }
-                if (i < splits.length - 1) {
-                    result.add(new Chunk(separator, marker));
+        for (int i = 0; i < value.length(); i++) {
+            char current = value.charAt(i);
+            if (unifySpace(current) != current) {
+                StringBuilder builder = new StringBuilder(value.length()).append(value, 0, i);
+                for (int j = i; j < value.length(); j++) {
+                    builder.append(unifySpace(value.charAt(j)));
                 }
+                return builder.toString();
             }
-            return result;
-        }
-
-        String toString(OutputType target) {
-            String before = marker != null ? marker.to(target, null) : StringUtils.EMPTY;
-            String main = text;
-            if ((target == OutputType.CONSOLE || target == OutputType.HTML) && isNewLine) {
-                main = StringUtils.SPACE;
-            }
-            if (target == OutputType.HTML) {
-                main = StringUtil.escape(main);
-            }
-            String after = marker != null ? Marker.RESET.to(target, marker) : StringUtils.EMPTY;
-            return before + main + after;
-        }
-
-        @NotNull
-        @Override
-        public String toString() {
-            return toString(OutputType.CONSOLE);
         }
+        return value;
     }
 
-    /**
-     * Represents an iterator over the {@link Chunk} objects in the current {@code MarkedString} instance
-     */
-    private static class ChunkIterator implements Iterator<Chunk> {
-        private MarkedString nextSource;
-        private Chunk nextChunk;
-
-        public ChunkIterator(MarkedString source) {
-            MarkedString firstSource = source;
-            while (firstSource.previous != null) {
-                firstSource = firstSource.previous;
-            }
-            nextSource = toNonEmptySource(firstSource);
-            nextChunk = nextSource != null ? nextSource.chunks.get(0) : null;
-        }
-
-        @Override
-        public boolean hasNext() {
-            return nextChunk != null;
-        }
-
-        @Override
-        public Chunk next() {
-            Chunk result = nextChunk;
-            int index = nextSource.chunks.indexOf(nextChunk);
-            if (index < nextSource.chunks.size() - 1) {
-                nextChunk = nextSource.chunks.get(index + 1);
-            } else {
-                nextSource = toNonEmptySource(nextSource.next);
-                nextChunk = nextSource != null ? nextSource.chunks.get(0) : null;
-            }
-            return result;
-        }
+    private static char unifySpace(char value) {
+        return value == '\t' || value == '\u000B' || value == '\f' ? ' ' : value;
+    }
 
-        boolean isLineEnd() {
-            return hasNext() && nextSource.chunks.indexOf(nextChunk) == 0;
+    private static Marker getMarkerAt(String value, int position) {
+        // Recognizes one of the {@link Marker#TOKENS} by the character that follows the opening braces
+        if (position + 2 >= value.length() || value.charAt(position + 1) != '{') {
+            return null;
         }
-
-        private static MarkedString toNonEmptySource(MarkedString source) {
-            if (source == null) {
+        Marker candidate;
+        switch (value.charAt(position + 2)) {
+            case 'e':
+                candidate = Marker.CONTEXT;
+                break;
+            case 'd':
+                candidate = Marker.DELETE;
+                break;
+            case 'i':
+                candidate = Marker.INSERT;
+                break;
+            case '_':
+                candidate = Marker.PLACEHOLDER;
+                break;
+            case '/':
+                candidate = Marker.RESET;
+                break;
+            default:
                 return null;
-            }
-            if (CollectionUtils.isNotEmpty(source.chunks)) {
-                return source;
-            }
-            return toNonEmptySource(source.next);
         }
+        return value.startsWith(candidate.toString(), position) ? candidate : null;
     }
 }
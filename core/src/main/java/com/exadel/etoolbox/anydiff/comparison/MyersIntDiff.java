@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import com.github.difflib.algorithm.Change;
+import com.github.difflib.patch.DeltaType;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implements the Eugene Myers greedy differencing algorithm over sequences of integer line identifiers. Follows
+ * step-by-step the {@link com.github.difflib.algorithm.myers.MyersDiff} implementation so that the produced changes
+ * are exactly the same, but compares primitive values instead of calling an equalizer on every step
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class MyersIntDiff {
+
+    /**
+     * Computes the list of changes that turn the original sequence into the revised one
+     * @param orig The original sequence
+     * @param rev  The revised sequence
+     * @return A non-null list of {@link Change} objects in the reverse order, the same as the one produced by
+     * {@code MyersDiff}
+     */
+    static List<Change> computeDiff(int[] orig, int[] rev) {
+        return computeDiff(orig, rev, DiffBudget.UNLIMITED);
+    }
+
+    /**
+     * Computes the list of changes that turn the original sequence into the revised one within the given budget
+     * @param orig   The original sequence
+     * @param rev    The revised sequence
+     * @param budget {@link DiffBudget} object that is checked on every step of the algorithm
+     * @return A non-null list of {@link Change} objects in the reverse order, the same as the one produced by
+     * {@code MyersDiff}
+     */
+    static List<Change> computeDiff(int[] orig, int[] rev, DiffBudget budget) {
+        return buildRevision(buildPath(orig, rev, budget));
+    }
+
+    private static PathNode buildPath(int[] orig, int[] rev, DiffBudget budget) {
+        final int n = orig.length;
+        final int m = rev.length;
+
+        final int max = n + m + 1;
+        final int size = 1 + 2 * max;
+        final int middle = size / 2;
+        final PathNode[] diagonal = new PathNode[size];
+
+        diagonal[middle + 1] = new PathNode(0, -1, true, true, null);
+        for (int d = 0; d < max; d++) {
+            // The number of the step equals the number of inserted and deleted lines on the path
+            budget.checkEditDistance(d);
+            budget.checkTime();
+            for (int k = -d; k <= d; k += 2) {
+                final int kmiddle = middle + k;
+                final int kplus = kmiddle + 1;
+                final int kminus = kmiddle - 1;
+                PathNode prev;
+                int i;
+
+                if ((k == -d) || (k != d && diagonal[kminus].i < diagonal[kplus].i)) {
+                    i = diagonal[kplus].i;
+                    prev = diagonal[kplus];
+                } else {
+                    i = diagonal[kminus].i + 1;
+                    prev = diagonal[kminus];
+                }
+
+                diagonal[kminus] = null;
+
+                int j = i - k;
+
+                PathNode node = new PathNode(i, j, false, false, prev);
+
+                while (i < n && j < m && orig[i] == rev[j]) {
+                    i++;
+                    j++;
+                }
+
+                if (i != node.i) {
+                    node = new PathNode(i, j, true, false, node);
+                }
+
+                diagonal[kmiddle] = node;
+
+                if (i >= n && j >= m) {
+                    return diagonal[kmiddle];
+                }
+            }
+            diagonal[middle + d - 1] = null;
+        }
+        // According to Myers, this cannot happen
+        throw new IllegalStateException("Could not find a diff path");
+    }
+
+    private static List<Change> buildRevision(PathNode actualPath) {
+        PathNode path = actualPath;
+        List<Change> changes = new ArrayList<>();
+        if (path.snake) {
+            path = path.prev;
+        }
+        while (path != null && path.prev != null && path.prev.j >= 0) {
+            if (path.snake) {
+                throw new IllegalStateException("Bad diff path: found snake when looking for diff");
+            }
+            int i = path.i;
+            int j = path.j;
+
+            path = path.prev;
+            int iAnchor = path.i;
+            int jAnchor = path.j;
+
+            if (iAnchor == i && jAnchor != j) {
+                changes.add(new Change(DeltaType.INSERT, iAnchor, i, jAnchor, j));
+            } else if (iAnchor != i && jAnchor == j) {
+                changes.add(new Change(DeltaType.DELETE, iAnchor, i, jAnchor, j));
+            } else {
+                changes.add(new Change(DeltaType.CHANGE, iAnchor, i, jAnchor, j));
+            }
+
+            if (path.snake) {
+                path = path.prev;
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Represents a node in the path across the edit graph. A non-snake node is always linked to the nearest preceding
+     * snake node
+     */
+    private static final class PathNode {
+        private final int i;
+        private final int j;
+        private final boolean snake;
+        private final boolean bootstrap;
+        private final PathNode prev;
+
+        PathNode(int i, int j, boolean snake, boolean bootstrap, PathNode prev) {
+            this.i = i;
+            this.j = j;
+            this.snake = snake;
+            this.bootstrap = bootstrap;
+            this.prev = snake || prev == null ? prev : prev.previousSnake();
+        }
+
+        private PathNode previousSnake() {
+            PathNode current = this;
+            while (!current.bootstrap && !current.snake && current.prev != null) {
+                current = current.prev;
+            }
+            return current.bootstrap ? null : current;
+        }
+    }
+}
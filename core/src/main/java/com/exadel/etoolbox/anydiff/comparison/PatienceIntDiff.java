@@ -0,0 +1,118 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+/**
+ * Implements the patience diff algorithm over sequences of integer line identifiers. In every region, the lines that
+ * occur exactly once on both sides are collected, and the longest sequence of them that goes in the same order on
+ * both sides is used as the anchors. Regions without such lines are diffed with the Myers algorithm
+ */
+class PatienceIntDiff extends AnchoredIntDiff {
+
+    private final int[] origCounts;
+    private final int[] revCounts;
+    private final int[] revPositions;
+
+    /**
+     * Creates a new {@code PatienceIntDiff} instance
+     * @param orig    The original sequence
+     * @param rev     The revised sequence
+     * @param idCount The number of distinct identifiers in both sequences
+     * @param budget  {@link DiffBudget} object that is checked on every step of the algorithm
+     */
+    PatienceIntDiff(int[] orig, int[] rev, int idCount, DiffBudget budget) {
+        super(orig, rev, budget);
+        origCounts = new int[idCount];
+        revCounts = new int[idCount];
+        revPositions = new int[idCount];
+    }
+
+    @Override
+    void splitRegion(int origStart, int origEnd, int revStart, int revEnd) {
+        for (int i = origStart; i < origEnd; i++) {
+            origCounts[orig[i]]++;
+        }
+        for (int j = revStart; j < revEnd; j++) {
+            revCounts[rev[j]]++;
+            revPositions[rev[j]] = j;
+        }
+        int capacity = Math.min(origEnd - origStart, revEnd - revStart);
+        int[] uniqueOrig = new int[capacity];
+        int[] uniqueRev = new int[capacity];
+        int uniqueCount = 0;
+        for (int i = origStart; i < origEnd && uniqueCount < capacity; i++) {
+            int id = orig[i];
+            if (origCounts[id] == 1 && revCounts[id] == 1) {
+                uniqueOrig[uniqueCount] = i;
+                uniqueRev[uniqueCount] = revPositions[id];
+                uniqueCount++;
+            }
+        }
+        for (int i = origStart; i < origEnd; i++) {
+            origCounts[orig[i]] = 0;
+        }
+        for (int j = revStart; j < revEnd; j++) {
+            revCounts[rev[j]] = 0;
+        }
+
+        if (uniqueCount == 0) {
+            addFallback(origStart, origEnd, revStart, revEnd);
+            return;
+        }
+        int[] anchors = getLongestIncreasingSequence(uniqueRev, uniqueCount);
+        int previousOrig = origStart;
+        int previousRev = revStart;
+        for (int anchor : anchors) {
+            addRegion(previousOrig, uniqueOrig[anchor], previousRev, uniqueRev[anchor]);
+            previousOrig = uniqueOrig[anchor] + 1;
+            previousRev = uniqueRev[anchor] + 1;
+        }
+        addRegion(previousOrig, origEnd, previousRev, revEnd);
+    }
+
+    /**
+     * Finds the longest strictly increasing subsequence of the given values with the "patience sorting" approach
+     * @param values The values to process
+     * @param count  The number of values to take into account
+     * @return The ascending indexes of the values that make up the subsequence
+     */
+    static int[] getLongestIncreasingSequence(int[] values, int count) {
+        // Every "pile" stores the index of the value that tops it; every value refers to the top of the previous pile
+        int[] piles = new int[count];
+        int[] predecessors = new int[count];
+        int pileCount = 0;
+        for (int i = 0; i < count; i++) {
+            int low = 0;
+            int high = pileCount;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[piles[middle]] < values[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            piles[low] = i;
+            predecessors[i] = low > 0 ? piles[low - 1] : -1;
+            if (low == pileCount) {
+                pileCount++;
+            }
+        }
+        int[] result = new int[pileCount];
+        for (int i = pileCount - 1, current = piles[pileCount - 1]; i >= 0; i--, current = predecessors[current]) {
+            result[i] = current;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import com.exadel.etoolbox.anydiff.DiffAlgorithm;
+import com.github.difflib.algorithm.Change;
+import com.github.difflib.patch.DeltaType;
+import com.github.difflib.text.DiffRow;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.ObjectUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Compares two files that are too large to be loaded in memory. The files are indexed on disk by {@link LineIndex}, and
+ * the line hashes are compared window by window so that the memory consumption does not depend on the file size.
+ * Changes found in the first half of a window are committed, and the next window starts where the first uncommitted
+ * change begins. Lines that are matched by their hashes are then read back once and compared by text, so that a hash
+ * collision is reported as a change rather than hidden. The changes and the text of the changed lines are kept in
+ * memory up to a limit; past it, the comparison is aborted the same way as when the {@link DiffBudget} is exhausted.
+ * The comparison is also aborted if a file contains a line that is too long to be hashed
+ */
+@Slf4j
+class StreamingDiff implements Closeable {
+
+    static final int DEFAULT_WINDOW_LINES = 20_000;
+    static final int DEFAULT_MAX_CHANGED_LINES = 200_000;
+    static final long DEFAULT_MAX_TEXT_LENGTH = 32L * 1024 * 1024;
+
+    private final LineIndex left;
+    private final LineIndex right;
+    private final boolean ignoreSpaces;
+    private final DiffAlgorithm algorithm;
+    private final int windowLines;
+
+    private int maxChangedLines = DEFAULT_MAX_CHANGED_LINES;
+    private long maxTextLength = DEFAULT_MAX_TEXT_LENGTH;
+
+    private final List<Change> changes = new ArrayList<>();
+    private int leftPosition;
+    private int rightPosition;
+
+    /**
+     * Creates a new {@code StreamingDiff} instance and indexes the files
+     * @param left         Path to the left file. A non-null value is expected
+     * @param right        Path to the right file. A non-null value is expected
+     * @param ignoreSpaces If true, the lines that differ only in the number of spaces between words are considered
+     *                     equal
+     * @param algorithm    {@link DiffAlgorithm} used within a window. If {@code null} or {@code AUTO}, the algorithm is
+     *                     chosen for every window
+     * @param preprocessor A routine that is applied to every line. A non-null value is expected
+     * @param windowLines  The number of lines of either file that are compared at once
+     * @throws IOException if reading the files fails
+     */
+    StreamingDiff(
+            Path left,
+            Path right,
+            boolean ignoreSpaces,
+            DiffAlgorithm algorithm,
+            UnaryOperator<String> preprocessor,
+            int windowLines) throws IOException {
+        this.left = LineIndex.build(left, ignoreSpaces, preprocessor);
+        LineIndex rightIndex;
+        try {
+            rightIndex = LineIndex.build(right, ignoreSpaces, preprocessor);
+        } catch (IOException e) {
+            this.left.close();
+            throw e;
+        }
+        this.right = rightIndex;
+        this.ignoreSpaces = ignoreSpaces;
+        this.algorithm = algorithm;
+        this.windowLines = Math.max(windowLines, 2);
+    }
+
+    /**
+     * Sets the limits of the data kept in memory
+     * @param maxChangedLines The maximal number of changed lines of both files together
+     * @param maxTextLength   The maximal total length of the lines that are read back to render the changes
+     * @return This instance
+     */
+    StreamingDiff withLimits(int maxChangedLines, long maxTextLength) {
+        this.maxChangedLines = maxChangedLines;
+        this.maxTextLength = maxTextLength;
+        return this;
+    }
+
+    /**
+     * Computes the list of {@link DiffRow} objects that render the changes. Unlike in the in-memory comparison, the
+     * list does not contain all the lines of the files: only the changed lines and the nearest unchanged line before
+     * and after every streak of changes are present, which is enough to build the difference blocks
+     * @param budget {@link DiffBudget} object that limits the effort spent on the diff
+     * @return A non-null list of {@code DiffRow} objects
+     * @throws IOException if reading the files or the indexes fails
+     * @throws DiffBudget.ExceededException if the budget or the memory limits are exhausted
+     */
+    List<DiffRow> getDiffRows(DiffBudget budget) throws IOException {
+        return getDiffRows(budget, false);
+    }
+
+    /**
+     * Computes the list of {@link DiffRow} objects that render the changes
+     * @param budget      {@link DiffBudget} object that limits the effort spent on the diff
+     * @param deferInline If true, the inline diff of changed lines is not computed. Every run of changed lines is
+     *                    rendered as a single row as described in
+     *                    {@link DiffRowUtil#getDiffRows(List, List, List, boolean, boolean, DiffBudget)}
+     * @return A non-null list of {@code DiffRow} objects
+     * @throws IOException if reading the files or the indexes fails
+     * @throws DiffBudget.ExceededException if the budget or the memory limits are exhausted
+     */
+    List<DiffRow> getDiffRows(DiffBudget budget, boolean deferInline) throws IOException {
+        String limitViolation = ObjectUtils.firstNonNull(left.getLimitViolation(), right.getLimitViolation());
+        if (limitViolation != null) {
+            throw new DiffBudget.ExceededException(limitViolation);
+        }
+        findChanges(budget);
+        verifyMatches(budget);
+        List<DiffRow> result = new ArrayList<>();
+        long textLength = 0;
+        int previousEnd = -1;
+        for (Change change : changes) {
+            if (previousEnd >= 0 && previousEnd < change.startOriginal) {
+                addEqualRow(previousEnd, result);
+            }
+            if (change.startOriginal > 0 && change.startOriginal - 1 > previousEnd) {
+                addEqualRow(change.startOriginal - 1, result);
+            }
+            List<String> leftLines = left.getLines(change.startOriginal, change.endOriginal);
+            List<String> rightLines = right.getLines(change.startRevised, change.endRevised);
+            textLength += getLength(leftLines) + getLength(rightLines);
+            if (maxTextLength > 0 && textLength > maxTextLength) {
+                throw new DiffBudget.ExceededException("Length of changed text exceeded " + maxTextLength);
+            }
+            Change relativeChange = new Change(change.deltaType, 0, leftLines.size(), 0, rightLines.size());
+            result.addAll(DiffRowUtil.getDiffRows(
+                    leftLines,
+                    rightLines,
+                    Collections.singletonList(relativeChange),
+                    ignoreSpaces,
+                    deferInline,
+                    budget));
+            previousEnd = change.endOriginal;
+        }
+        if (previousEnd >= 0 && previousEnd < left.getLineCount()) {
+            addEqualRow(previousEnd, result);
+        }
+        return result;
+    }
+
+    /**
+     * Creates a coarse summary of one of the files. Used when the detailed comparison is not completed. The changes
+     * found so far are reported together with the range of lines that were not compared
+     * @param reason The reason why the detailed comparison was not completed
+     * @param isLeft True to summarize the left file; false for the right one
+     * @return {@link ContentSummary} instance
+     */
+    ContentSummary getSummary(String reason, boolean isLeft) {
+        LineIndex lineIndex = isLeft ? left : right;
+        List<int[]> ranges = new ArrayList<>();
+        for (Change change : changes) {
+            ranges.add(isLeft
+                    ? new int[] {change.startOriginal, change.endOriginal}
+                    : new int[] {change.startRevised, change.endRevised});
+        }
+        int position = isLeft ? leftPosition : rightPosition;
+        if (position < lineIndex.getLineCount()) {
+            ranges.add(new int[] {position, lineIndex.getLineCount()});
+        }
+        return lineIndex.getSummary(reason, ranges);
+    }
+
+    /* --------------
+       Implementation
+       -------------- */
+
+    private void findChanges(DiffBudget budget) throws IOException {
+        leftPosition = 0;
+        rightPosition = 0;
+        changes.clear();
+        long changedLines = 0;
+        while (leftPosition < left.getLineCount() || rightPosition < right.getLineCount()) {
+            budget.checkTime();
+            int leftLength = Math.min(windowLines, left.getLineCount() - leftPosition);
+            int rightLength = Math.min(windowLines, right.getLineCount() - rightPosition);
+            boolean isLeftEnd = leftPosition + leftLength == left.getLineCount();
+            boolean isRightEnd = rightPosition + rightLength == right.getLineCount();
+
+            List<Change> windowChanges = computeWindowChanges(
+                    left.getHashes(leftPosition, leftLength),
+                    right.getHashes(rightPosition, rightLength),
+                    budget);
+            List<Change> committed = new ArrayList<>();
+            int leftShift = leftLength;
+            int rightShift = rightLength;
+            for (Change change : windowChanges) {
+                // A change that starts late in the window or reaches the end of the window may look different when
+                // more lines are visible. It is left for the next window
+                boolean isDeferred = (!isLeftEnd || !isRightEnd)
+                        && (Math.max(change.startOriginal, change.startRevised) >= windowLines / 2
+                            || (change.endOriginal == leftLength && !isLeftEnd)
+                            || (change.endRevised == rightLength && !isRightEnd));
+                if (isDeferred) {
+                    leftShift = change.startOriginal;
+                    rightShift = change.startRevised;
+                    break;
+                }
+                committed.add(change);
+            }
+            if (leftShift == 0 && rightShift == 0) {
+                // The first change spans the whole window, so there is no point to resynchronize at within the memory
+                // limit. The change is committed as it is
+                Change first = windowChanges.get(0);
+                committed.add(first);
+                leftShift = first.endOriginal;
+                rightShift = first.endRevised;
+            }
+            budget.register(committed);
+            for (Change change : committed) {
+                changes.add(new Change(
+                        change.deltaType,
+                        leftPosition + change.startOriginal,
+                        leftPosition + change.endOriginal,
+                        rightPosition + change.startRevised,
+                        rightPosition + change.endRevised));
+                changedLines += change.endOriginal - change.startOriginal + change.endRevised - change.startRevised;
+            }
+            leftPosition += leftShift;
+            rightPosition += rightShift;
+            checkChangedLines(changedLines);
+        }
+        log.debug("Found {} change(s) in streaming mode", changes.size());
+    }
+
+    private void verifyMatches(DiffBudget budget) throws IOException {
+        // The lines between the changes are matched by their 64-bit hashes. They are read back in batches and compared
+        // by text, and a pair of different lines with equal hashes becomes a change of its own
+        List<Change> verified = new ArrayList<>(changes.size());
+        long changedLines = 0;
+        int leftStart = 0;
+        int rightStart = 0;
+        for (int i = 0; i <= changes.size(); i++) {
+            Change next = i < changes.size() ? changes.get(i) : null;
+            int leftEnd = next != null ? next.startOriginal : left.getLineCount();
+            for (int batchStart = leftStart; batchStart < leftEnd; batchStart += windowLines) {
+                budget.checkTime();
+                int batchEnd = Math.min(batchStart + windowLines, leftEnd);
+                int shift = rightStart - leftStart;
+                List<String> leftLines = left.getLines(batchStart, batchEnd);
+                List<String> rightLines = right.getLines(batchStart + shift, batchEnd + shift);
+                for (int j = 0; j < leftLines.size(); j++) {
+                    if (isEqual(leftLines.get(j), rightLines.get(j))) {
+                        continue;
+                    }
+                    int line = batchStart + j;
+                    log.debug("Lines {} and {} have equal hashes but different text", line, line + shift);
+                    verified.add(new Change(DeltaType.CHANGE, line, line + 1, line + shift, line + shift + 1));
+                    changedLines += 2;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            verified.add(next);
+            changedLines += next.endOriginal - next.startOriginal + next.endRevised - next.startRevised;
+            checkChangedLines(changedLines);
+            leftStart = next.endOriginal;
+            rightStart = next.endRevised;
+        }
+        checkChangedLines(changedLines);
+        changes.clear();
+        changes.addAll(verified);
+    }
+
+    private void checkChangedLines(long value) {
+        if (maxChangedLines > 0 && value > maxChangedLines) {
+            throw new DiffBudget.ExceededException("Number of changed lines exceeded " + maxChangedLines);
+        }
+    }
+
+    private boolean isEqual(String first, String second) {
+        return ignoreSpaces ? EqualityUtil.equalsIgnoreSpaces(first, second) : first.equals(second);
+    }
+
+    private static long getLength(List<String> lines) {
+        long result = 0;
+        for (String line : lines) {
+            result += line.length() + 1;
+        }
+        return result;
+    }
+
+    private List<Change> computeWindowChanges(long[] leftHashes, long[] rightHashes, DiffBudget budget) {
+        HashTable identifiers = new HashTable(leftHashes.length + rightHashes.length);
+        int[] leftIds = identifiers.intern(leftHashes);
+        int leftDistinctCount = identifiers.size();
+        int[] rightIds = identifiers.intern(rightHashes);
+        DiffAlgorithm effectiveAlgorithm = algorithm == null || algorithm == DiffAlgorithm.AUTO
+                ? LineDiffUtil.chooseAlgorithm(leftIds.length + rightIds.length, leftIds.length, leftDistinctCount)
+                : algorithm;
+        List<Change> result = new ArrayList<>(LineDiffUtil.computeChanges(
+                leftIds,
+                rightIds,
+                identifiers.size(),
+                effectiveAlgorithm,
+                budget));
+        result.sort(Comparator.comparingInt(change -> change.startOriginal));
+        return result;
+    }
+
+    private void addEqualRow(int line, List<DiffRow> rows) throws IOException {
+        String value = left.getLines(line, line + 1).get(0);
+        rows.add(new DiffRow(DiffRow.Tag.EQUAL, value, value));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            left.close();
+        } finally {
+            right.close();
+        }
+    }
+}
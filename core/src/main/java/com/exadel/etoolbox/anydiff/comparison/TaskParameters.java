@@ -15,6 +15,8 @@ package com.exadel.etoolbox.anydiff.comparison;
 
 import com.exadel.etoolbox.anydiff.Constants;
 import com.exadel.etoolbox.anydiff.ContentType;
+import com.exadel.etoolbox.anydiff.DiffAlgorithm;
+import com.exadel.etoolbox.anydiff.HashAlgorithm;
 import com.exadel.etoolbox.anydiff.comparison.postprocessor.Postprocessor;
 import com.exadel.etoolbox.anydiff.comparison.preprocessor.Preprocessor;
 import lombok.AccessLevel;
@@ -22,6 +24,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import org.apache.commons.collections4.MapUtils;
 
+import java.nio.file.Path;
 import java.util.Map;
 
 /**
@@ -58,20 +61,48 @@ public class TaskParameters {
 
     private static final int MIN_COLUMN_WIDTH = 10;
 
+    private DiffAlgorithm algorithm;
+
     private Boolean arrangeAttributes;
 
+    private Path cacheDirectory;
+
+    private Long cacheSize;
+
     private Integer columnWidth;
 
     private Boolean handleErrorPages;
 
+    private HashAlgorithm hashAlgorithm;
+
     private Boolean ignoreSpaces;
 
+    private Boolean metadataOnly;
+
     private Boolean normalize;
 
+    private Integer maxBlocks;
+
+    private Integer maxEditDistance;
+
     private Map<ContentType, Preprocessor> preprocessors;
 
     private Map<ContentType, Postprocessor> postprocessors;
 
+    private Long streamingThreshold;
+
+    private Long timeLimit;
+
+    private Boolean useCache;
+
+    /**
+     * Gets the algorithm used to find the differing lines
+     * @return {@link DiffAlgorithm} value
+     */
+    public DiffAlgorithm getAlgorithm() {
+        return algorithm != null ? algorithm : Constants.DEFAULT_DIFF_ALGORITHM;
+    }
+
     /**
      * Gets whether to uniformly arrange tag attributes in markup content (such as an HTML or XML file)
      * @return True or false
@@ -80,6 +111,23 @@ public class TaskParameters {
         return arrangeAttributes != null ? arrangeAttributes : Constants.DEFAULT_ARRANGE_ATTRIBUTES;
     }
 
+    /**
+     * Gets the directory to store the content downloaded from HTTP endpoints in when the cache is used
+     * @return {@code Path} object
+     */
+    public Path getCacheDirectory() {
+        return cacheDirectory != null ? cacheDirectory : Constants.DEFAULT_CACHE_DIRECTORY;
+    }
+
+    /**
+     * Gets the maximal total size in bytes of the content stored in the cache. When the size is exceeded, the least
+     * recently used content is removed
+     * @return Long value
+     */
+    public long getCacheSize() {
+        return cacheSize != null ? cacheSize : Constants.DEFAULT_CACHE_SIZE;
+    }
+
     /**
      * Gets whether to handle HTTP error code pages as "normal" pages with markup. If not, the content of such pages
      * is ignored
@@ -97,6 +145,15 @@ public class TaskParameters {
         return columnWidth != null && columnWidth >= MIN_COLUMN_WIDTH ? columnWidth : Constants.DEFAULT_COLUMN_WIDTH;
     }
 
+    /**
+     * Gets the algorithm used to compute the checksums of files when looking for the files that have been moved or
+     * renamed
+     * @return {@link HashAlgorithm} value
+     */
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm != null ? hashAlgorithm : Constants.DEFAULT_HASH_ALGORITHM;
+    }
+
     /**
      * Gets whether to ignore spaces when comparing content
      * @return True or false
@@ -105,6 +162,34 @@ public class TaskParameters {
         return ignoreSpaces != null ? ignoreSpaces : Constants.DEFAULT_IGNORE_SPACES;
     }
 
+    /**
+     * Gets whether to compare only the metadata of files (such as size, checksum, and modification date) without
+     * extracting their content. This allows quickly listing the changed entries of large archives. Binary files are
+     * not compared byte-wise in this mode
+     * @return True or false
+     */
+    public boolean metadataOnly() {
+        return metadataOnly != null ? metadataOnly : Constants.DEFAULT_METADATA_ONLY;
+    }
+
+    /**
+     * Gets the maximal number of difference blocks a comparison may produce. If the limit is exceeded, a coarse
+     * summary is reported instead of the detailed differences. A non-positive value means no limit
+     * @return Integer value
+     */
+    public int getMaxBlocks() {
+        return maxBlocks != null ? maxBlocks : Constants.DEFAULT_MAX_BLOCKS;
+    }
+
+    /**
+     * Gets the maximal number of inserted and deleted lines a comparison may find. If the limit is exceeded, a coarse
+     * summary is reported instead of the detailed differences. A non-positive value means no limit
+     * @return Integer value
+     */
+    public int getMaxEditDistance() {
+        return maxEditDistance != null ? maxEditDistance : Constants.DEFAULT_MAX_EDIT_DISTANCE;
+    }
+
     /**
      * Gets whether to normalize markup content (such as in a HTML or XML file)
      * @return True or false
@@ -113,6 +198,35 @@ public class TaskParameters {
         return normalize != null ? normalize : Constants.DEFAULT_NORMALIZE;
     }
 
+    /**
+     * Gets the file size in bytes above which plain text files are compared in the streaming mode. In this mode, the
+     * content is not loaded in memory but indexed on disk and compared line by line. Files of other content types,
+     * such as XML or HTML, are always loaded in memory since their processing needs the whole content. The responses
+     * of HTTP endpoints exceeding this size are compared by their metadata. A non-positive value means that the
+     * streaming mode is not used
+     * @return Long value
+     */
+    public long getStreamingThreshold() {
+        return streamingThreshold != null ? streamingThreshold : Constants.DEFAULT_STREAMING_THRESHOLD;
+    }
+
+    /**
+     * Gets the time in milliseconds a comparison of two pieces of content may take. If the limit is exceeded, a coarse
+     * summary is reported instead of the detailed differences. A non-positive value means no limit
+     * @return Long value
+     */
+    public long getTimeLimit() {
+        return timeLimit != null ? timeLimit : Constants.DEFAULT_TIME_LIMIT;
+    }
+
+    /**
+     * Gets whether to store the content downloaded from HTTP endpoints on disk and reuse it in subsequent comparisons
+     * @return True or false
+     */
+    public boolean useCache() {
+        return useCache != null ? useCache : Constants.DEFAULT_USE_CACHE;
+    }
+
     /**
      * Gets the map of preprocessors to be applied to the content before comparison
      * @return {@code Map} instance
@@ -145,13 +259,24 @@ public class TaskParameters {
         }
         return TaskParameters
                 .builder()
+                .algorithm(second.algorithm != null ? second.algorithm : first.algorithm)
                 .arrangeAttributes(second.arrangeAttributes != null ? second.arrangeAttributes : first.arrangeAttributes)
+                .cacheDirectory(second.cacheDirectory != null ? second.cacheDirectory : first.cacheDirectory)
+                .cacheSize(second.cacheSize != null ? second.cacheSize : first.cacheSize)
                 .columnWidth(second.columnWidth != null ? second.columnWidth : first.columnWidth)
                 .handleErrorPages(second.handleErrorPages != null ? second.handleErrorPages : first.handleErrorPages)
+                .hashAlgorithm(second.hashAlgorithm != null ? second.hashAlgorithm : first.hashAlgorithm)
                 .ignoreSpaces(second.ignoreSpaces != null ? second.ignoreSpaces : first.ignoreSpaces)
+                .maxBlocks(second.maxBlocks != null ? second.maxBlocks : first.maxBlocks)
+                .maxEditDistance(second.maxEditDistance != null ? second.maxEditDistance : first.maxEditDistance)
+                .metadataOnly(second.metadataOnly != null ? second.metadataOnly : first.metadataOnly)
                 .normalize(second.normalize != null ? second.normalize : first.normalize)
                 .preprocessors(MapUtils.isNotEmpty(second.preprocessors) ? second.preprocessors : first.preprocessors)
                 .postprocessors(MapUtils.isNotEmpty(second.postprocessors) ? second.postprocessors : first.postprocessors)
+                .streamingThreshold(
+                        second.streamingThreshold != null ? second.streamingThreshold : first.streamingThreshold)
+                .timeLimit(second.timeLimit != null ? second.timeLimit : first.timeLimit)
+                .useCache(second.useCache != null ? second.useCache : first.useCache)
                 .build();
     }
 
@@ -159,13 +284,23 @@ public class TaskParameters {
         if (value == null) {
             return true;
         }
-        return value.arrangeAttributes == null
+        return value.algorithm == null
+                && value.arrangeAttributes == null
+                && value.cacheDirectory == null
+                && value.cacheSize == null
                 && value.columnWidth == null
                 && value.handleErrorPages == null
+                && value.hashAlgorithm == null
                 && value.ignoreSpaces == null
+                && value.maxBlocks == null
+                && value.maxEditDistance == null
+                && value.metadataOnly == null
                 && value.normalize == null
                 && MapUtils.isEmpty(value.preprocessors)
-                && MapUtils.isEmpty(value.postprocessors);
+                && MapUtils.isEmpty(value.postprocessors)
+                && value.streamingThreshold == null
+                && value.timeLimit == null
+                && value.useCache == null;
     }
 
     /* -------------
@@ -19,8 +19,7 @@ import lombok.NoArgsConstructor;
 import org.apache.commons.lang3.CharUtils;
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Contains utility methods for splitting strings into tokens
@@ -28,60 +27,83 @@ import java.util.List;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 class TokenizerUtil {
 
+    private static final byte WHITESPACE = 1;
+    private static final byte WORD = 2;
+    private static final byte ASCII_ALPHANUMERIC = 4;
+
+    private static final byte[] CHARACTER_CLASSES = new byte[Character.MAX_VALUE + 1];
+
+    static {
+        for (int i = 0; i <= Character.MAX_VALUE; i++) {
+            char current = (char) i;
+            byte characterClass = 0;
+            if (Character.isWhitespace(current)) {
+                characterClass |= WHITESPACE;
+            }
+            if (Character.isLetterOrDigit(current)
+                    || current == Constants.DASH_CHAR
+                    || current == Constants.UNDERSCORE_CHAR) {
+                characterClass |= WORD;
+            }
+            if (CharUtils.isAsciiAlphanumeric(current)) {
+                characterClass |= ASCII_ALPHANUMERIC;
+            }
+            CHARACTER_CLASSES[i] = characterClass;
+        }
+    }
+
     /**
-     * Splits the specified string into tokens for a more granular comparison
-     * @param value String to split
-     * @return A non-null list of tokens
+     * Splits the specified character sequence into tokens for a more granular comparison. A new token starts where
+     * a whitespace run begins or ends, where a word begins or ends, and between HTML/XML tags. No strings are created
+     * for the tokens: they are reported as offsets in the original sequence
+     * @param value Character sequence to split. A non-null value is expected
+     * @return A non-null array of token boundaries. The {@code i}-th token spans from {@code bounds[i]} inclusive to
+     * {@code bounds[i + 1]} exclusive; the first element is always {@code 0}, and the last one is the length of the
+     * sequence. A blank sequence makes up a single token
      */
-    static List<String> getTokens(String value) {
+    static int[] getTokenBounds(CharSequence value) {
+        int length = value.length();
         if (StringUtils.isBlank(value)) {
-            // We need a modifiable list here because {@link DiffRowGenerator} manipulates it
-            List<String> singletonList = new ArrayList<>();
-            singletonList.add(StringUtils.defaultString(value));
-            return singletonList;
+            return new int[] {0, length};
         }
-        List<String> split = new ArrayList<>();
-        StringBuilder builder = new StringBuilder().append(value.charAt(0));
-        for (int i = 1; i < value.length(); i++) {
-            if (shouldSplit(value, i)) {
-                split.add(builder.toString());
-                builder = new StringBuilder();
+        int[] bounds = new int[Math.min(length, 16) + 1];
+        int count = 1;
+        char previous = value.charAt(0);
+        byte previousClass = CHARACTER_CLASSES[previous];
+        boolean isPreviousWord = isWord(value, 0, previousClass);
+        for (int i = 1; i < length; i++) {
+            char current = value.charAt(i);
+            byte currentClass = CHARACTER_CLASSES[current];
+            boolean isCurrentWord = isWord(value, i, currentClass);
+            if (((previousClass ^ currentClass) & WHITESPACE) != 0
+                    || current == Constants.TAG_OPEN_CHAR // To split between different HTML/XML tags
+                    || previous == Constants.TAG_CLOSE_CHAR
+                    || isPreviousWord != isCurrentWord) {
+                if (count == bounds.length) {
+                    bounds = Arrays.copyOf(bounds, Math.min(bounds.length * 2, length + 1));
+                }
+                bounds[count++] = i;
             }
-            builder.append(value.charAt(i));
+            previous = current;
+            previousClass = currentClass;
+            isPreviousWord = isCurrentWord;
         }
-        if (StringUtils.isNotEmpty(builder)) {
-            split.add(builder.toString());
+        if (count == bounds.length) {
+            bounds = Arrays.copyOf(bounds, count + 1);
         }
-        return split;
+        bounds[count++] = length;
+        return count == bounds.length ? bounds : Arrays.copyOf(bounds, count);
     }
 
-    private static boolean shouldSplit(String value, int position) {
-        char previous = value.charAt(position - 1);
-        char current = value.charAt(position);
-
-        boolean isPreviousWhitespace = Character.isWhitespace(previous);
-        boolean isCurrentWhitespace = Character.isWhitespace(current);
-        if ((isPreviousWhitespace && !isCurrentWhitespace)
-                || (!isPreviousWhitespace && isCurrentWhitespace)) {
+    private static boolean isWord(CharSequence value, int position, byte characterClass) {
+        if ((characterClass & WORD) != 0) {
             return true;
         }
-        if (current == Constants.TAG_OPEN_CHAR || previous == Constants.TAG_CLOSE_CHAR) {
-            return true; // To split between different HTML/XML tags
-        }
-        return (isLetterOrDigit(value, position - 1) && !isLetterOrDigit(value, position))
-                || (!isLetterOrDigit(value, position - 1) && isLetterOrDigit(value, position));
-    }
-
-    private static boolean isLetterOrDigit(String value, int position) {
-        char current = value.charAt(position);
-        if (Character.isLetterOrDigit(current) || current == Constants.DASH_CHAR || current == Constants.UNDERSCORE_CHAR) {
-            return true;
-        }
-        if (current == Constants.COLON_CHAR) {
-            return position < value.length() - 1
-                    && CharUtils.isAsciiAlphanumeric(value.charAt(position - 1))
-                    && CharUtils.isAsciiAlphanumeric(value.charAt(position + 1));
-        }
-        return false;
+        // A colon is a part of a word when it separates a namespace prefix, as in "jcr:content"
+        return value.charAt(position) == Constants.COLON_CHAR
+                && position > 0
+                && position < value.length() - 1
+                && (CHARACTER_CLASSES[value.charAt(position - 1)] & ASCII_ALPHANUMERIC) != 0
+                && (CHARACTER_CLASSES[value.charAt(position + 1)] & ASCII_ALPHANUMERIC) != 0;
     }
 }
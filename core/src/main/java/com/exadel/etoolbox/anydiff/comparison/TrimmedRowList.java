@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import com.github.difflib.text.DiffRow;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+/**
+ * Represents the complete list of {@link DiffRow} objects for a pair of texts of which only the middle part was
+ * actually diffed. The identical leading and trailing runs of lines are exposed as {@code EQUAL} rows created on
+ * demand, so the row indexes are the same as if the whole texts were diffed
+ */
+class TrimmedRowList extends AbstractList<DiffRow> {
+
+    private final List<String> leftLines;
+    private final int prefixLength;
+    private final List<DiffRow> middleRows;
+    private final int suffixStart;
+
+    /**
+     * Creates a new {@code TrimmedRowList} instance
+     * @param leftLines    The complete list of left-side lines
+     * @param prefixLength The number of leading lines that are the same in both texts
+     * @param middleRows   The rows that were produced by diffing the lines between the common prefix and suffix
+     * @param suffixLength The number of trailing lines that are the same in both texts
+     */
+    TrimmedRowList(List<String> leftLines, int prefixLength, List<DiffRow> middleRows, int suffixLength) {
+        this.leftLines = leftLines;
+        this.prefixLength = prefixLength;
+        this.middleRows = middleRows;
+        this.suffixStart = leftLines.size() - suffixLength;
+    }
+
+    @Override
+    public DiffRow get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        if (index < prefixLength) {
+            return toEqualRow(leftLines.get(index));
+        }
+        int middleIndex = index - prefixLength;
+        if (middleIndex < middleRows.size()) {
+            return middleRows.get(middleIndex);
+        }
+        return toEqualRow(leftLines.get(suffixStart + middleIndex - middleRows.size()));
+    }
+
+    @Override
+    public int size() {
+        return prefixLength + middleRows.size() + leftLines.size() - suffixStart;
+    }
+
+    /**
+     * Gets the number of leading lines that are the same in both lists
+     * @param left      The left-side lines
+     * @param right     The right-side lines
+     * @param equalizer The predicate that tells whether two lines are equal
+     * @return A non-negative integer
+     */
+    static int getCommonPrefixLength(List<String> left, List<String> right, BiPredicate<String, String> equalizer) {
+        int limit = Math.min(left.size(), right.size());
+        int result = 0;
+        while (result < limit && equalizer.test(left.get(result), right.get(result))) {
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of trailing lines that are the same in both lists and do not overlap the common prefix
+     * @param left         The left-side lines
+     * @param right        The right-side lines
+     * @param prefixLength The length of the common prefix
+     * @param equalizer    The predicate that tells whether two lines are equal
+     * @return A non-negative integer
+     */
+    static int getCommonSuffixLength(
+            List<String> left,
+            List<String> right,
+            int prefixLength,
+            BiPredicate<String, String> equalizer) {
+        int limit = Math.min(left.size(), right.size()) - prefixLength;
+        int result = 0;
+        while (result < limit
+                && equalizer.test(left.get(left.size() - 1 - result), right.get(right.size() - 1 - result))) {
+            result++;
+        }
+        return result;
+    }
+
+    private static DiffRow toEqualRow(String line) {
+        // Same as what DiffRowGenerator produces for an unchanged line: the left-side text is shown in both columns
+        String value = StringUtils.defaultString(line);
+        return new DiffRow(DiffRow.Tag.EQUAL, value, value);
+    }
+}
@@ -58,6 +58,15 @@ public abstract class PathHelper {
      */
     public abstract boolean isTag(String value);
 
+    /**
+     * Checks if the path identifiers and tag positions computed by this helper do not depend on the diff markers in
+     * the rows. If so, the rows of changed lines can be inspected before their inline difference is computed
+     * @return True or false
+     */
+    public boolean ignoresMarkers() {
+        return false;
+    }
+
     /* ----------------
        Internal methods
        ---------------- */
@@ -89,6 +89,12 @@ class XmlPathHelper extends PathHelper {
         }
     }
 
+    @Override
+    public boolean ignoresMarkers() {
+        // Tags are recognized, named, and measured with the markers skipped
+        return true;
+    }
+
     private int getSiblingIndex(List<DiffRow> allRows, SidedPosition position, String tagName, int indent) {
         int result = 0;
         SidedPosition precedingPosition = getPrecedingTagPosition(allRows, position);
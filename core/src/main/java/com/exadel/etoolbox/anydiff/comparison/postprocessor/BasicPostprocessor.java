@@ -35,6 +35,12 @@ class BasicPostprocessor extends Postprocessor {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public boolean requiresInlineDiff() {
+        // Only the inserted and deleted rows are modified
+        return false;
+    }
+
     private static DiffRow insertNewlineMarker(DiffRow row) {
         if (row.getTag() == DiffRow.Tag.DELETE && row.getOldLine().equals(Marker.DELETE + Marker.RESET.toString())) {
             return new DiffRow(row.getTag(), Marker.DELETE + Marker.NEW_LINE + Marker.RESET,
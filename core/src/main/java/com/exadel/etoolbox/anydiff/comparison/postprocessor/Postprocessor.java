@@ -45,4 +45,13 @@ public abstract class Postprocessor implements UnaryOperator<List<DiffRow>> {
         }
         return BasicPostprocessor.INSTANCE;
     }
+
+    /**
+     * Gets whether the current postprocessor needs the inline (word-level) markup of the changed rows. If not, the
+     * inline diff can be deferred until the changed lines are inspected or displayed
+     * @return True or false. Default is {@code true}
+     */
+    public boolean requiresInlineDiff() {
+        return true;
+    }
 }
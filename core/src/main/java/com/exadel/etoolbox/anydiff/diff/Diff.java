@@ -40,6 +40,16 @@ public interface Diff extends PrintableEntry, EntryHolder {
      */
     int getPendingCount();
 
+    /**
+     * Gets whether the current {@link Diff} contains differences that have not been "silenced" (accepted) with a
+     * {@link Filter}. Unlike {@link #getPendingCount()}, this method does not need to count every difference and may
+     * therefore skip the inline comparison of changed lines
+     * @return True or false
+     */
+    default boolean isPending() {
+        return getPendingCount() > 0;
+    }
+
     /**
      * Gets the left part of the comparison
      * @return String value
@@ -42,11 +42,20 @@ import java.util.List;
 @Slf4j
 public class FilterFactory implements Closeable {
 
-    private static final ContextFactory CONTEXT_FACTORY = new ContextFactory();
-
     private static final ClassShutter CLASS_SHUTTER = className ->
             StringUtils.startsWith(className, Constants.ROOT_PACKAGE);
 
+    private static final ContextFactory CONTEXT_FACTORY = new ContextFactory() {
+        @Override
+        protected Context makeContext() {
+            Context result = super.makeContext();
+            result.setLanguageVersion(Context.VERSION_ES6);
+            result.setClassShutter(CLASS_SHUTTER);
+            result.getWrapFactory().setJavaPrimitiveWrap(false);
+            return result;
+        }
+    };
+
     /**
      * Gets the list of {@link Filter} instances created from the provided user scripts
      */
@@ -63,9 +72,6 @@ public class FilterFactory implements Closeable {
         filters = new ArrayList<>();
         try {
             this.context = CONTEXT_FACTORY.enterContext();
-            this.context.setLanguageVersion(Context.VERSION_ES6);
-            this.context.setClassShutter(CLASS_SHUTTER);
-            this.context.getWrapFactory().setJavaPrimitiveWrap(false);
             initScope();
         } catch (IllegalStateException e) {
             log.error("Error while initializing scripting context", e);
@@ -87,7 +93,7 @@ public class FilterFactory implements Closeable {
             if (!function.isSkip() && !function.isAccept()) {
                 continue;
             }
-            filters.add(new ScriptedFilter(context, scope, function));
+            filters.add(new ScriptedFilter(CONTEXT_FACTORY, scope, function));
         }
     }
 
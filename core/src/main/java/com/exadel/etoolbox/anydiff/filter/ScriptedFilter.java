@@ -22,13 +22,15 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
 import org.mozilla.javascript.EcmaError;
 import org.mozilla.javascript.EvaluatorException;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 
 /**
- * Implements {@link Filter} by parsing and executing a user-provided JavaScript function
+ * Implements {@link Filter} by parsing and executing a user-provided JavaScript function. Since filters can be invoked
+ * from several comparison threads at once, the calls to the shared script scope are serialized
  */
 @RequiredArgsConstructor
 @Slf4j
@@ -37,7 +39,7 @@ class ScriptedFilter implements Filter {
     private static final String PROPERTY_VALUE = "value";
     private static final String SELF_EXECUTING_FUNCTION = "(%s)(value);";
 
-    private final Context context;
+    private final ContextFactory contextFactory;
     private final Scriptable scope;
     private final FunctionDefinition function;
 
@@ -112,6 +114,12 @@ class ScriptedFilter implements Filter {
     }
 
     private boolean execute(Object value) {
+        synchronized (scope) {
+            return contextFactory.call(context -> execute(context, value));
+        }
+    }
+
+    private boolean execute(Context context, Object value) {
         Scriptable scriptable = new ScriptableWrapper(value, scope);
         ScriptableObject.putProperty(scope, PROPERTY_VALUE, scriptable);
         try {
@@ -129,5 +137,4 @@ class ScriptedFilter implements Filter {
         }
         return false;
     }
-
 }
@@ -19,24 +19,25 @@ import com.exadel.etoolbox.anydiff.diff.Diff;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import static com.exadel.etoolbox.anydiff.Constants.SLASH;
 
 /**
- * Extends {@link DiffRunner} to implement extracting data from archive files
+ * Extends {@link DiffRunner} to implement extracting data from archive files. Archives embedded in the compared
+ * archives (such as packages or bundles inside a content package) are compared recursively without being extracted
+ * to disk
  */
 @RequiredArgsConstructor
 @Slf4j
@@ -47,108 +48,249 @@ class ArchiveRunner extends DiffRunner {
 
     @Override
     public List<Diff> runInternal() {
-        List<Diff> result = new ArrayList<>();
-
+        if (FileIdentityHelper.isIdentical(left, right)) {
+            log.debug("Archives {} and {} are identical", left, right);
+            return Collections.singletonList(reportUnchanged(
+                    left.toAbsolutePath().toString(),
+                    right.toAbsolutePath().toString()));
+        }
         log.debug("Reading archive {}", left);
         log.debug("Reading archive {}", right);
-        try (ZipFile leftZip = new ZipFile(left.toFile()); ZipFile rightZip = new ZipFile(right.toFile())) {
-            List<String> leftPaths = getEntryPaths(leftZip);
-            log.debug("Retrieved {} entries from archive {}", leftPaths.size(), left);
-            List<String> rightPaths = getEntryPaths(rightZip);
-            log.debug("Retrieved {} entries from archive {}", rightPaths.size(), right);
-
-            MissingEntriesHelper missingHelper = new MissingEntriesHelper(
-                    leftPaths,
-                    rightPaths,
-                    path -> leftZip.getEntry(path).getCrc(),
-                    path -> rightZip.getEntry(path).getCrc());
-
-            for (String leftPath : leftPaths) {
-                String completeLeftPath = left + SLASH + leftPath;
-                String completeRightPath = right + SLASH + leftPath;
-                ContentType contentType = getTypeOrDefault(completeLeftPath, getContentType());
-
-                if (missingHelper.isMissingRight(leftPath)) {
-                    Diff miss = reportRightMissing(completeLeftPath, completeRightPath);
-                    result.add(miss);
-                    continue;
-                }
-                String movedPath = missingHelper.getMoved(leftPath);
-                if (movedPath != null) {
-                    Diff moved = reportMoved(completeLeftPath, new FileMoveInfo(right + SLASH + movedPath));
-                    result.add(moved);
-                    continue;
-                }
-
-                Object leftContent = contentType != ContentType.UNDEFINED
-                        ? getContent(leftZip, leftPath)
-                        : getMetadata(leftZip, leftPath);
-                Object rightContent = contentType != ContentType.UNDEFINED
-                        ? getContent(rightZip, leftPath)
-                        : getMetadata(rightZip, leftPath);
-                DiffTask task = DiffTask
-                        .builder()
-                        .contentType(contentType)
-                        .leftId(completeLeftPath)
-                        .leftLabel(getLeftLabel())
-                        .leftContent(leftContent)
-                        .rightId(completeRightPath)
-                        .rightLabel(getRightLabel())
-                        .rightContent(rightContent)
-                        .taskParameters(getTaskParameters())
-                        .filter(getEntryFilter())
-                        .build();
-                Diff diff = task.run();
-                result.add(diff);
-            }
-            for (String rightPath : rightPaths) {
-                if (missingHelper.isMissingLeft(rightPath)) {
-                    String completeLeftPath = left + SLASH + rightPath;
-                    String completeRightPath = right + SLASH + rightPath;
-                    Diff miss = reportRightMissing(completeLeftPath, completeRightPath);
-                    result.add(miss);
-                }
-            }
+        try (ZipFilePool leftPool = new ZipFilePool(left); ZipFilePool rightPool = new ZipFilePool(right)) {
+            return compare(leftPool, left.toString(), rightPool, right.toString());
         } catch (IOException e) {
             log.error("Error reading archive", e);
         }
-        return result;
+        return Collections.emptyList();
     }
 
-    private static List<String> getEntryPaths(ZipFile file) {
-        List<String> result = new ArrayList<>();
-        Enumeration<? extends ZipEntry> entries = file.entries();
-        for (ZipEntry entry : Collections.list(entries)) {
-            if (!entry.isDirectory()) {
-                result.add(entry.getName());
+    private List<Diff> compare(
+            ArchiveSource leftSource,
+            String leftRoot,
+            ArchiveSource rightSource,
+            String rightRoot) throws IOException {
+
+        Map<String, ZipEntry> leftEntries = leftSource.getEntries();
+        log.debug("Retrieved {} entries from archive {}", leftEntries.size(), leftRoot);
+        Map<String, ZipEntry> rightEntries = rightSource.getEntries();
+        log.debug("Retrieved {} entries from archive {}", rightEntries.size(), rightRoot);
+
+        MissingEntriesHelper missingHelper = new MissingEntriesHelper(
+                new ArrayList<>(leftEntries.keySet()),
+                new ArrayList<>(rightEntries.keySet()),
+                path -> leftEntries.get(path).getCrc(),
+                path -> rightEntries.get(path).getCrc(),
+                getExecutor());
+        boolean canVerify = leftSource.isRandomAccess() && rightSource.isRandomAccess();
+        List<Workload> workloads = new ArrayList<>();
+        List<String> prefetched = new ArrayList<>();
+        int identicalCount = 0;
+        int changedCount = 0;
+
+        for (Map.Entry<String, ZipEntry> entry : leftEntries.entrySet()) {
+            String leftPath = entry.getKey();
+            String completeLeftPath = leftRoot + SLASH + leftPath;
+            String completeRightPath = rightRoot + SLASH + leftPath;
+
+            if (missingHelper.isMissingRight(leftPath)) {
+                workloads.add(Workload.lightweight(() -> Collections.singletonList(
+                        reportRightMissing(completeLeftPath, completeRightPath))));
+                continue;
+            }
+            String movedPath = missingHelper.getMoved(leftPath);
+            if (movedPath != null) {
+                workloads.add(Workload.lightweight(() -> Collections.singletonList(
+                        reportMoved(completeLeftPath, new FileMoveInfo(rightRoot + SLASH + movedPath)))));
+                continue;
+            }
+            ZipEntry leftEntry = entry.getValue();
+            ZipEntry rightEntry = rightEntries.get(leftPath);
+            EntryState state = triage(leftEntry, rightEntry);
+            if (state == EntryState.IDENTICAL || (state == EntryState.PROBABLY_IDENTICAL && !canVerify)) {
+                identicalCount++;
+                workloads.add(Workload.lightweight(() -> Collections.singletonList(
+                        reportUnchanged(completeLeftPath, completeRightPath))));
+                continue;
+            }
+            changedCount++;
+            if (state == EntryState.CHANGED && needsContent(leftPath)) {
+                prefetched.add(leftPath);
+            }
+            workloads.add(new Workload(
+                    Math.max(leftEntry.getSize(), rightEntry.getSize()),
+                    () -> compare(leftSource, leftRoot, leftEntry, rightSource, rightRoot, rightEntry, state)));
+        }
+        for (String rightPath : rightEntries.keySet()) {
+            if (missingHelper.isMissingLeft(rightPath)) {
+                String completeLeftPath = leftRoot + SLASH + rightPath;
+                String completeRightPath = rightRoot + SLASH + rightPath;
+                workloads.add(Workload.lightweight(() -> Collections.singletonList(
+                        reportLeftMissing(completeLeftPath, completeRightPath))));
             }
         }
-        return result;
+        log.info(
+                "{} entries of {} and {} are identical by size and checksum, {} are subject to comparison",
+                identicalCount,
+                leftRoot,
+                rightRoot,
+                changedCount);
+        leftSource.prefetch(prefetched);
+        rightSource.prefetch(prefetched);
+        long overBudgetCount = prefetched
+                .stream()
+                .filter(path -> !leftSource.isAvailable(path) || !rightSource.isAvailable(path))
+                .count();
+        if (overBudgetCount > 0) {
+            log.warn(
+                    "{} entries of {} and {} exceed the memory budget and are compared by metadata",
+                    overBudgetCount,
+                    leftRoot,
+                    rightRoot);
+        }
+        return ExecutionHelper.run(getExecutor(), workloads);
     }
 
-    private static ContentType getTypeOrDefault(String path, ContentType defaultType) {
-        String name = Paths.get(path).getFileName().toString();
-        ContentType result = ContentType.fromFileName(name);
-        return result != ContentType.UNDEFINED ? result : defaultType;
+    private List<Diff> compare(
+            ArchiveSource leftSource,
+            String leftRoot,
+            ZipEntry leftEntry,
+            ArchiveSource rightSource,
+            String rightRoot,
+            ZipEntry rightEntry,
+            EntryState state) {
+
+        String path = leftEntry.getName();
+        String completeLeftPath = leftRoot + SLASH + path;
+        String completeRightPath = rightRoot + SLASH + path;
+        if (state == EntryState.PROBABLY_IDENTICAL && isIdentical(leftSource, rightSource, path)) {
+            return Collections.singletonList(reportUnchanged(completeLeftPath, completeRightPath));
+        }
+        if (isArchive(path) && !getTaskParameters().metadataOnly()) {
+            // The nested archives are opened lazily by the workloads. Streams of an entry that is kept in memory are
+            // cheap to reopen; otherwise the enclosing archive is read through once more
+            try (
+                    StreamedArchiveSource nestedLeft = new StreamedArchiveSource(
+                            () -> leftSource.openEntry(path),
+                            getMemoryBudget());
+                    StreamedArchiveSource nestedRight = new StreamedArchiveSource(
+                            () -> rightSource.openEntry(path),
+                            getMemoryBudget())) {
+                return compare(nestedLeft, completeLeftPath, nestedRight, completeRightPath);
+            } catch (IOException e) {
+                log.error("Error reading nested archive {}", completeLeftPath, e);
+            }
+        }
+        ContentType contentType = getTypeOrDefault(completeLeftPath, getContentType());
+        boolean overBudget = contentType != ContentType.UNDEFINED
+                && !getTaskParameters().metadataOnly()
+                && (!leftSource.isAvailable(path) || !rightSource.isAvailable(path));
+        boolean useMetadata = contentType == ContentType.UNDEFINED || getTaskParameters().metadataOnly() || overBudget;
+        // Zip handles are returned to the pools before the comparison starts so that other threads can inflate
+        // entries while this one is busy diffing
+        Object leftContent = useMetadata
+                ? getMetadata(leftEntry, overBudget)
+                : getContent(leftSource, leftRoot, path);
+        Object rightContent = useMetadata
+                ? getMetadata(rightEntry, overBudget)
+                : getContent(rightSource, rightRoot, path);
+        // Metadata is compared as plain properties so that markup processors do not treat it as the entry's content
+        DiffTask task = DiffTask
+                .builder()
+                .contentType(useMetadata ? ContentType.UNDEFINED : contentType)
+                .leftId(completeLeftPath)
+                .leftLabel(getLeftLabel())
+                .leftContent(leftContent)
+                .rightId(completeRightPath)
+                .rightLabel(getRightLabel())
+                .rightContent(rightContent)
+                .taskParameters(getTaskParameters())
+                .filter(getEntryFilter())
+                .build();
+        return Collections.singletonList(task.run());
     }
 
-    private static String getContent(ZipFile file, String path) {
-        try (InputStream input = file.getInputStream(file.getEntry(path))) {
-            return IOUtils.toString(input, StandardCharsets.UTF_8);
+    private boolean needsContent(String path) {
+        if (getTaskParameters().metadataOnly()) {
+            return false;
+        }
+        return isArchive(path) || getTypeOrDefault(path, getContentType()) != ContentType.UNDEFINED;
+    }
+
+    /* ------
+       Triage
+       ------ */
+
+    /**
+     * Classifies a pair of entries sharing the same path using only the metadata stored in the central directories of
+     * the archives. Entries that differ in size or checksum are surely changed. Compressed entries with matching size
+     * and checksum are considered identical. Stored (uncompressed) entries with matching size and checksum are
+     * cheap to verify byte by byte, so they are marked for the verification
+     * @param left  {@link ZipEntry} from the left archive
+     * @param right {@link ZipEntry} from the right archive
+     * @return {@link EntryState} value
+     */
+    static EntryState triage(ZipEntry left, ZipEntry right) {
+        if (left.getSize() != right.getSize()
+                || left.getCrc() != right.getCrc()
+                || left.getSize() < 0
+                || left.getCrc() < 0) {
+            return EntryState.CHANGED;
+        }
+        if (left.getMethod() == ZipEntry.STORED && right.getMethod() == ZipEntry.STORED) {
+            return EntryState.PROBABLY_IDENTICAL;
+        }
+        return EntryState.IDENTICAL;
+    }
+
+    private static boolean isIdentical(ArchiveSource leftSource, ArchiveSource rightSource, String path) {
+        try (InputStream leftInput = leftSource.openEntry(path); InputStream rightInput = rightSource.openEntry(path)) {
+            return IOUtils.contentEquals(leftInput, rightInput);
         } catch (IOException e) {
-            log.error("Error reading file {} from archive {}", path, file.getName(), e);
+            log.error("Error reading file {} from archives", path, e);
+        }
+        return false;
+    }
+
+    /**
+     * Represents the result of comparing two archive entries by their metadata
+     */
+    enum EntryState {
+        IDENTICAL, PROBABLY_IDENTICAL, CHANGED
+    }
+
+    /* ---------------
+       Utility methods
+       --------------- */
+
+    private static String getContent(ArchiveSource source, String root, String path) {
+        try {
+            return source.getContent(path);
+        } catch (IOException e) {
+            log.error("Error reading file {} from archive {}", path, root, e);
         }
         return null;
     }
 
-    private static FileMetadata getMetadata(ZipFile file, String path) {
-        ZipEntry entry = file.getEntry(path);
+    private static FileMetadata getMetadata(ZipEntry entry, boolean overBudget) {
         return FileMetadata
                 .builder()
-                .path(path)
+                .path(entry.getName())
+                .overBudget(overBudget)
                 .crc(entry.getCrc())
                 .size(entry.getSize())
-                .lastModified(new Date(entry.getLastModifiedTime().toMillis()))
+                .lastModified(entry.getLastModifiedTime() != null
+                        ? new Date(entry.getLastModifiedTime().toMillis())
+                        : null)
                 .build();
     }
+
+    private static ContentType getTypeOrDefault(String path, ContentType defaultType) {
+        String name = Paths.get(path).getFileName().toString();
+        ContentType result = ContentType.fromFileName(name);
+        return result != ContentType.UNDEFINED ? result : defaultType;
+    }
+
+    private static boolean isArchive(String path) {
+        return StringUtils.endsWithAny(path.toLowerCase(), ".zip", ".jar");
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+
+/**
+ * Represents an archive which entries are compared by {@link ArchiveRunner}. The archive can be either a file on disk
+ * or an entry of another archive
+ */
+interface ArchiveSource {
+
+    /**
+     * Retrieves the non-directory entries of the archive
+     * @return A non-null {@code Map} of entry paths to {@link ZipEntry} objects. The order of entries follows that of
+     * the archive
+     * @throws IOException If the archive cannot be read
+     */
+    Map<String, ZipEntry> getEntries() throws IOException;
+
+    /**
+     * Opens the content of the given entry for reading. The caller is responsible for closing the stream
+     * @param path Path to the entry within the archive
+     * @return {@link InputStream} object
+     * @throws IOException If the entry cannot be read
+     */
+    InputStream openEntry(String path) throws IOException;
+
+    /**
+     * Retrieves the textual content of the given entry
+     * @param path Path to the entry within the archive
+     * @return A string value
+     * @throws IOException If the entry cannot be read
+     */
+    default String getContent(String path) throws IOException {
+        try (InputStream input = openEntry(path)) {
+            return IOUtils.toString(input, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Called before the entries are compared to let the archive prepare the content of the entries that are going to
+     * be read
+     * @param paths Paths to the entries within the archive
+     * @throws IOException If the archive cannot be read
+     */
+    default void prefetch(Collection<String> paths) throws IOException {
+        // No operation by default
+    }
+
+    /**
+     * Gets whether the content of the given entry can be read without exceeding the memory limits of the archive
+     * @param path Path to the entry within the archive
+     * @return True or false
+     */
+    default boolean isAvailable(String path) {
+        return true;
+    }
+
+    /**
+     * Gets whether any entry of the archive can be read at a low cost, without having to read through the preceding
+     * entries
+     * @return True or false
+     */
+    default boolean isRandomAccess() {
+        return false;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import com.exadel.etoolbox.anydiff.HashAlgorithm;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Implements the {@link HashAlgorithm} values that can be used by {@link FileHasher} to compute file checksums
+ */
+@Slf4j
+enum ChecksumAlgorithm {
+
+    /**
+     * The CRC-32 algorithm that is used in ZIP archives. Values produced with this algorithm can be compared to the
+     * CRCs stored in an archive's directory
+     */
+    CRC32(0xEDB88320L) {
+        @Override
+        Checksum newChecksum() {
+            return new CRC32();
+        }
+    },
+
+    /**
+     * The CRC-32C (Castagnoli) algorithm. A hardware-accelerated implementation is used when available in the current
+     * Java runtime
+     */
+    CRC32C(0x82F63B78L) {
+        @Override
+        Checksum newChecksum() {
+            if (NATIVE_CRC32C != null) {
+                try {
+                    return (Checksum) NATIVE_CRC32C.getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException e) {
+                    log.debug("Could not create a native CRC32C checksum", e);
+                }
+            }
+            return new Crc32cChecksum();
+        }
+    },
+
+    /**
+     * The 64-bit xxHash algorithm. It is a fast non-cryptographic hash with a low probability of collisions. Values
+     * cannot be combined, so a file is always hashed as a whole
+     */
+    XXHASH64 {
+        @Override
+        Checksum newChecksum() {
+            return new Xxh64Checksum();
+        }
+
+        @Override
+        boolean isCombinable() {
+            return false;
+        }
+    };
+
+    private static final Class<?> NATIVE_CRC32C = getNativeCrc32c();
+
+    private final long polynomial;
+
+    ChecksumAlgorithm() {
+        this(0L);
+    }
+
+    ChecksumAlgorithm(long polynomial) {
+        this.polynomial = polynomial;
+    }
+
+    /**
+     * Gets the implementation of the given {@link HashAlgorithm}
+     * @param value {@code HashAlgorithm} value. If {@code null}, the CRC-32 implementation is returned
+     * @return {@code ChecksumAlgorithm} value
+     */
+    static ChecksumAlgorithm from(HashAlgorithm value) {
+        if (value == HashAlgorithm.CRC32C) {
+            return CRC32C;
+        }
+        if (value == HashAlgorithm.XXHASH64) {
+            return XXHASH64;
+        }
+        return CRC32;
+    }
+
+    /**
+     * Creates a new {@link Checksum} object implementing the current algorithm
+     * @return {@code Checksum} instance
+     */
+    abstract Checksum newChecksum();
+
+    /**
+     * Gets whether values computed for consecutive segments of data can be combined into the value for the whole data
+     * @return True or false
+     */
+    boolean isCombinable() {
+        return true;
+    }
+
+    /**
+     * Computes the checksum of two consecutive segments of data from the checksums of the segments. This is only
+     * possible for the algorithms that are {@link #isCombinable() combinable}
+     * @param first        The checksum of the first segment
+     * @param second       The checksum of the second segment
+     * @param secondLength The length of the second segment in bytes
+     * @return A {@code long} value representing the checksum of the whole data
+     */
+    long combine(long first, long second, long secondLength) {
+        if (!isCombinable()) {
+            throw new UnsupportedOperationException("Cannot combine values computed with " + name());
+        }
+        if (secondLength <= 0) {
+            return first;
+        }
+        // This is the method used in zlib's crc32_combine(): appending zero bits to the first value is performed by
+        // multiplying it by an operator matrix over GF(2). Operators for 2^n zero bits are derived by squaring
+        long[] even = new long[32];
+        long[] odd = new long[32];
+        odd[0] = polynomial;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        square(even, odd);
+        square(odd, even);
+        long result = first;
+        long length = secondLength;
+        do {
+            square(even, odd);
+            if ((length & 1) != 0) {
+                result = multiply(even, result);
+            }
+            length >>= 1;
+            if (length == 0) {
+                break;
+            }
+            square(odd, even);
+            if ((length & 1) != 0) {
+                result = multiply(odd, result);
+            }
+            length >>= 1;
+        } while (length != 0);
+        return result ^ second;
+    }
+
+    private static long multiply(long[] matrix, long vector) {
+        long result = 0;
+        int index = 0;
+        long remainder = vector;
+        while (remainder != 0) {
+            if ((remainder & 1) != 0) {
+                result ^= matrix[index];
+            }
+            remainder >>>= 1;
+            index++;
+        }
+        return result;
+    }
+
+    private static void square(long[] target, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            target[n] = multiply(matrix, matrix[n]);
+        }
+    }
+
+    private static Class<?> getNativeCrc32c() {
+        try {
+            return Class.forName("java.util.zip.CRC32C");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+}
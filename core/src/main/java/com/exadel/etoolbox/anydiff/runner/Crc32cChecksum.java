@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import java.util.zip.Checksum;
+
+/**
+ * Implements the CRC-32C (Castagnoli) checksum for Java runtimes that do not provide {@code java.util.zip.CRC32C}
+ */
+class Crc32cChecksum implements Checksum {
+
+    private static final int[] TABLE = createTable();
+
+    private int crc = 0xFFFFFFFF;
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xFF];
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        int value = crc;
+        for (int i = off; i < off + len; i++) {
+            value = (value >>> 8) ^ TABLE[(value ^ b[i]) & 0xFF];
+        }
+        crc = value;
+    }
+
+    @Override
+    public long getValue() {
+        return (~crc) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+
+    private static int[] createTable() {
+        int[] result = new int[256];
+        for (int n = 0; n < 256; n++) {
+            int value = n;
+            for (int k = 0; k < 8; k++) {
+                value = (value & 1) != 0 ? (value >>> 1) ^ 0x82F63B78 : value >>> 1;
+            }
+            result[n] = value;
+        }
+        return result;
+    }
+}
@@ -34,6 +34,12 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -71,6 +77,40 @@ public abstract class DiffRunner {
     @Getter(value = AccessLevel.PACKAGE)
     private TaskParameters taskParameters = TaskParameters.DEFAULT;
 
+    private int threads;
+
+    /**
+     * Gets the thread pool that is shared by the current runner and the nested runners. When {@code null}, the
+     * comparison is performed sequentially on the calling thread
+     */
+    @Getter(value = AccessLevel.PACKAGE)
+    private ForkJoinPool executor;
+
+    private Consumer<Diff> listener;
+
+    /**
+     * Gets the counter of identical pairs of files that is shared by the current runner and the nested runners
+     */
+    @Getter(value = AccessLevel.PACKAGE)
+    private AtomicInteger identicalCounter = new AtomicInteger();
+
+    /**
+     * Gets the memory budget for the content of archive entries that is shared by the current runner and the nested
+     * runners
+     */
+    @Getter(value = AccessLevel.PACKAGE)
+    private MemoryBudget memoryBudget = new MemoryBudget();
+
+    /**
+     * Gets the statistics of HTTP downloads per host that are shared by the current runner and the nested runners
+     */
+    @Getter(value = AccessLevel.PACKAGE)
+    private Map<String, HttpFetchScheduler.Statistics> fetchStatistics = new ConcurrentHashMap<>();
+
+    private volatile boolean reported;
+
+    private boolean nested;
+
     /* ----------
        Properties
        ---------- */
@@ -83,6 +123,27 @@ public abstract class DiffRunner {
         return contentType != null ? contentType : ContentType.UNDEFINED;
     }
 
+    /**
+     * Gets the number of pairs of files or archive entries that were found identical before their content was read and
+     * therefore were not compared in detail. The pairs found by the nested runners, such as the ones comparing the
+     * files of a directory, are included
+     * @return Integer value
+     */
+    public int getIdenticalCount() {
+        return identicalCounter.get();
+    }
+
+    /**
+     * Gets the summaries of HTTP downloads performed by the current runner and the nested runners, one per host. A
+     * summary contains the number of requests and failures, the throughput and the latency of the downloads
+     * @return A non-null {@code Map} of host names to summaries. Can be empty
+     */
+    public Map<String, String> getHostStatistics() {
+        Map<String, String> result = new TreeMap<>();
+        fetchStatistics.forEach((host, statistics) -> result.put(host, statistics.toString()));
+        return Collections.unmodifiableMap(result);
+    }
+
     /**
      * Gets the label for the left side of the comparison
      * @return A non-blank {@code String} value
@@ -143,6 +204,75 @@ public abstract class DiffRunner {
         return this;
     }
 
+    /**
+     * Assigns the number of threads used to run the comparison. If the value is greater than 1, the comparison
+     * routines for separate entries (e.g., files in a directory) are run concurrently in a work-stealing thread pool.
+     * Otherwise, the comparison is performed on the calling thread
+     * @param value An integer value
+     * @return Current instance
+     */
+    public DiffRunner withThreads(int value) {
+        this.threads = value;
+        return this;
+    }
+
+    /**
+     * Assigns the thread pool that is shared by the current runner and the nested runners
+     * @param value {@link ForkJoinPool} object. Can be {@code null}
+     * @return Current instance
+     */
+    DiffRunner withExecutor(ForkJoinPool value) {
+        this.executor = value;
+        return this;
+    }
+
+    /**
+     * Assigns the counter of identical pairs of files that is shared by the current runner and the nested runners
+     * @param value {@link AtomicInteger} object. A non-null value is expected
+     * @return Current instance
+     */
+    DiffRunner withIdenticalCounter(AtomicInteger value) {
+        this.identicalCounter = value;
+        return this;
+    }
+
+    /**
+     * Assigns the memory budget for the content of archive entries that is shared by the current runner and the
+     * nested runners
+     * @param value {@link MemoryBudget} object. A non-null value is expected
+     * @return Current instance
+     */
+    DiffRunner withMemoryBudget(MemoryBudget value) {
+        this.memoryBudget = value;
+        return this;
+    }
+
+    /**
+     * Assigns the statistics of HTTP downloads that are shared by the current runner and the nested runners. The
+     * runner that receives the statistics is considered nested in another one
+     * @param value A {@code Map} of host names to {@link HttpFetchScheduler.Statistics} objects. A non-null value is
+     *              expected
+     * @return Current instance
+     */
+    DiffRunner withFetchStatistics(Map<String, HttpFetchScheduler.Statistics> value) {
+        this.fetchStatistics = value;
+        this.nested = true;
+        return this;
+    }
+
+    /**
+     * Assigns a routine that receives the differences as soon as they are found. When the entries are compared
+     * concurrently, the routine is called in the order in which the comparisons complete, which is not necessarily
+     * the order of the list returned by {@link #run()}. The routine is called for the differences that pass the
+     * assigned filters
+     * @param value {@code Consumer} object. Can be {@code null}
+     * @return Current instance
+     */
+    public DiffRunner withListener(Consumer<Diff> value) {
+        this.listener = value;
+        return this;
+    }
+
     /* ---------
        Execution
        --------- */
@@ -153,7 +283,60 @@ public abstract class DiffRunner {
      * @return A non-null list of {@link Diff} objects. Can be empty
      */
     public List<Diff> run() {
-        return runInternal().stream().filter(diffFilter != null ? diffFilter : e -> true).collect(Collectors.toList());
+        reported = false;
+        if (!nested) {
+            HttpFetchScheduler.getInstance().onRunStarted();
+        }
+        List<Diff> result;
+        try {
+            result = runParallel();
+        } finally {
+            if (!nested) {
+                HttpFetchScheduler.getInstance().onRunCompleted();
+                HttpCache.resetValidation();
+            }
+        }
+        if (listener != null && !reported) {
+            result.forEach(listener);
+        }
+        return result;
+    }
+
+    private List<Diff> runParallel() {
+        if (executor != null || threads < 2) {
+            return runFiltered();
+        }
+        executor = new ForkJoinPool(threads);
+        try {
+            return runFiltered();
+        } finally {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    private List<Diff> runFiltered() {
+        return runInternal().stream().filter(getDiffFilter()).collect(Collectors.toList());
+    }
+
+    /**
+     * Passes the differences produced by a completed unit of work to the assigned listener, if any. Once this method
+     * is called, the listener is not invoked again for the whole result of {@link #run()}. Can be called from
+     * different threads
+     * @param value A list of {@link Diff} objects. A non-null value is expected
+     */
+    void report(List<Diff> value) {
+        if (listener == null) {
+            return;
+        }
+        reported = true;
+        synchronized (listener) {
+            value.stream().filter(getDiffFilter()).forEach(listener);
+        }
+    }
+
+    private Predicate<Diff> getDiffFilter() {
+        return diffFilter != null ? diffFilter : diff -> true;
     }
 
     /**
@@ -162,6 +345,26 @@ public abstract class DiffRunner {
      */
     abstract List<Diff> runInternal();
 
+    /**
+     * Shortcuts the comparison for the case when the left and right parts of the comparison are known to be identical.
+     * No content is extracted or compared. The case is counted in {@link #getIdenticalCount()}
+     * @param left  An identifier of the left side of the comparison
+     * @param right An identifier of the right side of the comparison
+     * @return A {@link Diff} object representing the result of the comparison
+     */
+    Diff reportUnchanged(String left, String right) {
+        identicalCounter.incrementAndGet();
+        return DiffTask
+                .builder()
+                .leftId(left)
+                .leftLabel(getLeftLabel())
+                .rightId(right)
+                .rightLabel(getRightLabel())
+                .taskParameters(getTaskParameters())
+                .build()
+                .run();
+    }
+
     /**
      * Shortcuts the comparison for the case when the left part of the comparison is missing
      * @param left  An identifier of the left side of the comparison
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Stream;
 
@@ -42,49 +43,69 @@ class DirectoryRunner extends DiffRunner {
         List<String> rightPaths = getRelativePaths(right);
         log.debug("Retrieved {} entries from directory {}", rightPaths.size(), right);
 
+        FileHasher hasher = FileHasher
+                .builder()
+                .algorithm(getTaskParameters().getHashAlgorithm())
+                .pool(getExecutor())
+                .build();
         MissingEntriesHelper missingHelper = new MissingEntriesHelper(
                 leftPaths,
                 rightPaths,
-                path -> FileMetadata.computeCrc(left.resolve(path)),
-                path -> FileMetadata.computeCrc(right.resolve(path)));
-        List<Diff> result = new ArrayList<>();
+                path -> hasher.hash(left.resolve(path)),
+                path -> hasher.hash(right.resolve(path)),
+                getExecutor());
+        List<Workload> workloads = new ArrayList<>();
 
         for (String leftPath : leftPaths) {
             if (missingHelper.isMissingRight(leftPath)) {
-                Diff miss = reportRightMissing(
+                workloads.add(Workload.lightweight(() -> Collections.singletonList(reportRightMissing(
                         left.resolve(leftPath).toAbsolutePath().toString(),
-                        right.resolve(leftPath).toAbsolutePath().toString());
-                result.add(miss);
+                        right.resolve(leftPath).toAbsolutePath().toString()))));
                 continue;
             }
             String movedPath = missingHelper.getMoved(leftPath);
             if (movedPath != null) {
-                Diff moved = reportMoved(
+                workloads.add(Workload.lightweight(() -> Collections.singletonList(reportMoved(
                         left.resolve(leftPath).toAbsolutePath().toString(),
-                        new FileMoveInfo(right.resolve(movedPath).toAbsolutePath().toString()));
-                result.add(moved);
+                        new FileMoveInfo(right.resolve(movedPath).toAbsolutePath().toString())))));
                 continue;
             }
-            DiffRunner diffRunner = forValues(
-                            left.resolve(leftPath),
-                            getLeftLabel(),
-                            right.resolve(leftPath),
-                            getRightLabel())
-                    .withContentType(getContentType())
-                    .withEntryFilter(getEntryFilter())
-                    .withTaskParameters(getTaskParameters());
-            result.addAll(diffRunner.runInternal());
+            long weight = Math.max(getSize(left.resolve(leftPath)), getSize(right.resolve(leftPath)));
+            workloads.add(new Workload(weight, () -> {
+                // Byte-identical files are detected by the nested runner before their content is read
+                DiffRunner diffRunner = forValues(
+                                left.resolve(leftPath),
+                                getLeftLabel(),
+                                right.resolve(leftPath),
+                                getRightLabel())
+                        .withContentType(getContentType())
+                        .withEntryFilter(getEntryFilter())
+                        .withTaskParameters(getTaskParameters())
+                        .withExecutor(getExecutor())
+                        .withIdenticalCounter(getIdenticalCounter())
+                        .withMemoryBudget(getMemoryBudget())
+                        .withFetchStatistics(getFetchStatistics());
+                return diffRunner.runInternal();
+            }));
         }
 
         for (String rightPath : rightPaths) {
             if (missingHelper.isMissingLeft(rightPath)) {
-                Diff miss = reportLeftMissing(
+                workloads.add(Workload.lightweight(() -> Collections.singletonList(reportLeftMissing(
                         left.resolve(rightPath).toAbsolutePath().toString(),
-                        right.resolve(rightPath).toAbsolutePath().toString());
-                result.add(miss);
+                        right.resolve(rightPath).toAbsolutePath().toString()))));
             }
         }
-        return result;
+        return ExecutionHelper.run(getExecutor(), workloads, this::report);
+    }
+
+    private static long getSize(Path value) {
+        try {
+            return Files.size(value);
+        } catch (IOException e) {
+            log.error("Could not get the size of file {}", value, e);
+            return 0L;
+        }
     }
 
     private static List<String> getRelativePaths(Path value) {
@@ -0,0 +1,86 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import com.exadel.etoolbox.anydiff.diff.Diff;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Contains utility methods for running {@link Workload}s either on the calling thread or in a shared thread pool
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class ExecutionHelper {
+
+    /**
+     * Runs the provided workloads and collects their results. If a thread pool is provided, the workloads are run
+     * concurrently, the heaviest ones being started first. Either way, the results follow the order in which the
+     * workloads were passed
+     * @param pool      {@link ForkJoinPool} instance. Can be {@code null}, in which case the workloads are run
+     *                  sequentially on the calling thread
+     * @param workloads A list of {@link Workload} objects. A non-null value is expected
+     * @return A non-null list of {@link Diff} objects
+     */
+    static List<Diff> run(ForkJoinPool pool, List<Workload> workloads) {
+        return run(pool, workloads, null);
+    }
+
+    /**
+     * Runs the provided workloads and collects their results. If a thread pool is provided, the workloads are run
+     * concurrently, the heaviest ones being started first. Either way, the results follow the order in which the
+     * workloads were passed, while the callback receives the results of every workload as soon as it completes
+     * @param pool      {@link ForkJoinPool} instance. Can be {@code null}, in which case the workloads are run
+     *                  sequentially on the calling thread
+     * @param workloads A list of {@link Workload} objects. A non-null value is expected
+     * @param callback  A routine that accepts the results of a completed workload. Can be {@code null}
+     * @return A non-null list of {@link Diff} objects
+     */
+    static List<Diff> run(ForkJoinPool pool, List<Workload> workloads, Consumer<List<Diff>> callback) {
+        List<Diff> result = new ArrayList<>();
+        if (pool == null || workloads.size() < 2) {
+            workloads.forEach(workload -> result.addAll(complete(workload, callback)));
+            return result;
+        }
+        List<ForkJoinTask<List<Diff>>> tasks = new ArrayList<>(workloads.size());
+        workloads.forEach(workload -> tasks.add(null));
+        List<Integer> order = IntStream.range(0, workloads.size())
+                .boxed()
+                .sorted(Comparator.comparingLong((Integer index) -> workloads.get(index).getWeight()).reversed())
+                .collect(Collectors.toList());
+        for (int index : order) {
+            tasks.set(index, pool.submit(() -> complete(workloads.get(index), callback)));
+        }
+        for (ForkJoinTask<List<Diff>> task : tasks) {
+            result.addAll(task.join());
+        }
+        return result;
+    }
+
+    private static List<Diff> complete(Workload workload, Consumer<List<Diff>> callback) {
+        List<Diff> result = workload.getRoutine().get();
+        if (callback != null) {
+            callback.accept(result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import com.exadel.etoolbox.anydiff.HashAlgorithm;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Computes checksums of files. Small files are read via a {@link FileChannel} in large chunks, and bigger files are
+ * memory-mapped. If a thread pool is provided and the algorithm allows it, huge files are hashed in parallel segments
+ */
+@Builder(builderClassName = "Builder")
+@Slf4j
+class FileHasher {
+
+    private static final int READ_BUFFER_SIZE = 1024 * 1024; // 1 Mb
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024; // 64 Kb
+    private static final long MAPPED_READ_THRESHOLD = 16L * 1024 * 1024; // 16 Mb
+    private static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024; // 64 Mb
+
+    private HashAlgorithm algorithm;
+
+    private ForkJoinPool pool;
+
+    private long segmentSize;
+
+    /* ---------
+       Accessors
+       --------- */
+
+    private ChecksumAlgorithm getAlgorithm() {
+        return ChecksumAlgorithm.from(algorithm);
+    }
+
+    private long getSegmentSize() {
+        // A segment is also the largest window to be memory-mapped at once, which cannot exceed 2 Gb
+        return segmentSize > 0 ? Math.min(segmentSize, Integer.MAX_VALUE) : DEFAULT_SEGMENT_SIZE;
+    }
+
+    /* -------
+       Hashing
+       ------- */
+
+    /**
+     * Computes the checksum of the given file
+     * @param value A {@link Path} object representing the file. A non-null value is expected
+     * @return A {@code long} value representing the checksum, or {@code 0} if the file could not be read
+     */
+    long hash(Path value) {
+        try (FileChannel channel = FileChannel.open(value, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (pool != null && getAlgorithm().isCombinable() && size > getSegmentSize()) {
+                return hashInSegments(value, size);
+            }
+            if (size > MAPPED_READ_THRESHOLD) {
+                return hashMapped(channel, 0, size);
+            }
+            return hashBuffered(channel);
+        } catch (IOException | RuntimeException e) {
+            log.error("Error hashing file {}", value, e);
+        }
+        return 0;
+    }
+
+    private long hashBuffered(FileChannel channel) throws IOException {
+        Checksum checksum = getAlgorithm().newChecksum();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_BUFFER_SIZE, Math.max(channel.size(), 1)));
+        while (channel.read(buffer) > 0) {
+            // The methods are called via Buffer since ByteBuffer does not override them in Java 8
+            ((Buffer) buffer).flip();
+            checksum.update(buffer.array(), 0, buffer.limit());
+            ((Buffer) buffer).clear();
+        }
+        return checksum.getValue();
+    }
+
+    private long hashMapped(FileChannel channel, long position, long length) throws IOException {
+        Checksum checksum = getAlgorithm().newChecksum();
+        byte[] transfer = new byte[TRANSFER_BUFFER_SIZE];
+        long offset = position;
+        long end = position + length;
+        while (offset < end) {
+            long windowSize = Math.min(getSegmentSize(), end - offset);
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, windowSize);
+            update(checksum, window, transfer);
+            offset += windowSize;
+        }
+        return checksum.getValue();
+    }
+
+    private long hashInSegments(Path value, long size) {
+        List<ForkJoinTask<Long>> tasks = new ArrayList<>();
+        List<Long> lengths = new ArrayList<>();
+        for (long position = 0; position < size; position += getSegmentSize()) {
+            long start = position;
+            long length = Math.min(getSegmentSize(), size - position);
+            tasks.add(pool.submit(() -> {
+                try (FileChannel channel = FileChannel.open(value, StandardOpenOption.READ)) {
+                    return hashMapped(channel, start, length);
+                }
+            }));
+            lengths.add(length);
+        }
+        long result = tasks.get(0).join();
+        for (int i = 1; i < tasks.size(); i++) {
+            result = getAlgorithm().combine(result, tasks.get(i).join(), lengths.get(i));
+        }
+        return result;
+    }
+
+    private static void update(Checksum checksum, ByteBuffer buffer, byte[] transfer) {
+        if (checksum instanceof CRC32) {
+            ((CRC32) checksum).update(buffer);
+            return;
+        }
+        while (buffer.hasRemaining()) {
+            int length = Math.min(transfer.length, buffer.remaining());
+            buffer.get(transfer, 0, length);
+            checksum.update(transfer, 0, length);
+        }
+    }
+}
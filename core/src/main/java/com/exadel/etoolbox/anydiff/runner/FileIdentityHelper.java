@@ -0,0 +1,83 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Contains utility methods for detecting byte-identical files before their content is extracted for comparison
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@Slf4j
+class FileIdentityHelper {
+
+    private static final int BUFFER_SIZE = 64 * 1024; // 64 Kb
+
+    /**
+     * Checks whether the two files have the same content. Sizes are compared first, and then the bytes are streamed
+     * until the first mismatch
+     * @param left  A {@link Path} object representing the left file. A non-null value is expected
+     * @param right A {@link Path} object representing the right file. A non-null value is expected
+     * @return True if both files are readable and byte-identical; otherwise, false
+     */
+    static boolean isIdentical(Path left, Path right) {
+        if (!Files.isRegularFile(left) || !Files.isRegularFile(right)) {
+            return false;
+        }
+        try (
+            FileChannel leftChannel = FileChannel.open(left, StandardOpenOption.READ);
+            FileChannel rightChannel = FileChannel.open(right, StandardOpenOption.READ)
+        ) {
+            if (leftChannel.size() != rightChannel.size()) {
+                return false;
+            }
+            ByteBuffer leftBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+            ByteBuffer rightBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (true) {
+                int leftRead = fill(leftChannel, leftBuffer);
+                int rightRead = fill(rightChannel, rightBuffer);
+                if (leftRead != rightRead || !leftBuffer.equals(rightBuffer)) {
+                    return false;
+                }
+                if (leftRead < BUFFER_SIZE) {
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error comparing files {} and {}", left, right, e);
+        }
+        return false;
+    }
+
+    private static int fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        // The buffer is reset via Buffer since ByteBuffer does not override clear() and flip() in Java 8
+        ((Buffer) buffer).clear();
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read > 0 && buffer.hasRemaining());
+        ((Buffer) buffer).flip();
+        return buffer.limit();
+    }
+}
@@ -17,27 +17,18 @@ import com.exadel.etoolbox.anydiff.Constants;
 import com.exadel.etoolbox.anydiff.comparison.Marker;
 import lombok.Builder;
 import lombok.Getter;
-import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.Date;
-import java.util.zip.CRC32;
 
 /**
  * Stores file or URL metadata and allows comparing objects by their metadata parameters
  */
 @Builder(builderClassName = "Builder")
-@Slf4j
 class FileMetadata {
 
-    private static final int CRC_COMPUTATION_THRESHOLD = 1024 * 1024 * 20; // 20 Mb
-
     /**
      * Gets the path or the URL of the file
      */
@@ -52,6 +43,10 @@ class FileMetadata {
 
     private boolean pathAgnostic;
 
+    private boolean truncated;
+
+    private boolean overBudget;
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
@@ -81,6 +76,20 @@ class FileMetadata {
                     .append(Marker.PLACEHOLDER.wrap(lastModified));
 
         }
+        if (truncated) {
+            builder
+                    .append(StringUtils.LF)
+                    .append(Marker.CONTEXT.wrap("Truncated:"))
+                    .append(StringUtils.SPACE)
+                    .append(Marker.PLACEHOLDER.wrap(true));
+        }
+        if (overBudget) {
+            builder
+                    .append(StringUtils.LF)
+                    .append(Marker.CONTEXT.wrap("Exceeds memory budget:"))
+                    .append(StringUtils.SPACE)
+                    .append(Marker.PLACEHOLDER.wrap(true));
+        }
         return builder.toString();
     }
 
@@ -93,6 +102,9 @@ class FileMetadata {
         String thatPath = that.pathAgnostic ? StringUtils.substringAfterLast(that.path, Constants.DOT) : that.path;
         // If hash codes are computed, we check that the hash codes are equal, and so are the path extracts
         // (either full paths or just the extensions if the {@code pathAgnostic} mode is on
+        if (truncated || that.truncated) {
+            return false;
+        }
         if (crc != 0) {
             return crc == that.crc && StringUtils.equals(thisPath, thatPath);
         }
@@ -117,39 +129,6 @@ class FileMetadata {
                 .toHashCode();
     }
 
-    /**
-     * Computes CRC32 hash for the file
-     * @param value A {@link Path} object representing the file. A non-null value is expected
-     * @return A {@code long} value representing the CRC32 hash
-     */
-    static long computeCrc(Path value) {
-        return computeCrc(value, 0L);
-    }
-
-    /**
-     * Computes CRC32 hash for the file if its size fits in the specified threshold
-     * @param value A {@link Path} object representing the file. A non-null value is expected
-     * @param size  The file size in bytes that will be checked against the threshold
-     * @return A {@code long} value representing the CRC32 hash, or {@code 0} if the size does not fit into the
-     * threshold
-     */
-    static long computeCrc(Path value, long size) {
-        if (size < 0 || size > CRC_COMPUTATION_THRESHOLD) {
-            return 0;
-        }
-        try (InputStream inputStream = Files.newInputStream(value)) {
-            CRC32 crc32 = new CRC32();
-            while (inputStream.available() > 0) {
-                int read = inputStream.read();
-                crc32.update(read);
-            }
-            return crc32.getValue();
-        } catch (IOException e) {
-            log.error("Error hashing file {}", value, e);
-        }
-        return 0;
-    }
-
     private static String toKilobytes(long bytes) {
         return String.format("%.1f Kb", bytes / 1024.0);
     }
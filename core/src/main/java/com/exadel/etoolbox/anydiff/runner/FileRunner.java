@@ -43,21 +43,41 @@ class FileRunner extends DiffRunner {
 
     @Override
     public List<Diff> runInternal() {
+        if (FileIdentityHelper.isIdentical(left, right)) {
+            log.debug("Files {} and {} are identical", left, right);
+            return Collections.singletonList(reportUnchanged(
+                    left.toAbsolutePath().toString(),
+                    right.toAbsolutePath().toString()));
+        }
         ContentType contentType = getCommonTypeOrDefault(
                 left.toAbsolutePath().toString(),
                 right.toAbsolutePath().toString(),
                 getContentType());
-        Object leftContent = contentType != ContentType.UNDEFINED ? getContent(left) : getMetadata(left);
-        Object rightContent = contentType != ContentType.UNDEFINED ? getContent(right) : getMetadata(right);
+        Object leftContent;
+        Object rightContent;
+        if (contentType == ContentType.UNDEFINED) {
+            leftContent = getMetadata(left);
+            rightContent = getMetadata(right);
+        } else if (contentType == ContentType.TEXT && (isLarge(left) || isLarge(right))) {
+            // The comparison routine receives the paths and reads the files on its own without loading them in memory.
+            // Other content types are loaded in memory because their processors need the whole content
+            leftContent = left;
+            rightContent = right;
+        } else {
+            leftContent = getContent(left);
+            rightContent = getContent(right);
+        }
         DiffTask diffTask = DiffTask
                 .builder()
                 .contentType(contentType)
                 .leftId(left.toAbsolutePath().toString())
                 .leftLabel(getLeftLabel())
                 .leftContent(leftContent)
+                .leftFile(isByteComparable(contentType) ? left : null)
                 .rightId(right.toAbsolutePath().toString())
                 .rightLabel(getRightLabel())
                 .rightContent(rightContent)
+                .rightFile(isByteComparable(contentType) ? right : null)
                 .filter(getEntryFilter())
                 .taskParameters(getTaskParameters())
                 .build();
@@ -94,6 +114,24 @@ class FileRunner extends DiffRunner {
         return ContentType.UNDEFINED;
     }
 
+    private boolean isByteComparable(ContentType contentType) {
+        // Binary files are additionally compared byte-wise unless only the metadata is requested
+        return contentType == ContentType.UNDEFINED && !getTaskParameters().metadataOnly();
+    }
+
+    private boolean isLarge(Path value) {
+        long threshold = getTaskParameters().getStreamingThreshold();
+        if (threshold <= 0) {
+            return false;
+        }
+        try {
+            return Files.size(value) > threshold;
+        } catch (IOException e) {
+            log.error("Error reading file {}", value, e);
+        }
+        return false;
+    }
+
     private static String getContent(Path value) {
         log.debug("Reading content file {}", value);
         try (InputStream inputStream = Files.newInputStream(value)) {
@@ -104,7 +142,7 @@ class FileRunner extends DiffRunner {
         return null;
     }
 
-    private static FileMetadata getMetadata(Path value) {
+    private FileMetadata getMetadata(Path value) {
         long size = -1;
         long lastModified = 0;
         try {
@@ -113,7 +151,7 @@ class FileRunner extends DiffRunner {
         } catch (IOException e) {
             log.error("Error reading file {}", value, e);
         }
-        long crc = FileMetadata.computeCrc(value, size);
+        long crc = size >= 0 ? FileHasher.builder().pool(getExecutor()).build().hash(value) : 0;
         return FileMetadata
                 .builder()
                 .path(value.toAbsolutePath().toString())
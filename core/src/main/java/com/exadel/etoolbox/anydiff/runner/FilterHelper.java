@@ -75,39 +75,49 @@ class FilterHelper {
     }
 
     private static boolean shouldExclude(DiffEntry entry, List<Filter> rules) {
-        if (entry.getState() == DiffState.UNCHANGED) {
-            return true;
-        }
         if (CollectionUtils.isEmpty(rules)) {
-            return false;
+            return entry.getState() == DiffState.UNCHANGED;
         }
+        // The rules are consulted before the state of a block is checked since the state may require computing the
+        // inline difference of the block's lines. A block that is skipped by a rule is excluded whatever the state is
         DiffEntryType diffEntryType = DiffEntryType.from(entry.getName());
+        if (diffEntryType != DiffEntryType.BLOCK && entry.getState() == DiffState.UNCHANGED) {
+            return true;
+        }
         for (Filter rule : rules) {
             if (diffEntryType == DiffEntryType.BLOCK && invokeSilently(rule::acceptBlock, entry)) {
-                entry.accept();
-                return false;
+                return acceptOrExclude(entry);
             }
             if (diffEntryType == DiffEntryType.BLOCK && invokeSilently(rule::skipBlock, entry)) {
                 return true;
             }
             if (diffEntryType == DiffEntryType.LINE && invokeSilently(rule::acceptLine, entry)) {
-                entry.accept();
-                return false;
+                return acceptOrExclude(entry);
             }
             if (diffEntryType == DiffEntryType.LINE && invokeSilently(rule::skipLine, entry)) {
                 return true;
             }
             if (diffEntryType == DiffEntryType.FRAGMENT_PAIR && invokeSilently(rule::acceptFragments, (FragmentPair) entry)) {
-                entry.accept();
-                return false;
+                return acceptOrExclude(entry);
             }
             if (diffEntryType == DiffEntryType.FRAGMENT_PAIR && invokeSilently(rule::skipFragments, (FragmentPair) entry)) {
                 return true;
             }
         }
+        if (diffEntryType == DiffEntryType.BLOCK && entry.getState() == DiffState.UNCHANGED) {
+            return true;
+        }
         return shouldExcludeByChildren(entry, rules) || shouldExcludeByFragments(entry, rules);
     }
 
+    private static boolean acceptOrExclude(DiffEntry entry) {
+        if (entry.getState() == DiffState.UNCHANGED) {
+            return true;
+        }
+        entry.accept();
+        return false;
+    }
+
     private static boolean shouldExclude(FragmentHolder holder, Fragment fragment, List<Filter> rules) {
         if (CollectionUtils.isEmpty(rules)) {
             return false;
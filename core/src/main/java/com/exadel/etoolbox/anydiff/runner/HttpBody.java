@@ -0,0 +1,224 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Checksum;
+
+/**
+ * Stores the body of an HTTP response. Small bodies are kept in memory, while the bodies exceeding the given threshold
+ * are spilled to a temporary file and read back via memory-mapped I/O. The checksum of the body is computed while the
+ * body is being read, so the metadata of a body can be compared without materializing its content. Optionally, the
+ * body is truncated when it exceeds the maximal allowed size
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@Slf4j
+class HttpBody implements Closeable {
+
+    static final long DEFAULT_SPILL_THRESHOLD = 8L * 1024 * 1024; // 8 Mb
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final byte[] bytes;
+    private final Path file;
+
+    /**
+     * Gets the checksum of the body
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final long crc;
+
+    /**
+     * Gets the size of the body in bytes
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final long size;
+
+    /**
+     * Gets whether the body was cut off because it exceeded the maximal allowed size
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final boolean truncated;
+
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    /**
+     * Gets whether the body has been spilled to a temporary file
+     * @return True or false
+     */
+    boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * Retrieves the body as text. The whole body is decoded into a single string, so the content of a spilled body is
+     * loaded in memory at this point. Bodies that are too large for that are expected to be compared by their metadata
+     * @param charset {@link Charset} used to decode the body
+     * @return A string value. Can be {@code null} if the body cannot be read
+     */
+    String getText(Charset charset) {
+        if (bytes != null) {
+            return new String(bytes, charset);
+        }
+        if (size > Integer.MAX_VALUE) {
+            log.error("Content of {} is too large to be rendered as text", file);
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return charset.decode(buffer).toString();
+        } catch (IOException e) {
+            log.error("Error reading content from {}", file, e);
+        }
+        return null;
+    }
+
+    /**
+     * Registers the given number of additional holders of the body. The temporary file of the body is removed when
+     * every holder has closed the body
+     * @param count The number of additional holders
+     */
+    void retain(int count) {
+        references.addAndGet(count);
+    }
+
+    @Override
+    public void close() {
+        if (references.decrementAndGet() > 0 || file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.error("Error deleting {}", file, e);
+        }
+    }
+
+    /* ---------------
+       Factory methods
+       --------------- */
+
+    /**
+     * Reads the body of an HTTP response from the given stream. The stream is not closed
+     * @param input          {@link InputStream} object. A non-null value is expected
+     * @param spillThreshold The size in bytes above which the body is stored in a temporary file
+     * @param maxSize        The size in bytes above which the body is truncated. A non-positive value means that the
+     *                       size is not limited
+     * @return {@code HttpBody} instance
+     * @throws IOException If reading the stream or writing the temporary file failed
+     */
+    static HttpBody read(InputStream input, long spillThreshold, long maxSize) throws IOException {
+        Checksum checksum = ChecksumAlgorithm.CRC32.newChecksum();
+        ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        OutputStream output = memory;
+        Path file = null;
+        long size = 0;
+        boolean truncated = false;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try {
+            int length;
+            while ((length = input.read(buffer)) != -1) {
+                if (maxSize > 0 && size + length > maxSize) {
+                    length = (int) (maxSize - size);
+                    truncated = true;
+                }
+                checksum.update(buffer, 0, length);
+                if (file == null && size + length > spillThreshold) {
+                    // The file is removed when the body is closed
+                    file = Files.createTempFile("anydiff-http", ".tmp");
+                    output = Files.newOutputStream(file);
+                    memory.writeTo(output);
+                    memory = null;
+                }
+                output.write(buffer, 0, length);
+                size += length;
+                if (truncated) {
+                    break;
+                }
+            }
+            output.close();
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(output);
+            deleteQuietly(file);
+            throw e;
+        }
+        return new HttpBody(memory != null ? memory.toByteArray() : null, file, checksum.getValue(), size, truncated);
+    }
+
+    /* ---------------
+       Utility methods
+       --------------- */
+
+    /**
+     * Parses a size value, such as {@code 1024}, {@code 512K}, {@code 10M}, or {@code 1G}
+     * @param value A string value
+     * @return The size in bytes, or {@code -1} if the value cannot be parsed
+     */
+    static long parseSize(String value) {
+        if (StringUtils.isBlank(value)) {
+            return -1;
+        }
+        String trimmed = value.trim().toUpperCase();
+        long multiplier = 1;
+        char unit = trimmed.charAt(trimmed.length() - 1);
+        if (unit == 'K' || unit == 'M' || unit == 'G') {
+            multiplier = unit == 'K' ? 1024L : unit == 'M' ? 1024L * 1024 : 1024L * 1024 * 1024;
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        if (!StringUtils.isNumeric(trimmed)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(trimmed) * multiplier;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void closeQuietly(Closeable value) {
+        try {
+            value.close();
+        } catch (IOException e) {
+            log.error("Error closing stream", e);
+        }
+    }
+
+    private static void deleteQuietly(Path value) {
+        if (value == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(value);
+        } catch (IOException e) {
+            log.error("Error deleting {}", value, e);
+        }
+    }
+}
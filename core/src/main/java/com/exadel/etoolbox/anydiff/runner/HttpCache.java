@@ -0,0 +1,390 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.Okio;
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Stores the responses of HTTP endpoints on disk so that repeated comparisons of the same URLs do not need to download
+ * the content again. A stored response is revalidated with the server via the {@code ETag} and
+ * {@code Last-Modified} values; the responses that have neither are not stored. A response that has been downloaded or
+ * revalidated once is served from the disk without contacting the server until the comparison run completes. When the
+ * total size of the stored responses exceeds the limit, the least recently used ones are removed. There is one cache
+ * instance per directory
+ */
+@Slf4j
+class HttpCache {
+
+    private static final String EXTENSION_BODY = ".body";
+    private static final String EXTENSION_META = ".properties";
+
+    private static final String HEADER_CONTENT_TYPE = "Content-Type";
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String PROPERTY_URL = "url";
+
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    private static final Map<Path, HttpCache> INSTANCES = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private volatile long maxSize;
+
+    private final Interceptor interceptor = new CacheInterceptor();
+    private final Set<String> validated = ConcurrentHashMap.newKeySet();
+    private AtomicLong size;
+
+    /**
+     * Creates a new cache instance
+     * @param directory The directory to store responses in
+     * @param maxSize   The maximal total size of the stored responses in bytes
+     */
+    HttpCache(Path directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Retrieves an HTTP client that shares the connection pool and settings of the given client and uses the current
+     * cache
+     * @param client {@link OkHttpClient} object. A non-null value is expected
+     * @return {@code OkHttpClient} instance
+     */
+    OkHttpClient wrap(OkHttpClient client) {
+        OkHttpClient.Builder builder = client.newBuilder();
+        // The cache goes first so that the content is stored after being unzipped by the other interceptors
+        builder.interceptors().add(0, interceptor);
+        return builder.build();
+    }
+
+    /* -------------
+       Cache entries
+       ------------- */
+
+    private Response getCachedResponse(Request request, String key, Properties meta) {
+        Path body = directory.resolve(key + EXTENSION_BODY);
+        try {
+            Files.setLastModifiedTime(body, FileTime.fromMillis(System.currentTimeMillis()));
+            long length = Files.size(body);
+            InputStream input = Files.newInputStream(body);
+            String contentType = meta.getProperty(HEADER_CONTENT_TYPE);
+            Response.Builder builder = new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(HTTP_OK)
+                    .message("OK")
+                    .body(ResponseBody.create(
+                            Okio.buffer(Okio.source(input)),
+                            contentType != null ? MediaType.parse(contentType) : null,
+                            length));
+            if (StringUtils.isNotEmpty(contentType)) {
+                builder.header(HEADER_CONTENT_TYPE, contentType);
+            }
+            return builder.build();
+        } catch (IOException e) {
+            log.error("Error reading cached response for {}", request.url(), e);
+            return null;
+        }
+    }
+
+    private Properties getMeta(String key) {
+        Path metaFile = directory.resolve(key + EXTENSION_META);
+        if (!Files.isRegularFile(metaFile) || !Files.isRegularFile(directory.resolve(key + EXTENSION_BODY))) {
+            return null;
+        }
+        Properties result = new Properties();
+        try (InputStream input = Files.newInputStream(metaFile)) {
+            result.load(input);
+            return result;
+        } catch (IOException e) {
+            log.error("Error reading cache entry {}", metaFile, e);
+        }
+        return null;
+    }
+
+    private static boolean isStorable(Response response) {
+        return response.code() == HTTP_OK
+                && response.body() != null
+                && !StringUtils.isAllEmpty(response.header(HEADER_ETAG), response.header(HEADER_LAST_MODIFIED));
+    }
+
+    private boolean store(Response response, String key) {
+        String etag = response.header(HEADER_ETAG);
+        String lastModified = response.header(HEADER_LAST_MODIFIED);
+        ResponseBody responseBody = response.body();
+        if (responseBody == null) {
+            return false;
+        }
+        Path temporary = null;
+        try {
+            // The total size is computed before the new files appear in the directory
+            AtomicLong totalSize = getSize();
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, key, null);
+            try (BufferedSink sink = Okio.buffer(Okio.sink(temporary))) {
+                sink.writeAll(responseBody.source());
+            }
+            Path body = directory.resolve(key + EXTENSION_BODY);
+            Path metaFile = directory.resolve(key + EXTENSION_META);
+            long previousSize = getEntrySize(body, metaFile);
+            Files.move(temporary, body, StandardCopyOption.REPLACE_EXISTING);
+
+            Properties meta = new Properties();
+            meta.setProperty(PROPERTY_URL, response.request().url().toString());
+            setProperty(meta, HEADER_CONTENT_TYPE, response.header(HEADER_CONTENT_TYPE));
+            setProperty(meta, HEADER_ETAG, etag);
+            setProperty(meta, HEADER_LAST_MODIFIED, lastModified);
+            try (OutputStream output = Files.newOutputStream(metaFile)) {
+                meta.store(output, null);
+            }
+            if (totalSize.addAndGet(getEntrySize(body, metaFile) - previousSize) > maxSize) {
+                evict();
+            }
+            return true;
+        } catch (IOException e) {
+            log.error("Error storing response for {}", response.request().url(), e);
+            deleteQuietly(temporary);
+            return false;
+        } finally {
+            response.close();
+        }
+    }
+
+    private synchronized AtomicLong getSize() throws IOException {
+        if (size != null) {
+            return size;
+        }
+        long total = 0;
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.filter(HttpCache::isEntryFile).collect(Collectors.toList())) {
+                    total += Files.size(file);
+                }
+            }
+        }
+        size = new AtomicLong(total);
+        return size;
+    }
+
+    private synchronized void evict() throws IOException {
+        List<Path> bodies;
+        try (Stream<Path> files = Files.list(directory)) {
+            bodies = files
+                    .filter(file -> file.getFileName().toString().endsWith(EXTENSION_BODY))
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+        bodies.sort(Comparator.comparing(HttpCache::getLastModifiedTime));
+        for (Path body : bodies) {
+            if (size.get() <= maxSize) {
+                break;
+            }
+            String key = StringUtils.removeEnd(body.getFileName().toString(), EXTENSION_BODY);
+            Path metaFile = directory.resolve(key + EXTENSION_META);
+            long length = getEntrySize(body, metaFile);
+            Files.deleteIfExists(body);
+            Files.deleteIfExists(metaFile);
+            validated.remove(key);
+            size.addAndGet(-length);
+            log.debug("Removed cached response {}", key);
+        }
+    }
+
+    /* ---------------
+       Factory methods
+       --------------- */
+
+    /**
+     * Retrieves the cache that stores responses in the given directory. The size limit of an existing cache is updated
+     * to the given value
+     * @param directory The directory to store responses in. A non-null value is expected
+     * @param maxSize   The maximal total size of the stored responses in bytes
+     * @return {@code HttpCache} instance
+     */
+    static HttpCache getInstance(Path directory, long maxSize) {
+        HttpCache result = INSTANCES.computeIfAbsent(
+                directory.toAbsolutePath().normalize(),
+                key -> new HttpCache(key, maxSize));
+        result.maxSize = maxSize;
+        return result;
+    }
+
+    /**
+     * Makes all the cache instances revalidate the stored responses with the server when they are requested next time.
+     * Called upon the completion of a comparison run
+     */
+    static void resetValidation() {
+        INSTANCES.values().forEach(cache -> cache.validated.clear());
+    }
+
+    /* ---------------
+       Utility methods
+       --------------- */
+
+    /**
+     * Computes the key of a cache entry based on the URL and the headers of the given request
+     * @param request {@link Request} object
+     * @return A string value
+     */
+    static String getKey(Request request) {
+        StringBuilder builder = new StringBuilder(request.method()).append(' ').append(request.url()).append('\n');
+        new TreeSet<>(request.headers().names()).stream()
+                .filter(name -> !StringUtils.equalsAnyIgnoreCase(name, HEADER_IF_NONE_MATCH, HEADER_IF_MODIFIED_SINCE))
+                .forEach(name -> builder
+                        .append(name.toLowerCase())
+                        .append(':')
+                        .append(request.headers(name))
+                        .append('\n'));
+        try {
+            byte[] digest = MessageDigest
+                    .getInstance("SHA-256")
+                    .digest(builder.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder result = new StringBuilder();
+            for (byte b : digest) {
+                result.append(String.format("%02x", b));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isEntryFile(Path value) {
+        // Temporary files of the downloads in progress are not counted
+        return StringUtils.endsWithAny(value.getFileName().toString(), EXTENSION_BODY, EXTENSION_META);
+    }
+
+    private static long getEntrySize(Path body, Path meta) throws IOException {
+        long bodySize = Files.isRegularFile(body) ? Files.size(body) : 0L;
+        long metaSize = Files.isRegularFile(meta) ? Files.size(meta) : 0L;
+        return bodySize + metaSize;
+    }
+
+    private static FileTime getLastModifiedTime(Path value) {
+        try {
+            return Files.getLastModifiedTime(value);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void setProperty(Properties properties, String key, String value) {
+        if (value != null) {
+            properties.setProperty(key, value);
+        }
+    }
+
+    private static void deleteQuietly(Path value) {
+        if (value == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(value);
+        } catch (IOException e) {
+            log.error("Error deleting {}", value, e);
+        }
+    }
+
+    /* ------------------
+       Subsidiary classes
+       ------------------ */
+
+    /**
+     * Serves responses from the cache and stores new responses in it
+     */
+    private class CacheInterceptor implements Interceptor {
+
+        @NotNull
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            if (!"GET".equals(request.method())) {
+                return chain.proceed(request);
+            }
+            String key = getKey(request);
+            Properties meta = getMeta(key);
+            if (meta != null && validated.contains(key)) {
+                Response cached = getCachedResponse(request, key, meta);
+                if (cached != null) {
+                    log.debug("Serving {} from cache", request.url());
+                    return cached;
+                }
+            }
+            Request.Builder conditionalRequest = request.newBuilder();
+            if (meta != null && meta.getProperty(HEADER_ETAG) != null) {
+                conditionalRequest.header(HEADER_IF_NONE_MATCH, meta.getProperty(HEADER_ETAG));
+            }
+            if (meta != null && meta.getProperty(HEADER_LAST_MODIFIED) != null) {
+                conditionalRequest.header(HEADER_IF_MODIFIED_SINCE, meta.getProperty(HEADER_LAST_MODIFIED));
+            }
+            Response response = chain.proceed(conditionalRequest.build());
+            if (response.code() == HTTP_NOT_MODIFIED && meta != null) {
+                response.close();
+                Response cached = getCachedResponse(request, key, meta);
+                if (cached != null) {
+                    log.debug("Cached response for {} is up to date", request.url());
+                    validated.add(key);
+                    return cached;
+                }
+                return chain.proceed(request);
+            }
+            if (!isStorable(response)) {
+                return response;
+            }
+            Properties storedMeta = store(response, key) ? getMeta(key) : null;
+            Response cached = storedMeta != null ? getCachedResponse(request, key, storedMeta) : null;
+            if (cached == null) {
+                // The body of the original response has been consumed, so the resource is requested once more
+                return chain.proceed(request);
+            }
+            validated.add(key);
+            return cached;
+        }
+    }
+}
@@ -38,8 +38,8 @@ import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -59,26 +59,21 @@ class HttpClientFactory {
 
     private static final HttpClientFactory INSTANCE = new HttpClientFactory();
 
-    private final List<OkHttpClient> clients = new CopyOnWriteArrayList<>();
+    private final Map<String, OkHttpClient> clients = new ConcurrentHashMap<>();
 
     /**
-     * Retrieves an instance of an HTTP client. A new instance is created if no existing instances are available
+     * Retrieves an instance of an HTTP client. A new instance is created if no existing instances are available. Every
+     * combination of SSL and proxy settings is served by a separate client, and therefore, a separate connection pool
      * @param trustSsl {@code True} to bypass SSL certificate validation, {@code false} otherwise
+     * @param proxy    An optional proxy address
      * @return A non-null {@code HttpClient} object
      */
     OkHttpClient newClient(boolean trustSsl, String proxy) {
-        String proxyAddress = StringUtils.contains(proxy, Constants.SCHEMA_SEPARATOR)
-            ? StringUtils.substringAfter(proxy, Constants.SCHEMA_SEPARATOR)
-            : proxy;
-        OkHttpClient existingClient = clients
-            .stream()
-            .filter(client -> client.sslSocketFactory().equals(SSL_SOCKET_FACTORY)
-                && isMatchingProxy(client.proxy(), proxyAddress))
-            .findFirst()
-            .orElse(null);
-        if (existingClient != null) {
-            return existingClient;
-        }
+        String key = trustSsl + Constants.PIPE + StringUtils.defaultString(proxy);
+        return clients.computeIfAbsent(key, k -> createClient(trustSsl, proxy));
+    }
+
+    private static OkHttpClient createClient(boolean trustSsl, String proxy) {
         OkHttpClient.Builder newClientBuilder = new OkHttpClient.Builder()
             .addInterceptor(new GzipInterceptor())
             .connectTimeout(HTTP_TIMEOUT, TimeUnit.MILLISECONDS)
@@ -91,18 +86,7 @@ class HttpClientFactory {
         if (StringUtils.isNotEmpty(proxy)) {
             newClientBuilder.proxy(createProxyInstance(proxy));
         }
-        OkHttpClient client = newClientBuilder.build();
-        clients.add(client);
-        return client;
-    }
-
-    private static boolean isMatchingProxy(Proxy proxy, String proxyAddress) {
-        if (StringUtils.isEmpty(proxyAddress)) {
-            return proxy == null || proxy.address() == null;
-        }
-        return proxy != null
-            && proxy.address() != null
-            && proxy.address().toString().endsWith(proxyAddress);
+        return newClientBuilder.build();
     }
 
     private static Proxy createProxyInstance(String source) {
@@ -0,0 +1,371 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.MapUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs HTTP downloads in a dedicated bounded thread pool so that the threads comparing content are not used for
+ * waiting on the network. The number of simultaneous downloads from the same host and the rate of requests to the host
+ * can be limited via the {@code @connections} and {@code @rate} options of a URI. The limits apply until the comparison
+ * runs in progress complete. The statistics of the downloads are collected per host
+ */
+@Slf4j
+class HttpFetchScheduler {
+
+    static final String OPTION_CONNECTIONS = "connections";
+    static final String OPTION_RATE = "rate";
+
+    private static final int DEFAULT_THREADS = 32;
+    private static final int DEFAULT_CONNECTIONS_PER_HOST = 5;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final HttpFetchScheduler INSTANCE = new HttpFetchScheduler(DEFAULT_THREADS);
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final Map<String, HostQueue> hosts = new ConcurrentHashMap<>();
+    private int runs;
+
+    /**
+     * Creates a new scheduler instance
+     * @param threads The maximal number of downloads running at the same time
+     */
+    HttpFetchScheduler(int threads) {
+        executor = new ScheduledThreadPoolExecutor(threads, new DaemonThreadFactory());
+        executor.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Schedules a download routine. The routine is started as soon as the limits set for the host allow
+     * @param host    The host the routine downloads from. A non-null value is expected
+     * @param options The options of the URI that may contain the {@code @connections} and {@code @rate} values
+     * @param routine {@link Callable} that performs the download
+     * @param <T>     The type of the download result
+     * @return {@link CompletableFuture} that completes with the result of the routine or else exceptionally if the
+     * routine threw an exception or an error
+     */
+    <T> CompletableFuture<T> submit(String host, Map<String, String> options, Callable<T> routine) {
+        return submit(host, options, null, routine);
+    }
+
+    /**
+     * Schedules a download routine. The routine is started as soon as the limits set for the host allow. The
+     * statistics of the download are additionally registered in the given map, which allows collecting the statistics
+     * of a particular comparison run
+     * @param host          The host the routine downloads from. A non-null value is expected
+     * @param options       The options of the URI that may contain the {@code @connections} and {@code @rate} values
+     * @param runStatistics A {@code Map} of host names to {@link Statistics} objects that is updated upon the
+     *                      completion of the routine. Can be {@code null}
+     * @param routine       {@link Callable} that performs the download
+     * @param <T>           The type of the download result
+     * @return {@link CompletableFuture} that completes with the result of the routine or else exceptionally if the
+     * routine threw an exception or an error
+     */
+    <T> CompletableFuture<T> submit(
+            String host,
+            Map<String, String> options,
+            Map<String, Statistics> runStatistics,
+            Callable<T> routine) {
+
+        HostQueue hostQueue = hosts.computeIfAbsent(StringUtils.defaultString(host), HostQueue::new);
+        hostQueue.configure(options);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        hostQueue.enqueue(() -> {
+            long start = System.nanoTime();
+            T value = null;
+            Throwable failure = null;
+            try {
+                value = routine.call();
+            } catch (Throwable e) {
+                failure = e;
+            }
+            // The statistics are updated and the next download is dispatched before the caller is notified
+            try {
+                long latency = System.nanoTime() - start;
+                hostQueue.getStatistics().register(latency, failure == null);
+                if (runStatistics != null) {
+                    runStatistics
+                            .computeIfAbsent(StringUtils.defaultString(host), key -> new Statistics())
+                            .register(latency, failure == null);
+                }
+            } finally {
+                hostQueue.onComplete();
+                if (failure != null) {
+                    result.completeExceptionally(failure);
+                } else {
+                    result.complete(value);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Registers the start of a comparison run. The limits set for the hosts via the {@code @connections} and
+     * {@code @rate} options stay in effect until all the runs started so far are completed
+     */
+    synchronized void onRunStarted() {
+        runs++;
+    }
+
+    /**
+     * Registers the completion of a comparison run. When no other run is in progress, the limits set for the hosts
+     * via the {@code @connections} and {@code @rate} options are reverted to the defaults
+     */
+    synchronized void onRunCompleted() {
+        runs = Math.max(runs - 1, 0);
+        if (runs == 0) {
+            hosts.values().forEach(HostQueue::reset);
+        }
+    }
+
+    /**
+     * Retrieves the statistics of downloads per host
+     * @return A non-null {@code Map} of host names to {@link Statistics} objects
+     */
+    Map<String, Statistics> getStatistics() {
+        Map<String, Statistics> result = new ConcurrentHashMap<>();
+        hosts.forEach((host, queue) -> result.put(host, queue.getStatistics()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /* ---------------
+       Factory methods
+       --------------- */
+
+    static HttpFetchScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /* ------------------
+       Subsidiary classes
+       ------------------ */
+
+    /**
+     * Manages the downloads from a particular host. Not more than the allowed number of downloads are dispatched to
+     * the thread pool at the same time; the rest wait in the queue
+     */
+    private class HostQueue {
+
+        private final String host;
+        private final Queue<Runnable> pending = new ArrayDeque<>();
+        private int active;
+        private int maxActive = DEFAULT_CONNECTIONS_PER_HOST;
+        private TokenBucket rateLimit;
+
+        @Getter(AccessLevel.PRIVATE)
+        private final Statistics statistics = new Statistics();
+
+        HostQueue(String host) {
+            this.host = host;
+        }
+
+        synchronized void configure(Map<String, String> options) {
+            if (MapUtils.isEmpty(options)) {
+                return;
+            }
+            int connections = toInt(options.get(OPTION_CONNECTIONS));
+            if (connections > 0) {
+                maxActive = connections;
+            }
+            int rate = toInt(options.get(OPTION_RATE));
+            if (rate > 0 && (rateLimit == null || rateLimit.getRate() != rate)) {
+                rateLimit = new TokenBucket(rate);
+            }
+        }
+
+        synchronized void reset() {
+            maxActive = DEFAULT_CONNECTIONS_PER_HOST;
+            rateLimit = null;
+        }
+
+        synchronized void enqueue(Runnable task) {
+            if (active < maxActive) {
+                active++;
+                dispatch(task);
+            } else {
+                pending.add(task);
+            }
+        }
+
+        synchronized void onComplete() {
+            Runnable next = pending.poll();
+            if (next != null) {
+                dispatch(next);
+                return;
+            }
+            active--;
+            if (active == 0) {
+                log.debug("Downloads from {} completed: {}", host, statistics);
+            }
+        }
+
+        private void dispatch(Runnable task) {
+            long delay = rateLimit != null ? rateLimit.reserve() : 0L;
+            executor.schedule(task, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Implements the token bucket algorithm. Instead of blocking a thread, the bucket tells how long a request needs
+     * to be postponed to fit in the allowed rate
+     */
+    private static class TokenBucket {
+
+        @Getter(AccessLevel.PRIVATE)
+        private final int rate;
+        private final long interval;
+        private long nextFreeTime;
+
+        TokenBucket(int rate) {
+            this.rate = rate;
+            this.interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        }
+
+        /**
+         * Reserves a token and retrieves the time to wait until the token becomes valid
+         * @return The delay in nanoseconds. Can be zero
+         */
+        synchronized long reserve() {
+            long now = System.nanoTime();
+            long start = Math.max(now, nextFreeTime);
+            nextFreeTime = start + interval;
+            return start - now;
+        }
+    }
+
+    /**
+     * Contains the statistics of downloads from a particular host
+     */
+    static class Statistics {
+
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicLong totalLatency = new AtomicLong();
+        private final AtomicLong maxLatency = new AtomicLong();
+        private final long startTime = System.nanoTime();
+        private volatile long endTime = startTime;
+
+        /**
+         * Gets the number of completed downloads
+         * @return Integer value
+         */
+        int getRequests() {
+            return requests.get();
+        }
+
+        /**
+         * Gets the number of failed downloads
+         * @return Integer value
+         */
+        int getFailures() {
+            return failures.get();
+        }
+
+        /**
+         * Gets the average time of a download in milliseconds
+         * @return Long value
+         */
+        long getAverageLatency() {
+            int count = requests.get();
+            return count > 0 ? TimeUnit.NANOSECONDS.toMillis(totalLatency.get() / count) : 0L;
+        }
+
+        /**
+         * Gets the maximal time of a download in milliseconds
+         * @return Long value
+         */
+        long getMaxLatency() {
+            return TimeUnit.NANOSECONDS.toMillis(maxLatency.get());
+        }
+
+        /**
+         * Gets the number of downloads completed per second since the first download from the host was requested
+         * @return Double value
+         */
+        double getThroughput() {
+            long elapsed = endTime - startTime;
+            return elapsed > 0 ? requests.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed : 0d;
+        }
+
+        private void register(long latency, boolean success) {
+            requests.incrementAndGet();
+            if (!success) {
+                failures.incrementAndGet();
+            }
+            totalLatency.addAndGet(latency);
+            maxLatency.accumulateAndGet(latency, Math::max);
+            endTime = System.nanoTime();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%d requests, %d failed, %.2f requests/s, average latency %d ms, max latency %d ms",
+                    getRequests(),
+                    getFailures(),
+                    getThroughput(),
+                    getAverageLatency(),
+                    getMaxLatency());
+        }
+    }
+
+    /**
+     * Creates daemon threads so that pending downloads do not prevent the application from exiting
+     */
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "anydiff-http-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /* ---------------
+       Utility methods
+       --------------- */
+
+    private static int toInt(String value) {
+        if (!StringUtils.isNumeric(value)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -16,11 +16,11 @@ package com.exadel.etoolbox.anydiff.runner;
 import com.exadel.etoolbox.anydiff.Constants;
 import com.exadel.etoolbox.anydiff.ContentType;
 import com.exadel.etoolbox.anydiff.comparison.DiffTask;
+import com.exadel.etoolbox.anydiff.comparison.TaskParameters;
 import com.exadel.etoolbox.anydiff.diff.Diff;
 import com.exadel.etoolbox.anydiff.util.RichUri;
 import com.exadel.etoolbox.anydiff.util.StringUtil;
 import lombok.AllArgsConstructor;
-import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.Call;
@@ -37,6 +37,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -55,12 +56,16 @@ import java.util.concurrent.TimeUnit;
 class HttpRunner extends DiffRunner {
 
     private static final String PROPERTY_HEADERS = "headers";
+    private static final String PROPERTY_MAX_SIZE = "maxsize";
     private static final String PROPERTY_PROXY = "proxy";
+    private static final String PROPERTY_SPILL_SIZE = "spillsize";
     private static final String PROPERTY_TRUST_SSL = "nosslcheck";
 
     private static final String CIRCUMFLEX = "^";
     private static final String CMD_KEY_HEADER = "-H";
 
+    private static final InFlightDownloads<HttpResult> DOWNLOADS = new InFlightDownloads<>(HttpResult::retain);
+
     private final RichUri leftUri;
     private final RichUri rightUri;
 
@@ -74,14 +79,33 @@ class HttpRunner extends DiffRunner {
         if (leftUri == null || rightUri == null) {
             return Collections.emptyList();
         }
-        Pair<HttpResult, HttpResult> httpResults = getHttpResults(leftUri, rightUri, getTaskParameters().handleErrorPages());
-        ContentType contentType = getCommonTypeOrDefault(httpResults.getLeft(), httpResults.getRight(), getContentType());
-        Object leftContent = contentType != ContentType.UNDEFINED
-            ? httpResults.getLeft().getContent()
-            : httpResults.getLeft().getMetadata();
-        Object rightContent = contentType != ContentType.UNDEFINED
-            ? httpResults.getRight().getContent()
-            : httpResults.getRight().getMetadata();
+        Pair<HttpResult, HttpResult> httpResults = getHttpResults(
+                leftUri,
+                rightUri,
+                getTaskParameters(),
+                getFetchStatistics());
+        try {
+            return Collections.singletonList(compare(httpResults.getLeft(), httpResults.getRight()));
+        } finally {
+            closeQuietly(httpResults.getLeft());
+            closeQuietly(httpResults.getRight());
+        }
+    }
+
+    private Diff compare(HttpResult left, HttpResult right) {
+        ContentType contentType = getCommonTypeOrDefault(left, right, getContentType());
+        // Large bodies are not rendered as text, the same as the large files that are compared in the streaming mode
+        long threshold = getTaskParameters().getStreamingThreshold();
+        boolean oversized = left.isTruncated()
+                || right.isTruncated()
+                || left.isLargerThan(threshold)
+                || right.isLargerThan(threshold);
+        boolean useMetadata = contentType == ContentType.UNDEFINED || oversized;
+        if (oversized) {
+            log.warn("Content of {} or {} exceeds the size limit. Only metadata is compared", leftUri, rightUri);
+        }
+        Object leftContent = useMetadata ? left.getMetadata() : left.getContent();
+        Object rightContent = useMetadata ? right.getMetadata() : right.getContent();
         DiffTask diffTask = DiffTask
                 .builder()
                 .contentType(contentType)
@@ -94,8 +118,7 @@ class HttpRunner extends DiffRunner {
                 .filter(getEntryFilter())
                 .taskParameters(getTaskParameters())
                 .build();
-        Diff diff = diffTask.run();
-        return Collections.singletonList(diff);
+        return diffTask.run();
     }
 
     /* ---------------------
@@ -138,9 +161,14 @@ class HttpRunner extends DiffRunner {
        Request processing
        ------------------ */
 
-    private static Pair<HttpResult, HttpResult> getHttpResults(RichUri leftUri, RichUri rightUri, boolean handleErrorPages) {
-        CompletableFuture<HttpResult> leftPromise = getHttpResultAsync(leftUri, handleErrorPages);
-        CompletableFuture<HttpResult> rightPromise = getHttpResultAsync(rightUri, handleErrorPages);
+    private static Pair<HttpResult, HttpResult> getHttpResults(
+        RichUri leftUri,
+        RichUri rightUri,
+        TaskParameters taskParameters,
+        Map<String, HttpFetchScheduler.Statistics> statistics) {
+
+        CompletableFuture<HttpResult> leftPromise = getHttpResultAsync(leftUri, taskParameters, statistics);
+        CompletableFuture<HttpResult> rightPromise = getHttpResultAsync(rightUri, taskParameters, statistics);
         CompletableFuture.allOf(leftPromise, rightPromise).join();
         HttpResult leftContent = null;
         HttpResult rightContent = null;
@@ -157,19 +185,58 @@ class HttpRunner extends DiffRunner {
         return Pair.of(leftContent, rightContent);
     }
 
-    private static CompletableFuture<HttpResult> getHttpResultAsync(RichUri uri, boolean handleErrorPages) {
+    private static CompletableFuture<HttpResult> getHttpResultAsync(
+        RichUri uri,
+        TaskParameters taskParameters,
+        Map<String, HttpFetchScheduler.Statistics> statistics) {
+
         if (uri == null) {
             return CompletableFuture.completedFuture(new HttpResult(null));
         }
-        OkHttpClient client = createHttpClient(uri.getOptions());
-        return CompletableFuture.supplyAsync(() -> getHttpResult(uri, client, handleErrorPages));
+        OkHttpClient client = taskParameters.useCache()
+            ? HttpCache
+                .getInstance(taskParameters.getCacheDirectory(), taskParameters.getCacheSize())
+                .wrap(createHttpClient(uri.getOptions()))
+            : createHttpClient(uri.getOptions());
+        Request request = createHttpRequest(uri);
+        boolean handleErrorPages = taskParameters.handleErrorPages();
+        // The size limit and the handling of error pages affect the result, so they are a part of the key
+        String key = String.join(
+            StringUtils.SPACE,
+            HttpCache.getKey(request),
+            String.valueOf(getSizeOption(uri, PROPERTY_MAX_SIZE, -1)),
+            String.valueOf(handleErrorPages));
+        return DOWNLOADS.deduplicate(
+            key,
+            () -> getHttpResultAsync(uri, request, client, handleErrorPages, statistics));
+    }
+
+    private static CompletableFuture<HttpResult> getHttpResultAsync(
+        RichUri uri,
+        Request request,
+        OkHttpClient client,
+        boolean handleErrorPages,
+        Map<String, HttpFetchScheduler.Statistics> statistics) {
+
+        return HttpFetchScheduler
+            .getInstance()
+            .submit(
+                uri.getUri().getHost(),
+                uri.getOptions(),
+                statistics,
+                () -> getHttpResult(uri, request, client, handleErrorPages))
+            .exceptionally(e -> new HttpResult(uri));
     }
 
-    private static HttpResult getHttpResult(RichUri uri, OkHttpClient client, boolean handleErrorPages) {
+    private static HttpResult getHttpResult(
+        RichUri uri,
+        Request request,
+        OkHttpClient client,
+        boolean handleErrorPages) throws IOException {
+
         log.info("Downloading from {}", uri);
 
         StopWatch stopWatch = StopWatch.createStarted();
-        Request request = createHttpRequest(uri);
         Call call = client.newCall(request);
         try (Response response = call.execute()) {
             stopWatch.stop();
@@ -177,9 +244,16 @@ class HttpRunner extends DiffRunner {
             if (!response.isSuccessful() && !handleErrorPages) {
                 return new HttpResult(uri);
             }
-            return response.body() != null
-                ? new HttpResult(uri, response.body().contentType(), response.body().string())
-                : new HttpResult(uri);
+            if (response.body() == null) {
+                return new HttpResult(uri);
+            }
+            long spillThreshold = getSizeOption(uri, PROPERTY_SPILL_SIZE, HttpBody.DEFAULT_SPILL_THRESHOLD);
+            long maxSize = getSizeOption(uri, PROPERTY_MAX_SIZE, -1);
+            HttpBody body = HttpBody.read(response.body().byteStream(), spillThreshold, maxSize);
+            if (body.isTruncated()) {
+                log.warn("Download from {} truncated at {} bytes", uri, body.getSize());
+            }
+            return new HttpResult(uri, response.body().contentType(), body);
         } catch (IOException e) {
             stopWatch.stop();
             log.error(
@@ -187,7 +261,7 @@ class HttpRunner extends DiffRunner {
                 uri,
                 stopWatch.getTime(TimeUnit.MILLISECONDS),
                 e.getMessage());
-            return new HttpResult(uri);
+            throw e;
         } finally {
             closeQuietly(client);
         }
@@ -213,7 +287,14 @@ class HttpRunner extends DiffRunner {
             populateHeadersFromFile(uri, requestBuilder);
             uri.getOptions().entrySet()
                 .stream()
-                .filter(entry -> !StringUtils.equalsAny(entry.getKey(), PROPERTY_TRUST_SSL, PROPERTY_HEADERS))
+                .filter(entry -> !StringUtils.equalsAny(
+                    entry.getKey(),
+                    PROPERTY_TRUST_SSL,
+                    PROPERTY_HEADERS,
+                    PROPERTY_MAX_SIZE,
+                    PROPERTY_SPILL_SIZE,
+                    HttpFetchScheduler.OPTION_CONNECTIONS,
+                    HttpFetchScheduler.OPTION_RATE))
                 .forEach(entry -> requestBuilder.addHeader(entry.getKey(), entry.getValue()));
         }
         return requestBuilder.build();
@@ -248,6 +329,14 @@ class HttpRunner extends DiffRunner {
                 StringUtils.substringAfter(line, Constants.COLON).trim()));
     }
 
+    private static long getSizeOption(RichUri uri, String name, long defaultValue) {
+        if (MapUtils.isEmpty(uri.getOptions()) || !uri.getOptions().containsKey(name)) {
+            return defaultValue;
+        }
+        long result = HttpBody.parseSize(uri.getOptions().get(name));
+        return result >= 0 ? result : defaultValue;
+    }
+
     private static void closeQuietly(Object value) {
         if (!(value instanceof Closeable)) {
             return;
@@ -268,14 +357,23 @@ class HttpRunner extends DiffRunner {
      */
     @AllArgsConstructor
     @RequiredArgsConstructor
-    private static class HttpResult {
+    private static class HttpResult implements Closeable {
 
         private final RichUri richUri;
 
         private MediaType contentType;
 
-        @Getter
-        private String content;
+        private HttpBody body;
+
+        String getContent() {
+            if (body == null) {
+                return null;
+            }
+            Charset charset = contentType != null
+                ? contentType.charset(StandardCharsets.UTF_8)
+                : StandardCharsets.UTF_8;
+            return body.getText(charset);
+        }
 
         String getContentType() {
             return contentType != null ? contentType.toString() : StringUtils.EMPTY;
@@ -285,12 +383,35 @@ class HttpRunner extends DiffRunner {
             return FileMetadata
                     .builder()
                     .path(richUri.toString())
-                    .size(StringUtils.length(content))
+                    .size(body != null ? body.getSize() : 0)
+                    .crc(body != null ? body.getCrc() : 0)
+                    .truncated(isTruncated())
                     .build();
         }
 
         String getPath() {
             return richUri.getUri().getPath();
         }
+
+        boolean isTruncated() {
+            return body != null && body.isTruncated();
+        }
+
+        boolean isLargerThan(long threshold) {
+            return body != null && threshold > 0 && body.getSize() > threshold;
+        }
+
+        void retain(int count) {
+            if (body != null) {
+                body.retain(count);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (body != null) {
+                body.close();
+            }
+        }
     }
 }
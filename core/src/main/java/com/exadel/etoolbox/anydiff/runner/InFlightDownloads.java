@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Lets the callers that request the same resource while its download is in progress share the result of that
+ * download instead of starting their own. The result is handed to every caller, and each caller is responsible for
+ * releasing it. Before the result is handed out, it is retained once per each additional caller, so that it stays
+ * available until the last caller releases it
+ * @param <T> The type of the download result
+ */
+@Slf4j
+class InFlightDownloads<T> {
+
+    private final Map<String, Download<T>> downloads = new HashMap<>();
+    private final BiConsumer<T, Integer> retainer;
+
+    /**
+     * Creates a new instance
+     * @param retainer A routine that accepts a download result and the number of additional callers that the result
+     *                 is going to be shared with
+     */
+    InFlightDownloads(BiConsumer<T, Integer> retainer) {
+        this.retainer = retainer;
+    }
+
+    /**
+     * Runs the given download routine unless there is already a download with the same key in progress. In the latter
+     * case, the caller receives the result of the download in progress
+     * @param key      A string that identifies the resource
+     * @param download A routine that starts the download
+     * @return {@link CompletableFuture} object
+     */
+    CompletableFuture<T> deduplicate(String key, Supplier<CompletableFuture<T>> download) {
+        Download<T> current;
+        synchronized (downloads) {
+            current = downloads.get(key);
+            if (current != null) {
+                log.debug("Waiting for the download of {}", key);
+                current.callers++;
+                return current.result;
+            }
+            current = new Download<>();
+            downloads.put(key, current);
+        }
+        Download<T> started = current;
+        CompletableFuture<T> promise;
+        try {
+            promise = download.get();
+        } catch (RuntimeException e) {
+            promise = new CompletableFuture<>();
+            promise.completeExceptionally(e);
+        }
+        promise.whenComplete((value, exception) -> {
+            int callers;
+            // No caller can join the download after it is removed, so the number of callers is final
+            synchronized (downloads) {
+                downloads.remove(key);
+                callers = started.callers;
+            }
+            if (exception != null) {
+                started.result.completeExceptionally(exception);
+                return;
+            }
+            if (value != null && callers > 1) {
+                retainer.accept(value, callers - 1);
+            }
+            started.result.complete(value);
+        });
+        return started.result;
+    }
+
+    /* ------------------
+       Subsidiary classes
+       ------------------ */
+
+    /**
+     * Represents a download in progress along with the number of callers waiting for it
+     * @param <T> The type of the download result
+     */
+    private static class Download<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private int callers = 1;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the amount of memory that the archive sources of a single run may use to keep the content of entries. The
+ * budget is shared by the current runner and the nested runners, so that archives compared concurrently do not
+ * exceed the limit together
+ */
+class MemoryBudget {
+
+    static final long DEFAULT_LIMIT = 64L * 1024 * 1024;
+
+    private final AtomicLong remaining;
+
+    /**
+     * Creates a new {@code MemoryBudget} with the default limit
+     */
+    MemoryBudget() {
+        this(DEFAULT_LIMIT);
+    }
+
+    /**
+     * Creates a new {@code MemoryBudget} with the given limit
+     * @param limit The number of bytes that can be reserved
+     */
+    MemoryBudget(long limit) {
+        remaining = new AtomicLong(Math.max(limit, 0));
+    }
+
+    /**
+     * Reserves the given number of bytes if they fit in the budget
+     * @param size The number of bytes to reserve
+     * @return True if the bytes have been reserved; otherwise, false
+     */
+    boolean tryReserve(long size) {
+        long current;
+        do {
+            current = remaining.get();
+            if (size > current) {
+                return false;
+            }
+        } while (!remaining.compareAndSet(current, current - size));
+        return true;
+    }
+
+    /**
+     * Returns the previously reserved bytes to the budget
+     * @param size The number of bytes to release
+     */
+    void release(long size) {
+        remaining.addAndGet(size);
+    }
+
+    /**
+     * Gets the number of bytes that can still be reserved
+     * @return Long value
+     */
+    long getRemaining() {
+        return remaining.get();
+    }
+}
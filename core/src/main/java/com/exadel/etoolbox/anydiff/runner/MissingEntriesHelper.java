@@ -13,13 +13,19 @@
  */
 package com.exadel.etoolbox.anydiff.runner;
 
-import org.apache.commons.collections4.CollectionUtils;
+import com.exadel.etoolbox.anydiff.Constants;
+import org.apache.commons.lang3.StringUtils;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * A helper class that is used to determine the missing entries detect moved entries between the two directories or
@@ -31,9 +37,10 @@ class MissingEntriesHelper {
     private final List<String> rightEntries;
     private final Function<String, Long> leftCrcSupplier;
     private final Function<String, Long> rightCrcSupplier;
+    private final ForkJoinPool pool;
 
-    private final List<String> missingLeft = new ArrayList<>();
-    private final List<String> missingRight = new ArrayList<>();
+    private final Set<String> missingLeft = new HashSet<>();
+    private final Set<String> missingRight = new HashSet<>();
     private final Map<String, String> moved = new HashMap<>();
 
     /**
@@ -48,11 +55,30 @@ class MissingEntriesHelper {
             List<String> rightEntries,
             Function<String, Long> leftCrcSupplier,
             Function<String, Long> rightCrcSupplier) {
+        this(leftEntries, rightEntries, leftCrcSupplier, rightCrcSupplier, null);
+    }
+
+    /**
+     * Creates a new instance of {@code MissingEntriesHelper} class
+     * @param leftEntries      List of entries that represent the left side of the comparison
+     * @param rightEntries     List of entries that represent the right side of the comparison
+     * @param leftCrcSupplier  A {@code Function} that can be used to compute CRC values for the left-side entries
+     * @param rightCrcSupplier A {@code Function} that can be used to compute CRC values for the right-side entries
+     * @param pool             An optional {@link ForkJoinPool} used to compute CRC values. If not specified, the
+     *                         common pool is used
+     */
+    MissingEntriesHelper(
+            List<String> leftEntries,
+            List<String> rightEntries,
+            Function<String, Long> leftCrcSupplier,
+            Function<String, Long> rightCrcSupplier,
+            ForkJoinPool pool) {
 
         this.leftEntries = leftEntries;
         this.rightEntries = rightEntries;
         this.leftCrcSupplier = leftCrcSupplier;
         this.rightCrcSupplier = rightCrcSupplier;
+        this.pool = pool;
         prepare();
     }
 
@@ -84,27 +110,66 @@ class MissingEntriesHelper {
     }
 
     private void prepare() {
-        List<FileMetadata> missingInLeft = new ArrayList<>();
-        List<FileMetadata> missingInRight = new ArrayList<>();
+        Set<String> leftIndex = new HashSet<>(leftEntries);
+        Set<String> rightIndex = new HashSet<>(rightEntries);
+        leftEntries.stream().filter(entry -> !rightIndex.contains(entry)).forEach(missingRight::add);
+        rightEntries.stream().filter(entry -> !leftIndex.contains(entry)).forEach(missingLeft::add);
+        if (missingLeft.isEmpty() || missingRight.isEmpty()) {
+            return;
+        }
 
-        for (String entry : leftEntries) {
-            if (!rightEntries.contains(entry)) {
-                long crc = leftCrcSupplier.apply(entry);
-                missingInRight.add(FileMetadata.builder().path(entry).crc(crc).pathAgnostic(true).build());
-            }
+        // An entry can only be moved to an entry with the same extension, so CRC values are computed just for the
+        // unmatched entries that have a counterpart with the same extension on the opposite side
+        Set<String> leftExtensions = missingRight.stream().map(MissingEntriesHelper::getExtension).collect(Collectors.toSet());
+        Set<String> rightExtensions = missingLeft.stream().map(MissingEntriesHelper::getExtension).collect(Collectors.toSet());
+        List<String> leftCandidates = leftEntries
+                .stream()
+                .filter(missingRight::contains)
+                .filter(entry -> rightExtensions.contains(getExtension(entry)))
+                .collect(Collectors.toList());
+        List<String> rightCandidates = rightEntries
+                .stream()
+                .filter(missingLeft::contains)
+                .filter(entry -> leftExtensions.contains(getExtension(entry)))
+                .collect(Collectors.toList());
+        Map<String, Long> leftCrcs = computeCrcs(leftCandidates, leftCrcSupplier);
+        Map<String, Long> rightCrcs = computeCrcs(rightCandidates, rightCrcSupplier);
+
+        Map<String, Queue<String>> rightCandidatesByKey = new HashMap<>();
+        for (String entry : rightCandidates) {
+            rightCandidatesByKey
+                    .computeIfAbsent(getKey(entry, rightCrcs.get(entry)), key -> new ArrayDeque<>())
+                    .add(entry);
         }
-        for (String entry : rightEntries) {
-            if (!leftEntries.contains(entry)) {
-                long crc = rightCrcSupplier.apply(entry);
-                missingInLeft.add(FileMetadata.builder().path(entry).crc(crc).pathAgnostic(true).build());
+        for (String entry : leftCandidates) {
+            Queue<String> matches = rightCandidatesByKey.get(getKey(entry, leftCrcs.get(entry)));
+            String match = matches != null ? matches.poll() : null;
+            if (match == null) {
+                continue;
             }
+            moved.put(entry, match);
+            missingRight.remove(entry);
+            missingLeft.remove(match);
         }
-        for (FileMetadata metadata : CollectionUtils.intersection(missingInLeft, missingInRight)) {
-            String leftPath = missingInRight.remove(missingInRight.indexOf(metadata)).getPath();
-            String rightPath = missingInLeft.remove(missingInLeft.indexOf(metadata)).getPath();
-            moved.put(leftPath, rightPath);
+    }
+
+    private Map<String, Long> computeCrcs(List<String> entries, Function<String, Long> crcSupplier) {
+        if (entries.isEmpty()) {
+            return new HashMap<>();
         }
-        missingInLeft.forEach(metadata -> this.missingLeft.add(metadata.getPath()));
-        missingInRight.forEach(metadata -> this.missingRight.add(metadata.getPath()));
+        ForkJoinPool effectivePool = pool != null ? pool : ForkJoinPool.commonPool();
+        return effectivePool
+                .submit(() -> entries
+                        .parallelStream()
+                        .collect(Collectors.toConcurrentMap(Function.identity(), crcSupplier)))
+                .join();
+    }
+
+    private static String getExtension(String value) {
+        return StringUtils.substringAfterLast(value, Constants.DOT);
+    }
+
+    private static String getKey(String entry, long crc) {
+        return getExtension(entry) + Constants.PIPE + crc;
     }
 }
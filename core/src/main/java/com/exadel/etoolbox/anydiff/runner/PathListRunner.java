@@ -18,8 +18,11 @@ import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -34,7 +37,7 @@ class PathListRunner extends DiffRunner {
     @Override
     public List<Diff> runInternal() {
         int commonLength = Math.min(ArrayUtils.getLength(left), ArrayUtils.getLength(right));
-        List<Diff> result = new ArrayList<>();
+        List<Workload> workloads = new ArrayList<>();
 
         for (int i = 0; i < commonLength; i++) {
             Path leftPart = left[i];
@@ -47,15 +50,33 @@ class PathListRunner extends DiffRunner {
                     getRightLabel())
                     .withContentType(getContentType())
                     .withEntryFilter(getEntryFilter())
-                    .withTaskParameters(getTaskParameters());
-            result.addAll(diffRunner.run());
+                    .withTaskParameters(getTaskParameters())
+                    .withExecutor(getExecutor())
+                    .withIdenticalCounter(getIdenticalCounter())
+                    .withMemoryBudget(getMemoryBudget())
+                    .withFetchStatistics(getFetchStatistics());
+            workloads.add(new Workload(getWeight(leftPart, rightPart), diffRunner::run));
         }
         for (int i = commonLength; i < left.length; i++) {
-            result.add(reportRightMissing(left[i].toAbsolutePath().toString(), StringUtils.EMPTY));
+            String leftLine = left[i].toAbsolutePath().toString();
+            workloads.add(Workload.lightweight(() -> Collections.singletonList(
+                    reportRightMissing(leftLine, StringUtils.EMPTY))));
         }
         for (int i = commonLength; i < right.length; i++) {
-            result.add(reportLeftMissing(StringUtils.EMPTY, right[i].toAbsolutePath().toString()));
+            String rightLine = right[i].toAbsolutePath().toString();
+            workloads.add(Workload.lightweight(() -> Collections.singletonList(
+                    reportLeftMissing(StringUtils.EMPTY, rightLine))));
+        }
+        return ExecutionHelper.run(getExecutor(), workloads, this::report);
+    }
+
+    private static long getWeight(Path left, Path right) {
+        try {
+            return Math.max(
+                    Files.isRegularFile(left) ? Files.size(left) : 0L,
+                    Files.isRegularFile(right) ? Files.size(right) : 0L);
+        } catch (IOException e) {
+            return 0L;
         }
-        return result;
     }
 }
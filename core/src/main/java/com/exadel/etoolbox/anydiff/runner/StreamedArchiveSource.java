@@ -0,0 +1,140 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Implements {@link ArchiveSource} for an archive that is read sequentially from a stream, such as an archive embedded
+ * in another archive. Nothing is extracted to disk. The entries are indexed in a first pass over the stream; the
+ * content of the entries that need comparison is kept in memory within the given budget after a second pass. The
+ * budget is shared with the other sources of the same run and is returned to it when the source is closed. The
+ * entries exceeding the budget are reported as unavailable
+ */
+@RequiredArgsConstructor
+class StreamedArchiveSource implements ArchiveSource, Closeable {
+
+    private final Opener opener;
+    private final MemoryBudget memoryBudget;
+
+    private Map<String, ZipEntry> entries;
+    private final Map<String, byte[]> contents = new HashMap<>();
+    private long reserved;
+
+    @Override
+    public synchronized Map<String, ZipEntry> getEntries() throws IOException {
+        if (entries != null) {
+            return entries;
+        }
+        Map<String, ZipEntry> result = new LinkedHashMap<>();
+        try (ZipInputStream input = new ZipInputStream(opener.open())) {
+            ZipEntry entry;
+            // Moving to the next entry drains the current one. After that, the CRC and size of the current entry are
+            // known even if they were not stored in its local header
+            while ((entry = input.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    result.put(entry.getName(), entry);
+                }
+            }
+        }
+        entries = Collections.unmodifiableMap(result);
+        return entries;
+    }
+
+    @Override
+    public synchronized void prefetch(Collection<String> paths) throws IOException {
+        Map<String, ZipEntry> allEntries = getEntries();
+        Set<String> selected = new HashSet<>();
+        for (String path : paths) {
+            ZipEntry entry = allEntries.get(path);
+            if (entry == null || entry.getSize() < 0 || !memoryBudget.tryReserve(entry.getSize())) {
+                continue;
+            }
+            selected.add(path);
+            reserved += entry.getSize();
+        }
+        if (selected.isEmpty()) {
+            return;
+        }
+        try (ZipInputStream input = new ZipInputStream(opener.open())) {
+            ZipEntry entry;
+            while ((entry = input.getNextEntry()) != null && contents.size() < selected.size()) {
+                if (selected.contains(entry.getName())) {
+                    contents.put(entry.getName(), IOUtils.toByteArray(input));
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isAvailable(String path) {
+        return contents.containsKey(path);
+    }
+
+    @Override
+    public InputStream openEntry(String path) throws IOException {
+        byte[] content = contents.get(path);
+        if (content != null) {
+            return new ByteArrayInputStream(content);
+        }
+        ZipInputStream input = new ZipInputStream(opener.open());
+        try {
+            ZipEntry entry;
+            while ((entry = input.getNextEntry()) != null) {
+                if (entry.getName().equals(path)) {
+                    return input;
+                }
+            }
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+        input.close();
+        throw new FileNotFoundException(path);
+    }
+
+    /**
+     * Discards the content kept in memory and returns the reserved bytes to the shared budget
+     */
+    @Override
+    public synchronized void close() {
+        contents.clear();
+        memoryBudget.release(reserved);
+        reserved = 0;
+    }
+
+    /**
+     * Represents a routine that opens the stream of an archive
+     */
+    @FunctionalInterface
+    interface Opener {
+        InputStream open() throws IOException;
+    }
+}
@@ -21,6 +21,7 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -35,7 +36,7 @@ class StringListRunner extends DiffRunner {
     @Override
     public List<Diff> runInternal() {
         int commonLength = Math.min(ArrayUtils.getLength(left), ArrayUtils.getLength(right));
-        List<Diff> result = new ArrayList<>();
+        List<Workload> workloads = new ArrayList<>();
 
         for (int i = 0; i < commonLength; i++) {
             String leftPart = left[i];
@@ -52,17 +53,25 @@ class StringListRunner extends DiffRunner {
                             !Constants.LABEL_RIGHT.equals(getRightLabel()) ? getRightLabel() :StringUtils.EMPTY))
                     .withContentType(getContentType())
                     .withEntryFilter(getEntryFilter())
-                    .withTaskParameters(getTaskParameters());
-            result.addAll(diffRunner.run());
+                    .withTaskParameters(getTaskParameters())
+                    .withExecutor(getExecutor())
+                    .withIdenticalCounter(getIdenticalCounter())
+                    .withMemoryBudget(getMemoryBudget())
+                    .withFetchStatistics(getFetchStatistics());
+            // The cost of comparing a pair of strings, such as URLs, is not known in advance, so the pairs are started in
+            // their original order
+            workloads.add(new Workload(0L, diffRunner::run));
         }
         for (int i = commonLength; i < left.length; i++) {
             String leftLine = left[i];
-            result.add(reportRightMissing(leftLine, StringUtils.EMPTY));
+            workloads.add(Workload.lightweight(() -> Collections.singletonList(
+                    reportRightMissing(leftLine, StringUtils.EMPTY))));
         }
         for (int i = commonLength; i < right.length; i++) {
             String rightLine = right[i];
-            result.add(reportLeftMissing(StringUtils.EMPTY, rightLine));
+            workloads.add(Workload.lightweight(() -> Collections.singletonList(
+                    reportLeftMissing(StringUtils.EMPTY, rightLine))));
         }
-        return result;
+        return ExecutionHelper.run(getExecutor(), workloads, this::report);
     }
 }
@@ -0,0 +1,50 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import com.exadel.etoolbox.anydiff.diff.Diff;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Represents a unit of comparison work that is scheduled by {@link ExecutionHelper}
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+@Getter(AccessLevel.PACKAGE)
+class Workload {
+
+    /**
+     * Gets the estimated cost of the work, such as the size of the compared files in bytes. Heavier workloads are
+     * started first
+     */
+    private final long weight;
+
+    /**
+     * Gets the routine that produces the comparison results
+     */
+    private final Supplier<List<Diff>> routine;
+
+    /**
+     * Creates a new {@code Workload} that has negligible cost, such as reporting a missing entry
+     * @param routine A {@code Supplier} that produces the comparison results
+     * @return {@code Workload} instance
+     */
+    static Workload lightweight(Supplier<List<Diff>> routine) {
+        return new Workload(0L, routine);
+    }
+}
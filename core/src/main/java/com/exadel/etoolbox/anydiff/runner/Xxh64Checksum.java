@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import java.util.zip.Checksum;
+
+/**
+ * Implements the 64-bit xxHash algorithm (with the zero seed) as a streaming {@link Checksum}
+ */
+class Xxh64Checksum implements Checksum {
+
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+
+    private static final int STRIPE_LENGTH = 32;
+
+    private final byte[] buffer = new byte[STRIPE_LENGTH];
+    private int bufferLength;
+    private long totalLength;
+
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+
+    /**
+     * Creates a new {@code Xxh64Checksum} instance
+     */
+    Xxh64Checksum() {
+        reset();
+    }
+
+    @Override
+    public void update(int b) {
+        update(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        totalLength += len;
+        int position = off;
+        int end = off + len;
+        if (bufferLength > 0) {
+            int fill = Math.min(STRIPE_LENGTH - bufferLength, len);
+            System.arraycopy(b, position, buffer, bufferLength, fill);
+            bufferLength += fill;
+            position += fill;
+            if (bufferLength < STRIPE_LENGTH) {
+                return;
+            }
+            processStripe(buffer, 0);
+            bufferLength = 0;
+        }
+        while (position + STRIPE_LENGTH <= end) {
+            processStripe(b, position);
+            position += STRIPE_LENGTH;
+        }
+        if (position < end) {
+            System.arraycopy(b, position, buffer, 0, end - position);
+            bufferLength = end - position;
+        }
+    }
+
+    @Override
+    public long getValue() {
+        long result;
+        if (totalLength >= STRIPE_LENGTH) {
+            result = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            result = mergeRound(result, v1);
+            result = mergeRound(result, v2);
+            result = mergeRound(result, v3);
+            result = mergeRound(result, v4);
+        } else {
+            result = v3 + PRIME_5;
+        }
+        result += totalLength;
+
+        int position = 0;
+        while (position + 8 <= bufferLength) {
+            result ^= round(0, getLong(buffer, position));
+            result = Long.rotateLeft(result, 27) * PRIME_1 + PRIME_4;
+            position += 8;
+        }
+        if (position + 4 <= bufferLength) {
+            result ^= (getInt(buffer, position) & 0xFFFFFFFFL) * PRIME_1;
+            result = Long.rotateLeft(result, 23) * PRIME_2 + PRIME_3;
+            position += 4;
+        }
+        while (position < bufferLength) {
+            result ^= (buffer[position] & 0xFFL) * PRIME_5;
+            result = Long.rotateLeft(result, 11) * PRIME_1;
+            position++;
+        }
+
+        result ^= result >>> 33;
+        result *= PRIME_2;
+        result ^= result >>> 29;
+        result *= PRIME_3;
+        result ^= result >>> 32;
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        v1 = PRIME_1 + PRIME_2;
+        v2 = PRIME_2;
+        v3 = 0;
+        v4 = -PRIME_1;
+        bufferLength = 0;
+        totalLength = 0;
+    }
+
+    private void processStripe(byte[] data, int offset) {
+        v1 = round(v1, getLong(data, offset));
+        v2 = round(v2, getLong(data, offset + 8));
+        v3 = round(v3, getLong(data, offset + 16));
+        v4 = round(v4, getLong(data, offset + 24));
+    }
+
+    private static long round(long accumulator, long input) {
+        return Long.rotateLeft(accumulator + input * PRIME_2, 31) * PRIME_1;
+    }
+
+    private static long mergeRound(long accumulator, long value) {
+        return (accumulator ^ round(0, value)) * PRIME_1 + PRIME_4;
+    }
+
+    private static long getLong(byte[] data, int offset) {
+        return (data[offset] & 0xFFL)
+                | (data[offset + 1] & 0xFFL) << 8
+                | (data[offset + 2] & 0xFFL) << 16
+                | (data[offset + 3] & 0xFFL) << 24
+                | (data[offset + 4] & 0xFFL) << 32
+                | (data[offset + 5] & 0xFFL) << 40
+                | (data[offset + 6] & 0xFFL) << 48
+                | (data[offset + 7] & 0xFFL) << 56;
+    }
+
+    private static int getInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF)
+                | (data[offset + 1] & 0xFF) << 8
+                | (data[offset + 2] & 0xFF) << 16
+                | (data[offset + 3] & 0xFF) << 24;
+    }
+}
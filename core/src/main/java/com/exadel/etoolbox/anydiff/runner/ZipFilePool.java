@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Manages a set of {@link ZipFile} handles opened for the same archive. Reading entries of a {@code ZipFile} is
+ * synchronized on the handle, so every thread that reads the archive concurrently borrows a handle of its own
+ */
+@RequiredArgsConstructor
+@Slf4j
+class ZipFilePool implements ArchiveSource, Closeable {
+
+    private final Path path;
+
+    private final Queue<ZipFile> idle = new ConcurrentLinkedQueue<>();
+    private final Queue<ZipFile> all = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Gets the path to the archive file
+     * @return {@link Path} object
+     */
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Borrows an idle {@link ZipFile} handle or opens a new one if there are no idle handles
+     * @return {@code ZipFile} object
+     * @throws IOException If the archive cannot be opened
+     */
+    ZipFile acquire() throws IOException {
+        ZipFile result = idle.poll();
+        if (result == null) {
+            result = new ZipFile(path.toFile());
+            all.add(result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the previously borrowed {@link ZipFile} handle to the pool
+     * @param value {@code ZipFile} object
+     */
+    void release(ZipFile value) {
+        if (value != null) {
+            idle.offer(value);
+        }
+    }
+
+    @Override
+    public Map<String, ZipEntry> getEntries() throws IOException {
+        Map<String, ZipEntry> result = new LinkedHashMap<>();
+        ZipFile zipFile = acquire();
+        try {
+            for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                if (!entry.isDirectory()) {
+                    result.put(entry.getName(), entry);
+                }
+            }
+        } finally {
+            release(zipFile);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc} The {@link ZipFile} handle used for reading is returned to the pool when the stream is closed
+     */
+    @Override
+    public InputStream openEntry(String entryPath) throws IOException {
+        ZipFile zipFile = acquire();
+        try {
+            ZipEntry entry = zipFile.getEntry(entryPath);
+            if (entry == null) {
+                throw new FileNotFoundException(entryPath);
+            }
+            return new FilterInputStream(zipFile.getInputStream(entry)) {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    if (closed) {
+                        return;
+                    }
+                    closed = true;
+                    try {
+                        super.close();
+                    } finally {
+                        release(zipFile);
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            release(zipFile);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean isRandomAccess() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        for (ZipFile zipFile : all) {
+            try {
+                zipFile.close();
+            } catch (IOException e) {
+                log.error("Error closing archive {}", path, e);
+            }
+        }
+        all.clear();
+        idle.clear();
+    }
+}
@@ -13,17 +13,28 @@
  */
 package com.exadel.etoolbox.anydiff;
 
+import com.exadel.etoolbox.anydiff.comparison.BinaryDiffTest;
+import com.exadel.etoolbox.anydiff.comparison.DiffAlgorithmTest;
 import com.exadel.etoolbox.anydiff.comparison.DiffBlockXPathTest;
 import com.exadel.etoolbox.anydiff.comparison.DiffCountTest;
+import com.exadel.etoolbox.anydiff.comparison.DiffRowUtilTest;
 import com.exadel.etoolbox.anydiff.comparison.DiffTaskTest;
 import com.exadel.etoolbox.anydiff.comparison.DiffTest;
 import com.exadel.etoolbox.anydiff.comparison.FragmentTest;
+import com.exadel.etoolbox.anydiff.comparison.LineDiffTest;
 import com.exadel.etoolbox.anydiff.comparison.MarkedStringTest;
 import com.exadel.etoolbox.anydiff.comparison.SpacesHandlingTest;
+import com.exadel.etoolbox.anydiff.comparison.StreamingDiffTest;
 import com.exadel.etoolbox.anydiff.comparison.preprocessor.PreprocessorsTest;
 import com.exadel.etoolbox.anydiff.runner.DiffRunnerTest;
+import com.exadel.etoolbox.anydiff.runner.FileHasherTest;
 import com.exadel.etoolbox.anydiff.runner.FilterHelperTest;
 import com.exadel.etoolbox.anydiff.runner.FiltersTest;
+import com.exadel.etoolbox.anydiff.runner.HttpBodyTest;
+import com.exadel.etoolbox.anydiff.runner.HttpCacheTest;
+import com.exadel.etoolbox.anydiff.runner.HttpFetchSchedulerTest;
+import com.exadel.etoolbox.anydiff.runner.InFlightDownloadsTest;
+import com.exadel.etoolbox.anydiff.runner.MissingEntriesHelperTest;
 import com.exadel.etoolbox.anydiff.util.RichUriTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
@@ -33,18 +44,29 @@ import org.junit.runners.Suite;
         DiffTest.class,
         DiffRunnerTest.class,
         DiffTaskTest.class,
+        BinaryDiffTest.class,
+        DiffAlgorithmTest.class,
 
         DiffCountTest.class,
         DiffBlockXPathTest.class,
+        DiffRowUtilTest.class,
 
         FragmentTest.class,
+        LineDiffTest.class,
         MarkedStringTest.class,
+        StreamingDiffTest.class,
 
         PreprocessorsTest.class,
         SpacesHandlingTest.class,
 
+        FileHasherTest.class,
         FilterHelperTest.class,
         FiltersTest.class,
+        HttpBodyTest.class,
+        HttpCacheTest.class,
+        HttpFetchSchedulerTest.class,
+        InFlightDownloadsTest.class,
+        MissingEntriesHelperTest.class,
 
         RichUriTest.class
 })
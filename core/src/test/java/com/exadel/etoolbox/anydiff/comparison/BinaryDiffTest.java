@@ -0,0 +1,157 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import com.exadel.etoolbox.anydiff.OutputType;
+import com.exadel.etoolbox.anydiff.diff.Diff;
+import com.exadel.etoolbox.anydiff.diff.DiffState;
+import com.exadel.etoolbox.anydiff.diff.PrintableEntry;
+import com.exadel.etoolbox.anydiff.runner.DiffRunner;
+import org.apache.commons.lang3.ArrayUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class BinaryDiffTest {
+
+    // More than one segment so that the parallel chunking is exercised
+    private static final int SAMPLE_SIZE = 34 * 1024 * 1024 + 17;
+
+    private static final int CHANGE_OFFSET = 1000;
+    private static final int INSERTION_OFFSET = 10 * 1024 * 1024;
+    private static final int INSERTION_LENGTH = 100;
+    private static final int REMOVAL_OFFSET = 33 * 1024 * 1024;
+    private static final int REMOVAL_LENGTH = 50;
+
+    static Path left;
+    static Path right;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        Random random = new Random(42);
+        byte[] leftBytes = new byte[SAMPLE_SIZE];
+        random.nextBytes(leftBytes);
+        byte[] rightBytes = leftBytes.clone();
+        for (int i = CHANGE_OFFSET; i < CHANGE_OFFSET + 4; i++) {
+            rightBytes[i] ^= (byte) 0xFF;
+        }
+        rightBytes = ArrayUtils.addAll(
+                ArrayUtils.subarray(rightBytes, 0, REMOVAL_OFFSET),
+                ArrayUtils.subarray(rightBytes, REMOVAL_OFFSET + REMOVAL_LENGTH, rightBytes.length));
+        byte[] insertion = new byte[INSERTION_LENGTH];
+        Arrays.fill(insertion, (byte) 0x7F);
+        rightBytes = ArrayUtils.addAll(
+                ArrayUtils.addAll(ArrayUtils.subarray(rightBytes, 0, INSERTION_OFFSET), insertion),
+                ArrayUtils.subarray(rightBytes, INSERTION_OFFSET, rightBytes.length));
+
+        left = Files.createTempFile("anydiff-left", ".bin");
+        right = Files.createTempFile("anydiff-right", ".bin");
+        Files.write(left, leftBytes);
+        Files.write(right, rightBytes);
+    }
+
+    @AfterClass
+    public static void destroy() throws IOException {
+        Files.deleteIfExists(left);
+        Files.deleteIfExists(right);
+    }
+
+    @Test
+    public void shouldFindChangedRanges() throws IOException {
+        List<BinaryDiff.Difference> differences = new BinaryDiff(left, right).getDifferences(DiffBudget.UNLIMITED);
+
+        Assert.assertEquals(3, differences.size());
+        assertRange(differences.get(0).getLeft(), CHANGE_OFFSET, 4);
+        assertRange(differences.get(0).getRight(), CHANGE_OFFSET, 4);
+
+        assertRange(differences.get(1).getLeft(), INSERTION_OFFSET, 0);
+        assertRange(differences.get(1).getRight(), INSERTION_OFFSET, INSERTION_LENGTH);
+
+        assertRange(differences.get(2).getLeft(), REMOVAL_OFFSET, REMOVAL_LENGTH);
+        assertRange(differences.get(2).getRight(), REMOVAL_OFFSET + INSERTION_LENGTH, 0);
+        Assert.assertTrue(differences.get(1).getRight().toString().contains("7F 7F 7F"));
+    }
+
+    @Test
+    public void shouldReportEqualFiles() throws IOException {
+        Assert.assertTrue(new BinaryDiff(left, left).getDifferences(DiffBudget.UNLIMITED).isEmpty());
+    }
+
+    @Test(timeout = 20_000L)
+    public void shouldReportUnrelatedFilesAsSingleRange() throws IOException {
+        Random random = new Random(5);
+        byte[] leftBytes = new byte[4 * 1024 * 1024];
+        random.nextBytes(leftBytes);
+        byte[] rightBytes = new byte[3 * 1024 * 1024];
+        random.nextBytes(rightBytes);
+        System.arraycopy(leftBytes, 0, rightBytes, 0, 100);
+        Path unrelatedLeft = Files.createTempFile("anydiff-left", ".bin");
+        Path unrelatedRight = Files.createTempFile("anydiff-right", ".bin");
+        try {
+            Files.write(unrelatedLeft, leftBytes);
+            Files.write(unrelatedRight, rightBytes);
+            List<BinaryDiff.Difference> differences = new BinaryDiff(unrelatedLeft, unrelatedRight)
+                    .getDifferences(DiffBudget.UNLIMITED);
+            Assert.assertEquals(1, differences.size());
+            assertRange(differences.get(0).getLeft(), 100, leftBytes.length - 100);
+            assertRange(differences.get(0).getRight(), 100, rightBytes.length - 100);
+        } finally {
+            Files.deleteIfExists(unrelatedLeft);
+            Files.deleteIfExists(unrelatedRight);
+        }
+    }
+
+    @Test
+    public void shouldReportSummaryWhenBudgetExceeded() {
+        List<Diff> diffs = DiffRunner
+                .forValues(new Path[] {left}, null, new Path[] {right}, null)
+                .withTaskParameters(TaskParameters.builder().maxBlocks(1).build())
+                .run();
+        // The metadata block and the summary
+        Assert.assertEquals(2, diffs.get(0).children().size());
+        String summary = ((PrintableEntry) diffs.get(0).children().get(1)).toString(OutputType.LOG);
+        Assert.assertTrue(summary.contains("Degraded:"));
+        Assert.assertTrue(summary.contains(String.format("0x%08X", CHANGE_OFFSET)));
+    }
+
+    @Test
+    public void shouldReportByteRangesAsBlocks() {
+        List<Diff> diffs = DiffRunner
+                .forValues(new Path[] {left}, null, new Path[] {right}, null)
+                .run();
+        Assert.assertEquals(1, diffs.size());
+        Assert.assertEquals(DiffState.CHANGE, diffs.get(0).getState());
+        // The metadata block and the three byte ranges
+        Assert.assertEquals(4, diffs.get(0).children().size());
+
+        List<Diff> metadataOnly = DiffRunner
+                .forValues(new Path[] {left}, null, new Path[] {right}, null)
+                .withTaskParameters(TaskParameters.builder().metadataOnly(true).build())
+                .run();
+        Assert.assertEquals(1, metadataOnly.get(0).children().size());
+    }
+
+    private static void assertRange(BinaryDiff.ByteRange range, long offset, long length) {
+        Assert.assertEquals(offset, range.getOffset());
+        Assert.assertEquals(length, range.getLength());
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import com.exadel.etoolbox.anydiff.ContentType;
+import com.exadel.etoolbox.anydiff.DiffAlgorithm;
+import com.exadel.etoolbox.anydiff.diff.Diff;
+import com.github.difflib.DiffUtils;
+import com.github.difflib.algorithm.Change;
+import com.github.difflib.patch.Patch;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Contains timing runs for the routines of the {@code comparison} package. These are not a part of the regular test
+ * suite and are executed with {@code mvn test -P benchmark}
+ */
+public class ComparisonBenchmark {
+
+    private static final int WARM_UP_RUNS = 3;
+
+    @Test
+    public void measureLineDiff() {
+        Random random = new Random(1);
+        List<String> xml = LineDiffTest.createXmlLines(random, 20_000);
+        List<String> log = LineDiffTest.createLogLines(random, 20_000);
+        for (List<String> left : Arrays.asList(xml, log)) {
+            List<String> right = LineDiffTest.mutate(random, left, left.size() / 20);
+            String kind = left == xml ? "XML" : "Log";
+            measure(kind + ", default", () -> DiffUtils.diff(left, right));
+            measure(kind + ", interned", () -> LineDiffUtil.getPatch(left, right, false));
+            measure(
+                    kind + ", default, ignore spaces",
+                    () -> DiffUtils.diff(left, right, EqualityUtil::equalsIgnoreSpaces));
+            measure(kind + ", interned, ignore spaces", () -> LineDiffUtil.getPatch(left, right, true));
+        }
+    }
+
+    @Test
+    public void measureDiffAlgorithms() {
+        Random random = new Random(3);
+        for (ContentType contentType : ContentType.values()) {
+            if (contentType == ContentType.UNDEFINED) {
+                continue;
+            }
+            List<String> left = DiffAlgorithmTest.createContent(random, contentType, 5_000);
+            List<String> right = LineDiffTest.mutate(random, left, 100);
+            String leftContent = String.join(StringUtils.LF, left);
+            String rightContent = String.join(StringUtils.LF, right);
+            for (DiffAlgorithm algorithm : DiffAlgorithm.values()) {
+                DiffTask task = DiffTask
+                        .builder()
+                        .contentType(contentType)
+                        .leftContent(leftContent)
+                        .rightContent(rightContent)
+                        .taskParameters(TaskParameters.builder().algorithm(algorithm).build())
+                        .build();
+                Diff diff = measure(contentType + ", " + algorithm, task::run);
+                System.out.printf("%s, %s: %d block(s)%n", contentType, algorithm, diff.children().size());
+            }
+        }
+    }
+
+    @Test
+    public void measureInlineDiff() {
+        List<String> left = DiffRowUtilTest.createMinifiedLines(new Random(3));
+        List<String> right = Collections.singletonList(left.get(0).replace("class=\"c42\"", "class=\"c24\""));
+        Patch<String> patch = DiffUtils.diff(left, right);
+        List<Change> changes = DiffRowUtilTest.toChanges(patch);
+        measure(
+                "Minified lines, DiffRowGenerator",
+                () -> DiffRowUtilTest.createReferenceGenerator(false).generateDiffRows(left, patch));
+        measure("Minified lines, DiffRowUtil", () -> DiffRowUtil.getDiffRows(left, right, changes, false));
+    }
+
+    @Test
+    public void measureStreamingDiff() throws IOException {
+        List<String> leftLines = StreamingDiffTest.createLines(50_000);
+        List<String> rightLines = StreamingDiffTest.mutate(leftLines, 42);
+        Path left = Files.createTempFile("anydiff-left", ".txt");
+        Path right = Files.createTempFile("anydiff-right", ".txt");
+        try {
+            StreamingDiffTest.write(left, leftLines);
+            StreamingDiffTest.write(right, rightLines);
+            String leftContent = String.join(StringUtils.LF, leftLines);
+            String rightContent = String.join(StringUtils.LF, rightLines);
+            measure("In-memory comparison", () -> StreamingDiffTest.run(leftContent, rightContent));
+            measure("Streaming comparison", () -> StreamingDiffTest.run(left, right));
+        } finally {
+            Files.deleteIfExists(left);
+            Files.deleteIfExists(right);
+        }
+    }
+
+    @Test
+    public void measureBinaryDiff() throws IOException {
+        BinaryDiffTest.init();
+        try {
+            measure("Byte-wise comparison", () -> {
+                try {
+                    return new BinaryDiff(BinaryDiffTest.left, BinaryDiffTest.right)
+                            .getDifferences(DiffBudget.UNLIMITED);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } finally {
+            BinaryDiffTest.destroy();
+        }
+    }
+
+    @Test
+    public void measureMarkedString() {
+        for (int markerCount : new int[] {1_000, 5_000, 20_000}) {
+            String content = MarkedStringTest.createMarkedContent(markerCount);
+            measure("MarkedString, " + markerCount + " markers", () -> new MarkedString(content, false));
+        }
+    }
+
+    @Test
+    public void measureFragmentExtraction() {
+        // The fragments are memoized by a block, so every run gets a new one
+        Iterator<BlockImpl> blocks = Stream
+                .generate(() -> FragmentTest.createBlock(20_000))
+                .limit(WARM_UP_RUNS + 1)
+                .iterator();
+        measure("Fragments of 20000 lines", () -> blocks.next().getLeftFragments());
+    }
+
+    private static <T> T measure(String title, Supplier<T> action) {
+        // There is no JMH in the build, so we do a few warm-up runs to have the JIT-compiled code measured
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            action.get();
+        }
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        long allocatedBefore = getAllocatedBytes(threadBean);
+        long start = System.nanoTime();
+        T result = action.get();
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        long allocated = getAllocatedBytes(threadBean) - allocatedBefore;
+        System.out.printf("%s: %d ms, %d Kb allocated%n", title, elapsed, allocated / 1024);
+        return result;
+    }
+
+    private static long getAllocatedBytes(ThreadMXBean threadBean) {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            long threadId = Thread.currentThread().getId();
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(threadId);
+        }
+        return 0;
+    }
+}
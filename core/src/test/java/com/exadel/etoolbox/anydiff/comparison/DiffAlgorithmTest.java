@@ -0,0 +1,150 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import com.exadel.etoolbox.anydiff.ContentType;
+import com.exadel.etoolbox.anydiff.DiffAlgorithm;
+import com.exadel.etoolbox.anydiff.OutputType;
+import com.exadel.etoolbox.anydiff.diff.Diff;
+import com.exadel.etoolbox.anydiff.diff.DiffState;
+import com.github.difflib.patch.Patch;
+import com.github.difflib.patch.PatchFailedException;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class DiffAlgorithmTest {
+
+    private static final String[] LINES = {"<div>", "</div>", "", "<span>Lorem</span>", "ipsum", "dolor", "sit"};
+
+    @Test
+    public void shouldProducePatches() throws PatchFailedException {
+        Random random = new Random(7);
+        for (int attempt = 0; attempt < 500; attempt++) {
+            List<String> left = new ArrayList<>();
+            int size = random.nextInt(60);
+            for (int i = 0; i < size; i++) {
+                left.add(random.nextInt(3) == 0 ? "Unique " + i : LINES[random.nextInt(LINES.length)]);
+            }
+            List<String> right = LineDiffTest.mutate(random, left, 1 + random.nextInt(10));
+            int myersChanges = countChangedLines(LineDiffUtil.getPatch(left, right, false, DiffAlgorithm.MYERS));
+            for (DiffAlgorithm algorithm : DiffAlgorithm.values()) {
+                Patch<String> patch = LineDiffUtil.getPatch(left, right, false, algorithm);
+                Assert.assertEquals(right, patch.applyTo(left));
+                Assert.assertTrue(countChangedLines(patch) >= myersChanges);
+            }
+        }
+    }
+
+    @Test
+    public void shouldAlignByUniqueLines() {
+        List<String> left = new ArrayList<>();
+        List<String> right = new ArrayList<>();
+        for (String name : new String[] {"first", "second", "third"}) {
+            left.add("void " + name + "() {");
+            left.add("}");
+            left.add("");
+        }
+        right.add("void zeroth() {");
+        right.add("}");
+        right.add("");
+        right.addAll(left);
+        for (DiffAlgorithm algorithm : new DiffAlgorithm[] {DiffAlgorithm.HISTOGRAM, DiffAlgorithm.PATIENCE}) {
+            Patch<String> patch = LineDiffUtil.getPatch(left, right, false, algorithm);
+            Assert.assertEquals(1, patch.getDeltas().size());
+            Assert.assertEquals(0, patch.getDeltas().get(0).getSource().getPosition());
+            Assert.assertEquals(right.subList(0, 3), patch.getDeltas().get(0).getTarget().getLines());
+        }
+    }
+
+    @Test
+    public void shouldChooseAlgorithm() {
+        Assert.assertEquals(DiffAlgorithm.MYERS, LineDiffUtil.chooseAlgorithm(1_000, 500, 100));
+        Assert.assertEquals(DiffAlgorithm.HISTOGRAM, LineDiffUtil.chooseAlgorithm(10_000, 5_000, 2_000));
+        Assert.assertEquals(DiffAlgorithm.PATIENCE, LineDiffUtil.chooseAlgorithm(10_000, 5_000, 4_900));
+        Assert.assertEquals(DiffAlgorithm.MYERS, DiffAlgorithm.from(" Myers "));
+        Assert.assertNull(DiffAlgorithm.from("unknown"));
+    }
+
+    @Test
+    public void shouldChooseAlgorithmForContentTypes() {
+        Random random = new Random(3);
+        for (ContentType contentType : ContentType.values()) {
+            if (contentType == ContentType.UNDEFINED) {
+                continue;
+            }
+            List<String> left = createContent(random, contentType, 300);
+            List<String> right = LineDiffTest.mutate(random, left, 10);
+            String leftContent = String.join(StringUtils.LF, left);
+            String rightContent = String.join(StringUtils.LF, right);
+            // Small content is compared with the Myers algorithm in the automatic mode
+            Assert.assertEquals(
+                    contentType.toString(),
+                    toString(contentType, leftContent, rightContent, DiffAlgorithm.MYERS),
+                    toString(contentType, leftContent, rightContent, DiffAlgorithm.AUTO));
+        }
+    }
+
+    static List<String> createContent(Random random, ContentType contentType, int size) {
+        List<String> result = new ArrayList<>();
+        while (result.size() < size) {
+            int index = result.size();
+            switch (contentType) {
+                case XML:
+                    result.add("<jcr:content jcr:primaryType=\"nt:unstructured\" name=\"item" + index + "\">");
+                    result.add("  <items jcr:primaryType=\"nt:unstructured\"/>");
+                    result.add("</jcr:content>");
+                    break;
+                case HTML:
+                    result.add("<div class=\"item\">");
+                    result.add("<p>Item " + index + " of " + random.nextInt(100) + "</p>");
+                    result.add("</div>");
+                    result.add("");
+                    break;
+                case MANIFEST:
+                    // Manifest headers are sorted and deduplicated by the preprocessor, so every key needs to be unique
+                    result.add("X-Package-" + index + ": com.acme.package" + index + ";version=" + random.nextInt(5));
+                    break;
+                default:
+                    result.add("12:00:" + (index % 60) + " INFO [worker-" + random.nextInt(8) + "] Processed " + index);
+            }
+        }
+        return result;
+    }
+
+    private static String toString(ContentType contentType, String left, String right, DiffAlgorithm algorithm) {
+        Diff diff = DiffTask
+                .builder()
+                .contentType(contentType)
+                .leftContent(left)
+                .rightContent(right)
+                .taskParameters(TaskParameters.builder().algorithm(algorithm).build())
+                .build()
+                .run();
+        Assert.assertEquals(DiffState.CHANGE, diff.getState());
+        return diff.toString(OutputType.LOG);
+    }
+
+    private static int countChangedLines(Patch<String> patch) {
+        return patch
+                .getDeltas()
+                .stream()
+                .mapToInt(delta -> delta.getSource().size() + delta.getTarget().size())
+                .sum();
+    }
+}
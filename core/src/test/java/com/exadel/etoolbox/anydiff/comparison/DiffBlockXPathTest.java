@@ -14,7 +14,11 @@
 package com.exadel.etoolbox.anydiff.comparison;
 
 import com.exadel.etoolbox.anydiff.ContentType;
+import com.exadel.etoolbox.anydiff.OutputType;
+import com.exadel.etoolbox.anydiff.comparison.postprocessor.Postprocessor;
 import com.exadel.etoolbox.anydiff.diff.Diff;
+import com.exadel.etoolbox.anydiff.diff.PrintableEntry;
+import com.github.difflib.text.DiffRow;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Assert;
@@ -23,6 +27,10 @@ import org.junit.Test;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public class DiffBlockXPathTest {
 
@@ -104,4 +112,56 @@ public class DiffBlockXPathTest {
             Assert.assertEquals("Private-Package", ((BlockImpl) diff.children().get(1)).getPath());
         }
     }
+
+    @Test
+    public void shouldReportXmlPathForDeferredLines() {
+        String left = "<catalog>\n  <items>\n    <item>\n      <title>First</title>\n      <ranking>1</ranking>\n"
+                + "    </item>\n    <item>\n      <title>Second</title>\n      <ranking>2</ranking>\n    </item>\n"
+                + "  </items>\n</catalog>";
+        String right = left
+                .replace("First", "Primary")
+                .replace("Second</title>\n      <ranking>2", "Another</title>\n      <ranking>3");
+        // Without normalization, the changed lines of markup are not inspected by a postprocessor, so their inline
+        // diff is deferred while the path helper works on the plain lines
+        Diff deferred = runXmlTask(left, right, null);
+        Assert.assertTrue(deferred.children().stream().allMatch(block -> ((BlockImpl) block).hasDeferredLines()));
+        List<String> deferredPaths = getPaths(deferred);
+
+        Postprocessor xmlPostprocessor = Postprocessor.forType(ContentType.XML, TaskParameters.DEFAULT);
+        Postprocessor eagerPostprocessor = new Postprocessor() {
+            @Override
+            public List<DiffRow> apply(List<DiffRow> rows) {
+                return xmlPostprocessor.apply(rows);
+            }
+        };
+        Diff eager = runXmlTask(left, right, eagerPostprocessor);
+        Assert.assertTrue(eager.children().stream().noneMatch(block -> ((BlockImpl) block).hasDeferredLines()));
+
+        Assert.assertEquals(Arrays.asList("/catalog/items/item/title", "/catalog/items/item[1]/title"), deferredPaths);
+        Assert.assertEquals(getPaths(eager), deferredPaths);
+        for (OutputType target : OutputType.values()) {
+            Assert.assertEquals(
+                    ((PrintableEntry) eager).toString(target),
+                    ((PrintableEntry) deferred).toString(target));
+        }
+    }
+
+    private static Diff runXmlTask(String left, String right, Postprocessor postprocessor) {
+        TaskParameters.Builder parameters = TaskParameters.builder().normalize(false).arrangeAttributes(false);
+        if (postprocessor != null) {
+            parameters.postprocessors(Collections.singletonMap(ContentType.XML, postprocessor));
+        }
+        return DiffTask
+                .builder()
+                .leftContent(left)
+                .rightContent(right)
+                .contentType(ContentType.XML)
+                .taskParameters(parameters.build())
+                .build()
+                .run();
+    }
+
+    private static List<String> getPaths(Diff diff) {
+        return diff.children().stream().map(block -> ((BlockImpl) block).getPath()).collect(Collectors.toList());
+    }
 }
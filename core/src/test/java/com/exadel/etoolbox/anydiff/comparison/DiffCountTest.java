@@ -33,6 +33,7 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 
 public class DiffCountTest {
@@ -191,6 +192,69 @@ public class DiffCountTest {
         Assert.assertEquals(1, diff.getPendingCount());
     }
 
+    @Test
+    public void shouldRefreshCountsAfterModification() throws URISyntaxException, IOException {
+        Pair<String, String> sources = getSources("left/file1.txt", "right/file1.txt");
+        Diff diff = new AnyDiff().left(sources.getLeft()).right(sources.getRight()).compare().get(0);
+
+        final int totalCount = 13;
+        Assert.assertEquals(totalCount, diff.getCount());
+        Assert.assertEquals(totalCount, diff.getPendingCount());
+        Assert.assertEquals(DiffState.CHANGE, diff.getState());
+
+        // Accepting a line is reflected in the line, the block, and the diff
+        BlockImpl block1 = (BlockImpl) diff.children().get(1);
+        LineImpl line = getFirstChangedLine(block1);
+        int linePendingCount = line.getPendingCount();
+        int blockPendingCount = block1.getPendingCount();
+        Assert.assertTrue(linePendingCount > 0);
+        line.accept();
+        Assert.assertEquals(0, line.getPendingCount());
+        Assert.assertEquals(blockPendingCount - linePendingCount, block1.getPendingCount());
+        Assert.assertEquals(totalCount - linePendingCount, diff.getPendingCount());
+        Assert.assertEquals(totalCount, diff.getCount());
+
+        // Accepting a fragment pair
+        BlockImpl block0 = (BlockImpl) diff.children().get(0);
+        int pendingCount = diff.getPendingCount();
+        LineImpl pairedLine = block0
+                .getLines()
+                .stream()
+                .filter(l -> !l.children().isEmpty() && l.getPendingCount() > 0)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+        ((FragmentPair) pairedLine.children().get(0)).accept();
+        Assert.assertEquals(pendingCount - 1, diff.getPendingCount());
+
+        // Excluding a line turns it into context
+        int lineCount = line.getCount();
+        int blockCount = block1.getCount();
+        block1.exclude(line);
+        Assert.assertEquals(DiffState.UNCHANGED, line.getState());
+        Assert.assertEquals(0, line.getCount());
+        Assert.assertEquals(blockCount - lineCount, block1.getCount());
+        Assert.assertEquals(totalCount - lineCount, diff.getCount());
+
+        // Excluding blocks
+        int count = diff.getCount();
+        AbstractBlock block3 = (AbstractBlock) diff.children().get(3);
+        diff.exclude(block3);
+        Assert.assertEquals(count - block3.getCount(), diff.getCount());
+        new ArrayList<>(diff.children()).forEach(diff::exclude);
+        Assert.assertEquals(DiffState.UNCHANGED, diff.getState());
+        Assert.assertEquals(0, diff.getCount());
+        Assert.assertEquals(0, diff.getPendingCount());
+    }
+
+    private static LineImpl getFirstChangedLine(BlockImpl block) {
+        return block
+                .getLines()
+                .stream()
+                .filter(l -> l.getState() != DiffState.UNCHANGED && l.getPendingCount() > 0)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
     private static Pair<String, String> getSources(String leftPath, String rightPath) throws URISyntaxException, IOException {
         URL resourcesRoot = DiffCountTest.class.getResource("/sample");
         assert resourcesRoot != null;
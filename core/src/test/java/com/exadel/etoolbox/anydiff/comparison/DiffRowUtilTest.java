@@ -0,0 +1,178 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import com.github.difflib.DiffUtils;
+import com.github.difflib.algorithm.Change;
+import com.github.difflib.patch.AbstractDelta;
+import com.github.difflib.patch.DeltaType;
+import com.github.difflib.patch.Patch;
+import com.github.difflib.text.DiffRow;
+import com.github.difflib.text.DiffRowGenerator;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public class DiffRowUtilTest {
+
+    private static final String[] FRAGMENTS = {
+            "<div class=\"a\">", "</div>", " ", "  ", "\t", "Lorem", "ipsum", "jcr:content", "a:", ":b", "::",
+            "-", "_x", "Ünïcode", "42", ";", "{", "}", "\n", "\n\n", " \n", "<", ">", "=", "http://acme.com"
+    };
+    private static final String[] LINE_FRAGMENTS = Arrays
+            .stream(FRAGMENTS)
+            .map(fragment -> fragment.replace("\n", StringUtils.EMPTY))
+            .toArray(String[]::new);
+
+    @Test
+    public void shouldSplitIntoTokens() {
+        Assert.assertEquals(Arrays.asList(""), getTokens(""));
+        Assert.assertEquals(Arrays.asList(" \t "), getTokens(" \t "));
+        Assert.assertEquals(
+                Arrays.asList("<", "div", " ", "class", "=\"", "a-b_c", "\">", "</", "span", ">"),
+                getTokens("<div class=\"a-b_c\"></span>"));
+        Assert.assertEquals(
+                Arrays.asList("jcr:content", " ", "a", ":", " ", ":", "b", " ", "http", "://", "acme", ".", "com"),
+                getTokens("jcr:content a: :b http://acme.com"));
+        Assert.assertEquals(Arrays.asList(":", "a"), getTokens(":a"));
+        Assert.assertEquals(Arrays.asList("Lorem", "\n  ", "Ünïcode42", "();"), getTokens("Lorem\n  Ünïcode42();"));
+    }
+
+    @Test
+    public void shouldMatchDiffRowGenerator() {
+        Random random = new Random(17);
+        for (int attempt = 0; attempt < 2_000; attempt++) {
+            List<String> left = createLines(random);
+            List<String> right = LineDiffTest.mutate(random, left, 1 + random.nextInt(3), LINE_FRAGMENTS);
+            for (boolean ignoreSpaces : new boolean[] {false, true}) {
+                Patch<String> patch = ignoreSpaces
+                        ? DiffUtils.diff(left, right, EqualityUtil::equalsIgnoreSpaces)
+                        : DiffUtils.diff(left, right);
+                Assert.assertEquals(
+                        left + " | " + right,
+                        createReferenceGenerator(ignoreSpaces).generateDiffRows(left, patch),
+                        DiffRowUtil.getDiffRows(left, right, toChanges(patch), ignoreSpaces));
+            }
+        }
+    }
+
+    @Test
+    public void shouldMarkWholeLinesWhenBudgetExceeded() throws InterruptedException {
+        DiffBudget budget = new DiffBudget(1, 0, 0);
+        Thread.sleep(10);
+        List<String> left = Arrays.asList("Lorem ipsum", "dolor");
+        List<String> right = Arrays.asList("Lorem ipsum sit", "amet");
+        List<Change> changes = Collections.singletonList(new Change(DeltaType.CHANGE, 0, 2, 0, 2));
+
+        List<DiffRow> rows = DiffRowUtil.getDiffRows(left, right, changes, false, false, budget);
+        Assert.assertEquals(2, rows.size());
+        Assert.assertEquals(DiffRow.Tag.CHANGE, rows.get(0).getTag());
+        Assert.assertEquals(Marker.DELETE + "Lorem ipsum" + Marker.RESET, rows.get(0).getOldLine());
+        Assert.assertEquals(Marker.INSERT + "Lorem ipsum sit" + Marker.RESET, rows.get(0).getNewLine());
+        Assert.assertEquals(Marker.DELETE + "dolor" + Marker.RESET, rows.get(1).getOldLine());
+        Assert.assertEquals(Marker.INSERT + "amet" + Marker.RESET, rows.get(1).getNewLine());
+
+        List<DiffRow> deferredRows = DiffRowUtil.getDiffRows(left, right, changes, false, true, budget);
+        Assert.assertEquals(
+                rows,
+                DiffRowUtil.getInlineRows(
+                        deferredRows.get(0).getOldLine(),
+                        deferredRows.get(0).getNewLine(),
+                        false,
+                        budget));
+    }
+
+    @Test
+    public void shouldMatchDiffRowGeneratorForMinifiedLines() {
+        List<String> left = createMinifiedLines(new Random(3));
+        List<String> right = Collections.singletonList(left.get(0).replace("class=\"c42\"", "class=\"c24\""));
+        Patch<String> patch = DiffUtils.diff(left, right);
+        Assert.assertEquals(
+                createReferenceGenerator(false).generateDiffRows(left, patch),
+                DiffRowUtil.getDiffRows(left, right, toChanges(patch), false));
+    }
+
+    /* ---------------
+       Utility methods
+       --------------- */
+
+    static DiffRowGenerator createReferenceGenerator(boolean ignoreSpaces) {
+        return DiffRowGenerator
+                .create()
+                .oldTag(isStart -> isStart ? Marker.DELETE.toString() : Marker.RESET.toString())
+                .newTag(isStart -> isStart ? Marker.INSERT.toString() : Marker.RESET.toString())
+                .lineNormalizer(StringUtils::defaultString)
+                .equalizer(ignoreSpaces ? EqualityUtil::equalsIgnoreSpaces : DiffRowGenerator.DEFAULT_EQUALIZER)
+                .inlineDiffBySplitter(DiffRowUtilTest::getTokens)
+                .showInlineDiffs(true)
+                .build();
+    }
+
+    static List<Change> toChanges(Patch<String> patch) {
+        return patch
+                .getDeltas()
+                .stream()
+                .map(DiffRowUtilTest::toChange)
+                .collect(Collectors.toList());
+    }
+
+    private static Change toChange(AbstractDelta<String> delta) {
+        return new Change(
+                delta.getType(),
+                delta.getSource().getPosition(),
+                delta.getSource().getPosition() + delta.getSource().size(),
+                delta.getTarget().getPosition(),
+                delta.getTarget().getPosition() + delta.getTarget().size());
+    }
+
+    private static List<String> getTokens(String value) {
+        // DiffRowGenerator modifies the list, so it must be an ArrayList
+        int[] bounds = TokenizerUtil.getTokenBounds(value);
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < bounds.length - 1; i++) {
+            result.add(value.substring(bounds[i], bounds[i + 1]));
+        }
+        return result;
+    }
+
+    static List<String> createMinifiedLines(Random random) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            builder.append("<div class=\"c").append(random.nextInt(100)).append("\">")
+                    .append(i % 7 == 0 ? "x" : "y").append("</div>");
+        }
+        return Collections.singletonList(builder.toString());
+    }
+
+    private static List<String> createLines(Random random) {
+        List<String> result = new ArrayList<>();
+        int count = random.nextInt(8);
+        for (int i = 0; i < count; i++) {
+            StringBuilder line = new StringBuilder();
+            int length = random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                line.append(LINE_FRAGMENTS[random.nextInt(LINE_FRAGMENTS.length)]);
+            }
+            result.add(line.toString());
+        }
+        return result;
+    }
+}
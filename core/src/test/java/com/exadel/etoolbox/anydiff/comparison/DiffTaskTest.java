@@ -13,21 +13,31 @@
  */
 package com.exadel.etoolbox.anydiff.comparison;
 
+import com.exadel.etoolbox.anydiff.AnyDiff;
 import com.exadel.etoolbox.anydiff.ContentType;
 import com.exadel.etoolbox.anydiff.OutputType;
+import com.exadel.etoolbox.anydiff.comparison.postprocessor.Postprocessor;
 import com.exadel.etoolbox.anydiff.diff.Diff;
 import com.exadel.etoolbox.anydiff.diff.DiffEntry;
 import com.exadel.etoolbox.anydiff.diff.DiffState;
 import com.exadel.etoolbox.anydiff.diff.EntryHolder;
 import com.exadel.etoolbox.anydiff.diff.PrintableEntry;
+import com.github.difflib.text.DiffRow;
+import com.github.difflib.text.DiffRowGenerator;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class DiffTaskTest {
 
@@ -151,4 +161,234 @@ public class DiffTaskTest {
             diff.children().forEach(entry -> System.out.println(((PrintableEntry) entry).toString(OutputType.CONSOLE)));
         }
     }
+
+    @Test
+    public void shouldTrimCommonLines() {
+        List<String> leftLines = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            leftLines.add("<div class=\"line-" + i + "\">Lorem ipsum dolor sit amet</div>");
+        }
+        List<String> rightLines = new ArrayList<>(leftLines);
+        rightLines.set(5_000, "<div class=\"line-5000\">Lorem ipsum dolor</div>");
+        rightLines.remove(15_000);
+
+        DiffRowGenerator generator = DiffRowGenerator
+                .create()
+                .lineNormalizer(StringUtils::defaultString)
+                .showInlineDiffs(true)
+                .build();
+        List<DiffRow> expected = generator.generateDiffRows(leftLines, rightLines);
+        int prefixLength = TrimmedRowList.getCommonPrefixLength(leftLines, rightLines, String::equals);
+        int suffixLength = TrimmedRowList.getCommonSuffixLength(leftLines, rightLines, prefixLength, String::equals);
+        Assert.assertEquals(5_000, prefixLength);
+        Assert.assertEquals(4_999, suffixLength);
+        List<DiffRow> actual = new TrimmedRowList(
+                leftLines,
+                prefixLength,
+                generator.generateDiffRows(
+                        leftLines.subList(prefixLength, leftLines.size() - suffixLength),
+                        rightLines.subList(prefixLength, rightLines.size() - suffixLength)),
+                suffixLength);
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals("Row " + i, expected.get(i), actual.get(i));
+        }
+
+        Diff diff = DiffTask
+                .builder()
+                .leftContent(String.join(StringUtils.LF, leftLines))
+                .rightContent(String.join(StringUtils.LF, rightLines))
+                .contentType(ContentType.HTML)
+                .build()
+                .run();
+        Assert.assertEquals(2, diff.children().size());
+        Assert.assertTrue(diff.children().get(0).getState().isChange());
+        Assert.assertTrue(diff.children().get(1).getState().isDeletion());
+        Assert.assertTrue(((PrintableEntry) diff.children().get(1)).toString(OutputType.CONSOLE).contains("line-15000"));
+    }
+
+    @Test
+    public void shouldDegradeWhenBudgetExceeded() {
+        List<String> leftLines = new ArrayList<>();
+        List<String> rightLines = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            leftLines.add("Lorem ipsum " + i);
+            rightLines.add(i < 10 ? "Lorem ipsum " + i : "Dolor sit amet " + i);
+        }
+        String left = String.join(StringUtils.LF, leftLines);
+        String right = String.join(StringUtils.LF, rightLines);
+        assertDegraded(left, right, TaskParameters.builder().timeLimit(1L).build(), "11-20000");
+        assertDegraded(left, right, TaskParameters.builder().maxEditDistance(100).build(), "11-20000");
+
+        leftLines = leftLines.subList(0, 100);
+        rightLines = new ArrayList<>(leftLines);
+        for (int i = 5; i < rightLines.size(); i += 20) {
+            rightLines.set(i, "Dolor sit amet " + i);
+        }
+        assertDegraded(
+                String.join(StringUtils.LF, leftLines),
+                String.join(StringUtils.LF, rightLines),
+                TaskParameters.builder().maxBlocks(3).build(),
+                "6-86");
+
+        Diff diff = DiffTask
+                .builder()
+                .leftContent("Lorem ipsum\ndolor sit amet")
+                .rightContent("Lorem ipsum\ndolor sit")
+                .taskParameters(TaskParameters.builder().maxEditDistance(100).maxBlocks(1).timeLimit(60_000L).build())
+                .build()
+                .run();
+        Assert.assertEquals(1, diff.children().size());
+        Assert.assertFalse(((PrintableEntry) diff.children().get(0)).toString(OutputType.LOG).contains("Degraded:"));
+    }
+
+    @Test
+    public void shouldDeferInlineDiff() throws IOException {
+        String left;
+        String right;
+        try (
+                InputStream leftInput = getClass().getResourceAsStream("/sample/left/file1.txt");
+                InputStream rightInput = getClass().getResourceAsStream("/sample/right/file1.txt")
+        ) {
+            Assert.assertNotNull(leftInput);
+            Assert.assertNotNull(rightInput);
+            left = IOUtils.toString(leftInput, StandardCharsets.UTF_8)
+                    + "\nLorem ipsum  \n\n\ndolor sit\n{{del}}amet{{/}}\nconsectetur";
+            right = IOUtils.toString(rightInput, StandardCharsets.UTF_8)
+                    + "\nLorem\nipsum\n  dolor\nsit\n\n{{ins}}amet\nconsectetur";
+        }
+        for (boolean ignoreSpaces : new boolean[] {false, true}) {
+            Diff deferred = runTextTask(left, right, ignoreSpaces, false);
+            // Only the blocks that contain changed (not just inserted or deleted) lines have their lines deferred
+            Assert.assertTrue(deferred.children().stream().anyMatch(block -> ((BlockImpl) block).hasDeferredLines()));
+            Diff eager = runTextTask(left, right, ignoreSpaces, true);
+            Assert.assertTrue(eager.children().stream().noneMatch(block -> ((BlockImpl) block).hasDeferredLines()));
+
+            Assert.assertEquals(eager.getCount(), deferred.getCount());
+            Assert.assertEquals(eager.getPendingCount(), deferred.getPendingCount());
+            for (OutputType target : OutputType.values()) {
+                Assert.assertEquals(
+                        ((PrintableEntry) eager).toString(target),
+                        ((PrintableEntry) deferred).toString(target));
+            }
+        }
+
+        // A block that is dropped by a filter never has its inline diff computed
+        List<BlockImpl> droppedBlocks = new ArrayList<>();
+        Diff filtered = DiffTask
+                .builder()
+                .contentType(ContentType.TEXT)
+                .leftContent(left)
+                .rightContent(right)
+                .filter(entry -> {
+                    droppedBlocks.add((BlockImpl) entry);
+                    return false;
+                })
+                .build()
+                .run();
+        Assert.assertTrue(filtered.children().isEmpty());
+        Assert.assertFalse(droppedBlocks.isEmpty());
+        Assert.assertTrue(droppedBlocks.stream().anyMatch(BlockImpl::hasDeferredLines));
+    }
+
+    @Test
+    public void shouldTellStateOfDeferredLines() {
+        String[][] samples = new String[][] {
+                {"Lorem ipsum\ndolor sit amet\nconsectetur", "Lorem ipsum\ndolor sit amen\nconsectetur"},
+                {"Lorem\nipsum dolor\nsit amet", "Lorem\nipsum  dolor\nsit amet"},
+                {"Lorem\nipsum\ndolor\nsit", "Lorem\nipsum dolor\n\nsit"},
+                {"Lorem\n\nipsum\namet", "Lorem\nconsectetur\n\namet"},
+                {"Lorem\nipsum\ndolor", "Lorem\nmuspi\ndolor"},
+                {"Lorem\nipsum\ndolor\nsit", "Lorem\ndolor\nipsum\nsit"},
+                {"Lorem\nipsum\ndolor", "Lorem\n\ndolor"},
+        };
+        for (boolean ignoreSpaces : new boolean[] {false, true}) {
+            for (String[] sample : samples) {
+                Diff deferred = runTextTask(sample[0], sample[1], ignoreSpaces, false);
+                // The state is read before the lines are created
+                DiffState deferredState = deferred.getState();
+                List<DiffState> deferredBlockStates = getChildStates(deferred);
+                boolean deferredPending = deferred.isPending();
+
+                Diff eager = runTextTask(sample[0], sample[1], ignoreSpaces, true);
+                Assert.assertEquals(eager.getState(), deferredState);
+                Assert.assertEquals(getChildStates(eager), deferredBlockStates);
+                Assert.assertEquals(eager.getPendingCount() > 0, deferredPending);
+                Assert.assertEquals(eager.getPendingCount() > 0, eager.isPending());
+            }
+        }
+
+        // A run of lines that differ in more than whitespace is known to be changed without the inline diff
+        Diff diff = runTextTask(samples[0][0], samples[0][1], false, false);
+        Assert.assertEquals(DiffState.CHANGE, diff.getState());
+        Assert.assertTrue(diff.isPending());
+        Assert.assertTrue(((BlockImpl) diff.children().get(0)).hasDeferredLines());
+    }
+
+    @Test
+    public void shouldCheckMatchWithoutInlineDiff() throws IOException {
+        Path left = Files.createTempFile("anydiff-left", ".txt");
+        Path right = Files.createTempFile("anydiff-right", ".txt");
+        try {
+            Files.write(left, "Lorem ipsum\ndolor sit amet\nconsectetur".getBytes(StandardCharsets.UTF_8));
+            Files.write(right, "Lorem ipsum\ndolor sit amen\nconsectetur".getBytes(StandardCharsets.UTF_8));
+            List<Diff> differences = new ArrayList<>();
+            AnyDiff anyDiff = new AnyDiff().left(left, null).right(right, null).listener(differences::add);
+
+            Assert.assertFalse(anyDiff.isMatch());
+            Assert.assertEquals(1, differences.size());
+            // Neither filtering the blocks nor checking for the pending differences has computed the inline diff
+            Assert.assertTrue(differences
+                    .get(0)
+                    .children()
+                    .stream()
+                    .allMatch(block -> ((BlockImpl) block).hasDeferredLines()));
+        } finally {
+            Files.deleteIfExists(left);
+            Files.deleteIfExists(right);
+        }
+    }
+
+    private static Diff runTextTask(String left, String right, boolean ignoreSpaces, boolean eager) {
+        TaskParameters.Builder parameters = TaskParameters.builder().ignoreSpaces(ignoreSpaces);
+        if (eager) {
+            // A postprocessor that may inspect the changed rows makes the inline diff run before the blocks are built
+            Postprocessor textPostprocessor = Postprocessor.forType(ContentType.TEXT, TaskParameters.DEFAULT);
+            Postprocessor eagerPostprocessor = new Postprocessor() {
+                @Override
+                public List<DiffRow> apply(List<DiffRow> rows) {
+                    return textPostprocessor.apply(rows);
+                }
+            };
+            parameters.postprocessors(Collections.singletonMap(ContentType.TEXT, eagerPostprocessor));
+        }
+        return DiffTask
+                .builder()
+                .contentType(ContentType.TEXT)
+                .leftContent(left)
+                .rightContent(right)
+                .taskParameters(parameters.build())
+                .build()
+                .run();
+    }
+
+    private static List<DiffState> getChildStates(Diff diff) {
+        return diff.children().stream().map(DiffEntry::getState).collect(Collectors.toList());
+    }
+
+    private static void assertDegraded(String left, String right, TaskParameters parameters, String range) {
+        Diff diff = DiffTask
+                .builder()
+                .leftContent(left)
+                .rightContent(right)
+                .taskParameters(parameters)
+                .build()
+                .run();
+        Assert.assertEquals(DiffState.CHANGE, diff.getState());
+        Assert.assertEquals(1, diff.children().size());
+        String output = ((PrintableEntry) diff.children().get(0)).toString(OutputType.LOG);
+        Assert.assertTrue(output.contains("Degraded:"));
+        Assert.assertTrue(output.contains("Changed lines:"));
+        Assert.assertTrue(output.contains(range));
+    }
 }
\ No newline at end of file
@@ -46,6 +46,25 @@ public class FragmentTest {
         Assert.assertEquals("sec", fragments.get(1).toString());
     }
 
+    @Test
+    public void shouldExtractFromLargeBlock() {
+        int lineCount = 20_000;
+        BlockImpl block = createBlock(lineCount);
+        List<Fragment> leftFragments = block.getLeftFragments();
+        List<Fragment> rightFragments = block.getRightFragments();
+
+        Assert.assertEquals(lineCount, leftFragments.size());
+        Assert.assertEquals(lineCount, rightFragments.size());
+        Assert.assertEquals("old", leftFragments.get(lineCount - 1).toString());
+        Assert.assertEquals("new", rightFragments.get(lineCount - 1).toString());
+        // The fragments are offset in the text of the whole block side
+        String lastLine = "Line " + (lineCount - 1) + " old text";
+        FragmentImpl lastFragment = (FragmentImpl) leftFragments.get(lineCount - 1);
+        Assert.assertTrue(lastFragment.getSource().endsWith("\n" + lastLine));
+        Assert.assertEquals(lastFragment.getSource().length() - " text".length(), lastFragment.getEndOffset());
+        Assert.assertEquals(lastLine.indexOf("old"), lastFragment.getLineOffset());
+    }
+
     @Test
     public void shouldTrim() {
         List<Fragment> fragments = new MarkedString(TEXT_SOURCE).getFragments();
@@ -109,4 +128,14 @@ public class FragmentTest {
                 "<b class=\"b\">ipsum",
                 fragment.as(MarkupFragmentImpl.class).toTag().toString());
     }
+
+    static BlockImpl createBlock(int lineCount) {
+        BlockImpl result = BlockImpl.builder().build(BlockImpl::new);
+        for (int i = 0; i < lineCount; i++) {
+            result.add(new LineImpl(
+                    new MarkedString("Line " + i + " {{del}}old{{/}} text"),
+                    new MarkedString("Line " + i + " {{ins}}new{{/}} text")));
+        }
+        return result;
+    }
 }
@@ -0,0 +1,189 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import com.github.difflib.DiffUtils;
+import com.exadel.etoolbox.anydiff.DiffAlgorithm;
+import com.github.difflib.text.DiffRow;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+public class LineDiffTest {
+
+    private static final String[] WORDS = {"<div>", "</div>", "", "  <span class=\"a\">", "Lorem", "ipsum  dolor"};
+
+    @Test
+    public void shouldMatchDefaultAlgorithm() {
+        Random random = new Random(42);
+        for (int attempt = 0; attempt < 500; attempt++) {
+            List<String> left = createLines(random, random.nextInt(40));
+            List<String> right = mutate(random, left);
+            Assert.assertEquals(
+                    DiffUtils.diff(left, right).getDeltas(),
+                    LineDiffUtil.getPatch(left, right, false).getDeltas());
+            Assert.assertEquals(
+                    DiffUtils.diff(left, right, EqualityUtil::equalsIgnoreSpaces).getDeltas(),
+                    LineDiffUtil.getPatch(left, right, true).getDeltas());
+        }
+    }
+
+    @Test
+    public void shouldHashIgnoringSpaces() {
+        String[] values = {"", " ", "a", " a", "a ", "a b", "a  b", "\ta\t b ", "ab", "a b", "a\nb", "b a"};
+        for (String first : values) {
+            for (String second : values) {
+                Assert.assertEquals(
+                        first + "|" + second,
+                        EqualityUtil.equalsIgnoreSpaces(first, second),
+                        EqualityUtil.hashIgnoreSpaces(first) == EqualityUtil.hashIgnoreSpaces(second));
+                Assert.assertEquals(
+                        first + "|" + second,
+                        first.equals(second),
+                        EqualityUtil.hash(first) == EqualityUtil.hash(second));
+            }
+        }
+    }
+
+    @Test(timeout = 120_000L)
+    public void shouldMatchDefaultAlgorithmForLargeFiles() {
+        Random random = new Random(1);
+        List<String> xml = createXmlLines(random, 20_000);
+        List<String> log = createLogLines(random, 20_000);
+        for (List<String> left : Arrays.asList(xml, log)) {
+            List<String> right = mutate(random, left, left.size() / 20);
+            Assert.assertEquals(
+                    DiffUtils.diff(left, right).getDeltas(),
+                    LineDiffUtil.getPatch(left, right, false).getDeltas());
+            Assert.assertEquals(
+                    DiffUtils.diff(left, right, EqualityUtil::equalsIgnoreSpaces).getDeltas(),
+                    LineDiffUtil.getPatch(left, right, true).getDeltas());
+        }
+    }
+
+    @Test(timeout = 120_000L)
+    public void shouldDiffSegmentsInParallel() throws InterruptedException, ExecutionException {
+        Random random = new Random(5);
+        List<String> left = new ArrayList<>();
+        for (int i = 0; i < 150_000; i++) {
+            left.add(i % 10 == 0 ? "</div>" : "<div id=\"item" + i + "\">Lorem ipsum</div>");
+        }
+        List<String> right = new ArrayList<>(left);
+        for (int i = 1; i < right.size(); i += 1 + random.nextInt(5_000)) {
+            if (right.get(i).startsWith("<div")) {
+                right.set(i, right.get(i).replace("Lorem", "Dolor"));
+            }
+        }
+        right.add(70_000, "<p>Inserted</p>");
+        right.remove(120_000);
+
+        List<DiffRow> expected = DiffRowUtil.getDiffRows(
+                left,
+                right,
+                DiffRowUtilTest.toChanges(LineDiffUtil.getPatch(left, right, false)),
+                false);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<DiffRow> actual = pool.submit(() -> LineDiffUtil.getDiffRows(
+                    left,
+                    right,
+                    false,
+                    DiffAlgorithm.MYERS,
+                    DiffBudget.UNLIMITED)).get();
+            Assert.assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertEquals("Row " + i, expected.get(i), actual.get(i));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<String> createLines(Random random, int count) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            result.add(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return result;
+    }
+
+    static List<String> createXmlLines(Random random, int count) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int depth = random.nextInt(6);
+            result.add(depth % 2 == 0
+                    ? StringUtils.repeat("  ", depth) + "<node id=\"" + random.nextInt(500) + "\">"
+                    : StringUtils.repeat("  ", depth) + "</node>");
+        }
+        return result;
+    }
+
+    static List<String> createLogLines(Random random, int count) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            result.add("2024-01-01 12:00:" + (i % 60) + " INFO [worker-" + random.nextInt(8) + "] Processed item " + i);
+        }
+        return result;
+    }
+
+    private static List<String> mutate(Random random, List<String> source) {
+        return mutate(random, source, 1 + random.nextInt(source.size() / 50 + 5));
+    }
+
+    static List<String> mutate(Random random, List<String> source, int changes) {
+        return mutate(random, source, changes, WORDS);
+    }
+
+    static List<String> mutate(Random random, List<String> source, int changes, String[] words) {
+        List<String> result = new ArrayList<>(source);
+        for (int i = 0; i < changes; i++) {
+            int position = result.isEmpty() ? 0 : random.nextInt(result.size());
+            switch (random.nextInt(5)) {
+                case 0:
+                    result.add(position, words[random.nextInt(words.length)]);
+                    break;
+                case 1:
+                    if (!result.isEmpty()) {
+                        result.remove(position);
+                    }
+                    break;
+                case 2:
+                    if (!result.isEmpty()) {
+                        result.set(position, result.get(position).replace(" ", "   "));
+                    }
+                    break;
+                case 3:
+                    if (!result.isEmpty()) {
+                        String line = result.get(position);
+                        int offset = random.nextInt(line.length() + 1);
+                        String word = words[random.nextInt(words.length)];
+                        result.set(position, line.substring(0, offset) + word + line.substring(offset));
+                    }
+                    break;
+                default:
+                    if (!result.isEmpty()) {
+                        result.set(position, result.get(position) + " changed");
+                    }
+            }
+        }
+        return result;
+    }
+}
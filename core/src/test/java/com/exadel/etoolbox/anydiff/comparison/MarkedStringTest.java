@@ -148,6 +148,66 @@ public class MarkedStringTest {
         Assert.assertTrue(side.getFragments().get(1).isInsert());
     }
 
+    @Test
+    public void shouldParseIrregularMarkers() {
+        MarkedString side = new MarkedString("Lorem\tipsum\u000Bdolor\fsit", false);
+        Assert.assertEquals("Lorem ipsum dolor sit", side.toString());
+
+        side = new MarkedString("{{{del}}Lorem{{/}}{{/}} {{err}}{{ins}}\tipsum{{/}}{{", false);
+        Assert.assertEquals("{Lorem {{err}} ipsum{{", side.toString());
+        Assert.assertEquals(2, side.getFragments().size());
+        Assert.assertEquals("Lorem", side.getFragments().get(0).toString());
+        Assert.assertEquals(" ipsum", side.getFragments().get(1).toString());
+
+        side = new MarkedString("{{del}}{{/}}Lorem{{ins}}", false);
+        Assert.assertEquals("Lorem", side.toString());
+    }
+
+    @Test
+    public void shouldManageNewLinePlaceholders() {
+        MarkedString side = new MarkedString("Lorem{{ins}}{{n}}{{/}} ipsum", false);
+        Assert.assertEquals("Lorem ipsum", side.toString());
+        Assert.assertEquals("Lorem<span class=\"ins\"> </span> ipsum", side.toHtml());
+        Assert.assertEquals(12, side.appendTo(new StringBuilder()));
+        Assert.assertEquals(1, side.getFragments().size());
+        Assert.assertTrue(side.getFragments().get(0).isInsert());
+
+        List<String> lines = side.toText(OutputType.CONSOLE, 6);
+        Assert.assertEquals(2, lines.size());
+        Assert.assertEquals("Lorem" + INSERT_STRING + " " + RESET_STRING, lines.get(0));
+        Assert.assertEquals(" ipsum", lines.get(1));
+
+        side.mark("ips", Marker.DELETE);
+        Assert.assertEquals("Lorem++ ~ips~um", stripEnd(side.toText(OutputType.LOG, DEFAULT_COLUMN).get(0)));
+        side.cutLeft(7);
+        Assert.assertEquals("~ips~um", stripEnd(side.toText(OutputType.LOG, DEFAULT_COLUMN).get(0)));
+        side.accept();
+        Assert.assertFalse(side.getFragments().get(0).isDelete());
+        Assert.assertEquals("ipsum", side.unmark().toString());
+        Assert.assertFalse(side.hasChanges());
+    }
+
+    @Test
+    public void shouldParseManyMarkers() {
+        for (int markerCount : new int[] {1_000, 5_000, 20_000}) {
+            MarkedString side = new MarkedString(createMarkedContent(markerCount), false);
+            Assert.assertEquals(markerCount, side.getFragments().size());
+            Assert.assertTrue(side.toString().startsWith("word0 word1 "));
+        }
+    }
+
+    static String createMarkedContent(int markerCount) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < markerCount; i++) {
+            builder
+                    .append(i % 2 == 0 ? Marker.DELETE : Marker.INSERT)
+                    .append("word").append(i)
+                    .append(Marker.RESET)
+                    .append("\t");
+        }
+        return builder.toString();
+    }
+
     private static String stripEnd(String value) {
         return StringUtils.stripEnd(value, StringUtils.SPACE);
     }
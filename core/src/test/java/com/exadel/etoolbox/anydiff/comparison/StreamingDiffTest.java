@@ -0,0 +1,320 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.comparison;
+
+import com.exadel.etoolbox.anydiff.ContentType;
+import com.exadel.etoolbox.anydiff.DiffAlgorithm;
+import com.exadel.etoolbox.anydiff.OutputType;
+import com.exadel.etoolbox.anydiff.comparison.preprocessor.Preprocessor;
+import com.exadel.etoolbox.anydiff.diff.Diff;
+import com.exadel.etoolbox.anydiff.diff.DiffState;
+import com.exadel.etoolbox.anydiff.diff.PrintableEntry;
+import com.exadel.etoolbox.anydiff.runner.DiffRunner;
+import com.exadel.etoolbox.anydiff.util.StringUtil;
+import com.github.difflib.text.DiffRow;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+public class StreamingDiffTest {
+
+    private static final int LINE_COUNT = 50_000;
+
+    private Path left;
+    private Path right;
+
+    @Before
+    public void init() throws IOException {
+        left = Files.createTempFile("anydiff-left", ".txt");
+        right = Files.createTempFile("anydiff-right", ".txt");
+    }
+
+    @After
+    public void destroy() throws IOException {
+        Files.deleteIfExists(left);
+        Files.deleteIfExists(right);
+    }
+
+    @Test
+    public void shouldSplitLikeInMemory() throws IOException {
+        String[] values = new String[] {
+                "",
+                "\n",
+                "\r",
+                "\n\n",
+                "Lorem",
+                "Lorem\n",
+                "Lorem\r\nipsum",
+                "Lorem\ripsum\n\n",
+                "\n\nLorem\r\n\r\n",
+                "Lorem\tipsum  dolor\r",
+                "Lörem ïpsum\r\n dolor 😀 sit"
+        };
+        UnaryOperator<String> preprocessor = Preprocessor.forType(ContentType.TEXT, TaskParameters.DEFAULT);
+        for (String value : values) {
+            Files.write(left, value.getBytes(StandardCharsets.UTF_8));
+            List<String> expected = StringUtil.splitByNewline(preprocessor.apply(value));
+            try (LineIndex index = LineIndex.build(left, false, preprocessor)) {
+                Assert.assertEquals(expected.size(), index.getLineCount());
+                Assert.assertEquals(expected, index.getLines(0, index.getLineCount()));
+                Assert.assertEquals(
+                        ContentSummary.from("Test", expected, null).toString(),
+                        index.getSummary("Test", null).toString());
+            }
+        }
+    }
+
+    @Test
+    public void shouldLimitLineLength() throws IOException {
+        String longLine = StringUtils.repeat("Lorem ipsum ", 100);
+        write(left, Arrays.asList("Lorem", longLine, "ipsum", longLine + "dolor"));
+        try (LineIndex index = LineIndex.build(left, false, UnaryOperator.identity(), 100)) {
+            Assert.assertEquals(4, index.getLineCount());
+            Assert.assertEquals("Length of line 2 exceeded 100", index.getLimitViolation());
+            Assert.assertEquals(Collections.singletonList("ipsum"), index.getLines(2, 3));
+        }
+        try (LineIndex index = LineIndex.build(left, false, UnaryOperator.identity())) {
+            Assert.assertNull(index.getLimitViolation());
+        }
+    }
+
+    @Test
+    public void shouldMatchInMemoryComparison() throws IOException {
+        List<String> leftLines = createLines(LINE_COUNT);
+        List<String> rightLines = mutate(leftLines, 42);
+        write(left, leftLines);
+        write(right, rightLines);
+
+        Diff inMemory = run(String.join("\n", leftLines), String.join("\n", rightLines));
+        Diff streamed = run(left, right);
+        Assert.assertEquals(DiffState.CHANGE, streamed.getState());
+        Assert.assertEquals(toStrings(inMemory), toStrings(streamed));
+    }
+
+    @Test
+    public void shouldMatchInMemoryChangesWithSmallWindow() throws IOException {
+        List<String> leftLines = createLines(5_000);
+        List<String> rightLines = mutate(leftLines, 7);
+        write(left, leftLines);
+        write(right, rightLines);
+
+        List<DiffRow> expected = LineDiffUtil.getDiffRows(
+                leftLines,
+                rightLines,
+                false,
+                DiffAlgorithm.MYERS,
+                DiffBudget.UNLIMITED);
+        for (int windowLines : new int[] {100, 777, 2_000}) {
+            try (StreamingDiff streamingDiff = new StreamingDiff(
+                    left,
+                    right,
+                    false,
+                    DiffAlgorithm.MYERS,
+                    UnaryOperator.identity(),
+                    windowLines)) {
+                List<DiffRow> actual = streamingDiff.getDiffRows(DiffBudget.UNLIMITED);
+                Assert.assertEquals(getChangedRows(expected), getChangedRows(actual));
+            }
+        }
+    }
+
+    @Test
+    public void shouldDegradeWhenBudgetExceeded() throws IOException {
+        List<String> leftLines = createLines(1_000);
+        List<String> rightLines = mutate(leftLines, 3);
+        write(left, leftLines);
+        write(right, rightLines);
+
+        Diff diff = DiffTask
+                .builder()
+                .contentType(ContentType.TEXT)
+                .leftContent(left)
+                .rightContent(right)
+                .taskParameters(TaskParameters.builder().maxBlocks(1).build())
+                .build()
+                .run();
+        Assert.assertEquals(DiffState.CHANGE, diff.getState());
+        Assert.assertEquals(1, diff.children().size());
+        String output = ((PrintableEntry) diff.children().get(0)).toString(OutputType.LOG);
+        Assert.assertTrue(output.contains("Degraded:"));
+        Assert.assertTrue(output.contains("Changed lines:"));
+    }
+
+    @Test
+    public void shouldDegradeWhenChangedLinesExceedLimit() throws IOException {
+        List<String> leftLines = createLines(5_000);
+        List<String> rightLines = mutate(leftLines, 5);
+        write(left, leftLines);
+        write(right, rightLines);
+
+        try (StreamingDiff streamingDiff = new StreamingDiff(
+                left,
+                right,
+                false,
+                DiffAlgorithm.MYERS,
+                UnaryOperator.identity(),
+                1_000).withLimits(10, 0)) {
+            Assert.assertThrows(
+                    DiffBudget.ExceededException.class,
+                    () -> streamingDiff.getDiffRows(DiffBudget.UNLIMITED));
+            Assert.assertTrue(streamingDiff.getSummary("Test", true).toString().contains("Changed lines:"));
+        }
+        try (StreamingDiff streamingDiff = new StreamingDiff(
+                left,
+                right,
+                false,
+                DiffAlgorithm.MYERS,
+                UnaryOperator.identity(),
+                1_000).withLimits(0, 100)) {
+            Assert.assertThrows(
+                    DiffBudget.ExceededException.class,
+                    () -> streamingDiff.getDiffRows(DiffBudget.UNLIMITED));
+        }
+    }
+
+    @Test
+    public void shouldVerifyLinesMatchedByHash() throws IOException {
+        List<String> lines = createLines(1_000);
+        write(left, lines);
+        write(right, lines);
+
+        try (StreamingDiff streamingDiff = new StreamingDiff(
+                left,
+                right,
+                false,
+                DiffAlgorithm.MYERS,
+                UnaryOperator.identity(),
+                100)) {
+            // Rewriting a line after the files are indexed imitates a hash collision: the hashes are equal while the
+            // text is not. The line keeps its length so that the stored positions remain valid
+            List<String> changedLines = new ArrayList<>(lines);
+            changedLines.set(501, StringUtils.reverse(lines.get(501)));
+            write(right, changedLines);
+
+            List<DiffRow> rows = streamingDiff.getDiffRows(DiffBudget.UNLIMITED);
+            List<DiffRow> changedRows = rows
+                    .stream()
+                    .filter(row -> row.getTag() != DiffRow.Tag.EQUAL)
+                    .collect(Collectors.toList());
+            Assert.assertEquals(1, changedRows.size());
+            Assert.assertEquals(DiffRow.Tag.CHANGE, changedRows.get(0).getTag());
+        }
+    }
+
+    @Test
+    public void shouldSwitchToStreamingForLargeFiles() throws IOException {
+        List<String> leftLines = createLines(2_000);
+        List<String> rightLines = mutate(leftLines, 11);
+        write(left, leftLines);
+        write(right, rightLines);
+
+        List<Diff> regular = DiffRunner
+                .forValues(new Path[] {left}, null, new Path[] {right}, null)
+                .withTaskParameters(TaskParameters.builder().streamingThreshold(0L).build())
+                .run();
+        List<Diff> streamed = DiffRunner
+                .forValues(new Path[] {left}, null, new Path[] {right}, null)
+                .withTaskParameters(TaskParameters.builder().streamingThreshold(1L).build())
+                .run();
+        Assert.assertEquals(1, regular.size());
+        Assert.assertEquals(1, streamed.size());
+        Assert.assertEquals(DiffState.CHANGE, streamed.get(0).getState());
+        Assert.assertEquals(regular.get(0).getCount(), streamed.get(0).getCount());
+        Assert.assertEquals(toStrings(regular.get(0)), toStrings(streamed.get(0)));
+    }
+
+    @Test
+    public void shouldNotStreamMarkup() throws IOException {
+        Path leftXml = Files.createTempFile("anydiff-left", ".xml");
+        Path rightXml = Files.createTempFile("anydiff-right", ".xml");
+        try {
+            Files.write(leftXml, "<root>\n<a b=\"1\" c=\"2\"/>\n</root>".getBytes(StandardCharsets.UTF_8));
+            Files.write(rightXml, "<root>\n<a c=\"2\" b=\"1\"/>\n<d/>\n</root>".getBytes(StandardCharsets.UTF_8));
+            List<Diff> regular = DiffRunner
+                    .forValues(new Path[] {leftXml}, null, new Path[] {rightXml}, null)
+                    .withTaskParameters(TaskParameters.builder().streamingThreshold(0L).build())
+                    .run();
+            List<Diff> aboveThreshold = DiffRunner
+                    .forValues(new Path[] {leftXml}, null, new Path[] {rightXml}, null)
+                    .withTaskParameters(TaskParameters.builder().streamingThreshold(1L).build())
+                    .run();
+            Assert.assertEquals(toStrings(regular.get(0)), toStrings(aboveThreshold.get(0)));
+        } finally {
+            Files.deleteIfExists(leftXml);
+            Files.deleteIfExists(rightXml);
+        }
+    }
+
+    /* ---------------
+       Utility methods
+       --------------- */
+
+    static Diff run(Object leftContent, Object rightContent) {
+        return DiffTask
+                .builder()
+                .contentType(ContentType.TEXT)
+                .leftContent(leftContent)
+                .rightContent(rightContent)
+                .taskParameters(TaskParameters.DEFAULT)
+                .build()
+                .run();
+    }
+
+    static List<String> createLines(int count) {
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Some lines repeat to make the matching ambiguous, most are unique
+            result.add(i % 50 == 0 ? "}" : "Line " + i + " of the sample text: " + Integer.toHexString(i * 31));
+        }
+        return result;
+    }
+
+    static List<String> mutate(List<String> lines, long seed) {
+        return LineDiffTest.mutate(new Random(seed), lines, lines.size() / 250);
+    }
+
+    static void write(Path path, List<String> lines) throws IOException {
+        Files.write(path, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> toStrings(Diff diff) {
+        return diff
+                .children()
+                .stream()
+                .map(child -> ((PrintableEntry) child).toString(OutputType.LOG))
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> getChangedRows(List<DiffRow> rows) {
+        return rows
+                .stream()
+                .filter(row -> row.getTag() != DiffRow.Tag.EQUAL)
+                .map(row -> row.getTag() + ":" + row.getOldLine() + "|" + row.getNewLine())
+                .collect(Collectors.toList());
+    }
+}
@@ -13,11 +13,18 @@
  */
 package com.exadel.etoolbox.anydiff.runner;
 
+import com.exadel.etoolbox.anydiff.AnyDiff;
+import com.exadel.etoolbox.anydiff.ContentType;
+import com.exadel.etoolbox.anydiff.OutputType;
+import com.exadel.etoolbox.anydiff.comparison.TaskParameters;
+import com.exadel.etoolbox.anydiff.comparison.preprocessor.Preprocessor;
 import com.exadel.etoolbox.anydiff.diff.Diff;
 import com.exadel.etoolbox.anydiff.diff.DiffState;
 import okhttp3.OkHttpClient;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -27,10 +34,25 @@ import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 @RunWith(MockitoJUnitRunner.class)
 public class DiffRunnerTest {
@@ -88,6 +110,30 @@ public class DiffRunnerTest {
         Assert.assertTrue(runner instanceof StringListRunner);
     }
 
+    @Test
+    public void shouldCompareStringArraysConcurrently() {
+        String[] left = new String[] {"Lorem", "ipsum", "dolor", "sit", "amet", "consectetur"};
+        String[] right = new String[] {"Lorem", "ipsun", "dolor", "sit", "amet"};
+
+        List<Diff> sequential = DiffRunner.forValues(left, null, right, null).run();
+        List<Diff> reported = new ArrayList<>();
+        List<Diff> concurrent = DiffRunner
+                .forValues(left, null, right, null)
+                .withThreads(4)
+                .withListener(reported::add)
+                .run();
+
+        Assert.assertEquals(6, sequential.size());
+        Assert.assertEquals(DiffState.RIGHT_MISSING, sequential.get(5).getState());
+        Assert.assertEquals(sequential.size(), concurrent.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            Assert.assertEquals(sequential.get(i).getLeft(), concurrent.get(i).getLeft());
+            Assert.assertEquals(sequential.get(i).getState(), concurrent.get(i).getState());
+        }
+        Assert.assertEquals(concurrent.size(), reported.size());
+        Assert.assertTrue(reported.containsAll(concurrent));
+    }
+
     @Test
     public void shouldCompareArchives() {
         URL leftUrl = getClass().getResource("/sample/left/left.zip");
@@ -123,6 +169,269 @@ public class DiffRunnerTest {
         Assert.assertEquals(6, differences.stream().filter(diff -> diff.getState() == DiffState.CHANGE).count());
     }
 
+    @Test
+    public void shouldCompareDirectoriesConcurrently() throws URISyntaxException {
+        URL resourcesRoot = getClass().getResource("/sample");
+        Assert.assertNotNull(resourcesRoot);
+
+        Path leftPath = Paths.get(resourcesRoot.toURI()).resolve("left");
+        Path rightPath = Paths.get(resourcesRoot.toURI()).resolve("right");
+
+        List<Diff> sequential = DiffRunner.forValues(leftPath, null, rightPath, null).run();
+        List<Diff> concurrent = DiffRunner.forValues(leftPath, null, rightPath, null).withThreads(4).run();
+
+        Assert.assertFalse(sequential.isEmpty());
+        Assert.assertEquals(sequential.size(), concurrent.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            Assert.assertEquals(sequential.get(i).getLeft(), concurrent.get(i).getLeft());
+            Assert.assertEquals(sequential.get(i).getRight(), concurrent.get(i).getRight());
+            Assert.assertEquals(sequential.get(i).getState(), concurrent.get(i).getState());
+            Assert.assertEquals(sequential.get(i).getCount(), concurrent.get(i).getCount());
+        }
+    }
+
+    @Test
+    public void shouldShortCircuitIdenticalFiles() throws IOException {
+        byte[] content = StringUtils.repeat("Lorem ipsum dolor sit amet\n", 10_000).getBytes(StandardCharsets.UTF_8);
+        Path left = Files.createTempFile("anydiff-left", ".txt");
+        Path right = Files.createTempFile("anydiff-right", ".txt");
+        Path changed = Files.createTempFile("anydiff-changed", ".txt");
+        try {
+            Files.write(left, content);
+            Files.write(right, content);
+            content[content.length - 2] = 'X';
+            Files.write(changed, content);
+
+            Assert.assertTrue(FileIdentityHelper.isIdentical(left, right));
+            Assert.assertFalse(FileIdentityHelper.isIdentical(left, changed));
+
+            List<Diff> differences = DiffRunner.forValues(left, null, right, null).runInternal();
+            Assert.assertEquals(1, differences.size());
+            Assert.assertEquals(DiffState.UNCHANGED, differences.get(0).getState());
+            Assert.assertEquals(left.toAbsolutePath().toString(), differences.get(0).getLeft());
+
+            differences = DiffRunner.forValues(left, null, changed, null).runInternal();
+            Assert.assertEquals(DiffState.CHANGE, differences.get(0).getState());
+        } finally {
+            Files.deleteIfExists(left);
+            Files.deleteIfExists(right);
+            Files.deleteIfExists(changed);
+        }
+    }
+
+    @Test
+    public void shouldCheckIdenticalFilesOnce() throws IOException {
+        Path left = Files.createTempDirectory("anydiff-left");
+        Path right = Files.createTempDirectory("anydiff-right");
+        try (MockedStatic<FileIdentityHelper> identityHelper = Mockito.mockStatic(
+                FileIdentityHelper.class,
+                Mockito.CALLS_REAL_METHODS)) {
+            for (String name : new String[] {"first.txt", "second.txt"}) {
+                Files.write(left.resolve(name), name.getBytes(StandardCharsets.UTF_8));
+                Files.write(right.resolve(name), name.getBytes(StandardCharsets.UTF_8));
+            }
+            Files.write(left.resolve("third.txt"), "Lorem".getBytes(StandardCharsets.UTF_8));
+            Files.write(right.resolve("third.txt"), "Ipsum".getBytes(StandardCharsets.UTF_8));
+
+            AnyDiff anyDiff = new AnyDiff().left(left, null).right(right, null);
+            List<Diff> differences = anyDiff.compare();
+            Assert.assertEquals(1, differences.size());
+            Assert.assertEquals(2, anyDiff.getIdenticalCount());
+            identityHelper.verify(
+                    () -> FileIdentityHelper.isIdentical(Mockito.any(), Mockito.any()),
+                    Mockito.times(3));
+        } finally {
+            FileUtils.deleteDirectory(left.toFile());
+            FileUtils.deleteDirectory(right.toFile());
+        }
+    }
+
+    @Test
+    public void shouldCompareArchivesConcurrently() throws IOException {
+        Path left = Files.createTempFile("anydiff-left", ".zip");
+        Path right = Files.createTempFile("anydiff-right", ".zip");
+        try {
+            writeArchive(left, "a.txt", "Lorem ipsum", "b.txt", "dolor sit amet", "c.txt", "Left only");
+            writeArchive(right, "a.txt", "Lorem ipsum", "b.txt", "dolor sit", "d.txt", "Right only");
+
+            List<Diff> sequential = DiffRunner.forValues(left, null, right, null).run();
+            List<Diff> concurrent = DiffRunner.forValues(left, null, right, null).withThreads(4).run();
+
+            Assert.assertEquals(4, sequential.size());
+            Assert.assertEquals(DiffState.UNCHANGED, sequential.get(0).getState());
+            Assert.assertEquals(DiffState.CHANGE, sequential.get(1).getState());
+            Assert.assertEquals(DiffState.RIGHT_MISSING, sequential.get(2).getState());
+            Assert.assertEquals(DiffState.LEFT_MISSING, sequential.get(3).getState());
+            Assert.assertEquals(sequential.size(), concurrent.size());
+            for (int i = 0; i < sequential.size(); i++) {
+                Assert.assertEquals(sequential.get(i).getLeft(), concurrent.get(i).getLeft());
+                Assert.assertEquals(sequential.get(i).getState(), concurrent.get(i).getState());
+                Assert.assertEquals(sequential.get(i).getCount(), concurrent.get(i).getCount());
+            }
+        } finally {
+            Files.deleteIfExists(left);
+            Files.deleteIfExists(right);
+        }
+    }
+
+    @Test
+    public void shouldTriageArchiveEntries() throws IOException {
+        Path left = Files.createTempFile("anydiff-left", ".zip");
+        Path right = Files.createTempFile("anydiff-right", ".zip");
+        try {
+            writeStoredArchive(left, "a.txt", "Lorem ipsum", "b.txt", "dolor sit amet");
+            writeStoredArchive(right, "a.txt", "Lorem ipsum", "b.txt", "dolor sit");
+            try (ZipFile leftFile = new ZipFile(left.toFile()); ZipFile rightFile = new ZipFile(right.toFile())) {
+                Assert.assertEquals(
+                        ArchiveRunner.EntryState.PROBABLY_IDENTICAL,
+                        ArchiveRunner.triage(leftFile.getEntry("a.txt"), rightFile.getEntry("a.txt")));
+                Assert.assertEquals(
+                        ArchiveRunner.EntryState.CHANGED,
+                        ArchiveRunner.triage(leftFile.getEntry("b.txt"), rightFile.getEntry("b.txt")));
+            }
+
+            List<Diff> differences = DiffRunner.forValues(left, null, right, null).run();
+            Assert.assertEquals(2, differences.size());
+            Assert.assertEquals(DiffState.UNCHANGED, differences.get(0).getState());
+            Assert.assertEquals(DiffState.CHANGE, differences.get(1).getState());
+
+            List<Diff> metadataDifferences = DiffRunner
+                    .forValues(left, null, right, null)
+                    .withTaskParameters(TaskParameters.builder().metadataOnly(true).build())
+                    .run();
+            Assert.assertEquals(2, metadataDifferences.size());
+            Assert.assertEquals(DiffState.UNCHANGED, metadataDifferences.get(0).getState());
+            Assert.assertEquals(DiffState.CHANGE, metadataDifferences.get(1).getState());
+            Assert.assertFalse(metadataDifferences.get(1).toString(OutputType.CONSOLE).contains("dolor"));
+        } finally {
+            Files.deleteIfExists(left);
+            Files.deleteIfExists(right);
+        }
+    }
+
+    @Test
+    public void shouldCompareMarkupEntriesByMetadata() throws IOException {
+        Path left = Files.createTempFile("anydiff-left", ".zip");
+        Path right = Files.createTempFile("anydiff-right", ".zip");
+        try {
+            writeArchive(left, "a.xml", "<root><item>Lorem ipsum</item></root>");
+            writeArchive(right, "a.xml", "<root><item>Lorem ipsum dolor</item></root>");
+
+            AtomicInteger markupCalls = new AtomicInteger();
+            Preprocessor markupPreprocessor = new Preprocessor() {
+                @Override
+                public String apply(String value) {
+                    markupCalls.incrementAndGet();
+                    return value;
+                }
+            };
+            List<Diff> differences = DiffRunner
+                    .forValues(left, null, right, null)
+                    .withTaskParameters(TaskParameters
+                            .builder()
+                            .metadataOnly(true)
+                            .preprocessors(Collections.singletonMap(ContentType.XML, markupPreprocessor))
+                            .build())
+                    .run();
+            Assert.assertEquals(1, differences.size());
+            Assert.assertEquals(DiffState.CHANGE, differences.get(0).getState());
+            String output = differences.get(0).toString(OutputType.CONSOLE);
+            Assert.assertTrue(output.contains("CRC:"));
+            Assert.assertFalse(output.contains("Lorem"));
+            Assert.assertEquals(0, markupCalls.get());
+        } finally {
+            Files.deleteIfExists(left);
+            Files.deleteIfExists(right);
+        }
+    }
+
+    @Test
+    public void shouldCompareNestedArchives() throws IOException {
+        Path left = Files.createTempFile("anydiff-left", ".zip");
+        Path right = Files.createTempFile("anydiff-right", ".zip");
+        try {
+            String bundle = toString(createArchive("META-INF/MANIFEST.MF", "Bundle-Version: 1.0"));
+            byte[] leftPackage = createArchive("a.txt", "Lorem ipsum", "bundle.jar", bundle);
+            byte[] rightPackage = createArchive("a.txt", "Lorem ipsum dolor", "bundle.jar", bundle);
+            writeArchive(
+                    left,
+                    StandardCharsets.ISO_8859_1,
+                    "embedded.zip", toString(leftPackage),
+                    "b.txt", "sit amet");
+            writeArchive(
+                    right,
+                    StandardCharsets.ISO_8859_1,
+                    "embedded.zip", toString(rightPackage),
+                    "b.txt", "sit amet");
+
+            List<Diff> differences = DiffRunner.forValues(left, null, right, null).withThreads(2).run();
+            Assert.assertEquals(3, differences.size());
+            Assert.assertEquals(left + "/embedded.zip/a.txt", differences.get(0).getLeft());
+            Assert.assertEquals(DiffState.CHANGE, differences.get(0).getState());
+            Assert.assertEquals(left + "/embedded.zip/bundle.jar", differences.get(1).getLeft());
+            Assert.assertEquals(DiffState.UNCHANGED, differences.get(1).getState());
+            Assert.assertEquals(DiffState.UNCHANGED, differences.get(2).getState());
+
+            StreamedArchiveSource source = new StreamedArchiveSource(
+                    () -> new ByteArrayInputStream(leftPackage),
+                    new MemoryBudget(0));
+            source.prefetch(Collections.singletonList("a.txt"));
+            Assert.assertFalse(source.isAvailable("a.txt"));
+            Assert.assertEquals("Lorem ipsum", source.getContent("a.txt"));
+        } finally {
+            Files.deleteIfExists(left);
+            Files.deleteIfExists(right);
+        }
+    }
+
+    @Test
+    public void shouldShareMemoryBudget() throws IOException {
+        byte[] archive = createArchive("a.txt", "Lorem ipsum", "b.txt", "dolor sit amet");
+        MemoryBudget budget = new MemoryBudget(20);
+        StreamedArchiveSource first = new StreamedArchiveSource(() -> new ByteArrayInputStream(archive), budget);
+        StreamedArchiveSource second = new StreamedArchiveSource(() -> new ByteArrayInputStream(archive), budget);
+
+        first.prefetch(Collections.singletonList("b.txt"));
+        second.prefetch(Collections.singletonList("b.txt"));
+        Assert.assertTrue(first.isAvailable("b.txt"));
+        Assert.assertFalse(second.isAvailable("b.txt"));
+        Assert.assertEquals(6, budget.getRemaining());
+
+        first.close();
+        Assert.assertEquals(20, budget.getRemaining());
+        second.prefetch(Collections.singletonList("b.txt"));
+        Assert.assertTrue(second.isAvailable("b.txt"));
+    }
+
+    @Test
+    public void shouldReportEntriesExceedingMemoryBudget() throws IOException {
+        Path left = Files.createTempFile("anydiff-left", ".zip");
+        Path right = Files.createTempFile("anydiff-right", ".zip");
+        try {
+            writeArchive(
+                    left,
+                    StandardCharsets.ISO_8859_1,
+                    "embedded.zip", toString(createArchive("a.txt", "Lorem ipsum")));
+            writeArchive(
+                    right,
+                    StandardCharsets.ISO_8859_1,
+                    "embedded.zip", toString(createArchive("a.txt", "Lorem ipsum dolor")));
+
+            List<Diff> differences = DiffRunner
+                    .forValues(left, null, right, null)
+                    .withMemoryBudget(new MemoryBudget(0))
+                    .run();
+            Assert.assertEquals(1, differences.size());
+            Assert.assertEquals(DiffState.CHANGE, differences.get(0).getState());
+            String output = differences.get(0).toString(OutputType.CONSOLE);
+            Assert.assertTrue(output.contains("Exceeds memory budget:"));
+            Assert.assertFalse(output.contains("Lorem"));
+        } finally {
+            Files.deleteIfExists(left);
+            Files.deleteIfExists(right);
+        }
+    }
+
     @Test
     public void shouldCompareListings() {
         URL leftUrl = getClass().getResource("/sample/left/files.list");
@@ -149,4 +458,55 @@ public class DiffRunnerTest {
         List<Diff> differences = runner.run();
         Assert.assertEquals(1, differences.size());
     }
+
+    private static void writeArchive(Path path, String... namesAndContents) throws IOException {
+        writeArchive(path, StandardCharsets.UTF_8, namesAndContents);
+    }
+
+    private static void writeArchive(Path path, Charset charset, String... namesAndContents) throws IOException {
+        try (OutputStream output = Files.newOutputStream(path)) {
+            writeArchive(output, charset, namesAndContents);
+        }
+    }
+
+    private static byte[] createArchive(String... namesAndContents) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writeArchive(output, StandardCharsets.ISO_8859_1, namesAndContents);
+        return output.toByteArray();
+    }
+
+    private static String toString(byte[] archive) {
+        // Archive bytes are passed around as ISO-8859-1 strings that map every byte to a single char
+        return new String(archive, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void writeArchive(
+            OutputStream stream,
+            Charset charset,
+            String... namesAndContents) throws IOException {
+        try (ZipOutputStream output = new ZipOutputStream(stream)) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                output.putNextEntry(new ZipEntry(namesAndContents[i]));
+                output.write(namesAndContents[i + 1].getBytes(charset));
+                output.closeEntry();
+            }
+        }
+    }
+
+    private static void writeStoredArchive(Path path, String... namesAndContents) throws IOException {
+        try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(path))) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                byte[] content = namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8);
+                CRC32 crc = new CRC32();
+                crc.update(content);
+                ZipEntry entry = new ZipEntry(namesAndContents[i]);
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(content.length);
+                entry.setCrc(crc.getValue());
+                output.putNextEntry(entry);
+                output.write(content);
+                output.closeEntry();
+            }
+        }
+    }
 }
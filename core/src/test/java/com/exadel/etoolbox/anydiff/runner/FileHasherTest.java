@@ -0,0 +1,137 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import com.exadel.etoolbox.anydiff.HashAlgorithm;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+public class FileHasherTest {
+
+    private static final int SAMPLE_SIZE = 3 * 1024 * 1024 + 17;
+
+    private static Path sample;
+    private static byte[] sampleBytes;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        sampleBytes = new byte[SAMPLE_SIZE];
+        new Random(42).nextBytes(sampleBytes);
+        sample = Files.createTempFile("anydiff-hash", ".bin");
+        Files.write(sample, sampleBytes);
+    }
+
+    @AfterClass
+    public static void destroy() throws IOException {
+        Files.deleteIfExists(sample);
+    }
+
+    @Test
+    public void shouldComputeCrc32() {
+        CRC32 expected = new CRC32();
+        expected.update(sampleBytes, 0, sampleBytes.length);
+        Assert.assertEquals(expected.getValue(), FileHasher.builder().build().hash(sample));
+    }
+
+    @Test
+    public void shouldComputeCrc32c() {
+        Assert.assertEquals(0xE3069283L, getValue(new Crc32cChecksum(), "123456789"));
+        Assert.assertEquals(0xE3069283L, getValue(ChecksumAlgorithm.CRC32C.newChecksum(), "123456789"));
+
+        Checksum expected = new Crc32cChecksum();
+        expected.update(sampleBytes, 0, sampleBytes.length);
+        Assert.assertEquals(
+                expected.getValue(),
+                FileHasher.builder().algorithm(HashAlgorithm.CRC32C).build().hash(sample));
+    }
+
+    @Test
+    public void shouldComputeXxHash64() {
+        Assert.assertEquals(0xEF46DB3751D8E999L, getValue(new Xxh64Checksum(), ""));
+        Assert.assertEquals(0xD24EC4F1A98C6E5BL, getValue(new Xxh64Checksum(), "a"));
+        Assert.assertEquals(0x44BC2CF5AD770999L, getValue(new Xxh64Checksum(), "abc"));
+
+        Checksum expected = new Xxh64Checksum();
+        expected.update(sampleBytes, 0, sampleBytes.length);
+        Assert.assertEquals(
+                expected.getValue(),
+                FileHasher.builder().algorithm(HashAlgorithm.XXHASH64).build().hash(sample));
+    }
+
+    @Test
+    public void shouldHashInParallelSegments() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+                long sequential = FileHasher.builder().algorithm(algorithm).build().hash(sample);
+                long segmented = FileHasher
+                        .builder()
+                        .algorithm(algorithm)
+                        .pool(pool)
+                        .segmentSize(1024 * 1024)
+                        .build()
+                        .hash(sample);
+                Assert.assertEquals(algorithm.name(), sequential, segmented);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldMapWindowsOfSegmentSize() throws IOException {
+        // The file is large enough to be memory-mapped, and the windows are smaller than the file
+        byte[] bytes = new byte[17 * 1024 * 1024 + 3];
+        new Random(7).nextBytes(bytes);
+        Path largeSample = Files.createTempFile("anydiff-hash", ".bin");
+        try {
+            Files.write(largeSample, bytes);
+            CRC32 expected = new CRC32();
+            expected.update(bytes, 0, bytes.length);
+            Assert.assertEquals(
+                    expected.getValue(),
+                    FileHasher.builder().segmentSize(5 * 1024 * 1024).build().hash(largeSample));
+        } finally {
+            Files.deleteIfExists(largeSample);
+        }
+    }
+
+    @Test
+    public void shouldTellCombinableAlgorithms() {
+        Assert.assertTrue(ChecksumAlgorithm.CRC32.isCombinable());
+        Assert.assertTrue(ChecksumAlgorithm.CRC32C.isCombinable());
+        Assert.assertFalse(ChecksumAlgorithm.XXHASH64.isCombinable());
+        for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+            Assert.assertEquals(algorithm.name(), ChecksumAlgorithm.from(algorithm).name());
+        }
+        Assert.assertEquals(ChecksumAlgorithm.CRC32, ChecksumAlgorithm.from(null));
+    }
+
+    private static long getValue(Checksum checksum, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        checksum.update(bytes, 0, bytes.length);
+        return checksum.getValue();
+    }
+}
@@ -18,6 +18,7 @@ import com.exadel.etoolbox.anydiff.ContentType;
 import com.exadel.etoolbox.anydiff.comparison.DiffTask;
 import com.exadel.etoolbox.anydiff.diff.Diff;
 import com.exadel.etoolbox.anydiff.diff.DiffEntry;
+import com.exadel.etoolbox.anydiff.diff.DiffState;
 import com.exadel.etoolbox.anydiff.diff.EntryHolder;
 import com.exadel.etoolbox.anydiff.diff.Fragment;
 import com.exadel.etoolbox.anydiff.diff.FragmentHolder;
@@ -28,6 +29,7 @@ import lombok.RequiredArgsConstructor;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -91,6 +93,16 @@ public class FilterHelperTest {
         Assert.assertFalse(processingFilter.test(block));
     }
 
+    @Test
+    public void shouldNotApplyLineRulesToUnchangedLines() {
+        DiffEntry block = DiffTask.builder().leftContent(LEFT).rightContent(RIGHT).build().run().children().get(0);
+        LineRecorder recorder = new LineRecorder();
+        Predicate<DiffEntry> processingFilter = FilterHelper.getEntryFilter(Collections.singletonList(recorder));
+        Assert.assertTrue(processingFilter.test(block));
+        Assert.assertEquals(1, recorder.lines.size());
+        Assert.assertEquals(DiffState.CHANGE, recorder.lines.get(0).getState());
+    }
+
     @Test
     public void shouldFilterByFragmentPair() {
         List<? extends DiffEntry> entries = DiffTask
@@ -184,6 +196,16 @@ public class FilterHelperTest {
         }
     }
 
+    private static class LineRecorder implements Filter {
+        private final List<DiffEntry> lines = new ArrayList<>();
+
+        @Override
+        public boolean skipLine(DiffEntry value) {
+            lines.add(value);
+            return false;
+        }
+    }
+
     @RequiredArgsConstructor
     private static class SkipWhenContainsFragment implements Filter {
         private final String fragment;
@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+public class HttpBodyTest {
+
+    private static final byte[] CONTENT = StringUtils
+            .repeat("Lorem ipsum dolor sit amet\n", 1000)
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void shouldKeepSmallBodiesInMemory() throws IOException {
+        try (HttpBody body = HttpBody.read(new ByteArrayInputStream(CONTENT), CONTENT.length, -1)) {
+            Assert.assertFalse(body.isSpilled());
+            Assert.assertFalse(body.isTruncated());
+            Assert.assertEquals(CONTENT.length, body.getSize());
+            Assert.assertEquals(getCrc(CONTENT, CONTENT.length), body.getCrc());
+            Assert.assertEquals(new String(CONTENT, StandardCharsets.UTF_8), body.getText(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void shouldSpillLargeBodiesToDisk() throws IOException {
+        HttpBody spilled;
+        try (HttpBody body = HttpBody.read(new ByteArrayInputStream(CONTENT), 1024, -1)) {
+            Assert.assertTrue(body.isSpilled());
+            Assert.assertFalse(body.isTruncated());
+            Assert.assertEquals(CONTENT.length, body.getSize());
+            Assert.assertEquals(getCrc(CONTENT, CONTENT.length), body.getCrc());
+            Assert.assertEquals(new String(CONTENT, StandardCharsets.UTF_8), body.getText(StandardCharsets.UTF_8));
+            spilled = body;
+        }
+        // The temporary file is removed as soon as the body is closed
+        Assert.assertNull(spilled.getText(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldKeepSharedBodiesUntilReleased() throws IOException {
+        HttpBody body = HttpBody.read(new ByteArrayInputStream(CONTENT), 1024, -1);
+        body.retain(1);
+        body.close();
+        Assert.assertEquals(CONTENT.length, body.getText(StandardCharsets.UTF_8).length());
+        body.close();
+        Assert.assertNull(body.getText(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldRemoveTemporaryFileOnFailure() throws IOException {
+        Path directory = Paths.get(System.getProperty("java.io.tmpdir"));
+        List<Path> before = getTemporaryFiles(directory);
+        InputStream failingInput = new SequenceInputStream(new ByteArrayInputStream(CONTENT), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        });
+        Assert.assertThrows(IOException.class, () -> HttpBody.read(failingInput, 1024, -1));
+        Assert.assertEquals(before, getTemporaryFiles(directory));
+    }
+
+    @Test
+    public void shouldTruncateBodies() throws IOException {
+        try (HttpBody body = HttpBody.read(new ByteArrayInputStream(CONTENT), 1024, 10_000)) {
+            Assert.assertTrue(body.isTruncated());
+            Assert.assertEquals(10_000, body.getSize());
+            Assert.assertEquals(getCrc(CONTENT, 10_000), body.getCrc());
+            Assert.assertEquals(10_000, body.getText(StandardCharsets.UTF_8).length());
+        }
+    }
+
+    @Test
+    public void shouldParseSizes() {
+        Assert.assertEquals(1024, HttpBody.parseSize("1024"));
+        Assert.assertEquals(512 * 1024, HttpBody.parseSize("512k"));
+        Assert.assertEquals(10L * 1024 * 1024, HttpBody.parseSize("10M"));
+        Assert.assertEquals(1024L * 1024 * 1024, HttpBody.parseSize("1G"));
+        Assert.assertEquals(-1, HttpBody.parseSize("ten"));
+        Assert.assertEquals(-1, HttpBody.parseSize(null));
+    }
+
+    private static List<Path> getTemporaryFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> file.getFileName().toString().startsWith("anydiff-http"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long getCrc(byte[] value, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(value, 0, length);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class HttpCacheTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    private Path directory;
+    private OkHttpClient client;
+    private List<Request> serverRequests;
+
+    @Before
+    public void init() throws IOException {
+        directory = Files.createTempDirectory("anydiff-cache");
+        serverRequests = new ArrayList<>();
+        client = new OkHttpClient.Builder()
+                .addInterceptor(chain -> {
+                    Request request = chain.request();
+                    serverRequests.add(request);
+                    Response.Builder response = new Response.Builder()
+                            .request(request)
+                            .protocol(Protocol.HTTP_1_1)
+                            .header("ETag", ETAG);
+                    if (ETAG.equals(request.header("If-None-Match"))) {
+                        return response
+                                .code(304)
+                                .message("Not Modified")
+                                .body(ResponseBody.create(new byte[0], null))
+                                .build();
+                    }
+                    String content = "Content of " + request.url().encodedPath();
+                    return response
+                            .code(200)
+                            .message("OK")
+                            .header("Content-Type", "text/plain")
+                            .body(ResponseBody.create(content, MediaType.parse("text/plain")))
+                            .build();
+                })
+                .build();
+    }
+
+    @After
+    public void destroy() throws IOException {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @Test
+    public void shouldServeValidatedResponses() throws IOException {
+        HttpCache cache = new HttpCache(directory, Long.MAX_VALUE);
+        Request request = new Request.Builder().url("https://acme.com/page.html").build();
+
+        Assert.assertEquals("Content of /page.html", fetch(cache, request));
+        Assert.assertEquals("Content of /page.html", fetch(cache, request));
+        Assert.assertEquals(1, serverRequests.size());
+
+        // A new cache instance over the same directory stands for a new run that needs revalidation
+        HttpCache nextRunCache = new HttpCache(directory, Long.MAX_VALUE);
+        Assert.assertEquals("Content of /page.html", fetch(nextRunCache, request));
+        Assert.assertEquals(2, serverRequests.size());
+        Assert.assertEquals(ETAG, serverRequests.get(1).header("If-None-Match"));
+        Assert.assertEquals("Content of /page.html", fetch(nextRunCache, request));
+        Assert.assertEquals(2, serverRequests.size());
+    }
+
+    @Test
+    public void shouldRevalidateAfterRun() throws IOException {
+        HttpCache cache = HttpCache.getInstance(directory, Long.MAX_VALUE);
+        Request request = new Request.Builder().url("https://acme.com/page.html").build();
+        fetch(cache, request);
+        fetch(cache, request);
+        Assert.assertEquals(1, serverRequests.size());
+
+        new StringListRunner(new String[0], new String[0]).run();
+        Assert.assertEquals("Content of /page.html", fetch(cache, request));
+        Assert.assertEquals(2, serverRequests.size());
+        Assert.assertEquals(ETAG, serverRequests.get(1).header("If-None-Match"));
+    }
+
+    @Test
+    public void shouldDistinguishHeaders() {
+        Request request = new Request.Builder().url("https://acme.com/page.html").build();
+        Request requestWithHeader = request.newBuilder().header("User-Agent", "Test").build();
+        Assert.assertEquals(HttpCache.getKey(request), HttpCache.getKey(request.newBuilder().build()));
+        Assert.assertNotEquals(HttpCache.getKey(request), HttpCache.getKey(requestWithHeader));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed() throws IOException {
+        Request first = new Request.Builder().url("https://acme.com/first.html").build();
+        Request second = new Request.Builder().url("https://acme.com/second.html").build();
+        fetch(new HttpCache(directory, Long.MAX_VALUE), first);
+        long entrySize = getDirectorySize();
+        FileUtils.cleanDirectory(directory.toFile());
+        // A file that does not belong to any entry, such as a temporary file of an interrupted download, is not counted
+        Files.write(directory.resolve("interrupted.tmp"), new byte[(int) entrySize]);
+
+        HttpCache cache = new HttpCache(directory, entrySize * 3 / 2);
+        fetch(cache, first);
+        Path firstBody = directory.resolve(HttpCache.getKey(first) + ".body");
+        Assert.assertTrue(Files.exists(firstBody));
+        fetch(cache, second);
+        Assert.assertFalse(Files.exists(firstBody));
+        Assert.assertFalse(Files.exists(directory.resolve(HttpCache.getKey(first) + ".properties")));
+        Assert.assertTrue(Files.exists(directory.resolve(HttpCache.getKey(second) + ".body")));
+    }
+
+    @Test
+    public void shouldShareInstancesPerDirectory() {
+        HttpCache cache = HttpCache.getInstance(directory, 1024);
+        Assert.assertSame(cache, HttpCache.getInstance(directory.resolve("..").resolve(directory.getFileName()), 2048));
+        Assert.assertNotSame(cache, HttpCache.getInstance(directory.resolve("nested"), 1024));
+    }
+
+    private long getDirectorySize() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            long result = 0;
+            for (Path file : files.collect(Collectors.toList())) {
+                result += Files.size(file);
+            }
+            return result;
+        }
+    }
+
+    private String fetch(HttpCache cache, Request request) throws IOException {
+        try (Response response = cache.wrap(client).newCall(request).execute()) {
+            Assert.assertNotNull(response.body());
+            return response.body().string();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HttpFetchSchedulerTest {
+
+    @Test
+    public void shouldLimitConnectionsPerHost() {
+        HttpFetchScheduler scheduler = new HttpFetchScheduler(8);
+        Map<String, String> options = Collections.singletonMap(HttpFetchScheduler.OPTION_CONNECTIONS, "2");
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        AtomicInteger otherHostActive = new AtomicInteger();
+
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            int index = i;
+            results.add(scheduler.submit("acme.com", options, () -> {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                active.decrementAndGet();
+                return index;
+            }));
+            results.add(scheduler.submit("example.com", null, () -> {
+                otherHostActive.incrementAndGet();
+                return index;
+            }));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+
+        Assert.assertEquals(2, maxActive.get());
+        Assert.assertEquals(12, otherHostActive.get());
+        Assert.assertEquals(11, (int) results.get(22).join());
+        Assert.assertEquals(12, scheduler.getStatistics().get("acme.com").getRequests());
+        Assert.assertTrue(scheduler.getStatistics().get("acme.com").getAverageLatency() >= 20);
+    }
+
+    @Test
+    public void shouldLimitRatePerHost() {
+        HttpFetchScheduler scheduler = new HttpFetchScheduler(8);
+        Map<String, String> options = Collections.singletonMap(HttpFetchScheduler.OPTION_RATE, "50");
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            results.add(scheduler.submit("acme.com", options, () -> true));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+
+        // 11 requests at 50 requests per second need at least 10 intervals of 20 ms each
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 190);
+    }
+
+    @Test
+    public void shouldReportFailures() {
+        HttpFetchScheduler scheduler = new HttpFetchScheduler(2);
+        CompletableFuture<String> result = scheduler.submit("acme.com", null, () -> {
+            throw new IllegalStateException("Failure");
+        });
+        Assert.assertEquals("Recovered", result.exceptionally(e -> "Recovered").join());
+        Assert.assertEquals(1, scheduler.getStatistics().get("acme.com").getFailures());
+    }
+
+    @Test
+    public void shouldReportErrors() {
+        HttpFetchScheduler scheduler = new HttpFetchScheduler(2);
+        Map<String, String> options = Collections.singletonMap(HttpFetchScheduler.OPTION_CONNECTIONS, "1");
+        CompletableFuture<String> result = scheduler.submit("acme.com", options, () -> {
+            throw new OutOfMemoryError("Failure");
+        });
+        Assert.assertEquals("Recovered", result.exceptionally(e -> "Recovered").join());
+        // The only connection allowed is released after the error
+        Assert.assertEquals("Next", scheduler.submit("acme.com", options, () -> "Next").join());
+        Assert.assertEquals(1, scheduler.getStatistics().get("acme.com").getFailures());
+    }
+
+    @Test
+    public void shouldResetLimitsAfterRun() {
+        HttpFetchScheduler scheduler = new HttpFetchScheduler(8);
+        Map<String, String> options = Collections.singletonMap(HttpFetchScheduler.OPTION_CONNECTIONS, "1");
+        scheduler.onRunStarted();
+        Assert.assertEquals(1, getMaxActive(scheduler, options));
+        Assert.assertEquals(1, getMaxActive(scheduler, null));
+        scheduler.onRunCompleted();
+        Assert.assertEquals(5, getMaxActive(scheduler, null));
+    }
+
+    @Test
+    public void shouldCollectStatisticsPerRun() {
+        HttpFetchScheduler scheduler = new HttpFetchScheduler(2);
+        Map<String, HttpFetchScheduler.Statistics> runStatistics = new ConcurrentHashMap<>();
+        scheduler.submit("acme.com", null, () -> true).join();
+        scheduler.submit("acme.com", null, runStatistics, () -> true).join();
+        scheduler.submit("example.com", null, runStatistics, () -> true).join();
+
+        Assert.assertEquals(2, scheduler.getStatistics().get("acme.com").getRequests());
+        Assert.assertEquals(1, runStatistics.get("acme.com").getRequests());
+        Assert.assertEquals(1, runStatistics.get("example.com").getRequests());
+
+        DiffRunner runner = new StringListRunner(new String[0], new String[0]).withFetchStatistics(runStatistics);
+        Assert.assertEquals(2, runner.getHostStatistics().size());
+        Assert.assertTrue(runner.getHostStatistics().get("acme.com").startsWith("1 requests, 0 failed"));
+    }
+
+    @Test
+    public void shouldReuseHttpClients() {
+        HttpClientFactory factory = new HttpClientFactory();
+        Assert.assertSame(factory.newClient(false, null), factory.newClient(false, null));
+        Assert.assertSame(factory.newClient(true, "localhost:8080"), factory.newClient(true, "localhost:8080"));
+        Assert.assertNotSame(factory.newClient(false, null), factory.newClient(true, null));
+        Assert.assertNotSame(factory.newClient(true, null), factory.newClient(true, "localhost:8080"));
+    }
+
+    private static int getMaxActive(HttpFetchScheduler scheduler, Map<String, String> options) {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(scheduler.submit("acme.com", options, () -> {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                Thread.sleep(10);
+                active.decrementAndGet();
+                return true;
+            }));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+        return maxActive.get();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class InFlightDownloadsTest {
+
+    @Test
+    public void shouldShareDownloadsInProgress() {
+        AtomicInteger retained = new AtomicInteger();
+        InFlightDownloads<String> downloads = new InFlightDownloads<>((value, count) -> retained.addAndGet(count));
+        AtomicInteger started = new AtomicInteger();
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        CompletableFuture<String> first = downloads.deduplicate("page", () -> {
+            started.incrementAndGet();
+            return pending;
+        });
+        CompletableFuture<String> second = downloads.deduplicate("page", () -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture("Other");
+        });
+        CompletableFuture<String> third = downloads.deduplicate("page", () -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture("Other");
+        });
+        Assert.assertEquals(1, started.get());
+        pending.complete("Done");
+
+        // The result is retained once for each caller except the one that started the download
+        Assert.assertEquals("Done", first.join());
+        Assert.assertEquals("Done", second.join());
+        Assert.assertEquals("Done", third.join());
+        Assert.assertEquals(2, retained.get());
+
+        // A download that has completed is not shared anymore
+        Assert.assertEquals("Next", downloads.deduplicate("page", () -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture("Next");
+        }).join());
+        Assert.assertEquals(2, started.get());
+        Assert.assertEquals(2, retained.get());
+    }
+
+    @Test
+    public void shouldShareFailures() {
+        InFlightDownloads<String> downloads = new InFlightDownloads<>((value, count) -> { });
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> first = downloads.deduplicate("page", () -> pending);
+        CompletableFuture<String> second = downloads.deduplicate("page", () -> pending);
+        pending.completeExceptionally(new IllegalStateException("Failure"));
+
+        Assert.assertTrue(first.isCompletedExceptionally());
+        Assert.assertTrue(second.isCompletedExceptionally());
+        Assert.assertEquals("Recovered", downloads.deduplicate("page", () -> {
+            throw new IllegalStateException("Failure");
+        }).exceptionally(e -> "Recovered").join());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+public class MissingEntriesHelperTest {
+
+    private static final int MANY_ENTRIES_SIZE = 25_000;
+
+    @Test
+    public void shouldDetectMissingAndMovedEntries() {
+        List<String> left = Arrays.asList("common.txt", "moved.txt", "missing-right.txt", "image.png");
+        List<String> right = Arrays.asList("common.txt", "folder/moved.txt", "missing-left.txt", "folder/image.jpg");
+        Function<String, Long> crcSupplier = path -> path.contains("moved") ? 42L : path.length();
+
+        MissingEntriesHelper helper = new MissingEntriesHelper(left, right, crcSupplier, crcSupplier);
+
+        Assert.assertFalse(helper.isMissingLeft("common.txt"));
+        Assert.assertFalse(helper.isMissingRight("common.txt"));
+        Assert.assertEquals("folder/moved.txt", helper.getMoved("moved.txt"));
+        Assert.assertFalse(helper.isMissingRight("moved.txt"));
+        Assert.assertFalse(helper.isMissingLeft("folder/moved.txt"));
+        Assert.assertTrue(helper.isMissingRight("missing-right.txt"));
+        Assert.assertTrue(helper.isMissingLeft("missing-left.txt"));
+        // Entries with different extensions are not considered moved even if the content matches
+        Assert.assertTrue(helper.isMissingRight("image.png"));
+        Assert.assertTrue(helper.isMissingLeft("folder/image.jpg"));
+    }
+
+    @Test
+    public void shouldPairDuplicateEntriesInOrder() {
+        List<String> left = Arrays.asList("a/1.txt", "a/2.txt");
+        List<String> right = Arrays.asList("b/1.txt", "b/2.txt", "b/3.txt");
+
+        MissingEntriesHelper helper = new MissingEntriesHelper(left, right, path -> 1L, path -> 1L);
+
+        Assert.assertEquals("b/1.txt", helper.getMoved("a/1.txt"));
+        Assert.assertEquals("b/2.txt", helper.getMoved("a/2.txt"));
+        Assert.assertTrue(helper.isMissingLeft("b/3.txt"));
+    }
+
+    @Test
+    public void shouldNotComputeCrcForMatchedEntries() {
+        List<String> left = Arrays.asList("same.txt", "left.txt", "left.xml");
+        List<String> right = Arrays.asList("same.txt", "right.txt");
+        List<String> hashed = new ArrayList<>();
+        Function<String, Long> crcSupplier = path -> {
+            synchronized (hashed) {
+                hashed.add(path);
+            }
+            return 0L;
+        };
+
+        new MissingEntriesHelper(left, right, crcSupplier, crcSupplier);
+
+        Assert.assertEquals(2, hashed.size());
+        Assert.assertTrue(hashed.containsAll(Arrays.asList("left.txt", "right.txt")));
+    }
+
+    @Test
+    public void shouldProcessManyEntries() {
+        List<String> left = new ArrayList<>();
+        List<String> right = new ArrayList<>();
+        populate(left, right, MANY_ENTRIES_SIZE);
+        Function<String, Long> crcSupplier = path -> (long) path.substring(path.lastIndexOf('/')).hashCode();
+
+        MissingEntriesHelper helper = new MissingEntriesHelper(left, right, crcSupplier, crcSupplier);
+
+        Assert.assertEquals("content/moved/file10.xml", helper.getMoved(left.get(10)));
+        Assert.assertTrue(helper.isMissingRight(left.get(20)));
+        Assert.assertFalse(helper.isMissingRight(left.get(1)));
+    }
+
+    static void populate(List<String> left, List<String> right, int size) {
+        for (int i = 0; i < size; i++) {
+            // Every tenth entry is moved to another folder, and every twentieth is missing on the right
+            left.add("content/folder" + (i % 100) + "/file" + i + ".xml");
+            if (i % 20 == 0) {
+                right.add("content/other/file-" + i + ".xml");
+            } else if (i % 10 == 0) {
+                right.add("content/moved/file" + i + ".xml");
+            } else {
+                right.add(left.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.anydiff.runner;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Contains timing runs for the routines of the {@code runner} package. These are not a part of the regular test suite
+ * and are executed with {@code mvn test -P benchmark}
+ */
+public class RunnerBenchmark {
+
+    private static final int MISSING_ENTRIES_BASE_SIZE = 25_000;
+
+    @Test
+    public void measureMissingEntriesHelper() {
+        for (int size = MISSING_ENTRIES_BASE_SIZE; size <= MISSING_ENTRIES_BASE_SIZE * 8; size *= 2) {
+            List<String> left = new ArrayList<>(size);
+            List<String> right = new ArrayList<>(size);
+            MissingEntriesHelperTest.populate(left, right, size);
+            Function<String, Long> crcSupplier = path -> (long) path.substring(path.lastIndexOf('/')).hashCode();
+
+            long start = System.nanoTime();
+            MissingEntriesHelper helper = new MissingEntriesHelper(left, right, crcSupplier, crcSupplier);
+            long time = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("MissingEntriesHelper: %d entries processed in %d ms%n", size, time);
+            Assert.assertFalse(helper.isMissingRight(left.get(1)));
+        }
+    }
+}